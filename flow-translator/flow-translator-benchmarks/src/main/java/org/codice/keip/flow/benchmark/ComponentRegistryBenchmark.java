@@ -0,0 +1,93 @@
+package org.codice.keip.flow.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.model.EipId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares a {@link ComponentRegistry} loaded from the component definitions JSON with one loaded
+ * from the binary component index, both for loading the registry and for looking up components.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComponentRegistryBenchmark {
+
+  public enum Source {
+    JSON,
+    INDEX
+  }
+
+  private static final EipId[] LOOKUPS = {
+    new EipId("integration", "transformer"),
+    new EipId("integration", "router"),
+    new EipId("jms", "message-driven-channel-adapter"),
+    new EipId("http", "outbound-gateway"),
+    // not registered
+    new EipId("integration", "unknown"),
+    new EipId("custom", "transformer")
+  };
+
+  @Param({"JSON", "INDEX"})
+  private Source source;
+
+  private byte[] definitions;
+
+  private ComponentRegistry registry;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    String resource =
+        switch (this.source) {
+          case JSON -> ComponentRegistry.COMPONENT_DEFINITIONS_JSON;
+          case INDEX -> ComponentRegistry.COMPONENT_INDEX;
+        };
+    // Included on the classpath by the `eip-schema-definitions` dependency
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+      if (in == null) {
+        throw new IllegalStateException(resource + " not found on the classpath");
+      }
+      this.definitions = in.readAllBytes();
+    }
+    this.registry = load();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public ComponentRegistry load() throws IOException {
+    return switch (this.source) {
+      case JSON -> ComponentRegistry.fromJson(new ByteArrayInputStream(this.definitions));
+      case INDEX -> ComponentRegistry.fromIndex(ByteBuffer.wrap(this.definitions));
+    };
+  }
+
+  @Benchmark
+  public void lookup(Blackhole blackhole) {
+    EipId id = LOOKUPS[this.next];
+    this.next = (this.next + 1) % LOOKUPS.length;
+    blackhole.consume(this.registry.getRole(id));
+    blackhole.consume(this.registry.getConnectionType(id));
+  }
+}
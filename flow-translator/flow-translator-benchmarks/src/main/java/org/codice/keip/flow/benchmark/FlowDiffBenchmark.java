@@ -0,0 +1,87 @@
+package org.codice.keip.flow.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.codice.keip.flow.diff.FlowDiff;
+import org.codice.keip.flow.diff.GraphDiffer;
+import org.codice.keip.flow.graph.EipGraphBuilder;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.Flow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link GraphDiffer} over {@link SyntheticFlows} of increasing size, comparing a
+ * flow either with an identical copy (`NONE`) or with a copy where every tenth node has an extra
+ * attribute (`MODIFIED`). The graphs are built once, so only the diff itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FlowDiffBenchmark {
+
+  public enum Change {
+    NONE,
+    MODIFIED
+  }
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  private int nodeCount;
+
+  @Param({"NONE", "MODIFIED"})
+  private Change change;
+
+  private final GraphDiffer graphDiffer = new GraphDiffer();
+
+  private EipGraph before;
+
+  private EipGraph after;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Flow flow = SyntheticFlows.generate(this.nodeCount);
+    Flow otherFlow =
+        switch (this.change) {
+          case NONE -> SyntheticFlows.generate(this.nodeCount);
+          case MODIFIED -> modifyEveryTenthNode(SyntheticFlows.generate(this.nodeCount));
+        };
+    this.before = EipGraphBuilder.from(flow, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD);
+    this.after = EipGraphBuilder.from(otherFlow, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD);
+  }
+
+  @Benchmark
+  public FlowDiff diff() {
+    return this.graphDiffer.diff(this.before, this.after);
+  }
+
+  private static Flow modifyEveryTenthNode(Flow flow) {
+    List<EipNode> nodes = new ArrayList<>(flow.nodes().size());
+    for (int i = 0; i < flow.nodes().size(); i++) {
+      EipNode node = flow.nodes().get(i);
+      if (i % 10 == 0) {
+        Map<String, Object> attributes = new LinkedHashMap<>(node.attributes());
+        attributes.put("auto-startup", "false");
+        node = node.withAttributes(attributes);
+      }
+      nodes.add(node);
+    }
+    return new Flow(nodes, flow.edges());
+  }
+}
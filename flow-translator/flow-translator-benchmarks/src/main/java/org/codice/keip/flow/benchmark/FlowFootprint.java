@@ -0,0 +1,82 @@
+package org.codice.keip.flow.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.model.Flow;
+
+/**
+ * Reports the heap retained by {@link Flow}s translated from XML and deserialized from JSON, to
+ * track the footprint of the flow model. Not a JMH benchmark: each flow is built once, then the
+ * heap in use is compared before and after building a batch of copies, with a full GC in between.
+ *
+ * <p>Usage: {@code java -cp target/benchmarks.jar org.codice.keip.flow.benchmark.FlowFootprint
+ * [nodeCount] [copies]}
+ */
+public final class FlowFootprint {
+
+  private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+  private FlowFootprint() {}
+
+  public static void main(String[] args) throws Exception {
+    int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int copies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+    FlowTranslator translator = Translators.flowTranslator();
+    Flow flow = SyntheticFlows.generate(nodeCount);
+    StringWriter output = new StringWriter();
+    List<TransformationError> errors = translator.toXml(flow, output);
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Failed to translate the footprint flow: " + errors);
+    }
+    byte[] xml = output.toString().getBytes(StandardCharsets.UTF_8);
+
+    ObjectMapper mapper = new ObjectMapper();
+    byte[] json = mapper.writeValueAsBytes(flow);
+    flow = null;
+
+    report("fromXml", copies, () -> translator.fromXml(new ByteArrayInputStream(xml)));
+    report("fromJson", copies, () -> mapper.readValue(json, Flow.class));
+  }
+
+  private static void report(String name, int copies, Callable<Flow> builder) throws Exception {
+    // warm up, so that classes and interned names are not counted
+    builder.call();
+
+    List<Flow> flows = new ArrayList<>(copies);
+    long before = usedHeapAfterGc();
+    for (int i = 0; i < copies; i++) {
+      flows.add(builder.call());
+    }
+    long retained = (usedHeapAfterGc() - before) / copies;
+
+    int nodes = flows.get(0).nodes().size();
+    System.out.printf(
+        "%-8s %,d nodes: %,d bytes retained per flow (%,d bytes per node)%n",
+        name, nodes, retained, retained / nodes);
+  }
+
+  private static long usedHeapAfterGc() throws InterruptedException {
+    long used = Long.MAX_VALUE;
+    // repeat until the used heap stops shrinking
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      Thread.sleep(50);
+      long current = MEMORY.getHeapMemoryUsage().getUsed();
+      if (current >= used) {
+        return current;
+      }
+      used = current;
+    }
+    return used;
+  }
+}
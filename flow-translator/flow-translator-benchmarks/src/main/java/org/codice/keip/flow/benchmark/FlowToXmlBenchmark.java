@@ -0,0 +1,55 @@
+package org.codice.keip.flow.benchmark;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.TransformerException;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.model.Flow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures {@link FlowTranslator#toXml} over {@link SyntheticFlows} of increasing size. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FlowToXmlBenchmark {
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  private int nodeCount;
+
+  private FlowTranslator flowTranslator;
+
+  private Flow flow;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    this.flowTranslator = new FlowTranslator(Translators.serializer());
+    this.flow = SyntheticFlows.generate(this.nodeCount);
+  }
+
+  @Benchmark
+  public void toXml(Blackhole blackhole) throws TransformerException {
+    StringWriter output = new StringWriter();
+    List<TransformationError> errors = this.flowTranslator.toXml(this.flow, output);
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Failed to translate the benchmark flow: " + errors);
+    }
+    blackhole.consume(output.getBuffer());
+  }
+}
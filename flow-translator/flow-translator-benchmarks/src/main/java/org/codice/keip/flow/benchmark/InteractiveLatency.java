@@ -0,0 +1,127 @@
+package org.codice.keip.flow.benchmark;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.xml.transform.TransformerException;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.model.Flow;
+
+/**
+ * Reports the latency percentiles of small (interactive) translations, first on their own and then
+ * while large (bulk) translations run on other threads, to check that bulk jobs leave interactive
+ * latency flat. Not a JMH benchmark: JMH reports the percentiles of each benchmark method, but not
+ * how one workload affects the other.
+ *
+ * <p>Every translation runs on its own thread, either a platform thread or a virtual thread, as
+ * requests do in the webapp depending on {@code spring.threads.virtual.enabled}. The number of bulk
+ * threads defaults to the webapp's default bulk admission budget, half the available processors
+ * (at least one).
+ *
+ * <p>Usage: {@code java -cp target/benchmarks.jar
+ * org.codice.keip.flow.benchmark.InteractiveLatency [interactiveNodes] [bulkNodes] [bulkThreads]
+ * [seconds] [platform|virtual]}
+ */
+public final class InteractiveLatency {
+
+  private InteractiveLatency() {}
+
+  public static void main(String[] args) throws Exception {
+    int interactiveNodes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int bulkNodes = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+    int bulkThreads =
+        args.length > 2
+            ? Integer.parseInt(args[2])
+            : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    long durationNanos = TimeUnit.SECONDS.toNanos(args.length > 3 ? Long.parseLong(args[3]) : 20);
+    Thread.Builder threads =
+        args.length > 4 && args[4].equals("virtual") ? Thread.ofVirtual() : Thread.ofPlatform();
+
+    FlowTranslator translator = Translators.flowTranslator();
+    Flow interactiveFlow = SyntheticFlows.generate(interactiveNodes);
+    Flow bulkFlow = SyntheticFlows.generate(bulkNodes);
+
+    // warm up both workloads before measuring
+    measure(translator, interactiveFlow, threads, durationNanos / 4);
+    translate(translator, bulkFlow);
+
+    report("idle", measure(translator, interactiveFlow, threads, durationNanos), 0);
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    LongAdder bulkTranslations = new LongAdder();
+    List<Thread> bulkWorkers = new ArrayList<>(bulkThreads);
+    for (int i = 0; i < bulkThreads; i++) {
+      bulkWorkers.add(
+          threads.start(
+              () -> {
+                while (running.get()) {
+                  translate(translator, bulkFlow);
+                  bulkTranslations.increment();
+                }
+              }));
+    }
+    try {
+      report(
+          String.format("%d bulk", bulkThreads),
+          measure(translator, interactiveFlow, threads, durationNanos),
+          bulkTranslations.sum());
+    } finally {
+      running.set(false);
+      for (Thread worker : bulkWorkers) {
+        worker.join();
+      }
+    }
+  }
+
+  // Runs interactive translations one after the other, returning their latencies in nanoseconds
+  private static long[] measure(
+      FlowTranslator translator, Flow flow, Thread.Builder threads, long durationNanos)
+      throws InterruptedException {
+    long[] latencies = new long[1024];
+    int count = 0;
+    long end = System.nanoTime() + durationNanos;
+    while (System.nanoTime() < end) {
+      long start = System.nanoTime();
+      threads.start(() -> translate(translator, flow)).join();
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = System.nanoTime() - start;
+    }
+    return Arrays.copyOf(latencies, count);
+  }
+
+  private static void translate(FlowTranslator translator, Flow flow) {
+    List<TransformationError> errors;
+    try {
+      errors = translator.toXml(flow, new StringWriter());
+    } catch (TransformerException e) {
+      throw new IllegalStateException(e);
+    }
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Failed to translate the flow: " + errors);
+    }
+  }
+
+  private static void report(String load, long[] latencies, long bulkTranslations) {
+    Arrays.sort(latencies);
+    System.out.printf(
+        "%-8s %,d interactive translations: p50 %.2f ms, p99 %.2f ms, max %.2f ms"
+            + " (%,d bulk translations)%n",
+        load,
+        latencies.length,
+        percentile(latencies, 0.50),
+        percentile(latencies, 0.99),
+        latencies[latencies.length - 1] / 1e6,
+        bulkTranslations);
+  }
+
+  private static double percentile(long[] sorted, double p) {
+    return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+  }
+}
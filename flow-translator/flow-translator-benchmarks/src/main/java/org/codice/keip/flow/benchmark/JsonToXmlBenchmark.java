@@ -0,0 +1,80 @@
+package org.codice.keip.flow.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.TransformerException;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.model.Flow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the translation of flow JSON documents to XML over {@link SyntheticFlows} of increasing
+ * size, either by binding the document to a {@link Flow} first (as the webapp used to), or by
+ * reading it straight into the graph with {@link FlowTranslator#toXml(java.io.InputStream,
+ * java.io.Writer, boolean)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JsonToXmlBenchmark {
+
+  public enum Binding {
+    FLOW,
+    STREAMING
+  }
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  private int nodeCount;
+
+  @Param({"FLOW", "STREAMING"})
+  private Binding binding;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private FlowTranslator flowTranslator;
+
+  private byte[] json;
+
+  @Setup(Level.Trial)
+  public void setup() throws JsonProcessingException {
+    this.flowTranslator = Translators.flowTranslator();
+    this.json = this.mapper.writeValueAsBytes(SyntheticFlows.generate(this.nodeCount));
+  }
+
+  @Benchmark
+  public void toXml(Blackhole blackhole) throws IOException, TransformerException {
+    StringWriter output = new StringWriter();
+    List<TransformationError> errors =
+        switch (this.binding) {
+          case FLOW ->
+              this.flowTranslator.toXml(this.mapper.readValue(this.json, Flow.class), output);
+          case STREAMING ->
+              this.flowTranslator.toXml(new ByteArrayInputStream(this.json), output, false);
+        };
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Failed to translate the benchmark flow: " + errors);
+    }
+    blackhole.consume(output.getBuffer());
+  }
+}
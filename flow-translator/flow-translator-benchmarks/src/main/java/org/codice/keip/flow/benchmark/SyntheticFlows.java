@@ -0,0 +1,50 @@
+package org.codice.keip.flow.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.generator.FlowGenerator;
+import org.codice.keip.flow.model.Flow;
+
+/**
+ * Generates the flows to benchmark with the {@link FlowGenerator} of {@code
+ * flow-translator-generator}, using its default palette and settings. Every benchmark uses the same
+ * seed, so a given {@code nodeCount} always produces the same flow.
+ */
+final class SyntheticFlows {
+
+  private static final long SEED = 42;
+
+  private static volatile FlowGenerator generator;
+
+  private SyntheticFlows() {}
+
+  /**
+   * Generates a flow with at least {@code nodeCount} nodes. Open branches are closed with a sink
+   * once the flow reaches the requested size, so it may have a few more nodes than requested.
+   */
+  static Flow generate(int nodeCount) {
+    return generator().generate(nodeCount, SEED);
+  }
+
+  private static FlowGenerator generator() {
+    if (generator == null) {
+      synchronized (SyntheticFlows.class) {
+        if (generator == null) {
+          generator = newGenerator();
+        }
+      }
+    }
+    return generator;
+  }
+
+  private static FlowGenerator newGenerator() {
+    // Definitions are included on the classpath by the `eip-schema-definitions` dependency
+    try {
+      return new FlowGenerator(
+          ComponentRegistry.fromClasspath(SyntheticFlows.class.getClassLoader()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.codice.keip.flow.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the translation benchmarks once single-threaded and once with a thread per available
+ * processor (sharing the same translator), with the GC profiler enabled to report allocation rates.
+ * The results of each run are written as JSON to the directory set by the {@code
+ * keip.benchmark.results} system property (defaults to {@code benchmark-results}), so they can be
+ * compared between runs.
+ *
+ * <p>Standard JMH command line options are accepted, e.g. a benchmark name regex or {@code -p
+ * nodeCount=1000} to narrow the run. Passing {@code -t} runs the benchmarks with that thread count
+ * only.
+ */
+public final class TranslationBenchmarks {
+
+  private static final String RESULTS_DIR_PROPERTY = "keip.benchmark.results";
+
+  private TranslationBenchmarks() {}
+
+  public static void main(String[] args)
+      throws CommandLineOptionException, RunnerException, IOException {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    Path resultsDir = Path.of(System.getProperty(RESULTS_DIR_PROPERTY, "benchmark-results"));
+    Files.createDirectories(resultsDir);
+
+    List<Integer> threadCounts =
+        commandLineOptions.getThreads().hasValue()
+            ? List.of(commandLineOptions.getThreads().get())
+            : List.of(1, Runtime.getRuntime().availableProcessors());
+
+    for (int threads : threadCounts) {
+      Options options =
+          new OptionsBuilder()
+              .parent(commandLineOptions)
+              .threads(threads)
+              .addProfiler(GCProfiler.class)
+              .resultFormat(ResultFormatType.JSON)
+              .result(resultsDir.resolve("translation-" + threads + "-threads.json").toString())
+              .build();
+      new Runner(options).run();
+    }
+  }
+}
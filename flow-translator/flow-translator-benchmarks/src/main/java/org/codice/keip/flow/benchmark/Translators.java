@@ -0,0 +1,144 @@
+package org.codice.keip.flow.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.xml.GraphXmlParser;
+import org.codice.keip.flow.xml.GraphXmlSerializer;
+import org.codice.keip.flow.xml.NamespaceSpec;
+import org.codice.keip.flow.xml.spring.IntegrationGraphXmlParser;
+import org.codice.keip.flow.xml.spring.IntegrationGraphXmlSerializer;
+import org.springframework.beans.factory.xml.PluggableSchemaResolver;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Creates Spring Integration translators configured for the namespaces used by {@link
+ * SyntheticFlows}, validating parsed documents like the webapp does.
+ */
+final class Translators {
+
+  private static final List<NamespaceSpec> NAMESPACES =
+      List.of(
+          new NamespaceSpec(
+              "jms",
+              "http://www.springframework.org/schema/integration/jms",
+              "https://www.springframework.org/schema/integration/jms/spring-integration-jms.xsd"),
+          new NamespaceSpec(
+              "http",
+              "http://www.springframework.org/schema/integration/http",
+              "https://www.springframework.org/schema/integration/http/spring-integration-http.xsd"),
+          new NamespaceSpec(
+              "file",
+              "http://www.springframework.org/schema/integration/file",
+              "https://www.springframework.org/schema/integration/file/spring-integration-file.xsd"),
+          new NamespaceSpec(
+              "ftp",
+              "http://www.springframework.org/schema/integration/ftp",
+              "https://www.springframework.org/schema/integration/ftp/spring-integration-ftp.xsd"));
+
+  private static final NamespaceSpec INTEGRATION_NAMESPACE =
+      new NamespaceSpec(
+          "integration",
+          "http://www.springframework.org/schema/integration",
+          "https://www.springframework.org/schema/integration/spring-integration.xsd");
+
+  private static volatile Schema schema;
+
+  private Translators() {}
+
+  static FlowTranslator flowTranslator() {
+    return new FlowTranslator(serializer(), parser());
+  }
+
+  static GraphXmlSerializer serializer() {
+    return new IntegrationGraphXmlSerializer(NAMESPACES);
+  }
+
+  static GraphXmlParser parser() {
+    List<NamespaceSpec> namespaces = new ArrayList<>(NAMESPACES);
+    namespaces.add(INTEGRATION_NAMESPACE);
+    // Definitions are included on the classpath by the `eip-schema-definitions` dependency
+    try {
+      GraphXmlParser parser =
+          new IntegrationGraphXmlParser(
+              namespaces, ComponentRegistry.fromClasspath(Translators.class.getClassLoader()));
+      parser.setValidationSchema(schema());
+      return parser;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Compiling the Spring Integration schemas takes a few seconds, so they are shared between
+  // benchmarks run in the same JVM.
+  private static Schema schema() {
+    if (schema == null) {
+      synchronized (Translators.class) {
+        if (schema == null) {
+          schema = buildSpringIntegrationSchema();
+        }
+      }
+    }
+    return schema;
+  }
+
+  private static Schema buildSpringIntegrationSchema() {
+    PluggableSchemaResolver resolver =
+        new PluggableSchemaResolver(Translators.class.getClassLoader());
+    try {
+      List<Source> sources = new ArrayList<>();
+      for (String schemaLocation : discoverIntegrationSchemas()) {
+        InputSource inputSource = resolver.resolveEntity(null, schemaLocation);
+        if (inputSource != null) {
+          sources.add(new StreamSource(inputSource.getByteStream()));
+        }
+      }
+      SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+      return schemaFactory.newSchema(sources.toArray(new Source[0]));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (SAXException e) {
+      throw new IllegalStateException("Failed to build the validation schema", e);
+    }
+  }
+
+  private static Set<String> discoverIntegrationSchemas() throws IOException {
+    Set<String> schemas =
+        new LinkedHashSet<>(
+            List.of(
+                "http://www.springframework.org/schema/beans/spring-beans.xsd",
+                "https://www.springframework.org/schema/beans/spring-beans.xsd",
+                "http://www.springframework.org/schema/tool/spring-tool.xsd",
+                "https://www.springframework.org/schema/tool/spring-tool.xsd"));
+    Resource[] resources =
+        new PathMatchingResourcePatternResolver()
+            .getResources("classpath*:META-INF/spring.schemas");
+    // filtered by schema location rather than by resource, since the shaded benchmarks jar merges
+    // the mappings of every Spring module into a single file
+    for (Resource resource : resources) {
+      Properties props = new Properties();
+      try (InputStream in = resource.getInputStream()) {
+        props.load(in);
+      }
+      props.stringPropertyNames().stream()
+          .filter(location -> location.contains("/schema/integration"))
+          .forEach(schemas::add);
+    }
+    return schemas;
+  }
+}
@@ -0,0 +1,98 @@
+package org.codice.keip.flow.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.cfg.EnumFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.TransformerException;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.model.Flow;
+import org.codice.keip.flow.xml.GraphXmlParser;
+import org.codice.keip.flow.xml.GraphXmlParser.ParseMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FlowTranslator#fromXml}, including schema validation, over the XML translations
+ * of {@link SyntheticFlows} of increasing size, and its translation to flow JSON either through a
+ * {@link Flow} or by writing the JSON straight from the graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class XmlToFlowBenchmark {
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  private int nodeCount;
+
+  @Param({"DOM", "STREAMING"})
+  private ParseMode parseMode;
+
+  // the webapp's serialization settings
+  private final JsonMapper mapper =
+      JsonMapper.builder()
+          .serializationInclusion(JsonInclude.Include.NON_NULL)
+          .configure(EnumFeature.WRITE_ENUMS_TO_LOWERCASE, true)
+          .build();
+
+  private FlowTranslator flowTranslator;
+
+  private byte[] xml;
+
+  @Setup(Level.Trial)
+  public void setup() throws TransformerException {
+    GraphXmlParser parser = Translators.parser();
+    parser.setParseMode(this.parseMode);
+    this.flowTranslator = new FlowTranslator(Translators.serializer(), parser);
+
+    StringWriter output = new StringWriter();
+    List<TransformationError> errors =
+        this.flowTranslator.toXml(SyntheticFlows.generate(this.nodeCount), output);
+    if (!errors.isEmpty()) {
+      throw new IllegalStateException("Failed to translate the benchmark flow: " + errors);
+    }
+    this.xml = output.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Flow fromXml() throws TransformerException {
+    return this.flowTranslator.fromXml(new ByteArrayInputStream(this.xml));
+  }
+
+  /** Translates to a {@link Flow} and serializes it, as the webapp used to. */
+  @Benchmark
+  public void toJson() throws TransformerException, IOException {
+    Flow flow = this.flowTranslator.fromXml(new ByteArrayInputStream(this.xml));
+    this.mapper.writeValue(OutputStream.nullOutputStream(), flow);
+  }
+
+  /** Writes the flow JSON straight from the graph, without building a {@link Flow}. */
+  @Benchmark
+  public void toJsonStreaming() throws TransformerException, IOException {
+    try (JsonGenerator generator =
+        this.mapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+      this.flowTranslator.fromXml(new ByteArrayInputStream(this.xml), generator);
+    }
+  }
+}
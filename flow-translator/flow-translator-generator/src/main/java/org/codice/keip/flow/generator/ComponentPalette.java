@@ -0,0 +1,238 @@
+package org.codice.keip.flow.generator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.codice.keip.flow.model.EipChild;
+import org.codice.keip.flow.model.EipId;
+
+/**
+ * The components a {@link FlowGenerator} picks from, along with the attributes and children to
+ * give each of them. The role and connection type of each component are looked up in the {@link
+ * org.codice.keip.flow.ComponentRegistry}, so only registered components are used.
+ *
+ * <p>The component catalog also lists infrastructure elements (e.g. pollers or interceptors) and
+ * components whose XML schema imposes more than their required attributes, which are not suitable
+ * for generic flow nodes. The palette is therefore a curated subset of the catalog, with attribute
+ * values chosen to produce valid XML documents.
+ */
+public final class ComponentPalette {
+
+  private static final String INTEGRATION = "integration";
+
+  private final List<Entry> entries;
+
+  public ComponentPalette(Collection<Entry> entries) {
+    this.entries = List.copyOf(entries);
+  }
+
+  /**
+   * A palette component.
+   *
+   * @param eipId the component id
+   * @param attributes attributes set on every generated node of this component
+   * @param children children added to every generated node of this component
+   * @param beanReference name of an attribute that refers to a bean, set to one of the generated
+   *     custom entities when there are any (may be null)
+   * @param routeMapping for content based routers, creates the child that maps a route to its
+   *     channel (may be null for other components)
+   */
+  public record Entry(
+      EipId eipId,
+      Map<String, Object> attributes,
+      List<EipChild> children,
+      String beanReference,
+      RouteMapping routeMapping) {
+
+    public Entry(EipId eipId, Map<String, Object> attributes) {
+      this(eipId, attributes, Collections.emptyList(), null, null);
+    }
+
+    public Entry(EipId eipId, Map<String, Object> attributes, List<EipChild> children) {
+      this(eipId, attributes, children, null, null);
+    }
+  }
+
+  /** Creates the router child that sends messages for the route at {@code index} to a channel. */
+  @FunctionalInterface
+  public interface RouteMapping {
+    EipChild create(int index, String channelId);
+  }
+
+  public List<Entry> entries() {
+    return entries;
+  }
+
+  /** Returns a palette keeping only the components of the given EIP namespaces. */
+  public ComponentPalette withNamespaces(Set<String> namespaces) {
+    return new ComponentPalette(
+        entries.stream().filter(e -> namespaces.contains(e.eipId().namespace())).toList());
+  }
+
+  /**
+   * Returns the default palette, covering every connection type with components of the {@code
+   * integration}, {@code jms}, {@code http}, {@code file} and {@code ftp} namespaces.
+   */
+  public static ComponentPalette defaultPalette() {
+    List<Entry> entries = new ArrayList<>();
+
+    // sources
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "inbound-channel-adapter"),
+            attributes("expression", "'generated message'"),
+            List.of(child(INTEGRATION, "poller", attributes("fixed-rate", "1000")))));
+    entries.add(
+        new Entry(
+            id("jms", "message-driven-channel-adapter"),
+            attributes("destination-name", "generated.in")));
+    entries.add(
+        new Entry(
+            id("http", "inbound-channel-adapter"),
+            attributes("path", "/generated/in", "supported-methods", "POST")));
+    entries.add(
+        new Entry(id("file", "inbound-channel-adapter"), attributes("directory", "/tmp/in")));
+    entries.add(
+        new Entry(
+            id("ftp", "inbound-channel-adapter"),
+            attributes("session-factory", "ftpSessionFactory", "local-directory", "/tmp/ftp")));
+
+    // inbound request-reply
+    entries.add(
+        new Entry(id("http", "inbound-gateway"), attributes("path", "/generated/gateway")));
+    entries.add(
+        new Entry(
+            id("jms", "inbound-gateway"),
+            attributes("request-destination-name", "generated.requests")));
+
+    // content based routers
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "router"),
+            attributes("expression", "headers['route']"),
+            Collections.emptyList(),
+            null,
+            (index, channel) ->
+                child(
+                    INTEGRATION,
+                    "mapping",
+                    attributes("value", "route-" + index, "channel", channel))));
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "header-value-router"),
+            attributes("header-name", "route"),
+            Collections.emptyList(),
+            null,
+            (index, channel) ->
+                child(
+                    INTEGRATION,
+                    "mapping",
+                    attributes("value", "route-" + index, "channel", channel))));
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "recipient-list-router"),
+            attributes(),
+            Collections.emptyList(),
+            null,
+            (index, channel) -> child(INTEGRATION, "recipient", attributes("channel", channel))));
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "payload-type-router"),
+            attributes(),
+            Collections.emptyList(),
+            null,
+            (index, channel) ->
+                child(
+                    INTEGRATION,
+                    "mapping",
+                    attributes("type", "org.example.Payload" + index, "channel", channel))));
+
+    // filters (tee with an optional discard channel)
+    entries.add(
+        new Entry(id(INTEGRATION, "filter"), attributes("expression", "headers['valid'] == true")));
+
+    // transformers and other single input, single output endpoints
+    entries.add(
+        new Entry(id(INTEGRATION, "transformer"), attributes("expression", "payload.toString()")));
+    entries.add(new Entry(id(INTEGRATION, "object-to-json-transformer"), attributes()));
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "json-to-object-transformer"), attributes("type", "java.util.Map")));
+    entries.add(new Entry(id(INTEGRATION, "object-to-string-transformer"), attributes()));
+    entries.add(new Entry(id("file", "file-to-string-transformer"), attributes()));
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "service-activator"),
+            attributes("expression", "payload"),
+            Collections.emptyList(),
+            "ref",
+            null));
+    entries.add(new Entry(id(INTEGRATION, "bridge"), attributes()));
+    entries.add(
+        new Entry(
+            id(INTEGRATION, "header-enricher"),
+            attributes(),
+            List.of(
+                child(INTEGRATION, "header", attributes("name", "generated", "value", "true")))));
+    entries.add(new Entry(id(INTEGRATION, "splitter"), attributes("expression", "payload")));
+    entries.add(new Entry(id(INTEGRATION, "aggregator"), attributes()));
+
+    // outbound request-reply
+    entries.add(
+        new Entry(
+            id("http", "outbound-gateway"),
+            attributes("url", "http://localhost:8080/generated", "http-method", "POST")));
+    entries.add(
+        new Entry(
+            id("jms", "outbound-gateway"),
+            attributes("request-destination-name", "generated.out")));
+
+    // sinks
+    entries.add(new Entry(id(INTEGRATION, "logging-channel-adapter"), attributes("level", "INFO")));
+    entries.add(
+        new Entry(
+            id("jms", "outbound-channel-adapter"),
+            attributes("destination-name", "generated.out")));
+    entries.add(
+        new Entry(
+            id("http", "outbound-channel-adapter"),
+            attributes("url", "http://localhost:8080/generated", "http-method", "POST")));
+    entries.add(
+        new Entry(id("file", "outbound-channel-adapter"), attributes("directory", "/tmp/out")));
+    entries.add(
+        new Entry(
+            id("ftp", "outbound-channel-adapter"),
+            attributes("session-factory", "ftpSessionFactory", "remote-directory", "/out")));
+
+    // channels
+    entries.add(new Entry(id(INTEGRATION, "channel"), attributes()));
+    entries.add(new Entry(id(INTEGRATION, "publish-subscribe-channel"), attributes()));
+    entries.add(new Entry(id("jms", "channel"), attributes("queue-name", "generated.channel")));
+    entries.add(
+        new Entry(
+            id("jms", "publish-subscribe-channel"), attributes("topic-name", "generated.topic")));
+
+    return new ComponentPalette(entries);
+  }
+
+  private static EipId id(String namespace, String name) {
+    return new EipId(namespace, name);
+  }
+
+  private static EipChild child(String namespace, String name, Map<String, Object> attributes) {
+    return new EipChild(id(namespace, name), attributes, null);
+  }
+
+  // Attribute order is preserved, so the generated XML is the same on every run
+  private static Map<String, Object> attributes(String... namesAndValues) {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      attributes.put(namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return Collections.unmodifiableMap(attributes);
+  }
+}
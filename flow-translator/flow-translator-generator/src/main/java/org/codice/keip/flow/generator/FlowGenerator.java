@@ -0,0 +1,536 @@
+package org.codice.keip.flow.generator;
+
+import static org.codice.keip.flow.xml.spring.AttributeNames.CHANNEL;
+import static org.codice.keip.flow.xml.spring.AttributeNames.DISCARD_CHANNEL;
+import static org.codice.keip.flow.xml.spring.AttributeNames.ID;
+import static org.codice.keip.flow.xml.spring.AttributeNames.INPUT_CHANNEL;
+import static org.codice.keip.flow.xml.spring.AttributeNames.OUTPUT_CHANNEL;
+import static org.codice.keip.flow.xml.spring.AttributeNames.REPLY_CHANNEL;
+import static org.codice.keip.flow.xml.spring.AttributeNames.REQUEST_CHANNEL;
+
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import javax.xml.transform.TransformerException;
+import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.generator.ComponentPalette.Entry;
+import org.codice.keip.flow.model.ConnectionType;
+import org.codice.keip.flow.model.EdgeProps.EdgeType;
+import org.codice.keip.flow.model.EipChild;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.Flow;
+import org.codice.keip.flow.model.FlowEdge;
+import org.codice.keip.flow.model.Role;
+import org.codice.keip.flow.xml.spring.IntegrationGraphXmlSerializer;
+
+/**
+ * Generates large, valid {@link Flow}s for load and scale testing, using components of the {@link
+ * ComponentRegistry} (through a {@link ComponentPalette}).
+ *
+ * <p>A flow is made of independent pipelines, each starting at a source (or an inbound gateway,
+ * whose pipeline ends by replying through a channel) and branching out through routers, filters
+ * and publish-subscribe channels until every branch reaches a sink. Branches may instead end by
+ * feeding a channel of an earlier pipeline (fan-in), or a channel upstream in their own pipeline
+ * (cycle). The mix is tuned with the setters, and the output is fully determined by the seed and
+ * settings passed to {@link #generate(int, long)}.
+ *
+ * <p>Generated flows respect the connection rules of the Spring Integration serializer: endpoints
+ * have at most one input and one output, and fan-in or fan-out only happens through routers,
+ * filters (a discard channel) and explicit channel nodes.
+ */
+public class FlowGenerator {
+
+  public static final int DEFAULT_MAX_FAN_OUT = 3;
+
+  public static final int DEFAULT_MAX_FAN_IN = 2;
+
+  public static final double DEFAULT_ROUTER_DENSITY = 0.08;
+
+  public static final double DEFAULT_TEE_DENSITY = 0.08;
+
+  public static final double DEFAULT_CHANNEL_DENSITY = 0.1;
+
+  public static final double DEFAULT_PUB_SUB_RATIO = 0.5;
+
+  public static final double DEFAULT_FAN_IN_DENSITY = 0.1;
+
+  public static final double DEFAULT_CYCLE_DENSITY = 0.02;
+
+  private static final int MIN_BRANCH_LENGTH = 2;
+
+  private static final int MAX_BRANCH_LENGTH = 8;
+
+  private static final double GATEWAY_PIPELINE_RATIO = 0.15;
+
+  // Channel attributes are set by the serializer from the flow edges
+  private static final Set<String> SERIALIZER_ATTRIBUTES =
+      Set.of(
+          ID,
+          CHANNEL,
+          INPUT_CHANNEL,
+          OUTPUT_CHANNEL,
+          DISCARD_CHANNEL,
+          REQUEST_CHANNEL,
+          REPLY_CHANNEL);
+
+  private final ComponentRegistry registry;
+
+  private final Palette palette;
+
+  private int maxFanOut = DEFAULT_MAX_FAN_OUT;
+
+  private int maxFanIn = DEFAULT_MAX_FAN_IN;
+
+  private double routerDensity = DEFAULT_ROUTER_DENSITY;
+
+  private double teeDensity = DEFAULT_TEE_DENSITY;
+
+  private double channelDensity = DEFAULT_CHANNEL_DENSITY;
+
+  private double pubSubRatio = DEFAULT_PUB_SUB_RATIO;
+
+  private double fanInDensity = DEFAULT_FAN_IN_DENSITY;
+
+  private double cycleDensity = DEFAULT_CYCLE_DENSITY;
+
+  private int customEntityCount = 0;
+
+  public FlowGenerator(ComponentRegistry registry) {
+    this(registry, ComponentPalette.defaultPalette());
+  }
+
+  public FlowGenerator(ComponentRegistry registry, ComponentPalette palette) {
+    this.registry = registry;
+    this.palette = new Palette(registry, palette);
+  }
+
+  /**
+   * Sets the maximum number of outputs of routers and publish-subscribe channels. Values below 2
+   * disable both.
+   */
+  public void setMaxFanOut(int maxFanOut) {
+    this.maxFanOut = requirePositive(maxFanOut, "maxFanOut");
+  }
+
+  /**
+   * Sets the maximum number of inputs of an explicit channel. Fan-in and cycles both add an input
+   * to an existing channel, so a value of 1 disables them.
+   */
+  public void setMaxFanIn(int maxFanIn) {
+    this.maxFanIn = requirePositive(maxFanIn, "maxFanIn");
+  }
+
+  /** Sets the probability that the next node of a branch is a content based router. */
+  public void setRouterDensity(double routerDensity) {
+    this.routerDensity = requireProbability(routerDensity, "routerDensity");
+  }
+
+  /** Sets the probability that the next node of a branch is a filter with a discard channel. */
+  public void setTeeDensity(double teeDensity) {
+    this.teeDensity = requireProbability(teeDensity, "teeDensity");
+  }
+
+  /** Sets the probability that the next node of a branch is an explicit channel. */
+  public void setChannelDensity(double channelDensity) {
+    this.channelDensity = requireProbability(channelDensity, "channelDensity");
+  }
+
+  /** Sets the proportion of explicit channels that are publish-subscribe channels. */
+  public void setPubSubRatio(double pubSubRatio) {
+    this.pubSubRatio = requireProbability(pubSubRatio, "pubSubRatio");
+  }
+
+  /** Sets the probability that a branch ends by feeding a channel of an earlier pipeline. */
+  public void setFanInDensity(double fanInDensity) {
+    this.fanInDensity = requireProbability(fanInDensity, "fanInDensity");
+  }
+
+  /** Sets the probability that a branch ends by looping back to an upstream channel. */
+  public void setCycleDensity(double cycleDensity) {
+    this.cycleDensity = requireProbability(cycleDensity, "cycleDensity");
+  }
+
+  /**
+   * Sets the number of custom bean entities to add to generated flows. Components that accept a
+   * bean reference (see {@link Entry#beanReference()}) refer to one of them.
+   */
+  public void setCustomEntityCount(int customEntityCount) {
+    if (customEntityCount < 0) {
+      throw new IllegalArgumentException("customEntityCount must not be negative");
+    }
+    this.customEntityCount = customEntityCount;
+  }
+
+  /**
+   * Generates a flow with at least {@code nodeCount} nodes. A flow stops growing once it reaches
+   * the requested size, but open branches are still closed with a sink, so it may have a few more
+   * nodes than requested.
+   *
+   * @param nodeCount the number of nodes to generate
+   * @param seed the random seed. The same seed and settings always produce the same flow.
+   */
+  public Flow generate(int nodeCount, long seed) {
+    requirePositive(nodeCount, "nodeCount");
+    return new Generation(new Random(seed), nodeCount).run();
+  }
+
+  /**
+   * Writes the Spring Integration XML matching a generated flow.
+   *
+   * @return the errors reported by the serializer, if any
+   */
+  public List<TransformationError> writeXml(Flow flow, Writer output, boolean prettyPrint)
+      throws TransformerException {
+    FlowTranslator translator =
+        new FlowTranslator(new IntegrationGraphXmlSerializer(SpringIntegrationNamespaces.ALL));
+    return translator.toXml(flow, output, prettyPrint);
+  }
+
+  private static int requirePositive(int value, String name) {
+    if (value < 1) {
+      throw new IllegalArgumentException(name + " must be positive");
+    }
+    return value;
+  }
+
+  private static double requireProbability(double value, String name) {
+    if (value < 0 || value > 1) {
+      throw new IllegalArgumentException(name + " must be between 0 and 1");
+    }
+    return value;
+  }
+
+  /** The palette components grouped by how they connect to the rest of the flow. */
+  private record Palette(
+      List<Entry> sources,
+      List<Entry> gateways,
+      List<Entry> routers,
+      List<Entry> filters,
+      List<Entry> processors,
+      List<Entry> sinks,
+      List<Entry> directChannels,
+      List<Entry> pubSubChannels) {
+
+    private Palette(ComponentRegistry registry, ComponentPalette palette) {
+      this(
+          new ArrayList<>(),
+          new ArrayList<>(),
+          new ArrayList<>(),
+          new ArrayList<>(),
+          new ArrayList<>(),
+          new ArrayList<>(),
+          new ArrayList<>(),
+          new ArrayList<>());
+      for (Entry entry : palette.entries()) {
+        if (!registry.isRegistered(entry.eipId())) {
+          continue;
+        }
+        Role role = registry.getRole(entry.eipId()).orElseThrow();
+        ConnectionType connectionType = registry.getConnectionType(entry.eipId()).orElseThrow();
+        groupOf(entry, role, connectionType).add(entry);
+      }
+      if (sources.isEmpty() || sinks.isEmpty()) {
+        throw new IllegalArgumentException(
+            "The component palette must include at least one registered source and sink");
+      }
+    }
+
+    private List<Entry> groupOf(Entry entry, Role role, ConnectionType connectionType) {
+      if (role == Role.CHANNEL) {
+        return entry.eipId().name().startsWith("publish-subscribe")
+            ? pubSubChannels
+            : directChannels;
+      }
+      return switch (connectionType) {
+        case SOURCE -> sources;
+        case INBOUND_REQUEST_REPLY -> gateways;
+        case CONTENT_BASED_ROUTER -> entry.routeMapping() != null ? routers : processors;
+        // endpoints such as splitters have a single output
+        case TEE -> role == Role.ROUTER ? filters : processors;
+        case PASSTHRU, REQUEST_REPLY -> processors;
+        case SINK -> sinks;
+      };
+    }
+  }
+
+  /** An output of a node that still has to be connected. */
+  private record OpenOutput(
+      String nodeId,
+      EdgeType edgeType,
+      int depth,
+      int maxDepth,
+      Pipeline pipeline,
+      List<String> upstreamChannels) {}
+
+  private static final class Pipeline {
+    // number of channels created by earlier pipelines, which branches may fan into
+    private final int earlierChannels;
+    private final String replyTo;
+    private boolean replied;
+
+    private Pipeline(int earlierChannels, String replyTo) {
+      this.earlierChannels = earlierChannels;
+      this.replyTo = replyTo;
+    }
+  }
+
+  private final class Generation {
+    private final Random random;
+    private final int nodeCount;
+
+    private final Map<String, EipNode> nodes = new LinkedHashMap<>();
+    private final List<FlowEdge> edges = new ArrayList<>();
+    private final Map<String, Integer> channelInputs = new HashMap<>();
+    private final List<String> channels = new ArrayList<>();
+    private final Map<String, Entry> routers = new HashMap<>();
+    private final Map<String, List<EipChild>> routeMappings = new HashMap<>();
+    private final List<String> entityIds = new ArrayList<>();
+
+    private Generation(Random random, int nodeCount) {
+      this.random = random;
+      this.nodeCount = nodeCount;
+    }
+
+    private Flow run() {
+      Map<String, String> customEntities = createCustomEntities();
+
+      while (nodes.size() < nodeCount) {
+        generatePipeline();
+      }
+
+      routeMappings.forEach(
+          (routerId, mappings) ->
+              nodes.computeIfPresent(routerId, (id, node) -> node.withChildren(mappings)));
+      return new Flow(new ArrayList<>(nodes.values()), edges, customEntities);
+    }
+
+    private Map<String, String> createCustomEntities() {
+      Map<String, String> entities = new LinkedHashMap<>();
+      for (int i = 0; i < customEntityCount; i++) {
+        String id = "entity-" + i;
+        entityIds.add(id);
+        entities.put(
+            id,
+            String.format(
+                "<bean class=\"org.example.GeneratedBean%d\">"
+                    + "<property name=\"index\" value=\"%d\"/>"
+                    + "</bean>",
+                i, i));
+      }
+      return entities;
+    }
+
+    private void generatePipeline() {
+      int maxDepth = MIN_BRANCH_LENGTH + random.nextInt(MAX_BRANCH_LENGTH - MIN_BRANCH_LENGTH + 1);
+      String start;
+      Pipeline pipeline;
+      if (!palette.gateways().isEmpty() && random.nextDouble() < GATEWAY_PIPELINE_RATIO) {
+        start = addNode(pick(palette.gateways()));
+        pipeline = new Pipeline(channels.size(), start);
+      } else {
+        start = addNode(pick(palette.sources()));
+        pipeline = new Pipeline(channels.size(), null);
+      }
+
+      Deque<OpenOutput> openOutputs = new ArrayDeque<>();
+      openOutputs.push(new OpenOutput(start, EdgeType.DEFAULT, 1, maxDepth, pipeline, List.of()));
+      while (!openOutputs.isEmpty()) {
+        OpenOutput output = openOutputs.pop();
+        if (nodes.size() >= nodeCount || output.depth() >= output.maxDepth()) {
+          closeBranch(output);
+        } else {
+          extendBranch(output, openOutputs);
+        }
+      }
+    }
+
+    private void extendBranch(OpenOutput output, Deque<OpenOutput> openOutputs) {
+      double roll = random.nextDouble();
+      if (roll < routerDensity && maxFanOut > 1 && !palette.routers().isEmpty()) {
+        Entry router = pick(palette.routers());
+        String routerId = connect(output, router);
+        routers.put(routerId, router);
+        int routes = 2 + random.nextInt(maxFanOut - 1);
+        for (int i = 0; i < routes; i++) {
+          openOutputs.push(next(output, routerId, EdgeType.DEFAULT, output.upstreamChannels()));
+        }
+      } else if ((roll -= routerDensity) < teeDensity && !palette.filters().isEmpty()) {
+        String filterId = connect(output, pick(palette.filters()));
+        // discarded messages are logged (or otherwise consumed) right away
+        connect(
+            next(output, filterId, EdgeType.DISCARD, output.upstreamChannels()),
+            pick(palette.sinks()));
+        openOutputs.push(next(output, filterId, EdgeType.DEFAULT, output.upstreamChannels()));
+      } else if ((roll -= teeDensity) < channelDensity
+          && hasChannels()
+          && !isChannel(output.nodeId())) {
+        boolean pubSub =
+            maxFanOut > 1
+                && !palette.pubSubChannels().isEmpty()
+                && (palette.directChannels().isEmpty() || random.nextDouble() < pubSubRatio);
+        String channelId =
+            connect(output, pick(pubSub ? palette.pubSubChannels() : palette.directChannels()));
+        channels.add(channelId);
+        List<String> upstreamChannels = new ArrayList<>(output.upstreamChannels());
+        upstreamChannels.add(channelId);
+        int subscribers = pubSub ? 2 + random.nextInt(maxFanOut - 1) : 1;
+        for (int i = 0; i < subscribers; i++) {
+          openOutputs.push(next(output, channelId, EdgeType.DEFAULT, upstreamChannels));
+        }
+      } else if (!palette.processors().isEmpty()) {
+        String nodeId = connect(output, pick(palette.processors()));
+        openOutputs.push(next(output, nodeId, EdgeType.DEFAULT, output.upstreamChannels()));
+      } else {
+        closeBranch(output);
+      }
+    }
+
+    private void closeBranch(OpenOutput output) {
+      Pipeline pipeline = output.pipeline();
+      if (pipeline.replyTo != null && !pipeline.replied) {
+        pipeline.replied = true;
+        if (isChannel(output.nodeId()) && !palette.processors().isEmpty()) {
+          // channels are not connected to each other directly
+          String nodeId = connect(output, pick(palette.processors()));
+          output = next(output, nodeId, EdgeType.DEFAULT, output.upstreamChannels());
+        }
+        if (!isChannel(output.nodeId())) {
+          String replyChannel = connect(output, pick(replyChannels()));
+          addEdge(replyChannel, pipeline.replyTo, EdgeType.DEFAULT);
+          return;
+        }
+      }
+
+      // the remaining options connect the branch to an existing channel
+      if (isChannel(output.nodeId())) {
+        connect(output, pick(palette.sinks()));
+        return;
+      }
+
+      if (random.nextDouble() < cycleDensity) {
+        String upstream = pickOpenChannel(output.upstreamChannels());
+        if (upstream != null) {
+          addEdge(output.nodeId(), upstream, output.edgeType());
+          return;
+        }
+      }
+
+      if (random.nextDouble() < fanInDensity) {
+        String channel = pickOpenChannel(channels.subList(0, pipeline.earlierChannels));
+        if (channel != null) {
+          addEdge(output.nodeId(), channel, output.edgeType());
+          return;
+        }
+      }
+
+      connect(output, pick(palette.sinks()));
+    }
+
+    private List<Entry> replyChannels() {
+      return palette.directChannels().isEmpty()
+          ? palette.pubSubChannels()
+          : palette.directChannels();
+    }
+
+    private boolean isChannel(String nodeId) {
+      return channelInputs.containsKey(nodeId);
+    }
+
+    private boolean hasChannels() {
+      return !palette.directChannels().isEmpty() || !palette.pubSubChannels().isEmpty();
+    }
+
+    // Picks a channel that can take one more input, trying a few random candidates
+    private String pickOpenChannel(List<String> candidates) {
+      if (candidates.isEmpty()) {
+        return null;
+      }
+      for (int attempt = 0; attempt < 3; attempt++) {
+        String candidate = candidates.get(random.nextInt(candidates.size()));
+        if (channelInputs.getOrDefault(candidate, 0) < maxFanIn) {
+          return candidate;
+        }
+      }
+      return null;
+    }
+
+    private OpenOutput next(
+        OpenOutput output, String nodeId, EdgeType edgeType, List<String> upstreamChannels) {
+      return new OpenOutput(
+          nodeId,
+          edgeType,
+          output.depth() + 1,
+          output.maxDepth(),
+          output.pipeline(),
+          upstreamChannels);
+    }
+
+    private String connect(OpenOutput output, Entry entry) {
+      String nodeId = addNode(entry);
+      addEdge(output.nodeId(), nodeId, output.edgeType());
+      return nodeId;
+    }
+
+    private String addNode(Entry entry) {
+      String id = entry.eipId().name() + "-" + nodes.size();
+      Role role = registry.getRole(entry.eipId()).orElseThrow();
+      ConnectionType connectionType = registry.getConnectionType(entry.eipId()).orElseThrow();
+      nodes.put(
+          id,
+          new EipNode(
+              id,
+              entry.eipId(),
+              null,
+              null,
+              role,
+              connectionType,
+              attributes(entry),
+              entry.children()));
+      if (role == Role.CHANNEL) {
+        channelInputs.put(id, 0);
+      }
+      return id;
+    }
+
+    private Map<String, Object> attributes(Entry entry) {
+      Map<String, Object> attributes = new LinkedHashMap<>(entry.attributes());
+      if (entry.beanReference() != null && !entityIds.isEmpty()) {
+        attributes.remove("expression");
+        attributes.put(entry.beanReference(), entityIds.get(random.nextInt(entityIds.size())));
+      }
+      for (String required : registry.getRequiredAttributes(entry.eipId())) {
+        if (!SERIALIZER_ATTRIBUTES.contains(required)) {
+          attributes.putIfAbsent(required, "generated-" + required);
+        }
+      }
+      return attributes;
+    }
+
+    private void addEdge(String source, String target, EdgeType type) {
+      // edge ids name the channels created between non-channel nodes
+      String edgeId = "ch-" + source + "-" + target;
+      edges.add(new FlowEdge(edgeId, source, target, type));
+      channelInputs.computeIfPresent(target, (id, inputs) -> inputs + 1);
+
+      Entry router = routers.get(source);
+      if (router != null) {
+        List<EipChild> mappings = routeMappings.computeIfAbsent(source, id -> new ArrayList<>());
+        String channelId = isChannel(target) ? target : edgeId;
+        mappings.add(router.routeMapping().create(mappings.size(), channelId));
+      }
+    }
+
+    private Entry pick(List<Entry> entries) {
+      return entries.get(random.nextInt(entries.size()));
+    }
+  }
+}
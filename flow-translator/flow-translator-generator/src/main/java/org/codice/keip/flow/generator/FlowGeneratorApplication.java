@@ -0,0 +1,11 @@
+package org.codice.keip.flow.generator;
+
+import org.codice.keip.flow.generator.cmd.GenerateCommand;
+import picocli.CommandLine;
+
+public class FlowGeneratorApplication {
+  public static void main(String[] args) {
+    int exitCode = new CommandLine(new GenerateCommand()).execute(args);
+    System.exit(exitCode);
+  }
+}
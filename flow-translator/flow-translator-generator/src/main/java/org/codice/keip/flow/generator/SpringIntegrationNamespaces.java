@@ -0,0 +1,40 @@
+package org.codice.keip.flow.generator;
+
+import java.util.List;
+import org.codice.keip.flow.xml.NamespaceSpec;
+
+/**
+ * The Spring Integration module namespaces known to the EIP component catalog, matching the
+ * webapp's default {@code keip.namespaceMappings}. The core {@code integration} namespace is added
+ * by the serializer itself.
+ */
+final class SpringIntegrationNamespaces {
+
+  static final List<NamespaceSpec> ALL =
+      List.of(
+          module("file", "file"),
+          module("ftp", "ftp"),
+          module("groovy", "groovy"),
+          module("http", "http"),
+          module("jms", "jms"),
+          module("kafka", "kafka"),
+          module("mqtt", "mqtt"),
+          module("sftp", "sftp"),
+          module("tcp-udp", "ip"),
+          module("ws", "ws"),
+          module("int-xml", "xml"));
+
+  private SpringIntegrationNamespaces() {}
+
+  private static NamespaceSpec module(String eipNamespace, String module) {
+    String xmlNamespace = "http://www.springframework.org/schema/integration/" + module;
+    return new NamespaceSpec(
+        eipNamespace,
+        xmlNamespace,
+        "https://www.springframework.org/schema/integration/"
+            + module
+            + "/spring-integration-"
+            + module
+            + ".xsd");
+  }
+}
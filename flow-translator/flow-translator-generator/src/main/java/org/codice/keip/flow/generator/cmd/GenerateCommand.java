@@ -0,0 +1,187 @@
+package org.codice.keip.flow.generator.cmd;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.EnumFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.generator.ComponentPalette;
+import org.codice.keip.flow.generator.FlowGenerator;
+import org.codice.keip.flow.model.Flow;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(
+    mixinStandardHelpOptions = true,
+    version = "0.6.0",
+    description =
+        "Generates a synthetic EIP flow from the components of the EIP component catalog, and writes it as Flow JSON and/or Spring Integration XML.")
+public class GenerateCommand implements Callable<Integer> {
+
+  // Included on the classpath by the `eip-schema-definitions` dependency
+  private static final String COMPONENT_DEFINITIONS = "/springIntegrationEipComponents.json";
+
+  @Option(
+      names = {"-n", "--nodes"},
+      required = true,
+      description = "Minimum number of nodes in the generated flow")
+  private int nodeCount;
+
+  @Option(
+      names = {"-s", "--seed"},
+      defaultValue = "0",
+      description = "Random seed. The same seed and options always generate the same flow.")
+  private long seed;
+
+  @Option(
+      names = "--max-fan-out",
+      defaultValue = "" + FlowGenerator.DEFAULT_MAX_FAN_OUT,
+      description = "Maximum number of outputs of routers and publish-subscribe channels")
+  private int maxFanOut;
+
+  @Option(
+      names = "--max-fan-in",
+      defaultValue = "" + FlowGenerator.DEFAULT_MAX_FAN_IN,
+      description = "Maximum number of inputs of a channel. 1 disables fan-in and cycles.")
+  private int maxFanIn;
+
+  @Option(
+      names = "--router-density",
+      defaultValue = "" + FlowGenerator.DEFAULT_ROUTER_DENSITY,
+      description = "Probability of adding a content based router to a branch")
+  private double routerDensity;
+
+  @Option(
+      names = "--tee-density",
+      defaultValue = "" + FlowGenerator.DEFAULT_TEE_DENSITY,
+      description = "Probability of adding a filter with a discard channel to a branch")
+  private double teeDensity;
+
+  @Option(
+      names = "--channel-density",
+      defaultValue = "" + FlowGenerator.DEFAULT_CHANNEL_DENSITY,
+      description = "Probability of adding an explicit channel to a branch")
+  private double channelDensity;
+
+  @Option(
+      names = "--pub-sub-ratio",
+      defaultValue = "" + FlowGenerator.DEFAULT_PUB_SUB_RATIO,
+      description = "Proportion of explicit channels that are publish-subscribe channels")
+  private double pubSubRatio;
+
+  @Option(
+      names = "--fan-in-density",
+      defaultValue = "" + FlowGenerator.DEFAULT_FAN_IN_DENSITY,
+      description = "Probability of a branch ending in a channel of an earlier pipeline")
+  private double fanInDensity;
+
+  @Option(
+      names = "--cycle-density",
+      defaultValue = "" + FlowGenerator.DEFAULT_CYCLE_DENSITY,
+      description = "Probability of a branch looping back to an upstream channel")
+  private double cycleDensity;
+
+  @Option(
+      names = "--custom-entities",
+      defaultValue = "0",
+      description = "Number of custom bean entities to add to the flow")
+  private int customEntityCount;
+
+  @Option(
+      names = "--namespaces",
+      split = ",",
+      description =
+          "Restricts the generated components to these EIP namespaces (e.g. integration,jms,http)")
+  private Set<String> namespaces;
+
+  @Option(
+      names = {"-c", "--components"},
+      description =
+          "Path to an EIP component definitions JSON file. Defaults to the bundled Spring Integration components.")
+  private File components;
+
+  @Option(
+      names = {"-j", "--json-output"},
+      description = "Path to write the generated flow JSON")
+  private File jsonOutput;
+
+  @Option(
+      names = {"-x", "--xml-output"},
+      description =
+          "Path to write the Spring Integration XML of the generated flow. If neither output is specified, the flow JSON is written to stdout.")
+  private File xmlOutput;
+
+  @Override
+  public Integer call() throws Exception {
+    FlowGenerator generator = createGenerator();
+    Flow flow = generator.generate(nodeCount, seed);
+
+    if (jsonOutput == null && xmlOutput == null) {
+      Writer stdout = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+      jsonMapper().writeValue(stdout, flow);
+      return 0;
+    }
+
+    if (jsonOutput != null) {
+      jsonMapper().writeValue(jsonOutput, flow);
+    }
+
+    if (xmlOutput != null) {
+      try (Writer writer = Files.newBufferedWriter(xmlOutput.toPath())) {
+        List<TransformationError> errors = generator.writeXml(flow, writer, true);
+        errors.forEach(e -> System.err.println(e.source() + ": " + e.exception().getMessage()));
+        return errors.isEmpty() ? 0 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private FlowGenerator createGenerator() throws IOException {
+    ComponentPalette palette = ComponentPalette.defaultPalette();
+    if (namespaces != null) {
+      palette = palette.withNamespaces(namespaces);
+    }
+
+    FlowGenerator generator = new FlowGenerator(readComponentRegistry(), palette);
+    generator.setMaxFanOut(maxFanOut);
+    generator.setMaxFanIn(maxFanIn);
+    generator.setRouterDensity(routerDensity);
+    generator.setTeeDensity(teeDensity);
+    generator.setChannelDensity(channelDensity);
+    generator.setPubSubRatio(pubSubRatio);
+    generator.setFanInDensity(fanInDensity);
+    generator.setCycleDensity(cycleDensity);
+    generator.setCustomEntityCount(customEntityCount);
+    return generator;
+  }
+
+  private ComponentRegistry readComponentRegistry() throws IOException {
+    try (InputStream in =
+        components != null
+            ? new FileInputStream(components)
+            : GenerateCommand.class.getResourceAsStream(COMPONENT_DEFINITIONS)) {
+      return ComponentRegistry.fromJson(in);
+    }
+  }
+
+  // Matches the flow JSON format of the translation webapp
+  private static JsonMapper jsonMapper() {
+    return JsonMapper.builder()
+        .serializationInclusion(JsonInclude.Include.NON_NULL)
+        .configure(EnumFeature.WRITE_ENUMS_TO_LOWERCASE, true)
+        .configure(SerializationFeature.INDENT_OUTPUT, true)
+        .build();
+  }
+}
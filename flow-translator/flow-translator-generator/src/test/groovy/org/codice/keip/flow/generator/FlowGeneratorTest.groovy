@@ -0,0 +1,217 @@
+package org.codice.keip.flow.generator
+
+import com.fasterxml.jackson.databind.json.JsonMapper
+import org.codice.keip.flow.ComponentRegistry
+import org.codice.keip.flow.FlowTranslator
+import org.codice.keip.flow.model.ConnectionType
+import org.codice.keip.flow.model.EipId
+import org.codice.keip.flow.model.Role
+import org.codice.keip.flow.xml.NamespaceSpec
+import org.codice.keip.flow.xml.spring.IntegrationGraphXmlParser
+import org.springframework.beans.factory.xml.PluggableSchemaResolver
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+import javax.xml.XMLConstants
+import javax.xml.transform.stream.StreamSource
+import javax.xml.validation.Schema
+import javax.xml.validation.SchemaFactory
+
+class FlowGeneratorTest extends Specification {
+
+    // limited to the Spring Integration modules on the test classpath
+    private static final Set<String> TEST_NAMESPACES = ["integration", "jms", "http", "file"]
+
+    private static final EipId DIRECT_CHANNEL = new EipId("integration", "channel")
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build()
+
+    @Shared
+    ComponentRegistry registry = FlowGeneratorTest.getResourceAsStream("/springIntegrationEipComponents.json")
+            .withCloseable { ComponentRegistry.fromJson(it) }
+
+    @Shared
+    Schema springIntegrationSchema = buildSpringIntegrationSchema()
+
+    def palette = ComponentPalette.defaultPalette().withNamespaces(TEST_NAMESPACES)
+
+    def generator = new FlowGenerator(registry, palette)
+
+    def "same seed -> identical flows"() {
+        when:
+        def first = generator.generate(500, 42)
+        def second = generator.generate(500, 42)
+        def other = generator.generate(500, 43)
+
+        then:
+        MAPPER.writeValueAsString(first) == MAPPER.writeValueAsString(second)
+        MAPPER.writeValueAsString(first) != MAPPER.writeValueAsString(other)
+    }
+
+    def "generated flow respects the node count and connection limits"(int nodeCount, int maxFanOut, int maxFanIn) {
+        given:
+        generator.setMaxFanOut(maxFanOut)
+        generator.setMaxFanIn(maxFanIn)
+        generator.setRouterDensity(0.2)
+        generator.setChannelDensity(0.2)
+        generator.setFanInDensity(0.3)
+        generator.setCycleDensity(0.1)
+
+        when:
+        def flow = generator.generate(nodeCount, 7)
+
+        then:
+        flow.nodes().size() >= nodeCount
+        flow.nodes()*.id().toSet().size() == flow.nodes().size()
+
+        def outDegree = flow.edges().countBy { it.source() }
+        def inDegree = flow.edges().countBy { it.target() }
+        flow.nodes().every { node ->
+            def outputs = outDegree.getOrDefault(node.id(), 0)
+            def inputs = inDegree.getOrDefault(node.id(), 0)
+            switch (node.role()) {
+                case Role.CHANNEL:
+                    return inputs <= maxFanIn && outputs <= maxFanOut
+                default:
+                    return inputs <= 1 && outputs <= maxOutputs(node.connectionType(), maxFanOut)
+            }
+        }
+
+        where:
+        nodeCount | maxFanOut | maxFanIn
+        10        | 2         | 1
+        1000      | 3         | 2
+        5000      | 5         | 4
+    }
+
+    def "no cycles other than inbound gateway replies when cycle density is 0"() {
+        given:
+        generator.setCycleDensity(0)
+        generator.setFanInDensity(0.5)
+
+        when:
+        def flow = generator.generate(2000, 11)
+
+        then:
+        def gateways = flow.nodes()
+                .findAll { it.connectionType() == ConnectionType.INBOUND_REQUEST_REPLY }*.id()
+                .toSet()
+        def edges = flow.edges().findAll { !gateways.contains(it.target()) }
+        isAcyclic(flow.nodes()*.id(), edges.groupBy { it.source() })
+    }
+
+    def "custom entities are generated and referenced"() {
+        given:
+        generator.setCustomEntityCount(5)
+
+        when:
+        def flow = generator.generate(500, 3)
+
+        then:
+        flow.customEntities().keySet() == (0..4).collect { "entity-$it".toString() }.toSet()
+        def refs = flow.nodes().findResults { it.attributes().get("ref") }
+        !refs.isEmpty()
+        flow.customEntities().keySet().containsAll(refs)
+    }
+
+    def "invalid settings are rejected"() {
+        when:
+        generator.setRouterDensity(1.5)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        generator.generate(0, 1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "generated XML is valid and parses back to the same graph"(long seed) {
+        given:
+        generator.setCustomEntityCount(3)
+        def flow = generator.generate(1000, seed)
+
+        def parser = new IntegrationGraphXmlParser(parserNamespaces(), registry)
+        parser.setValidationSchema(springIntegrationSchema)
+
+        when:
+        def xml = new StringWriter()
+        def errors = generator.writeXml(flow, xml, false)
+        def parsed = new FlowTranslator(parser).fromXml(
+                new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)))
+
+        then:
+        errors.isEmpty()
+        // the parser may turn direct channels with a single input and output back into edges
+        def inlined = flow.nodes().findAll { !(it.id() in parsed.nodes()*.id()) }
+        flow.nodes()*.id().containsAll(parsed.nodes()*.id())
+        inlined.every { it.eipId() == DIRECT_CHANNEL }
+        parsed.edges().size() == flow.edges().size() - inlined.size()
+        parsed.customEntities().keySet() == flow.customEntities().keySet()
+
+        where:
+        seed << [1L, 2L, 3L]
+    }
+
+    private static int maxOutputs(ConnectionType connectionType, int maxFanOut) {
+        switch (connectionType) {
+            case ConnectionType.CONTENT_BASED_ROUTER:
+                return maxFanOut
+            case ConnectionType.TEE:
+                return 2
+            case ConnectionType.SINK:
+                return 0
+            default:
+                return 1
+        }
+    }
+
+    private static boolean isAcyclic(List<String> nodeIds, Map<String, List> outgoing) {
+        Map<String, Integer> inDegree = nodeIds.collectEntries { [it, 0] }
+        outgoing.values().flatten().each { inDegree[it.target()]++ }
+        Deque<String> ready = new ArrayDeque<>(inDegree.findAll { it.value == 0 }*.key)
+        int visited = 0
+        while (!ready.isEmpty()) {
+            def id = ready.pop()
+            visited++
+            outgoing.getOrDefault(id, []).each {
+                if (--inDegree[it.target()] == 0) {
+                    ready.push(it.target())
+                }
+            }
+        }
+        return visited == nodeIds.size()
+    }
+
+    private static List<NamespaceSpec> parserNamespaces() {
+        def namespaces = SpringIntegrationNamespaces.ALL
+                .findAll { TEST_NAMESPACES.contains(it.eipNamespace()) }
+        return [new NamespaceSpec(
+                "integration",
+                "http://www.springframework.org/schema/integration",
+                "https://www.springframework.org/schema/integration/spring-integration.xsd"),
+                *namespaces]
+    }
+
+    private static Schema buildSpringIntegrationSchema() {
+        def resolver = new PluggableSchemaResolver(FlowGeneratorTest.classLoader)
+        Set<String> locations = ["https://www.springframework.org/schema/beans/spring-beans.xsd",
+                                 "https://www.springframework.org/schema/tool/spring-tool.xsd"]
+        new PathMatchingResourcePatternResolver().getResources("classpath*:META-INF/spring.schemas")
+                .findAll { it.URI.toString().contains("integration") }
+                .each { resource ->
+                    def props = new Properties()
+                    resource.inputStream.withCloseable { props.load(it) }
+                    locations.addAll(props.stringPropertyNames())
+                }
+        def sources = locations.findResults { resolver.resolveEntity(null, it) }
+                .collect { new StreamSource(it.byteStream) }
+        return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                .newSchema(sources as StreamSource[])
+    }
+}
@@ -0,0 +1,230 @@
+package org.codice.keip.flow;
+
+import java.lang.reflect.Array;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.codice.keip.flow.model.ConnectionType;
+import org.codice.keip.flow.model.EipId;
+import org.codice.keip.flow.model.Role;
+import org.codice.keip.flow.model.Vocabulary;
+
+/**
+ * Reads the binary component index produced alongside the component definitions JSON by the
+ * {@code si-xsd-parser-cli} tool (see {@code ComponentIndexWriter} for the format). Components are
+ * found with a single probe of a minimal perfect hash table, reading the buffer in place, so
+ * lookups do not allocate.
+ *
+ * <p>Only absolute reads are made on the buffer, so an index is safe to share between threads.
+ */
+final class ComponentIndex {
+
+  static final int MAGIC = 0x4B434958;
+
+  static final short VERSION = 1;
+
+  private static final int COMPONENT_SIZE = 12;
+
+  private final ByteBuffer buffer;
+
+  private final String[] strings;
+
+  private final Role[] roles;
+
+  private final ConnectionType[] connectionTypes;
+
+  private final int size;
+
+  private final int displacementsOffset;
+
+  private final int componentsOffset;
+
+  private final int requiredAttributesOffset;
+
+  private ComponentIndex(
+      ByteBuffer buffer,
+      String[] strings,
+      Role[] roles,
+      ConnectionType[] connectionTypes,
+      int size,
+      int displacementsOffset) {
+    this.buffer = buffer;
+    this.strings = strings;
+    this.roles = roles;
+    this.connectionTypes = connectionTypes;
+    this.size = size;
+    this.displacementsOffset = displacementsOffset;
+    this.componentsOffset = displacementsOffset + size * Integer.BYTES;
+    this.requiredAttributesOffset = componentsOffset + size * COMPONENT_SIZE + Integer.BYTES;
+  }
+
+  /**
+   * Reads the index header and string table, and checks the component table. Components are then
+   * read from the buffer on lookup.
+   *
+   * @throws IllegalArgumentException if the buffer does not hold a supported component index
+   */
+  static ComponentIndex read(ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate();
+    try {
+      if (in.getInt() != MAGIC) {
+        throw new IllegalArgumentException("Not a component index");
+      }
+      short version = in.getShort();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported component index version: " + version);
+      }
+
+      Role[] roles = readEnumTable(in, Role.class);
+      ConnectionType[] connectionTypes = readEnumTable(in, ConnectionType.class);
+
+      String[] strings = new String[in.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = readString(in);
+      }
+
+      int size = in.getInt();
+      int displacementsOffset = in.position();
+      long end = displacementsOffset + (long) size * (Integer.BYTES + COMPONENT_SIZE);
+      if (size < 0 || end + Integer.BYTES > in.limit()) {
+        throw new IllegalArgumentException("Truncated component index");
+      }
+      int requiredCount = in.getInt((int) end);
+      if (requiredCount < 0
+          || end + Integer.BYTES + (long) requiredCount * Short.BYTES > in.limit()) {
+        throw new IllegalArgumentException("Truncated component index");
+      }
+
+      ComponentIndex index =
+          new ComponentIndex(
+              buffer.duplicate(), strings, roles, connectionTypes, size, displacementsOffset);
+      index.validate(requiredCount);
+      // names looked up from the index share the vocabulary's instances
+      Vocabulary.register(Arrays.asList(strings));
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = Vocabulary.intern(strings[i]);
+      }
+      return index;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated component index", e);
+    }
+  }
+
+  // Checks every table reference once, so that lookups cannot fail on a corrupted index
+  private void validate(int requiredCount) {
+    for (int slot = 0; slot < size; slot++) {
+      int offset = componentsOffset + slot * COMPONENT_SIZE;
+      int first = buffer.getInt(offset + 8);
+      int count = Short.toUnsignedInt(buffer.getShort(offset + 6));
+      boolean valid =
+          Short.toUnsignedInt(buffer.getShort(offset)) < strings.length
+              && Short.toUnsignedInt(buffer.getShort(offset + 2)) < strings.length
+              && Byte.toUnsignedInt(buffer.get(offset + 4)) < roles.length
+              && Byte.toUnsignedInt(buffer.get(offset + 5)) < connectionTypes.length
+              && first >= 0
+              && (long) first + count <= requiredCount;
+      for (int i = 0; valid && i < count; i++) {
+        int position = requiredAttributesOffset + (first + i) * Short.BYTES;
+        valid = Short.toUnsignedInt(buffer.getShort(position)) < strings.length;
+      }
+      if (!valid) {
+        throw new IllegalArgumentException("Invalid component index entry at slot " + slot);
+      }
+    }
+    for (int bucket = 0; bucket < size; bucket++) {
+      int displacement = buffer.getInt(displacementsOffset + bucket * Integer.BYTES);
+      if (displacement < -size) {
+        throw new IllegalArgumentException("Invalid component index bucket " + bucket);
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the table slot of a component, or -1 if it is not in the index. */
+  int find(EipId id) {
+    if (size == 0) {
+      return -1;
+    }
+    int hash = hash(id.namespace(), id.name());
+    int displacement = buffer.getInt(displacementsOffset + slot(hash, 0, size) * Integer.BYTES);
+    if (displacement == 0) {
+      return -1;
+    }
+    int slot = displacement < 0 ? -displacement - 1 : slot(hash, displacement, size);
+    int offset = componentsOffset + slot * COMPONENT_SIZE;
+    boolean matches =
+        strings[Short.toUnsignedInt(buffer.getShort(offset))].equals(id.namespace())
+            && strings[Short.toUnsignedInt(buffer.getShort(offset + 2))].equals(id.name());
+    return matches ? slot : -1;
+  }
+
+  Role role(int slot) {
+    return roles[Byte.toUnsignedInt(buffer.get(componentsOffset + slot * COMPONENT_SIZE + 4))];
+  }
+
+  ConnectionType connectionType(int slot) {
+    return connectionTypes[
+        Byte.toUnsignedInt(buffer.get(componentsOffset + slot * COMPONENT_SIZE + 5))];
+  }
+
+  List<String> requiredAttributes(int slot) {
+    int offset = componentsOffset + slot * COMPONENT_SIZE;
+    int count = Short.toUnsignedInt(buffer.getShort(offset + 6));
+    if (count == 0) {
+      return Collections.emptyList();
+    }
+    int first = requiredAttributesOffset + buffer.getInt(offset + 8) * Short.BYTES;
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      names.add(strings[Short.toUnsignedInt(buffer.getShort(first + i * Short.BYTES))]);
+    }
+    return Collections.unmodifiableList(names);
+  }
+
+  /** 32-bit FNV-1a over the UTF-16 chars of {@code namespace:name}, as used by the index writer. */
+  static int hash(String namespace, String name) {
+    int h = 0x811C9DC5;
+    for (int i = 0; i < namespace.length(); i++) {
+      h = (h ^ namespace.charAt(i)) * 0x01000193;
+    }
+    h = (h ^ ':') * 0x01000193;
+    for (int i = 0; i < name.length(); i++) {
+      h = (h ^ name.charAt(i)) * 0x01000193;
+    }
+    return h;
+  }
+
+  static int slot(int hash, int displacement, int size) {
+    int h = hash ^ (displacement * 0x9E3779B9);
+    // murmur3 finalizer
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return Integer.remainderUnsigned(h, size);
+  }
+
+  private static <E extends Enum<E>> E[] readEnumTable(ByteBuffer in, Class<E> type) {
+    int count = Short.toUnsignedInt(in.getShort());
+    @SuppressWarnings("unchecked")
+    E[] values = (E[]) Array.newInstance(type, count);
+    for (int i = 0; i < count; i++) {
+      values[i] = Enum.valueOf(type, readString(in).toUpperCase());
+    }
+    return values;
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -5,34 +5,83 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.codice.keip.flow.model.ConnectionType;
 import org.codice.keip.flow.model.EipId;
 import org.codice.keip.flow.model.Role;
+import org.codice.keip.flow.model.Vocabulary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-/** A registry for looking up registered EIP components along with their associated properties. */
+/**
+ * A registry for looking up registered EIP components along with their associated properties.
+ *
+ * <p>A registry is loaded either from the component definitions JSON, or from the binary component
+ * index built alongside it by the {@code eip-schema-definitions} artifact. The index is much faster
+ * to load, and can be memory-mapped. Role and connection type lookups do not allocate.
+ *
+ * <p>Loading a registry adds the names of its components and their attributes to the {@link
+ * Vocabulary}, so they are shared by the nodes of every parsed flow.
+ */
 public final class ComponentRegistry {
 
+  /** Classpath location of the component definitions JSON in {@code eip-schema-definitions}. */
+  public static final String COMPONENT_DEFINITIONS_JSON = "springIntegrationEipComponents.json";
+
+  /** Classpath location of the binary component index in {@code eip-schema-definitions}. */
+  public static final String COMPONENT_INDEX = "springIntegrationEipComponents.idx";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ComponentRegistry.class);
+
   private static final ObjectMapper MAPPER = new ObjectMapper();
 
-  private final Map<EipId, ComponentProperties> registryMap;
+  // Shared Optionals, so that lookups do not allocate
+  private static final List<Optional<Role>> ROLES = optionals(Role.values());
+
+  private static final List<Optional<ConnectionType>> CONNECTION_TYPES =
+      optionals(ConnectionType.values());
 
-  private ComponentRegistry(Map<EipId, ComponentProperties> registryMap) {
-    this.registryMap = registryMap;
+  private final ComponentLookup lookup;
+
+  private ComponentRegistry(ComponentLookup lookup) {
+    this.lookup = lookup;
   }
 
   public boolean isRegistered(EipId id) {
-    return registryMap.containsKey(id);
+    return lookup.role(id) != null;
   }
 
   public Optional<ConnectionType> getConnectionType(EipId id) {
-    return Optional.ofNullable(registryMap.get(id)).map(ComponentProperties::connectionType);
+    ConnectionType connectionType = lookup.connectionType(id);
+    return connectionType == null ? Optional.empty() : CONNECTION_TYPES.get(connectionType.ordinal());
   }
 
   public Optional<Role> getRole(EipId id) {
-    return Optional.ofNullable(registryMap.get(id)).map(ComponentProperties::role);
+    Role role = lookup.role(id);
+    return role == null ? Optional.empty() : ROLES.get(role.ordinal());
+  }
+
+  /**
+   * Returns the names of the attributes that must be set on a component, or an empty list if the
+   * component is not registered.
+   */
+  public List<String> getRequiredAttributes(EipId id) {
+    List<String> required = lookup.requiredAttributes(id);
+    return required == null ? Collections.emptyList() : required;
   }
 
   /**
@@ -41,6 +90,7 @@ public final class ComponentRegistry {
    */
   public static ComponentRegistry fromJson(InputStream json) throws IOException {
     Map<EipId, ComponentProperties> regMap = new HashMap<>();
+    Set<String> names = new HashSet<>();
 
     Map<String, JsonNode> jsonMap = MAPPER.readValue(json, new TypeReference<>() {});
 
@@ -52,12 +102,151 @@ public final class ComponentRegistry {
         ConnectionType connectionType =
             ConnectionType.valueOf(component.get("connectionType").textValue().toUpperCase());
         Role role = Role.valueOf(component.get("role").textValue().toUpperCase());
-        regMap.put(eipId, new ComponentProperties(connectionType, role));
+        List<String> requiredAttributes = readRequiredAttributes(component);
+        regMap.put(eipId, new ComponentProperties(connectionType, role, requiredAttributes));
+
+        names.add(eipId.namespace());
+        names.add(eipId.name());
+        for (JsonNode attributes : component.findValues("attributes")) {
+          attributes.forEach(attribute -> names.add(attribute.path("name").asText()));
+        }
+      }
+    }
+
+    Vocabulary.register(names);
+
+    return new ComponentRegistry(new MapLookup(regMap));
+  }
+
+  /**
+   * Loads a binary component index file by memory-mapping it.
+   *
+   * @throws IllegalArgumentException if the file is not a supported component index
+   */
+  public static ComponentRegistry fromIndex(Path index) throws IOException {
+    try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+      // the mapping stays valid after the channel is closed
+      return fromIndex(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Loads a binary component index held in a buffer. The buffer is read in place on lookups, and
+   * must not be modified afterwards.
+   *
+   * @throws IllegalArgumentException if the buffer does not hold a supported component index
+   */
+  public static ComponentRegistry fromIndex(ByteBuffer index) {
+    return new ComponentRegistry(new IndexLookup(ComponentIndex.read(index)));
+  }
+
+  /**
+   * Loads the component definitions of the {@code eip-schema-definitions} artifact from the
+   * classpath. The binary component index is used when available (and memory-mapped when it is a
+   * plain file), otherwise the definitions JSON is parsed.
+   *
+   * @throws IOException if neither the index nor the JSON can be read
+   */
+  public static ComponentRegistry fromClasspath(ClassLoader classLoader) throws IOException {
+    URL index = classLoader.getResource(COMPONENT_INDEX);
+    if (index != null) {
+      try {
+        return loadIndex(index);
+      } catch (IOException | IllegalArgumentException e) {
+        LOGGER.warn("Failed to load the component index at {}, reading the JSON instead", index, e);
       }
     }
 
-    return new ComponentRegistry(regMap);
+    try (InputStream json = classLoader.getResourceAsStream(COMPONENT_DEFINITIONS_JSON)) {
+      if (json == null) {
+        throw new IOException(COMPONENT_DEFINITIONS_JSON + " not found on the classpath");
+      }
+      return fromJson(json);
+    }
   }
 
-  private record ComponentProperties(ConnectionType connectionType, Role role) {}
+  private static ComponentRegistry loadIndex(URL index) throws IOException {
+    if ("file".equals(index.getProtocol())) {
+      try {
+        return fromIndex(Path.of(index.toURI()));
+      } catch (URISyntaxException e) {
+        throw new IOException(e);
+      }
+    }
+    // entries of a jar cannot be mapped
+    try (InputStream in = index.openStream()) {
+      return fromIndex(ByteBuffer.wrap(in.readAllBytes()));
+    }
+  }
+
+  private static List<String> readRequiredAttributes(JsonNode component) {
+    List<String> required = new ArrayList<>();
+    for (JsonNode attribute : component.path("attributes")) {
+      if (attribute.path("required").asBoolean()) {
+        required.add(attribute.get("name").textValue());
+      }
+    }
+    return Collections.unmodifiableList(required);
+  }
+
+  private static <E> List<Optional<E>> optionals(E[] values) {
+    List<Optional<E>> optionals = new ArrayList<>(values.length);
+    for (E value : values) {
+      optionals.add(Optional.of(value));
+    }
+    return List.copyOf(optionals);
+  }
+
+  /** Component lookups, returning null for unregistered components. */
+  private interface ComponentLookup {
+    Role role(EipId id);
+
+    ConnectionType connectionType(EipId id);
+
+    List<String> requiredAttributes(EipId id);
+  }
+
+  private record ComponentProperties(
+      ConnectionType connectionType, Role role, List<String> requiredAttributes) {}
+
+  private record MapLookup(Map<EipId, ComponentProperties> registryMap)
+      implements ComponentLookup {
+    @Override
+    public Role role(EipId id) {
+      ComponentProperties properties = registryMap.get(id);
+      return properties == null ? null : properties.role();
+    }
+
+    @Override
+    public ConnectionType connectionType(EipId id) {
+      ComponentProperties properties = registryMap.get(id);
+      return properties == null ? null : properties.connectionType();
+    }
+
+    @Override
+    public List<String> requiredAttributes(EipId id) {
+      ComponentProperties properties = registryMap.get(id);
+      return properties == null ? null : properties.requiredAttributes();
+    }
+  }
+
+  private record IndexLookup(ComponentIndex index) implements ComponentLookup {
+    @Override
+    public Role role(EipId id) {
+      int slot = index.find(id);
+      return slot < 0 ? null : index.role(slot);
+    }
+
+    @Override
+    public ConnectionType connectionType(EipId id) {
+      int slot = index.find(id);
+      return slot < 0 ? null : index.connectionType(slot);
+    }
+
+    @Override
+    public List<String> requiredAttributes(EipId id) {
+      int slot = index.find(id);
+      return slot < 0 ? null : index.requiredAttributes(slot);
+    }
+  }
 }
@@ -1,11 +1,25 @@
 package org.codice.keip.flow;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Writer;
 import java.util.List;
+import java.util.Objects;
 import javax.xml.transform.TransformerException;
+import org.codice.keip.flow.TranslationObserver.Direction;
+import org.codice.keip.flow.TranslationObserver.Phase;
+import org.codice.keip.flow.diff.FlowDiff;
+import org.codice.keip.flow.diff.GraphDiffer;
 import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.graph.CompactGraph;
+import org.codice.keip.flow.graph.EipGraphBuilder;
 import org.codice.keip.flow.graph.GuavaGraph;
+import org.codice.keip.flow.json.FlowJsonException;
+import org.codice.keip.flow.json.FlowJsonReader;
+import org.codice.keip.flow.json.FlowJsonReader.FlowJsonResult;
+import org.codice.keip.flow.json.FlowJsonWriter;
+import org.codice.keip.flow.json.FlowJsonWriter.FlowJsonSize;
 import org.codice.keip.flow.model.EipGraph;
 import org.codice.keip.flow.model.Flow;
 import org.codice.keip.flow.xml.GraphXmlParser;
@@ -34,6 +48,16 @@ public final class FlowTranslator {
   private final GraphXmlSerializer graphXmlSerializer;
   private final GraphXmlParser graphXmlParser;
 
+  private final FlowJsonReader flowJsonReader = new FlowJsonReader();
+
+  private final FlowJsonWriter flowJsonWriter = new FlowJsonWriter();
+
+  private final GraphDiffer graphDiffer = new GraphDiffer();
+
+  private volatile int compactGraphThreshold = EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD;
+
+  private volatile TranslationObserver observer = TranslationObserver.NOOP;
+
   public FlowTranslator(GraphXmlSerializer graphXmlSerializer, GraphXmlParser graphXmlParser) {
     this.graphXmlSerializer = graphXmlSerializer;
     this.graphXmlParser = graphXmlParser;
@@ -49,6 +73,25 @@ public final class FlowTranslator {
     this.graphXmlSerializer = null;
   }
 
+  /**
+   * Sets the node count at or above which flows passed to {@link #toXml} and {@link #diff} are held
+   * in a {@link CompactGraph} instead of a {@link GuavaGraph}. Defaults to {@link
+   * EipGraphBuilder#DEFAULT_COMPACT_GRAPH_THRESHOLD}.
+   */
+  public void setCompactGraphThreshold(int compactGraphThreshold) {
+    this.compactGraphThreshold = compactGraphThreshold;
+  }
+
+  /**
+   * Sets the observer notified of the {@link Phase#BUILD_GRAPH}, {@link Phase#BUILD_FLOW}, {@link
+   * Phase#WRITE_JSON} and {@link Phase#DIFF} phases and of the size of each translated flow. The
+   * phases run by the {@link GraphXmlSerializer} and {@link GraphXmlParser} are only reported to
+   * the observers registered on them. Defaults to {@link TranslationObserver#NOOP}.
+   */
+  public void setObserver(TranslationObserver observer) {
+    this.observer = Objects.requireNonNull(observer);
+  }
+
   /**
    * Converts a {@link Flow} into its XML representation.
    *
@@ -62,13 +105,74 @@ public final class FlowTranslator {
    *     GraphXmlSerializer}
    */
   public List<TransformationError> toXml(Flow flow, Writer outputXml) throws TransformerException {
+    return toXml(flow, outputXml, false);
+  }
+
+  /**
+   * Converts a {@link Flow} into its XML representation, optionally indenting the output.
+   *
+   * @param flow The flow input to serialize
+   * @param outputXml The result of the transformation
+   * @param prettyPrint whether to indent the output XML
+   * @return a collection of transformation error messages. An empty collection is returned for a
+   *     successful transformation.
+   * @throws TransformerException thrown only if an unrecoverable error occurs, otherwise errors are
+   *     collected and returned once transformation is complete.
+   * @throws UnsupportedOperationException if this instance was not constructed with a {@link
+   *     GraphXmlSerializer}
+   */
+  public List<TransformationError> toXml(Flow flow, Writer outputXml, boolean prettyPrint)
+      throws TransformerException {
     if (this.graphXmlSerializer == null) {
       throw new UnsupportedOperationException(
           "A GraphXmlSerializer must be initialized before calling 'toXml'");
     }
 
-    EipGraph graph = GuavaGraph.from(flow);
-    return graphXmlSerializer.toXml(graph, outputXml, flow.customEntities());
+    TranslationObserver observer = this.observer;
+    long start = System.nanoTime();
+    EipGraph graph = EipGraphBuilder.from(flow, compactGraphThreshold);
+    observer.phaseCompleted(Phase.BUILD_GRAPH, System.nanoTime() - start);
+
+    List<TransformationError> errors =
+        graphXmlSerializer.toXml(graph, outputXml, flow.customEntities(), prettyPrint);
+    observer.graphTranslated(Direction.TO_XML, flow.nodes().size(), flow.edges().size());
+    return errors;
+  }
+
+  /**
+   * Converts a flow JSON document (see the EipFlow schema) into its XML representation, without
+   * binding it to a {@link Flow}. The document is read with {@link FlowJsonReader} straight into
+   * the graph that is serialized, which keeps the memory used by large flows to a single copy of
+   * the graph. The document is fully read before any XML is written.
+   *
+   * @param json the flow JSON input to serialize
+   * @param outputXml The result of the transformation
+   * @param prettyPrint whether to indent the output XML
+   * @return a collection of transformation error messages. An empty collection is returned for a
+   *     successful transformation.
+   * @throws FlowJsonException if the JSON document is malformed or is not a valid flow
+   * @throws IOException if the JSON document cannot be read
+   * @throws TransformerException thrown only if an unrecoverable error occurs, otherwise errors are
+   *     collected and returned once transformation is complete.
+   * @throws UnsupportedOperationException if this instance was not constructed with a {@link
+   *     GraphXmlSerializer}
+   */
+  public List<TransformationError> toXml(InputStream json, Writer outputXml, boolean prettyPrint)
+      throws IOException, TransformerException {
+    if (this.graphXmlSerializer == null) {
+      throw new UnsupportedOperationException(
+          "A GraphXmlSerializer must be initialized before calling 'toXml'");
+    }
+
+    TranslationObserver observer = this.observer;
+    long start = System.nanoTime();
+    FlowJsonResult result = flowJsonReader.read(json, compactGraphThreshold);
+    observer.phaseCompleted(Phase.BUILD_GRAPH, System.nanoTime() - start);
+
+    List<TransformationError> errors =
+        graphXmlSerializer.toXml(result.graph(), outputXml, result.customEntities(), prettyPrint);
+    observer.graphTranslated(Direction.TO_XML, result.nodeCount(), result.edgeCount());
+    return errors;
   }
 
   /**
@@ -87,7 +191,97 @@ public final class FlowTranslator {
     }
 
     XmlParseResult result = graphXmlParser.fromXml(xml);
+
+    TranslationObserver observer = this.observer;
+    long start = System.nanoTime();
     Flow flow = result.graph().toFlow();
+    observer.phaseCompleted(Phase.BUILD_FLOW, System.nanoTime() - start);
+    observer.graphTranslated(Direction.FROM_XML, flow.nodes().size(), flow.edges().size());
     return new Flow(flow.nodes(), flow.edges(), result.customEntities());
   }
+
+  /**
+   * Parses an XML document and writes it to a {@link JsonGenerator} as a flow JSON object (see the
+   * EipFlow schema), without building a {@link Flow}. The output matches the {@link Flow} returned
+   * by {@link #fromXml(InputStream)} serialized with null values excluded and enums written in
+   * lowercase.
+   *
+   * <p>The document is fully parsed before anything is written, so nothing is written to the
+   * generator if parsing fails. The flow can be the root value of the generator or nested in an
+   * enclosing document, and the generator is neither flushed nor closed.
+   *
+   * @param xml the XML input stream to parse
+   * @param outputJson the generator the flow JSON is written to
+   * @throws TransformerException if a parsing or transformation error occurs
+   * @throws IOException if the generator fails to write the output
+   * @throws UnsupportedOperationException if this instance was not constructed with a {@link
+   *     GraphXmlParser}
+   */
+  public void fromXml(InputStream xml, JsonGenerator outputJson)
+      throws TransformerException, IOException {
+    if (this.graphXmlParser == null) {
+      throw new UnsupportedOperationException(
+          "A GraphXmlParser must be initialized before calling 'fromXml'");
+    }
+
+    XmlParseResult result = graphXmlParser.fromXml(xml);
+
+    TranslationObserver observer = this.observer;
+    long start = System.nanoTime();
+    FlowJsonSize size = flowJsonWriter.write(result.graph(), result.customEntities(), outputJson);
+    observer.phaseCompleted(Phase.WRITE_JSON, System.nanoTime() - start);
+    observer.graphTranslated(Direction.FROM_XML, size.nodeCount(), size.edgeCount());
+  }
+
+  /**
+   * Computes the structural differences between two versions of a flow with a {@link
+   * GraphDiffer}.
+   *
+   * @param before the first version
+   * @param after the second version
+   * @return the differences, including those of the custom entities
+   */
+  public FlowDiff diff(Flow before, Flow after) {
+    TranslationObserver observer = this.observer;
+    long start = System.nanoTime();
+    EipGraph beforeGraph = EipGraphBuilder.from(before, compactGraphThreshold);
+    EipGraph afterGraph = EipGraphBuilder.from(after, compactGraphThreshold);
+    observer.phaseCompleted(Phase.BUILD_GRAPH, System.nanoTime() - start);
+
+    start = System.nanoTime();
+    FlowDiff diff =
+        graphDiffer.diff(beforeGraph, before.customEntities(), afterGraph, after.customEntities());
+    observer.phaseCompleted(Phase.DIFF, System.nanoTime() - start);
+    return diff;
+  }
+
+  /**
+   * Computes the structural differences between two XML documents, parsed with the {@link
+   * GraphXmlParser}. Elements without an id attribute are given generated ids, which may differ
+   * between the two documents (see {@link org.codice.keip.flow.xml.NodeIdStrategy}). Such nodes
+   * are matched by content or through their edges instead (see {@link GraphDiffer}), and changes
+   * to their generated ids are not reported. Changes to the ids read from the documents, e.g. a
+   * renamed bean or channel, are reported.
+   *
+   * @param before the first version
+   * @param after the second version
+   * @return the differences, including those of the custom entities
+   * @throws TransformerException if a parsing or transformation error occurs
+   * @throws UnsupportedOperationException if this instance was not constructed with a {@link
+   *     GraphXmlParser}
+   */
+  public FlowDiff diffXml(InputStream before, InputStream after) throws TransformerException {
+    if (this.graphXmlParser == null) {
+      throw new UnsupportedOperationException(
+          "A GraphXmlParser must be initialized before calling 'diffXml'");
+    }
+
+    XmlParseResult beforeResult = graphXmlParser.fromXml(before);
+    XmlParseResult afterResult = graphXmlParser.fromXml(after);
+    TranslationObserver observer = this.observer;
+    long start = System.nanoTime();
+    FlowDiff diff = graphDiffer.diff(beforeResult, afterResult);
+    observer.phaseCompleted(Phase.DIFF, System.nanoTime() - start);
+    return diff;
+  }
 }
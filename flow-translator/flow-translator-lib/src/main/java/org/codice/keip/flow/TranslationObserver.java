@@ -0,0 +1,68 @@
+package org.codice.keip.flow;
+
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipId;
+import org.codice.keip.flow.model.Flow;
+import org.codice.keip.flow.xml.GraphXmlParser;
+import org.codice.keip.flow.xml.GraphXmlSerializer;
+
+/**
+ * Receives measurements of the work done during a translation, e.g. to publish them as metrics. An
+ * observer is registered separately on the {@link FlowTranslator}, {@link GraphXmlSerializer} and
+ * {@link GraphXmlParser}, each of which reports the phases it runs.
+ *
+ * <p>Callbacks are invoked synchronously on the translating threads, so implementations must be
+ * thread-safe and return quickly. All callbacks do nothing by default.
+ */
+public interface TranslationObserver {
+
+  /** An observer that ignores all measurements. */
+  TranslationObserver NOOP = new TranslationObserver() {};
+
+  enum Direction {
+    /** {@link Flow} to XML */
+    TO_XML,
+    /** XML to {@link Flow} */
+    FROM_XML
+  }
+
+  enum Phase {
+    /** Building the {@link EipGraph} of a {@link Flow}, or reading it from a flow JSON document. */
+    BUILD_GRAPH,
+    /** Traversing the graph and collecting the namespaces to declare in the XML. */
+    PLAN,
+    /** Transforming nodes into XML elements, summed over the transformed nodes. */
+    TRANSFORM_NODES,
+    /** Writing the XML document, including the node transformation. */
+    SERIALIZE,
+    /** Choosing the validation schema of a document. */
+    SELECT_SCHEMA,
+    /**
+     * Reading and validating the XML document. With the {@link
+     * GraphXmlParser.ParseMode#STREAMING} parse mode, includes the transformation of its elements.
+     */
+    PARSE,
+    /** Transforming the elements of a parsed document into nodes. */
+    TRANSFORM_ELEMENTS,
+    /** Building the graph edges between the parsed nodes. */
+    BUILD_EDGES,
+    /** Converting a parsed graph into a {@link Flow}. */
+    BUILD_FLOW,
+    /** Writing a parsed graph as a flow JSON document, without building a {@link Flow}. */
+    WRITE_JSON,
+    /** Comparing the graphs of two versions of a flow. */
+    DIFF
+  }
+
+  /** Called when a phase of a translation completes successfully. */
+  default void phaseCompleted(Phase phase, long durationNanos) {}
+
+  /** Called with the size of each translated flow. */
+  default void graphTranslated(Direction direction, int nodeCount, int edgeCount) {}
+
+  /**
+   * Called each time a node is transformed into XML elements, whether or not the transformation
+   * succeeds. Nodes written from the fragment cache are not transformed, and so are not reported.
+   */
+  default void nodeTransformed(EipId eipId, long durationNanos) {}
+}
@@ -0,0 +1,100 @@
+package org.codice.keip.flow.diff;
+
+import java.util.List;
+import org.codice.keip.flow.model.EipId;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.FlowEdge;
+
+/**
+ * The structural differences between two versions of a flow, as computed by {@link GraphDiffer}.
+ *
+ * <p>Nodes of the two versions are matched by id, then by content, and then through the edges of
+ * already matched nodes (see {@link GraphDiffer}). Unmatched nodes of the first version are
+ * removed, and unmatched nodes of the second version are added. Edges are matched by their
+ * (matched) source and target nodes, so an edge is only added or removed when it does not connect
+ * the same nodes in both versions.
+ *
+ * @param addedNodes the nodes only in the second version, in its traversal order
+ * @param removedNodes the nodes only in the first version, in its traversal order
+ * @param modifiedNodes the matched nodes that differ, in the traversal order of the second version
+ * @param addedEdges the edges only in the second version
+ * @param removedEdges the edges only in the first version
+ * @param modifiedEdges the matched edges whose id or type differ
+ * @param customEntities the changes to the custom entities, by entity id
+ */
+public record FlowDiff(
+    List<EipNode> addedNodes,
+    List<EipNode> removedNodes,
+    List<NodeChange> modifiedNodes,
+    List<FlowEdge> addedEdges,
+    List<FlowEdge> removedEdges,
+    List<EdgeChange> modifiedEdges,
+    List<ValueChange> customEntities) {
+
+  /** Returns whether the two versions differ. */
+  public boolean hasChanges() {
+    return !addedNodes.isEmpty()
+        || !removedNodes.isEmpty()
+        || !modifiedNodes.isEmpty()
+        || !addedEdges.isEmpty()
+        || !removedEdges.isEmpty()
+        || !modifiedEdges.isEmpty()
+        || !customEntities.isEmpty();
+  }
+
+  public enum ChangeType {
+    ADDED,
+    REMOVED,
+    MODIFIED
+  }
+
+  /**
+   * A matched node that differs between the two versions.
+   *
+   * @param id the id of the node in the second version
+   * @param previousId the id of the node in the first version, or null if it is unchanged
+   * @param properties the changes to the node's eipId, label, description, role and connection
+   *     type
+   * @param attributes the changes to the node's attributes
+   * @param children the changes to the node's children
+   */
+  public record NodeChange(
+      String id,
+      String previousId,
+      List<ValueChange> properties,
+      List<ValueChange> attributes,
+      List<ChildChange> children) {}
+
+  /**
+   * A change to a child of a node, or to one of its nested children. Children are compared by
+   * position, after skipping the children that are the same at the start and end of both lists. A
+   * child that changes type is reported as removed and added.
+   *
+   * @param type whether the child was added, removed or had its attributes modified. The nested
+   *     children of an added or removed child are reported as added or removed as well.
+   * @param path the position of the child, formatted as {@code i/j/k} where each level is the
+   *     (zero-based) index of the child among its siblings. The indices are those of the second
+   *     version, or of the first version for removed children.
+   * @param eipId the type of the child
+   * @param attributes the changes to the child's attributes
+   */
+  public record ChildChange(
+      ChangeType type, String path, EipId eipId, List<ValueChange> attributes) {}
+
+  /**
+   * A matched edge whose id or type differ between the two versions.
+   *
+   * @param before the edge in the first version
+   * @param after the edge in the second version
+   */
+  public record EdgeChange(FlowEdge before, FlowEdge after) {}
+
+  /**
+   * A change to a named value. Null values are treated as missing.
+   *
+   * @param name the name of the value
+   * @param before the value in the first version, or null if it was added
+   * @param after the value in the second version, or null if it was removed
+   */
+  public record ValueChange(String name, Object before, Object after) {}
+}
@@ -0,0 +1,483 @@
+package org.codice.keip.flow.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import org.codice.keip.flow.diff.FlowDiff.ChangeType;
+import org.codice.keip.flow.diff.FlowDiff.ChildChange;
+import org.codice.keip.flow.diff.FlowDiff.EdgeChange;
+import org.codice.keip.flow.diff.FlowDiff.NodeChange;
+import org.codice.keip.flow.diff.FlowDiff.ValueChange;
+import org.codice.keip.flow.model.EdgeProps;
+import org.codice.keip.flow.model.EipChild;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipId;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.FlowEdge;
+import org.codice.keip.flow.xml.GraphXmlParser.XmlParseResult;
+
+/**
+ * Computes the structural differences between two {@link EipGraph}s, e.g. two versions of the
+ * same flow, as a {@link FlowDiff}.
+ *
+ * <p>The nodes of the two graphs are matched in three passes:
+ *
+ * <ol>
+ *   <li>by id.
+ *   <li>by a hash of their content (everything but the id), so nodes whose generated ids changed
+ *       between two parses of an XML document are still matched. Nodes with the same content are
+ *       paired in traversal order.
+ *   <li>through the edges of the matched nodes: an unmatched neighbour of a matched node is matched
+ *       to the unmatched neighbour of its counterpart on the same side of the edge, if both are the
+ *       only unmatched neighbours of that type. Newly matched nodes are used in turn, so a chain of
+ *       modified nodes is matched from either end.
+ * </ol>
+ *
+ * <p>Edges are then keyed by their matched source and target nodes. Each node and edge is visited
+ * a constant number of times, so the diff takes time linear in the size of the graphs (plus the
+ * comparison of the matched nodes' content).
+ *
+ * <p>Graphs parsed from XML documents are compared with {@link #diff(XmlParseResult,
+ * XmlParseResult)}: elements without an id attribute are given generated ids (see {@link
+ * org.codice.keip.flow.xml.NodeIdStrategy}), which are not reported when they change. Ids read
+ * from the documents are still compared, so renaming a bean or a channel is reported.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class GraphDiffer {
+
+  /**
+   * Computes the differences between two graphs.
+   *
+   * @param before the first version
+   * @param after the second version
+   */
+  public FlowDiff diff(EipGraph before, EipGraph after) {
+    return diff(before, Map.of(), after, Map.of());
+  }
+
+  /**
+   * Computes the differences between two graphs and their custom entities.
+   *
+   * @param before the first version
+   * @param beforeEntities the custom entities of the first version, may be null
+   * @param after the second version
+   * @param afterEntities the custom entities of the second version, may be null
+   */
+  public FlowDiff diff(
+      EipGraph before,
+      Map<String, String> beforeEntities,
+      EipGraph after,
+      Map<String, String> afterEntities) {
+    return diff(before, beforeEntities, Set.of(), after, afterEntities, Set.of());
+  }
+
+  /**
+   * Computes the differences between two parsed XML documents and their custom entities. A node
+   * or edge whose id was generated in both documents is not reported as modified when only its id
+   * changed.
+   *
+   * @param before the first version
+   * @param after the second version
+   */
+  public FlowDiff diff(XmlParseResult before, XmlParseResult after) {
+    return diff(
+        before.graph(),
+        before.customEntities(),
+        before.generatedIds(),
+        after.graph(),
+        after.customEntities(),
+        after.generatedIds());
+  }
+
+  private FlowDiff diff(
+      EipGraph before,
+      Map<String, String> beforeEntities,
+      Set<String> beforeGeneratedIds,
+      EipGraph after,
+      Map<String, String> afterEntities,
+      Set<String> afterGeneratedIds) {
+    Matching matching = new Matching(before, beforeGeneratedIds, after, afterGeneratedIds);
+    matching.matchIds();
+    matching.matchContent();
+    matching.matchNeighbours();
+
+    List<EipNode> addedNodes = new ArrayList<>();
+    for (EipNode node : matching.afterNodes) {
+      if (!matching.backward.containsKey(node)) {
+        addedNodes.add(node);
+      }
+    }
+
+    List<EipNode> removedNodes = new ArrayList<>();
+    for (EipNode node : matching.beforeNodes) {
+      if (!matching.forward.containsKey(node)) {
+        removedNodes.add(node);
+      }
+    }
+
+    List<NodeChange> modifiedNodes = new ArrayList<>();
+    for (EipNode node : matching.afterNodes) {
+      EipNode previous = matching.backward.get(node);
+      if (previous != null) {
+        NodeChange change = compareNodes(previous, node, matching);
+        if (change != null) {
+          modifiedNodes.add(change);
+        }
+      }
+    }
+
+    List<FlowEdge> addedEdges = new ArrayList<>();
+    List<FlowEdge> removedEdges = new ArrayList<>();
+    List<EdgeChange> modifiedEdges = new ArrayList<>();
+    for (EipNode source : matching.beforeNodes) {
+      for (EipNode target : before.successors(source)) {
+        FlowEdge edge = toEdge(before, source, target);
+        Optional<FlowEdge> afterEdge = matching.findAfterEdge(source, target);
+        if (afterEdge.isEmpty()) {
+          removedEdges.add(edge);
+        } else if (!sameEdgeProps(edge, afterEdge.get(), matching)) {
+          modifiedEdges.add(new EdgeChange(edge, afterEdge.get()));
+        }
+      }
+    }
+    for (EipNode source : matching.afterNodes) {
+      for (EipNode target : after.successors(source)) {
+        if (!matching.hasBeforeEdge(source, target)) {
+          addedEdges.add(toEdge(after, source, target));
+        }
+      }
+    }
+
+    return new FlowDiff(
+        Collections.unmodifiableList(addedNodes),
+        Collections.unmodifiableList(removedNodes),
+        Collections.unmodifiableList(modifiedNodes),
+        Collections.unmodifiableList(addedEdges),
+        Collections.unmodifiableList(removedEdges),
+        Collections.unmodifiableList(modifiedEdges),
+        compareValues(nullToEmpty(beforeEntities), nullToEmpty(afterEntities)));
+  }
+
+  /** Returns the differences between two matched nodes, or null if they are the same. */
+  private static NodeChange compareNodes(EipNode before, EipNode after, Matching matching) {
+    boolean sameId = before.id().equals(after.id());
+    boolean equivalentIds = sameId || matching.bothGenerated(before.id(), after.id());
+    if (equivalentIds && sameContent(before, after)) {
+      return null;
+    }
+
+    List<ValueChange> properties = new ArrayList<>(0);
+    addChange("eipId", before.eipId(), after.eipId(), properties);
+    addChange("label", before.label(), after.label(), properties);
+    addChange("description", before.description(), after.description(), properties);
+    addChange("role", before.role(), after.role(), properties);
+    addChange("connectionType", before.connectionType(), after.connectionType(), properties);
+
+    List<ValueChange> attributes = compareValues(before.attributes(), after.attributes());
+
+    List<ChildChange> children = new ArrayList<>(0);
+    compareChildren("", before.children(), after.children(), children);
+
+    if (equivalentIds && properties.isEmpty() && attributes.isEmpty() && children.isEmpty()) {
+      // only differs by null attribute values, or by generated id
+      return null;
+    }
+    return new NodeChange(
+        after.id(),
+        sameId ? null : before.id(),
+        Collections.unmodifiableList(properties),
+        attributes,
+        Collections.unmodifiableList(children));
+  }
+
+  private static void addChange(String name, Object before, Object after, List<ValueChange> out) {
+    if (!Objects.equals(before, after)) {
+      out.add(new ValueChange(name, before, after));
+    }
+  }
+
+  // Values are reported in the order of the first map, followed by the values only in the second.
+  private static List<ValueChange> compareValues(Map<String, ?> before, Map<String, ?> after) {
+    List<ValueChange> changes = new ArrayList<>(0);
+    for (Map.Entry<String, ?> entry : before.entrySet()) {
+      Object value = entry.getValue();
+      Object afterValue = after.get(entry.getKey());
+      if (!Objects.equals(value, afterValue)) {
+        changes.add(new ValueChange(entry.getKey(), value, afterValue));
+      }
+    }
+    for (Map.Entry<String, ?> entry : after.entrySet()) {
+      if (entry.getValue() != null && !before.containsKey(entry.getKey())) {
+        changes.add(new ValueChange(entry.getKey(), null, entry.getValue()));
+      }
+    }
+    return Collections.unmodifiableList(changes);
+  }
+
+  private static void compareChildren(
+      String parentPath, List<EipChild> before, List<EipChild> after, List<ChildChange> out) {
+    int start = 0;
+    int beforeEnd = before.size();
+    int afterEnd = after.size();
+    while (start < beforeEnd && start < afterEnd && before.get(start).equals(after.get(start))) {
+      start++;
+    }
+    while (beforeEnd > start
+        && afterEnd > start
+        && before.get(beforeEnd - 1).equals(after.get(afterEnd - 1))) {
+      beforeEnd--;
+      afterEnd--;
+    }
+
+    int offset = 0;
+    for (; start + offset < beforeEnd && start + offset < afterEnd; offset++) {
+      EipChild beforeChild = before.get(start + offset);
+      EipChild afterChild = after.get(start + offset);
+      String path = childPath(parentPath, start + offset);
+      if (Objects.equals(beforeChild.eipId(), afterChild.eipId())) {
+        List<ValueChange> attributes =
+            compareValues(beforeChild.attributes(), afterChild.attributes());
+        if (!attributes.isEmpty()) {
+          out.add(new ChildChange(ChangeType.MODIFIED, path, afterChild.eipId(), attributes));
+        }
+        compareChildren(path, beforeChild.children(), afterChild.children(), out);
+      } else {
+        addAll(ChangeType.REMOVED, path, beforeChild, out);
+        addAll(ChangeType.ADDED, path, afterChild, out);
+      }
+    }
+    for (int i = start + offset; i < beforeEnd; i++) {
+      addAll(ChangeType.REMOVED, childPath(parentPath, i), before.get(i), out);
+    }
+    for (int i = start + offset; i < afterEnd; i++) {
+      addAll(ChangeType.ADDED, childPath(parentPath, i), after.get(i), out);
+    }
+  }
+
+  // Reports an added or removed child, along with its nested children.
+  private static void addAll(ChangeType type, String path, EipChild child, List<ChildChange> out) {
+    List<ValueChange> attributes =
+        type == ChangeType.ADDED
+            ? compareValues(Map.of(), child.attributes())
+            : compareValues(child.attributes(), Map.of());
+    out.add(new ChildChange(type, path, child.eipId(), attributes));
+    List<EipChild> children = child.children();
+    for (int i = 0; i < children.size(); i++) {
+      addAll(type, childPath(path, i), children.get(i), out);
+    }
+  }
+
+  private static String childPath(String parentPath, int index) {
+    return parentPath.isEmpty() ? String.valueOf(index) : parentPath + "/" + index;
+  }
+
+  private static int contentHash(EipNode node) {
+    return Objects.hash(
+        node.eipId(),
+        node.label(),
+        node.description(),
+        node.role(),
+        node.connectionType(),
+        node.attributes(),
+        node.children());
+  }
+
+  private static boolean sameContent(EipNode a, EipNode b) {
+    return Objects.equals(a.eipId(), b.eipId())
+        && Objects.equals(a.label(), b.label())
+        && Objects.equals(a.description(), b.description())
+        && a.role() == b.role()
+        && a.connectionType() == b.connectionType()
+        && a.attributes().equals(b.attributes())
+        && a.children().equals(b.children());
+  }
+
+  private static FlowEdge toEdge(EipGraph graph, EipNode source, EipNode target) {
+    EdgeProps props = graph.getEdgeProps(source, target).orElseThrow();
+    return new FlowEdge(props.id(), source.id(), target.id(), props.type());
+  }
+
+  private static boolean sameEdgeProps(FlowEdge a, FlowEdge b, Matching matching) {
+    return (Objects.equals(a.id(), b.id()) || matching.bothGenerated(a.id(), b.id()))
+        && a.type() == b.type();
+  }
+
+  private static <K, V> Map<K, V> nullToEmpty(Map<K, V> map) {
+    return map == null ? Map.of() : map;
+  }
+
+  /** The node matching between two graphs, built up by each pass. */
+  private static final class Matching {
+
+    private final EipGraph before;
+    private final EipGraph after;
+
+    private final Set<String> beforeGeneratedIds;
+    private final Set<String> afterGeneratedIds;
+
+    private final List<EipNode> beforeNodes;
+    private final List<EipNode> afterNodes;
+
+    // before node -> matched after node, and the reverse
+    private final Map<EipNode, EipNode> forward;
+    private final Map<EipNode, EipNode> backward;
+
+    // the matched pairs whose neighbours have not been matched yet, by before node
+    private final ArrayDeque<EipNode> pending = new ArrayDeque<>();
+
+    private Matching(
+        EipGraph before,
+        Set<String> beforeGeneratedIds,
+        EipGraph after,
+        Set<String> afterGeneratedIds) {
+      this.before = before;
+      this.after = after;
+      this.beforeGeneratedIds = beforeGeneratedIds;
+      this.afterGeneratedIds = afterGeneratedIds;
+      this.beforeNodes = before.traverse().toList();
+      this.afterNodes = after.traverse().toList();
+      this.forward = HashMap.newHashMap(beforeNodes.size());
+      this.backward = HashMap.newHashMap(afterNodes.size());
+    }
+
+    // an id added to or removed from an element is a change, so both ids must have been generated
+    private boolean bothGenerated(String beforeId, String afterId) {
+      return beforeId != null
+          && afterId != null
+          && beforeGeneratedIds.contains(beforeId)
+          && afterGeneratedIds.contains(afterId);
+    }
+
+    private void matchIds() {
+      Map<String, EipNode> afterById = HashMap.newHashMap(afterNodes.size());
+      for (EipNode node : afterNodes) {
+        afterById.put(node.id(), node);
+      }
+      for (EipNode node : beforeNodes) {
+        EipNode match = afterById.get(node.id());
+        if (match != null) {
+          pair(node, match);
+        }
+      }
+    }
+
+    private void matchContent() {
+      if (forward.size() == beforeNodes.size() || backward.size() == afterNodes.size()) {
+        return;
+      }
+
+      Map<Integer, ArrayDeque<EipNode>> unmatchedByHash = new HashMap<>();
+      for (EipNode node : afterNodes) {
+        if (!backward.containsKey(node)) {
+          unmatchedByHash.computeIfAbsent(contentHash(node), h -> new ArrayDeque<>(1)).add(node);
+        }
+      }
+
+      for (EipNode node : beforeNodes) {
+        if (forward.containsKey(node)) {
+          continue;
+        }
+        ArrayDeque<EipNode> candidates = unmatchedByHash.get(contentHash(node));
+        if (candidates == null) {
+          continue;
+        }
+        Iterator<EipNode> iterator = candidates.iterator();
+        while (iterator.hasNext()) {
+          EipNode candidate = iterator.next();
+          if (sameContent(node, candidate)) {
+            iterator.remove();
+            pair(node, candidate);
+            break;
+          }
+        }
+      }
+    }
+
+    private void matchNeighbours() {
+      while (!pending.isEmpty()) {
+        EipNode node = pending.poll();
+        EipNode match = forward.get(node);
+        matchUnique(before.successors(node), after.successors(match));
+        matchUnique(before.predecessors(node), after.predecessors(match));
+      }
+    }
+
+    // Matches the unmatched neighbours that are the only ones of their type on both sides.
+    private void matchUnique(Set<EipNode> beforeNeighbours, Set<EipNode> afterNeighbours) {
+      Map<EipId, EipNode> beforeCandidates = uniqueByType(beforeNeighbours, forward);
+      if (beforeCandidates.isEmpty()) {
+        return;
+      }
+      Map<EipId, EipNode> afterCandidates = uniqueByType(afterNeighbours, backward);
+      for (Map.Entry<EipId, EipNode> entry : beforeCandidates.entrySet()) {
+        EipNode beforeNode = entry.getValue();
+        EipNode afterNode = afterCandidates.get(entry.getKey());
+        if (afterNode != null) {
+          pair(beforeNode, afterNode);
+        }
+      }
+    }
+
+    // the unmatched neighbours that are the only unmatched neighbour of their type
+    private static Map<EipId, EipNode> uniqueByType(
+        Set<EipNode> neighbours, Map<EipNode, EipNode> matched) {
+      Map<EipId, EipNode> candidates = null;
+      Set<EipId> ambiguous = null;
+      for (EipNode neighbour : neighbours) {
+        if (matched.containsKey(neighbour)) {
+          continue;
+        }
+        if (candidates == null) {
+          candidates = new HashMap<>();
+        }
+        if (candidates.putIfAbsent(neighbour.eipId(), neighbour) != null) {
+          if (ambiguous == null) {
+            ambiguous = new HashSet<>();
+          }
+          ambiguous.add(neighbour.eipId());
+        }
+      }
+      if (candidates == null) {
+        return Map.of();
+      }
+      if (ambiguous != null) {
+        candidates.keySet().removeAll(ambiguous);
+      }
+      return candidates;
+    }
+
+    private void pair(EipNode beforeNode, EipNode afterNode) {
+      forward.put(beforeNode, afterNode);
+      backward.put(afterNode, beforeNode);
+      pending.add(beforeNode);
+    }
+
+    private Optional<FlowEdge> findAfterEdge(EipNode source, EipNode target) {
+      EipNode afterSource = forward.get(source);
+      EipNode afterTarget = forward.get(target);
+      if (afterSource == null || afterTarget == null) {
+        return Optional.empty();
+      }
+      return after
+          .getEdgeProps(afterSource, afterTarget)
+          .map(props -> new FlowEdge(props.id(), afterSource.id(), afterTarget.id(), props.type()));
+    }
+
+    private boolean hasBeforeEdge(EipNode source, EipNode target) {
+      EipNode beforeSource = backward.get(source);
+      EipNode beforeTarget = backward.get(target);
+      return beforeSource != null
+          && beforeTarget != null
+          && before.getEdgeProps(beforeSource, beforeTarget).isPresent();
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package org.codice.keip.flow.graph;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.codice.keip.flow.model.EdgeProps;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.Flow;
+import org.codice.keip.flow.model.FlowEdge;
+
+/**
+ * An {@link EipGraph} optimized for very large flows. Nodes are indexed by an int ordinal (their
+ * insertion order), and adjacency is stored in compressed sparse row (CSR) arrays for both outgoing
+ * and incoming edges, with the {@link EdgeProps} kept in an array parallel to the outgoing edges.
+ *
+ * <p>Behaves the same as {@link GuavaGraph}: node and edge iteration follows insertion order, and
+ * {@link #traverse()} visits nodes in the same depth-first pre-order, computed once along with the
+ * strongly connected components (see {@link GraphStructure}). The {@link Set}s returned by {@link
+ * #predecessors} and {@link #successors} are unmodifiable views over the adjacency arrays.
+ */
+public final class CompactGraph implements EipGraph {
+
+  private final EipNode[] nodes;
+
+  // maps a node id to its ordinal
+  private final Map<String, Integer> ordinals;
+
+  // outgoing edges of node i are at [outOffsets[i], outOffsets[i + 1]) in outTargets/outEdgeProps
+  private final int[] outOffsets;
+  private final int[] outTargets;
+  private final EdgeProps[] outEdgeProps;
+
+  // incoming edges of node i are at [inOffsets[i], inOffsets[i + 1]) in inSources
+  private final int[] inOffsets;
+  private final int[] inSources;
+
+  // lazily computed, the graph is immutable so concurrent initialization is harmless
+  private volatile GraphStructure structure;
+
+  private CompactGraph(
+      EipNode[] nodes,
+      Map<String, Integer> ordinals,
+      int[] outOffsets,
+      int[] outTargets,
+      EdgeProps[] outEdgeProps,
+      int[] inOffsets,
+      int[] inSources) {
+    this.nodes = nodes;
+    this.ordinals = ordinals;
+    this.outOffsets = outOffsets;
+    this.outTargets = outTargets;
+    this.outEdgeProps = outEdgeProps;
+    this.inOffsets = inOffsets;
+    this.inSources = inSources;
+  }
+
+  public static CompactGraph from(Flow flow) {
+    Builder builder = newBuilder(flow.nodes().size());
+    flow.nodes().forEach(builder::addNode);
+    flow.edges()
+        .forEach(edge -> builder.putEdgeValue(edge.source(), edge.target(), EdgeProps.from(edge)));
+    return builder.build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder(16);
+  }
+
+  public static Builder newBuilder(int expectedNodeCount) {
+    return new Builder(expectedNodeCount);
+  }
+
+  @Override
+  public Stream<EipNode> traverse() {
+    return Arrays.stream(getTraversalOrder()).mapToObj(i -> nodes[i]);
+  }
+
+  @Override
+  public Set<EipNode> predecessors(EipNode node) {
+    int i = ordinal(node);
+    return new NodeSet(inSources, inOffsets[i], inOffsets[i + 1]);
+  }
+
+  @Override
+  public Set<EipNode> successors(EipNode node) {
+    int i = ordinal(node);
+    return new NodeSet(outTargets, outOffsets[i], outOffsets[i + 1]);
+  }
+
+  @Override
+  public Optional<EdgeProps> getEdgeProps(EipNode source, EipNode target) {
+    int s = ordinal(source);
+    int t = ordinal(target);
+    for (int e = outOffsets[s]; e < outOffsets[s + 1]; e++) {
+      if (outTargets[e] == t) {
+        return Optional.of(outEdgeProps[e]);
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public List<List<EipNode>> stronglyConnectedComponents() {
+    return getStructure().components(nodes);
+  }
+
+  @Override
+  public int topologicalLevel(EipNode node) {
+    return getStructure().topologicalLevel(ordinal(node));
+  }
+
+  @Override
+  public boolean hasCycle() {
+    return getStructure().hasCycle();
+  }
+
+  @Override
+  public Flow toFlow() {
+    int[] order = getTraversalOrder();
+    List<EipNode> flowNodes = new ArrayList<>(order.length);
+    List<FlowEdge> flowEdges = new ArrayList<>(outTargets.length);
+
+    for (int i : order) {
+      EipNode source = nodes[i];
+      flowNodes.add(source);
+      for (int e = outOffsets[i]; e < outOffsets[i + 1]; e++) {
+        EdgeProps ep = outEdgeProps[e];
+        flowEdges.add(new FlowEdge(ep.id(), source.id(), nodes[outTargets[e]].id(), ep.type()));
+      }
+    }
+
+    return new Flow(flowNodes, flowEdges);
+  }
+
+  private int ordinal(EipNode node) {
+    Integer i = ordinals.get(node.id());
+    if (i == null) {
+      throw new IllegalArgumentException(
+          String.format("Node %s is not an element of this graph.", node));
+    }
+    return i;
+  }
+
+  private int[] getTraversalOrder() {
+    return getStructure().traversalOrder();
+  }
+
+  private GraphStructure getStructure() {
+    GraphStructure graphStructure = this.structure;
+    if (graphStructure == null) {
+      graphStructure = new GraphStructure(nodes.length, outOffsets, outTargets);
+      this.structure = graphStructure;
+    }
+    return graphStructure;
+  }
+
+  /** An unmodifiable view of a range of node ordinals in one of the adjacency arrays. */
+  private final class NodeSet extends AbstractSet<EipNode> {
+    private final int[] ordinalArray;
+    private final int from;
+    private final int to;
+
+    private NodeSet(int[] ordinalArray, int from, int to) {
+      this.ordinalArray = ordinalArray;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Iterator<EipNode> iterator() {
+      return new Iterator<>() {
+        private int next = from;
+
+        @Override
+        public boolean hasNext() {
+          return next < to;
+        }
+
+        @Override
+        public EipNode next() {
+          if (next >= to) {
+            throw new NoSuchElementException();
+          }
+          return nodes[ordinalArray[next++]];
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return from == to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof EipNode node)) {
+        return false;
+      }
+      Integer i = ordinals.get(node.id());
+      if (i == null) {
+        return false;
+      }
+      for (int k = from; k < to; k++) {
+        if (ordinalArray[k] == i) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  public static class Builder implements EipGraphBuilder {
+
+    private final List<EipNode> nodes;
+
+    private final Map<String, Integer> ordinals;
+
+    // edges in insertion order, as parallel lists
+    private int[] edgeSources = new int[16];
+    private int[] edgeTargets = new int[16];
+    private final List<EdgeProps> edgeProps = new ArrayList<>();
+
+    // maps a (source, target) ordinal pair to its edge index, to replace duplicate edges
+    private final Map<Long, Integer> edgeIndex = new HashMap<>();
+
+    private Builder(int expectedNodeCount) {
+      this.nodes = new ArrayList<>(expectedNodeCount);
+      this.ordinals = new HashMap<>(Math.max(16, (int) (expectedNodeCount / 0.75f) + 1));
+    }
+
+    @Override
+    public Builder addNode(EipNode node) {
+      if (ordinals.containsKey(node.id())) {
+        throw new IllegalArgumentException(String.format("Duplicate node id: %s", node.id()));
+      }
+      ordinals.put(node.id(), nodes.size());
+      nodes.add(node);
+      return this;
+    }
+
+    @Override
+    public Builder putEdgeValue(String sourceId, String targetId, EdgeProps value) {
+      Objects.requireNonNull(value, "value");
+      Integer source = ordinals.get(sourceId);
+      Integer target = ordinals.get(targetId);
+      if (source == null || target == null) {
+        throw new IllegalArgumentException(
+            String.format("A graph edge is detached: (%s, %s)", sourceId, targetId));
+      }
+      if (source.equals(target)) {
+        throw new IllegalArgumentException(
+            String.format("Self-loop edges are not allowed: (%s, %s)", sourceId, targetId));
+      }
+
+      long key = ((long) source << 32) | target;
+      Integer existing = edgeIndex.get(key);
+      if (existing != null) {
+        edgeProps.set(existing, value);
+        return this;
+      }
+
+      int e = edgeProps.size();
+      if (e == edgeSources.length) {
+        edgeSources = Arrays.copyOf(edgeSources, e * 2);
+        edgeTargets = Arrays.copyOf(edgeTargets, e * 2);
+      }
+      edgeSources[e] = source;
+      edgeTargets[e] = target;
+      edgeProps.add(value);
+      edgeIndex.put(key, e);
+      return this;
+    }
+
+    @Override
+    public CompactGraph build() {
+      int n = nodes.size();
+      int m = edgeProps.size();
+
+      int[] outOffsets = new int[n + 1];
+      int[] inOffsets = new int[n + 1];
+      for (int e = 0; e < m; e++) {
+        outOffsets[edgeSources[e] + 1]++;
+        inOffsets[edgeTargets[e] + 1]++;
+      }
+      for (int i = 0; i < n; i++) {
+        outOffsets[i + 1] += outOffsets[i];
+        inOffsets[i + 1] += inOffsets[i];
+      }
+
+      // stable counting sort, so edges keep their insertion order within each row
+      int[] outTargets = new int[m];
+      EdgeProps[] outEdgeProps = new EdgeProps[m];
+      int[] inSources = new int[m];
+      int[] outPos = Arrays.copyOf(outOffsets, n);
+      int[] inPos = Arrays.copyOf(inOffsets, n);
+      for (int e = 0; e < m; e++) {
+        int o = outPos[edgeSources[e]]++;
+        outTargets[o] = edgeTargets[e];
+        outEdgeProps[o] = edgeProps.get(e);
+        inSources[inPos[edgeTargets[e]]++] = edgeSources[e];
+      }
+
+      return new CompactGraph(
+          nodes.toArray(new EipNode[0]),
+          Map.copyOf(ordinals),
+          outOffsets,
+          outTargets,
+          outEdgeProps,
+          inOffsets,
+          inSources);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package org.codice.keip.flow.graph;
+
+import org.codice.keip.flow.model.EdgeProps;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.Flow;
+
+/** Incrementally builds an immutable {@link EipGraph}. */
+public interface EipGraphBuilder {
+
+  /**
+   * The default node count at or above which a {@link CompactGraph} is built instead of a {@link
+   * GuavaGraph}.
+   */
+  int DEFAULT_COMPACT_GRAPH_THRESHOLD = 1000;
+
+  /**
+   * @throws IllegalArgumentException if a node with the same id was already added
+   */
+  EipGraphBuilder addNode(EipNode node);
+
+  /**
+   * Adds a directed edge between two previously added nodes. If the edge already exists, its value
+   * is replaced.
+   *
+   * @throws IllegalArgumentException if either node was not added, or the edge is a self-loop
+   */
+  EipGraphBuilder putEdgeValue(String sourceId, String targetId, EdgeProps value);
+
+  EipGraph build();
+
+  /**
+   * Returns a builder for a graph with the expected number of nodes. A {@link CompactGraph} is used
+   * for graphs with at least {@code compactGraphThreshold} nodes, otherwise a {@link GuavaGraph}.
+   */
+  static EipGraphBuilder newBuilder(int expectedNodeCount, int compactGraphThreshold) {
+    if (expectedNodeCount >= compactGraphThreshold) {
+      return CompactGraph.newBuilder(expectedNodeCount);
+    }
+    return GuavaGraph.newBuilder();
+  }
+
+  /**
+   * Builds an {@link EipGraph} from a {@link Flow}, using the implementation selected by {@link
+   * #newBuilder(int, int)}.
+   */
+  static EipGraph from(Flow flow, int compactGraphThreshold) {
+    EipGraphBuilder builder = newBuilder(flow.nodes().size(), compactGraphThreshold);
+    flow.nodes().forEach(builder::addNode);
+    flow.edges()
+        .forEach(edge -> builder.putEdgeValue(edge.source(), edge.target(), EdgeProps.from(edge)));
+    return builder.build();
+  }
+}
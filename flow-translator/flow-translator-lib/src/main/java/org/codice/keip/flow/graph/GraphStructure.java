@@ -0,0 +1,278 @@
+package org.codice.keip.flow.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.codice.keip.flow.model.EipNode;
+
+/**
+ * The structure of an immutable graph, computed once from its outgoing adjacency in compressed
+ * sparse row form (see {@link CompactGraph}): the strongly connected components (SCCs), their
+ * topological levels, and the traversal order shared by the {@link
+ * org.codice.keip.flow.model.EipGraph} implementations.
+ *
+ * <p>Components are found with an iterative version of Tarjan's algorithm, so very deep graphs do
+ * not overflow the call stack. They are numbered in topological order of the condensed graph:
+ * every edge between two components goes from a lower to a higher component number. The level of
+ * a component is 0 if no other component has an edge into it, and otherwise one more than the
+ * highest level of those components.
+ *
+ * <p>The traversal is a depth-first pre-order starting from the nodes with no incoming edges, in
+ * ordinal order. Cycles that cannot be reached from those nodes are source components of the
+ * condensed graph, and are then traversed from their lowest ordinal node, so nodes upstream of a
+ * cycle are visited before the nodes downstream of it.
+ */
+final class GraphStructure {
+
+  private final int[] traversalOrder;
+
+  // the component number of each node
+  private final int[] componentOf;
+
+  private final int[] componentLevels;
+
+  private final boolean hasCycle;
+
+  /**
+   * @param nodeCount the number of nodes, which are identified by their ordinal
+   * @param outOffsets the outgoing edges of node i are at [outOffsets[i], outOffsets[i + 1]) in
+   *     outTargets
+   * @param outTargets the target ordinals of the outgoing edges
+   */
+  GraphStructure(int nodeCount, int[] outOffsets, int[] outTargets) {
+    int[] tarjanComponents = new int[nodeCount];
+    int componentCount = findComponents(nodeCount, outOffsets, outTargets, tarjanComponents);
+
+    // Tarjan's algorithm completes components in reverse topological order
+    this.componentOf = new int[nodeCount];
+    int[] componentSizes = new int[componentCount];
+    for (int i = 0; i < nodeCount; i++) {
+      componentOf[i] = componentCount - 1 - tarjanComponents[i];
+      componentSizes[componentOf[i]]++;
+    }
+
+    boolean cyclic = false;
+    for (int size : componentSizes) {
+      cyclic |= size > 1;
+    }
+    this.hasCycle = cyclic;
+
+    this.componentLevels = computeLevels(nodeCount, outOffsets, outTargets, componentCount);
+    this.traversalOrder = computeTraversalOrder(nodeCount, outOffsets, outTargets);
+  }
+
+  /** Returns the node ordinals in traversal order. The array must not be modified. */
+  int[] traversalOrder() {
+    return traversalOrder;
+  }
+
+  boolean hasCycle() {
+    return hasCycle;
+  }
+
+  int topologicalLevel(int ordinal) {
+    return componentLevels[componentOf[ordinal]];
+  }
+
+  /**
+   * Returns the components in topological order, with the nodes of each component in traversal
+   * order.
+   *
+   * @param nodes the nodes indexed by ordinal
+   */
+  List<List<EipNode>> components(EipNode[] nodes) {
+    List<List<EipNode>> components = new ArrayList<>(componentLevels.length);
+    for (int c = 0; c < componentLevels.length; c++) {
+      components.add(new ArrayList<>(1));
+    }
+    for (int i : traversalOrder) {
+      components.get(componentOf[i]).add(nodes[i]);
+    }
+    return components.stream().map(Collections::unmodifiableList).toList();
+  }
+
+  /**
+   * Iterative Tarjan's algorithm. Each frame of the explicit call stack holds a node and the
+   * position of its next outgoing edge to explore.
+   *
+   * @return the number of components
+   */
+  private static int findComponents(
+      int nodeCount, int[] outOffsets, int[] outTargets, int[] componentOf) {
+    int[] index = new int[nodeCount];
+    int[] lowLink = new int[nodeCount];
+    boolean[] onStack = new boolean[nodeCount];
+    int[] componentStack = new int[nodeCount];
+    int[] callNodes = new int[nodeCount];
+    int[] callEdges = new int[nodeCount];
+
+    Arrays.fill(index, -1);
+    int nextIndex = 0;
+    int componentTop = 0;
+    int componentCount = 0;
+
+    for (int start = 0; start < nodeCount; start++) {
+      if (index[start] != -1) {
+        continue;
+      }
+
+      int depth = 0;
+      index[start] = lowLink[start] = nextIndex++;
+      componentStack[componentTop++] = start;
+      onStack[start] = true;
+      callNodes[depth] = start;
+      callEdges[depth++] = outOffsets[start];
+
+      while (depth > 0) {
+        int node = callNodes[depth - 1];
+        int edge = callEdges[depth - 1];
+
+        if (edge < outOffsets[node + 1]) {
+          callEdges[depth - 1] = edge + 1;
+          int target = outTargets[edge];
+          if (index[target] == -1) {
+            index[target] = lowLink[target] = nextIndex++;
+            componentStack[componentTop++] = target;
+            onStack[target] = true;
+            callNodes[depth] = target;
+            callEdges[depth++] = outOffsets[target];
+          } else if (onStack[target]) {
+            lowLink[node] = Math.min(lowLink[node], index[target]);
+          }
+          continue;
+        }
+
+        depth--;
+        if (lowLink[node] == index[node]) {
+          int member;
+          do {
+            member = componentStack[--componentTop];
+            onStack[member] = false;
+            componentOf[member] = componentCount;
+          } while (member != node);
+          componentCount++;
+        }
+        if (depth > 0) {
+          int caller = callNodes[depth - 1];
+          lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+        }
+      }
+    }
+
+    return componentCount;
+  }
+
+  // Components are numbered in topological order, so each level is final before it is used.
+  private int[] computeLevels(
+      int nodeCount, int[] outOffsets, int[] outTargets, int componentCount) {
+    int[] membersByComponent = orderByComponent(nodeCount, componentCount);
+    int[] levels = new int[componentCount];
+    for (int source : membersByComponent) {
+      int component = componentOf[source];
+      for (int e = outOffsets[source]; e < outOffsets[source + 1]; e++) {
+        int targetComponent = componentOf[outTargets[e]];
+        if (targetComponent != component) {
+          levels[targetComponent] = Math.max(levels[targetComponent], levels[component] + 1);
+        }
+      }
+    }
+    return levels;
+  }
+
+  // counting sort of the node ordinals by component number
+  private int[] orderByComponent(int nodeCount, int componentCount) {
+    int[] starts = new int[componentCount + 1];
+    for (int i = 0; i < nodeCount; i++) {
+      starts[componentOf[i] + 1]++;
+    }
+    for (int c = 0; c < componentCount; c++) {
+      starts[c + 1] += starts[c];
+    }
+    int[] sorted = new int[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      sorted[starts[componentOf[i]]++] = i;
+    }
+    return sorted;
+  }
+
+  private int[] computeTraversalOrder(int nodeCount, int[] outOffsets, int[] outTargets) {
+    Traversal traversal = new Traversal(nodeCount, outOffsets, outTargets);
+
+    boolean[] hasIncoming = new boolean[nodeCount];
+    for (int target : outTargets) {
+      hasIncoming[target] = true;
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      if (!hasIncoming[i]) {
+        traversal.visitFrom(i);
+      }
+    }
+
+    if (hasCycle) {
+      // Every node is reachable from a source component (level 0), so only cyclic source
+      // components can hold nodes that have not been visited from a root.
+      for (int i = 0; i < nodeCount; i++) {
+        if (topologicalLevel(i) == 0) {
+          traversal.visitFrom(i);
+        }
+      }
+    }
+
+    return traversal.order;
+  }
+
+  private static final class Traversal {
+    private final int[] outOffsets;
+    private final int[] outTargets;
+
+    private final int[] order;
+    private final boolean[] visited;
+
+    // each stack frame holds a node and the position of its next outgoing edge to explore
+    private final int[] stackNodes;
+    private final int[] stackEdges;
+
+    private int count = 0;
+
+    private Traversal(int nodeCount, int[] outOffsets, int[] outTargets) {
+      this.outOffsets = outOffsets;
+      this.outTargets = outTargets;
+      this.order = new int[nodeCount];
+      this.visited = new boolean[nodeCount];
+      this.stackNodes = new int[nodeCount];
+      this.stackEdges = new int[nodeCount];
+    }
+
+    private void visitFrom(int start) {
+      if (visited[start]) {
+        return;
+      }
+      int depth = push(start, 0);
+
+      while (depth > 0) {
+        int top = depth - 1;
+        int edge = stackEdges[top];
+        int end = outOffsets[stackNodes[top] + 1];
+        while (edge < end && visited[outTargets[edge]]) {
+          edge++;
+        }
+
+        if (edge == end) {
+          depth--;
+        } else {
+          stackEdges[top] = edge + 1;
+          depth = push(outTargets[edge], depth);
+        }
+      }
+    }
+
+    private int push(int node, int depth) {
+      visited[node] = true;
+      order[count++] = node;
+      stackNodes[depth] = node;
+      stackEdges[depth] = outOffsets[node];
+      return depth + 1;
+    }
+  }
+}
@@ -1,11 +1,9 @@
 package org.codice.keip.flow.graph;
 
-import com.google.common.collect.Streams;
-import com.google.common.graph.Graphs;
 import com.google.common.graph.ImmutableValueGraph;
-import com.google.common.graph.Traverser;
 import com.google.common.graph.ValueGraphBuilder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +22,9 @@ public class GuavaGraph implements EipGraph {
 
   private final ImmutableValueGraph<EipNode, EdgeProps> graph;
 
+  // lazily computed, the graph is immutable so concurrent initialization is harmless
+  private volatile Index index;
+
   private GuavaGraph(ImmutableValueGraph<EipNode, EdgeProps> graph) {
     this.graph = graph;
   }
@@ -42,9 +43,8 @@ public class GuavaGraph implements EipGraph {
 
   @Override
   public Stream<EipNode> traverse() {
-    Stream<EipNode> roots = findRoots();
-    Iterable<EipNode> nodes = Traverser.forGraph(this.graph).depthFirstPreOrder(roots.toList());
-    return Streams.stream(nodes);
+    Index index = getIndex();
+    return Arrays.stream(index.structure().traversalOrder()).mapToObj(i -> index.nodes()[i]);
   }
 
   @Override
@@ -62,6 +62,28 @@ public class GuavaGraph implements EipGraph {
     return this.graph.edgeValue(source, target);
   }
 
+  @Override
+  public List<List<EipNode>> stronglyConnectedComponents() {
+    Index index = getIndex();
+    return index.structure().components(index.nodes());
+  }
+
+  @Override
+  public int topologicalLevel(EipNode node) {
+    Index index = getIndex();
+    Integer ordinal = index.ordinals().get(node);
+    if (ordinal == null) {
+      throw new IllegalArgumentException(
+          String.format("Node %s is not an element of this graph.", node));
+    }
+    return index.structure().topologicalLevel(ordinal);
+  }
+
+  @Override
+  public boolean hasCycle() {
+    return getIndex().structure().hasCycle();
+  }
+
   @Override
   public Flow toFlow() {
     List<EipNode> nodes = new ArrayList<>();
@@ -84,22 +106,47 @@ public class GuavaGraph implements EipGraph {
     return new FlowEdge(ep.id(), source.id(), target.id(), ep.type());
   }
 
-  /** Finds the nodes in the graph that have no incoming edges (indicating the start of a flow). */
-  private Stream<EipNode> findRoots() {
-    Stream<EipNode> roots = graph.nodes().stream().filter(node -> graph.inDegree(node) == 0);
-    if (Graphs.hasCycle(graph.asGraph())) {
-      // traverse acyclic components first
-      return Stream.concat(roots, graph.nodes().stream());
+  private Index getIndex() {
+    Index graphIndex = this.index;
+    if (graphIndex == null) {
+      graphIndex = buildIndex();
+      this.index = graphIndex;
     }
-    return roots;
+    return graphIndex;
   }
 
-  public static class Builder {
+  // Numbers the nodes in insertion order and copies the outgoing edges to compressed sparse row
+  // arrays, so the structure is computed the same way as for a CompactGraph.
+  private Index buildIndex() {
+    EipNode[] nodes = graph.nodes().toArray(EipNode[]::new);
+    Map<EipNode, Integer> ordinals = new HashMap<>(Math.max(16, (int) (nodes.length / 0.75f) + 1));
+    for (int i = 0; i < nodes.length; i++) {
+      ordinals.put(nodes[i], i);
+    }
+
+    int[] outOffsets = new int[nodes.length + 1];
+    int[] outTargets = new int[graph.edges().size()];
+    int e = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      outOffsets[i] = e;
+      for (EipNode target : graph.successors(nodes[i])) {
+        outTargets[e++] = ordinals.get(target);
+      }
+    }
+    outOffsets[nodes.length] = e;
+
+    return new Index(nodes, ordinals, new GraphStructure(nodes.length, outOffsets, outTargets));
+  }
+
+  private record Index(EipNode[] nodes, Map<EipNode, Integer> ordinals, GraphStructure structure) {}
+
+  public static class Builder implements EipGraphBuilder {
     private final com.google.common.graph.ImmutableValueGraph.Builder<EipNode, EdgeProps> builder =
         ValueGraphBuilder.directed().immutable();
 
     private final Map<String, EipNode> visitedNodes = new HashMap<>();
 
+    @Override
     public Builder addNode(EipNode node) {
       if (visitedNodes.containsKey(node.id())) {
         throw new IllegalArgumentException(String.format("Duplicate node id: %s", node.id()));
@@ -109,6 +156,7 @@ public class GuavaGraph implements EipGraph {
       return this;
     }
 
+    @Override
     public Builder putEdgeValue(String sourceId, String targetId, EdgeProps value) {
       EipNode sourceNode = visitedNodes.get(sourceId);
       EipNode targetNode = visitedNodes.get(targetId);
@@ -120,6 +168,7 @@ public class GuavaGraph implements EipGraph {
       return this;
     }
 
+    @Override
     public GuavaGraph build() {
       return new GuavaGraph(builder.build());
     }
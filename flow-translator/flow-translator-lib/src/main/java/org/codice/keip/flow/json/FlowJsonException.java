@@ -0,0 +1,27 @@
+package org.codice.keip.flow.json;
+
+/**
+ * Thrown when a flow JSON document is malformed or does not match the EipFlow schema. The location
+ * of the error is reported as a JSON pointer (RFC 6901) into the document.
+ */
+public class FlowJsonException extends IllegalArgumentException {
+
+  private final String pointer;
+
+  public FlowJsonException(String pointer, String message) {
+    this(pointer, message, null);
+  }
+
+  public FlowJsonException(String pointer, String message, Throwable cause) {
+    super(String.format("Invalid flow JSON at '%s': %s", pointer, message), cause);
+    this.pointer = pointer;
+  }
+
+  /**
+   * @return the JSON pointer to the invalid value, or an empty string if the document itself is
+   *     invalid
+   */
+  public String getPointer() {
+    return pointer;
+  }
+}
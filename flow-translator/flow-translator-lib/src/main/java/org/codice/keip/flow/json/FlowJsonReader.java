@@ -0,0 +1,389 @@
+package org.codice.keip.flow.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import org.codice.keip.flow.graph.EipGraphBuilder;
+import org.codice.keip.flow.model.ConnectionType;
+import org.codice.keip.flow.model.EdgeProps;
+import org.codice.keip.flow.model.EdgeProps.EdgeType;
+import org.codice.keip.flow.model.EipChild;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipId;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.Flow;
+import org.codice.keip.flow.model.Role;
+
+/**
+ * Reads a flow JSON document (see the EipFlow schema) directly into an {@link EipGraph}, without
+ * binding it to a {@link Flow} first. The document is read with a streaming {@link JsonParser}, and
+ * each node is added to the graph builder as soon as it has been read, so the only full copy of the
+ * flow held in memory is the graph itself.
+ *
+ * <p>The reader is as lenient as binding a {@link Flow} with unknown properties ignored and enums
+ * matched case-insensitively, but checks the required properties and value types of the schema.
+ * Violations are thrown as a {@link FlowJsonException} that points to the invalid value.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class FlowJsonReader {
+
+  private final JsonFactory factory;
+
+  public FlowJsonReader() {
+    this(new JsonFactory());
+  }
+
+  /**
+   * @param factory creates the parsers used to read documents, e.g. to configure their read
+   *     constraints
+   */
+  public FlowJsonReader(JsonFactory factory) {
+    this.factory = Objects.requireNonNull(factory);
+  }
+
+  /**
+   * Reads a flow JSON document into a graph, using the implementation selected by {@link
+   * EipGraphBuilder#newBuilder(int, int)} for its node count.
+   *
+   * @throws FlowJsonException if the document is malformed or does not match the schema, or if the
+   *     flow is not a valid graph (e.g. duplicate node ids or detached edges)
+   * @throws IOException if the document cannot be read
+   */
+  public FlowJsonResult read(InputStream json, int compactGraphThreshold) throws IOException {
+    try (JsonParser parser = factory.createParser(json)) {
+      return new DocumentReader(parser, compactGraphThreshold).read();
+    }
+  }
+
+  /**
+   * @param nodeCount the number of nodes in the document
+   * @param edgeCount the number of edges in the document
+   */
+  public record FlowJsonResult(
+      EipGraph graph, Map<String, String> customEntities, int nodeCount, int edgeCount) {}
+
+  @FunctionalInterface
+  private interface ElementReader {
+    void read() throws IOException;
+  }
+
+  private record PendingEdge(int index, String source, String target, EdgeProps props) {}
+
+  /** Holds the state of a single read. */
+  private static final class DocumentReader {
+
+    private final JsonParser parser;
+
+    private final int compactGraphThreshold;
+
+    // null until the implementation can be chosen from the node count
+    private EipGraphBuilder builder;
+
+    // nodes read before the builder was created, which is at most the threshold
+    private final List<EipNode> pendingNodes = new ArrayList<>();
+
+    // edges read before their nodes, which are added once the whole document is read
+    private final List<PendingEdge> pendingEdges = new ArrayList<>();
+
+    private Map<String, String> customEntities = Collections.emptyMap();
+
+    private int nodeCount = 0;
+
+    private int edgeCount = 0;
+
+    private DocumentReader(JsonParser parser, int compactGraphThreshold) {
+      this.parser = parser;
+      this.compactGraphThreshold = compactGraphThreshold;
+    }
+
+    private FlowJsonResult read() throws IOException {
+      try {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw error("expected a flow object");
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.currentName();
+          parser.nextToken();
+          switch (field) {
+            case "nodes" -> {
+              readArray(this::readNode);
+              createBuilder();
+            }
+            case "edges" -> readArray(this::readEdge);
+            case "customEntities" -> customEntities = readCustomEntities();
+            default -> parser.skipChildren();
+          }
+        }
+
+        createBuilder();
+        for (PendingEdge edge : pendingEdges) {
+          putEdge(edge.index(), edge.source(), edge.target(), edge.props());
+        }
+        return new FlowJsonResult(builder.build(), customEntities, nodeCount, edgeCount);
+      } catch (StreamReadException e) {
+        throw new FlowJsonException(pointer(), e.getOriginalMessage(), e);
+      }
+    }
+
+    private void readNode() throws IOException {
+      requireObject("a node");
+      String id = null;
+      EipId eipId = null;
+      String label = null;
+      String description = null;
+      Role role = null;
+      ConnectionType connectionType = null;
+      Map<String, Object> attributes = null;
+      List<EipChild> children = null;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "id" -> id = readString();
+          case "eipId" -> eipId = readEipId();
+          case "label" -> label = readString();
+          case "description" -> description = readString();
+          case "role" -> role = readEnum(Role.class, "role");
+          case "connectionType" ->
+              connectionType = readEnum(ConnectionType.class, "connection type");
+          case "attributes" -> attributes = readAttributes();
+          case "children" -> children = readChildren();
+          default -> parser.skipChildren();
+        }
+      }
+
+      requireProperty(id, "id");
+      requireProperty(eipId, "eipId");
+      requireProperty(role, "role");
+      requireProperty(connectionType, "connectionType");
+      addNode(
+          nodeCount++,
+          new EipNode(id, eipId, label, description, role, connectionType, attributes, children));
+    }
+
+    private EipChild readChild() throws IOException {
+      requireObject("a child");
+      EipId eipId = null;
+      Map<String, Object> attributes = null;
+      List<EipChild> children = null;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "eipId" -> eipId = readEipId();
+          case "attributes" -> attributes = readAttributes();
+          case "children" -> children = readChildren();
+          default -> parser.skipChildren();
+        }
+      }
+
+      requireProperty(eipId, "eipId");
+      return new EipChild(eipId, attributes, children);
+    }
+
+    private List<EipChild> readChildren() throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      List<EipChild> children = new ArrayList<>();
+      readArray(() -> children.add(readChild()));
+      return children;
+    }
+
+    private void readEdge() throws IOException {
+      requireObject("an edge");
+      String id = null;
+      String source = null;
+      String target = null;
+      EdgeType type = null;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "id" -> id = readString();
+          case "source" -> source = readString();
+          case "target" -> target = readString();
+          case "type" -> type = readEnum(EdgeType.class, "edge type");
+          default -> parser.skipChildren();
+        }
+      }
+
+      requireProperty(id, "id");
+      requireProperty(source, "source");
+      requireProperty(target, "target");
+      EdgeProps props = new EdgeProps(id, type == null ? EdgeType.DEFAULT : type);
+      int index = edgeCount++;
+      if (builder == null) {
+        pendingEdges.add(new PendingEdge(index, source, target, props));
+      } else {
+        putEdge(index, source, target, props);
+      }
+    }
+
+    private EipId readEipId() throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      requireObject("an eipId");
+      String namespace = null;
+      String name = null;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        switch (field) {
+          case "namespace" -> namespace = readString();
+          case "name" -> name = readString();
+          default -> parser.skipChildren();
+        }
+      }
+
+      requireProperty(namespace, "namespace");
+      requireProperty(name, "name");
+      return new EipId(namespace, name);
+    }
+
+    private Map<String, Object> readAttributes() throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      requireObject("an attributes object");
+      Map<String, Object> attributes = new LinkedHashMap<>();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.currentName();
+        attributes.put(name, readAttributeValue(parser.nextToken()));
+      }
+      return attributes;
+    }
+
+    // matches the types produced by binding an untyped value
+    private Object readAttributeValue(JsonToken token) throws IOException {
+      return switch (token) {
+        case VALUE_STRING -> parser.getText();
+        case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getNumberValue();
+        case VALUE_TRUE -> Boolean.TRUE;
+        case VALUE_FALSE -> Boolean.FALSE;
+        case VALUE_NULL -> null;
+        default -> throw error("expected a string, number or boolean attribute value");
+      };
+    }
+
+    private Map<String, String> readCustomEntities() throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return Collections.emptyMap();
+      }
+      requireObject("a custom entities object");
+      Map<String, String> entities = new LinkedHashMap<>();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String id = parser.currentName();
+        parser.nextToken();
+        entities.put(id, readString());
+      }
+      return entities;
+    }
+
+    private void readArray(ElementReader elementReader) throws IOException {
+      if (parser.currentToken() == JsonToken.VALUE_NULL) {
+        return;
+      }
+      if (parser.currentToken() != JsonToken.START_ARRAY) {
+        throw error("expected an array");
+      }
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        elementReader.read();
+      }
+    }
+
+    private String readString() throws IOException {
+      return switch (parser.currentToken()) {
+        case VALUE_STRING -> parser.getText();
+        case VALUE_NULL -> null;
+        default -> throw error("expected a string");
+      };
+    }
+
+    private <E extends Enum<E>> E readEnum(Class<E> type, String description) throws IOException {
+      String value = readString();
+      if (value == null) {
+        return null;
+      }
+      try {
+        return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw error(String.format("unknown %s '%s'", description, value));
+      }
+    }
+
+    private void addNode(int index, EipNode node) {
+      if (builder == null) {
+        pendingNodes.add(node);
+        if (pendingNodes.size() >= compactGraphThreshold) {
+          createBuilder();
+        }
+        return;
+      }
+
+      try {
+        builder.addNode(node);
+      } catch (IllegalArgumentException e) {
+        throw new FlowJsonException("/nodes/" + index + "/id", e.getMessage(), e);
+      }
+    }
+
+    private void putEdge(int index, String source, String target, EdgeProps props) {
+      try {
+        builder.putEdgeValue(source, target, props);
+      } catch (IllegalArgumentException e) {
+        throw new FlowJsonException("/edges/" + index, e.getMessage(), e);
+      }
+    }
+
+    // Chooses the implementation once the node count is known, or once it reaches the threshold.
+    private void createBuilder() {
+      if (builder != null) {
+        return;
+      }
+      builder = EipGraphBuilder.newBuilder(pendingNodes.size(), compactGraphThreshold);
+      for (int i = 0; i < pendingNodes.size(); i++) {
+        addNode(i, pendingNodes.get(i));
+      }
+      pendingNodes.clear();
+    }
+
+    private void requireObject(String description) {
+      if (parser.currentToken() != JsonToken.START_OBJECT) {
+        throw error("expected " + description);
+      }
+    }
+
+    // called at the end of an object, so the pointer is to the object itself
+    private void requireProperty(Object value, String name) {
+      if (value == null) {
+        throw error(String.format("missing required property '%s'", name));
+      }
+    }
+
+    private FlowJsonException error(String message) {
+      return new FlowJsonException(pointer(), message);
+    }
+
+    private String pointer() {
+      return parser.getParsingContext().pathAsPointer().toString();
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package org.codice.keip.flow.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.codice.keip.flow.model.EdgeProps;
+import org.codice.keip.flow.model.EdgeProps.EdgeType;
+import org.codice.keip.flow.model.EipChild;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipId;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.Flow;
+
+/**
+ * Writes an {@link EipGraph} as a flow JSON document (see the EipFlow schema) with a {@link
+ * JsonGenerator}, without converting it to a {@link Flow} first.
+ *
+ * <p>The output is the same as serializing {@link EipGraph#toFlow()} with null values excluded and
+ * enums written in lowercase: nodes are written in traversal order, and edges are grouped by
+ * source node in the same order.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class FlowJsonWriter {
+
+  // the lowercase names of the constants of each enum type, indexed by ordinal
+  private static final ClassValue<SerializedString[]> ENUM_NAMES =
+      new ClassValue<>() {
+        @Override
+        protected SerializedString[] computeValue(Class<?> type) {
+          Object[] constants = type.getEnumConstants();
+          SerializedString[] names = new SerializedString[constants.length];
+          for (int i = 0; i < constants.length; i++) {
+            String name = ((Enum<?>) constants[i]).name();
+            names[i] = new SerializedString(name.toLowerCase(Locale.ROOT));
+          }
+          return names;
+        }
+      };
+
+  /**
+   * Writes the graph and custom entities as a flow JSON object, which can be the root value of the
+   * generator or nested in an enclosing document. The generator is neither flushed nor closed.
+   *
+   * @return the number of nodes and edges written
+   * @throws IOException if the generator fails to write the output
+   */
+  public FlowJsonSize write(
+      EipGraph graph, Map<String, String> customEntities, JsonGenerator generator)
+      throws IOException {
+    EipNode[] order = graph.traverse().toArray(EipNode[]::new);
+
+    generator.writeStartObject();
+
+    generator.writeArrayFieldStart("nodes");
+    for (EipNode node : order) {
+      writeNode(node, generator);
+    }
+    generator.writeEndArray();
+
+    int edgeCount = 0;
+    generator.writeArrayFieldStart("edges");
+    for (EipNode source : order) {
+      for (EipNode target : graph.successors(source)) {
+        EdgeProps props = graph.getEdgeProps(source, target).orElseThrow();
+        writeEdge(props, source.id(), target.id(), generator);
+        edgeCount++;
+      }
+    }
+    generator.writeEndArray();
+
+    generator.writeObjectFieldStart("customEntities");
+    if (customEntities != null) {
+      for (Map.Entry<String, String> entity : customEntities.entrySet()) {
+        generator.writeStringField(entity.getKey(), entity.getValue());
+      }
+    }
+    generator.writeEndObject();
+
+    generator.writeEndObject();
+    return new FlowJsonSize(order.length, edgeCount);
+  }
+
+  /**
+   * @param nodeCount the number of nodes written
+   * @param edgeCount the number of edges written
+   */
+  public record FlowJsonSize(int nodeCount, int edgeCount) {}
+
+  private static void writeNode(EipNode node, JsonGenerator generator) throws IOException {
+    generator.writeStartObject();
+    writeStringField("id", node.id(), generator);
+    writeEipId(node.eipId(), generator);
+    writeStringField("label", node.label(), generator);
+    writeStringField("description", node.description(), generator);
+    writeEnumField("role", node.role(), generator);
+    writeEnumField("connectionType", node.connectionType(), generator);
+    writeAttributes(node.attributes(), generator);
+    writeChildren(node.children(), generator);
+    generator.writeEndObject();
+  }
+
+  private static void writeChildren(List<EipChild> children, JsonGenerator generator)
+      throws IOException {
+    generator.writeArrayFieldStart("children");
+    for (EipChild child : children) {
+      generator.writeStartObject();
+      writeEipId(child.eipId(), generator);
+      writeAttributes(child.attributes(), generator);
+      writeChildren(child.children(), generator);
+      generator.writeEndObject();
+    }
+    generator.writeEndArray();
+  }
+
+  private static void writeEipId(EipId eipId, JsonGenerator generator) throws IOException {
+    if (eipId == null) {
+      return;
+    }
+    generator.writeObjectFieldStart("eipId");
+    writeStringField("namespace", eipId.namespace(), generator);
+    writeStringField("name", eipId.name(), generator);
+    generator.writeEndObject();
+  }
+
+  // Null values are excluded, as the NON_NULL inclusion also applies to map contents.
+  private static void writeAttributes(Map<String, Object> attributes, JsonGenerator generator)
+      throws IOException {
+    generator.writeObjectFieldStart("attributes");
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      Object value = attribute.getValue();
+      if (value != null) {
+        generator.writeFieldName(attribute.getKey());
+        writeAttributeValue(value, generator);
+      }
+    }
+    generator.writeEndObject();
+  }
+
+  // Strings and booleans are written directly, since a generator created by an ObjectMapper hands
+  // every other value to the mapper. Numbers are rare enough not to matter.
+  private static void writeAttributeValue(Object value, JsonGenerator generator)
+      throws IOException {
+    if (value instanceof String text) {
+      generator.writeString(text);
+    } else if (value instanceof Boolean bool) {
+      generator.writeBoolean(bool);
+    } else {
+      generator.writeObject(value);
+    }
+  }
+
+  private static void writeEdge(
+      EdgeProps props, String source, String target, JsonGenerator generator) throws IOException {
+    generator.writeStartObject();
+    writeStringField("id", props.id(), generator);
+    writeStringField("source", source, generator);
+    writeStringField("target", target, generator);
+    // as with FlowEdge, a missing type is the default
+    writeEnumField("type", props.type() == null ? EdgeType.DEFAULT : props.type(), generator);
+    generator.writeEndObject();
+  }
+
+  private static void writeStringField(String name, String value, JsonGenerator generator)
+      throws IOException {
+    if (value != null) {
+      generator.writeStringField(name, value);
+    }
+  }
+
+  private static void writeEnumField(String name, Enum<?> value, JsonGenerator generator)
+      throws IOException {
+    if (value != null) {
+      generator.writeFieldName(name);
+      generator.writeString(ENUM_NAMES.get(value.getDeclaringClass())[value.ordinal()]);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.codice.keip.flow.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, insertion-ordered map of attributes, backed by a single array of alternating keys
+ * and values. Keys are interned through the {@link Vocabulary}, so the attribute names of every
+ * node share the same instances.
+ *
+ * <p>Lookups scan the keys, which is faster than hashing for the handful of attributes an EIP
+ * component usually has. Null values are permitted, null keys are not.
+ */
+public final class AttributeMap extends AbstractMap<String, Object> {
+
+  private static final AttributeMap EMPTY = new AttributeMap(new Object[0]);
+
+  // keys are held at even indices, each followed by its value
+  private final Object[] entries;
+
+  private AttributeMap(Object[] entries) {
+    this.entries = entries;
+  }
+
+  public static AttributeMap of() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns an {@link AttributeMap} with the same entries (and iteration order) as the provided
+   * map, or the map itself if it already is an {@link AttributeMap}.
+   *
+   * @param attributes can be null, in which case an empty map is returned
+   */
+  public static AttributeMap copyOf(Map<String, ?> attributes) {
+    if (attributes instanceof AttributeMap map) {
+      return map;
+    }
+    return copyOf(attributes, key -> true);
+  }
+
+  /**
+   * Returns an {@link AttributeMap} with the entries of the provided map whose keys match the
+   * filter, in the same iteration order.
+   *
+   * @param attributes can be null, in which case an empty map is returned
+   */
+  public static AttributeMap copyOf(Map<String, ?> attributes, Predicate<String> keyFilter) {
+    if (attributes == null || attributes.isEmpty()) {
+      return EMPTY;
+    }
+
+    Object[] entries = new Object[attributes.size() * 2];
+    int length = 0;
+    for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+      String key = Objects.requireNonNull(entry.getKey(), "attribute names cannot be null");
+      if (keyFilter.test(key)) {
+        entries[length++] = Vocabulary.intern(key);
+        entries[length++] = entry.getValue();
+      }
+    }
+
+    if (length == 0) {
+      return EMPTY;
+    }
+    return new AttributeMap(length == entries.length ? entries : Arrays.copyOf(entries, length));
+  }
+
+  @Override
+  public int size() {
+    return entries.length / 2;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return entries.length == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Object get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : entries[index + 1];
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super Object> action) {
+    for (int i = 0; i < entries.length; i += 2) {
+      action.accept((String) entries[i], entries[i + 1]);
+    }
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new EntrySet();
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for (int i = 0; i < entries.length; i += 2) {
+      hash += entries[i].hashCode() ^ Objects.hashCode(entries[i + 1]);
+    }
+    return hash;
+  }
+
+  private int indexOf(Object key) {
+    // interned keys usually match by reference
+    for (int i = 0; i < entries.length; i += 2) {
+      if (entries[i] == key) {
+        return i;
+      }
+    }
+    if (key != null) {
+      for (int i = 0; i < entries.length; i += 2) {
+        if (entries[i].equals(key)) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+    @Override
+    public int size() {
+      return AttributeMap.this.size();
+    }
+
+    @Override
+    public Iterator<Entry<String, Object>> iterator() {
+      return new Iterator<>() {
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() {
+          return next < entries.length;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+          if (next >= entries.length) {
+            throw new NoSuchElementException();
+          }
+          Entry<String, Object> entry =
+              new SimpleImmutableEntry<>((String) entries[next], entries[next + 1]);
+          next += 2;
+          return entry;
+        }
+      };
+    }
+  }
+}
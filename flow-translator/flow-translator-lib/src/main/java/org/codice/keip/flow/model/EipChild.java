@@ -4,13 +4,16 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * A child element of an {@link EipNode} (e.g. a poller). Attributes are held in an immutable {@link
+ * AttributeMap}, and the {@link EipId} is replaced with its canonical instance from the {@link
+ * Vocabulary}.
+ */
 public record EipChild(EipId eipId, Map<String, Object> attributes, List<EipChild> children) {
-  @Override
-  public Map<String, Object> attributes() {
-    if (attributes == null) {
-      return Collections.emptyMap();
-    }
-    return Collections.unmodifiableMap(attributes);
+
+  public EipChild {
+    eipId = Vocabulary.intern(eipId);
+    attributes = AttributeMap.copyOf(attributes);
   }
 
   @Override
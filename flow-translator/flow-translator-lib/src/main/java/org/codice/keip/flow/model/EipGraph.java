@@ -1,5 +1,6 @@
 package org.codice.keip.flow.model;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -10,6 +11,13 @@ import java.util.stream.Stream;
  * conversions pass through the same intermediate graph abstraction.
  */
 public interface EipGraph {
+  /**
+   * Visits every node once, in a depth-first pre-order starting from the nodes with no incoming
+   * edges. Cycles that are not reachable from those nodes are visited afterwards, starting from the
+   * earliest inserted node of each cycle that no other component has an edge into, so nodes
+   * upstream of a cycle are visited before the nodes downstream of it. The order is computed once
+   * and is the same on every call.
+   */
   Stream<EipNode> traverse();
 
   Set<EipNode> predecessors(EipNode node);
@@ -18,5 +26,24 @@ public interface EipGraph {
 
   Optional<EdgeProps> getEdgeProps(EipNode source, EipNode target);
 
+  /**
+   * Returns the strongly connected components of the graph in topological order, so every edge
+   * between two components goes from an earlier component to a later one. A node that is not part
+   * of a cycle is a component of its own. The nodes of each component are in traversal order.
+   */
+  List<List<EipNode>> stronglyConnectedComponents();
+
+  /**
+   * Returns the topological level of the component of a node: 0 if no other component has an edge
+   * into it, and otherwise one more than the highest level of those components. The nodes of a
+   * cycle share the same level.
+   *
+   * @throws IllegalArgumentException if the node is not an element of this graph
+   */
+  int topologicalLevel(EipNode node);
+
+  /** Returns whether the graph has at least one cycle. */
+  boolean hasCycle();
+
   Flow toFlow();
 }
@@ -10,6 +10,9 @@ import java.util.Objects;
  * router). Ids must be unique across the flow graph.
  *
  * <p>Equality and hash code functions are defined using the 'id' field only.
+ *
+ * <p>Attributes are held in an immutable {@link AttributeMap}, and the {@link EipId} is replaced
+ * with its canonical instance from the {@link Vocabulary}.
  */
 public record EipNode(
     String id,
@@ -21,12 +24,9 @@ public record EipNode(
     Map<String, Object> attributes,
     List<EipChild> children) {
 
-  @Override
-  public Map<String, Object> attributes() {
-    if (attributes == null) {
-      return Collections.emptyMap();
-    }
-    return Collections.unmodifiableMap(attributes);
+  public EipNode {
+    eipId = Vocabulary.intern(eipId);
+    attributes = AttributeMap.copyOf(attributes);
   }
 
   public EipNode withAttributes(Map<String, Object> attrs) {
@@ -58,7 +58,7 @@ public record EipNode(
 
   @Override
   public int hashCode() {
-    return Objects.hash(id);
+    return Objects.hashCode(id);
   }
 
   @Override
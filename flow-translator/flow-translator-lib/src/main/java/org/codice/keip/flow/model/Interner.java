@@ -0,0 +1,56 @@
+package org.codice.keip.flow.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Maps equal values to a single canonical instance. Registered values are always interned, while
+ * other values are only interned until a limit is reached, and are then returned as-is.
+ *
+ * <p>This class is thread-safe.
+ */
+final class Interner<T> {
+
+  private final ConcurrentHashMap<T, T> canonical = new ConcurrentHashMap<>();
+
+  private final AtomicInteger learned = new AtomicInteger();
+
+  private final int maxLearned;
+
+  Interner(int maxLearned) {
+    this.maxLearned = maxLearned;
+  }
+
+  void register(T value) {
+    canonical.putIfAbsent(value, value);
+  }
+
+  T intern(T value) {
+    return intern(value, UnaryOperator.identity());
+  }
+
+  /**
+   * @param copier creates the instance to intern from a value seen for the first time, e.g. to
+   *     intern its own fields
+   */
+  T intern(T value, UnaryOperator<T> copier) {
+    if (value == null) {
+      return null;
+    }
+    T existing = canonical.get(value);
+    if (existing != null) {
+      return existing;
+    }
+    if (learned.get() >= maxLearned) {
+      return value;
+    }
+    T copy = copier.apply(value);
+    existing = canonical.putIfAbsent(copy, copy);
+    if (existing != null) {
+      return existing;
+    }
+    learned.incrementAndGet();
+    return copy;
+  }
+}
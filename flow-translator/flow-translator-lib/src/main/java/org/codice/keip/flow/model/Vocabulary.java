@@ -0,0 +1,49 @@
+package org.codice.keip.flow.model;
+
+import java.util.Collection;
+
+/**
+ * Canonical instances of the names (attribute names, EIP namespaces and component names) and {@link
+ * EipId}s shared by the nodes of every flow, so that the same strings are not duplicated across
+ * nodes and requests.
+ *
+ * <p>Names registered by a {@code ComponentRegistry} are always interned. Other values are
+ * interned as they are encountered, up to a fixed limit, after which they are used as-is. This
+ * keeps the vocabulary from growing without bound when parsing untrusted input.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class Vocabulary {
+
+  /** The maximum number of unregistered names that are interned. */
+  static final int MAX_LEARNED_NAMES = 16 * 1024;
+
+  /** The maximum number of {@link EipId}s that are interned. */
+  static final int MAX_EIP_IDS = 4 * 1024;
+
+  private static final Interner<String> NAMES = new Interner<>(MAX_LEARNED_NAMES);
+
+  private static final Interner<EipId> EIP_IDS = new Interner<>(MAX_EIP_IDS);
+
+  private Vocabulary() {}
+
+  /** Adds names to the vocabulary, regardless of the limit on interned names. */
+  public static void register(Collection<String> names) {
+    names.forEach(NAMES::register);
+  }
+
+  /**
+   * @return the canonical instance of the name, or the name itself if the vocabulary is full
+   */
+  public static String intern(String name) {
+    return NAMES.intern(name);
+  }
+
+  /**
+   * @return the canonical instance of the {@link EipId}, or the id itself if the vocabulary is
+   *     full
+   */
+  public static EipId intern(EipId id) {
+    return EIP_IDS.intern(id, value -> new EipId(intern(value.namespace()), intern(value.name())));
+  }
+}
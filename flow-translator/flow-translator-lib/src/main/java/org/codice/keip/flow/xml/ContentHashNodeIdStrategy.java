@@ -0,0 +1,47 @@
+package org.codice.keip.flow.xml;
+
+import static org.codice.keip.flow.xml.spring.NodeIdGenerator.DEFAULT_ALPHABET;
+import static org.codice.keip.flow.xml.spring.NodeIdGenerator.DEFAULT_SIZE;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Derives node ids from a (non-cryptographic) hash of the element's path and attributes. Ids are
+ * made of the symbols of the {@link org.codice.keip.flow.xml.spring.NodeIdGenerator} default
+ * alphabet, and have the same length as generated random ids.
+ *
+ * @see NodeIdStrategy#CONTENT_HASH
+ */
+final class ContentHashNodeIdStrategy implements NodeIdStrategy {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  ContentHashNodeIdStrategy() {}
+
+  @Override
+  public String generateId(String path, XmlElement element) {
+    Hasher hasher = HASH_FUNCTION.newHasher().putString(path, StandardCharsets.UTF_8);
+    // attributes are sorted, as the parsers do not report them in the same order
+    for (Map.Entry<String, Object> attr : new TreeMap<>(element.attributes()).entrySet()) {
+      hasher
+          .putByte((byte) 0)
+          .putString(attr.getKey(), StandardCharsets.UTF_8)
+          .putByte((byte) 0)
+          .putString(String.valueOf(attr.getValue()), StandardCharsets.UTF_8);
+    }
+
+    // the default alphabet has 64 symbols, so each symbol takes six bits of the hash
+    long hash = hasher.hash().asLong();
+    char[] id = new char[DEFAULT_SIZE];
+    for (int i = 0; i < id.length; i++) {
+      id[i] = DEFAULT_ALPHABET[(int) (hash & 0x3f)];
+      hash >>>= 6;
+    }
+    return new String(id);
+  }
+}
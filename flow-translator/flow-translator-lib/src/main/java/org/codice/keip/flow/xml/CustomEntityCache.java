@@ -0,0 +1,90 @@
+package org.codice.keip.flow.xml;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache of validated custom entities, keyed by the entity id and a SHA-256 hash of
+ * its content, so the content itself is not retained. Entities below the streaming threshold of
+ * the {@link CustomEntityTransformer} are cached along with their serialized fragment, which can
+ * be written out as-is. Larger entities are only marked as validated, and are copied to the output
+ * without being buffered. Indented and unindented fragments of the same entity are cached
+ * separately.
+ *
+ * <p>The size of an entry is approximated by the character count of its id and fragment (two
+ * bytes per character), plus the size of the hash.
+ *
+ * <p>This class is thread-safe.
+ */
+final class CustomEntityCache {
+
+  // Marks a validated entity that is copied rather than cached
+  private static final String VALIDATED = "";
+
+  private final long maxSizeBytes;
+  private final Cache<EntityKey, String> fragments;
+  private final AtomicLong sizeBytes = new AtomicLong();
+
+  /**
+   * @param maxSizeBytes the approximate maximum size of all cached entities
+   */
+  CustomEntityCache(long maxSizeBytes) {
+    if (maxSizeBytes < 1) {
+      throw new IllegalArgumentException("custom entity cache size must be greater than zero");
+    }
+    this.maxSizeBytes = maxSizeBytes;
+    this.fragments =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeBytes)
+            .<EntityKey, String>weigher(CustomEntityCache::weigh)
+            .<EntityKey, String>removalListener(
+                notification ->
+                    sizeBytes.addAndGet(-weigh(notification.getKey(), notification.getValue())))
+            .recordStats()
+            .build();
+  }
+
+  static EntityKey keyOf(String id, String content, boolean indented) {
+    return new EntityKey(
+        id, Hashing.sha256().hashString(content, StandardCharsets.UTF_8), indented);
+  }
+
+  /**
+   * Returns the cached fragment for the key, an empty string if the entity was validated but is
+   * not cached, or null if it is unknown.
+   */
+  String get(EntityKey key) {
+    return fragments.getIfPresent(key);
+  }
+
+  void put(EntityKey key, String fragment) {
+    sizeBytes.addAndGet(weigh(key, fragment));
+    fragments.put(key, fragment);
+  }
+
+  void putValidated(EntityKey key) {
+    put(key, VALIDATED);
+  }
+
+  FragmentCacheStats stats() {
+    CacheStats stats = fragments.stats();
+    return new FragmentCacheStats(
+        maxSizeBytes,
+        sizeBytes.get(),
+        fragments.size(),
+        stats.hitCount(),
+        stats.missCount(),
+        stats.evictionCount());
+  }
+
+  private static int weigh(EntityKey key, String fragment) {
+    return (key.id().length() + fragment.length()) * Character.BYTES + key.content().bits() / 8;
+  }
+
+  record EntityKey(String id, HashCode content, boolean indented) {}
+}
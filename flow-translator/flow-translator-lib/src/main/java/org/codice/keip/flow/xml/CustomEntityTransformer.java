@@ -2,102 +2,252 @@ package org.codice.keip.flow.xml;
 
 import static org.codice.keip.flow.xml.spring.AttributeNames.ID;
 
-import com.ctc.wstx.stax.WstxEventFactory;
 import java.io.StringReader;
-import java.util.ArrayDeque;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import javax.xml.stream.XMLEventFactory;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.TransformerException;
+import org.codehaus.stax2.XMLStreamWriter2;
 import org.codice.keip.flow.error.TransformationError;
 
-/** Validates Custom Entity XML content and adds the required id attribute before writing content */
+/**
+ * Validates Custom Entity XML content and adds the required id attribute before writing content.
+ *
+ * <p>An entity is only written once all of its content is known to be well-formed. Entities
+ * shorter than the streaming threshold are rendered into a standalone fragment, which is then
+ * spliced into the output. Longer entities are instead read twice: a first pass validates the
+ * content, and a second one copies it straight to the output, so they are never held in memory in
+ * another form. If a {@link CustomEntityCache} is set, entities that were already validated are
+ * written from their cached fragment, or copied without the validation pass.
+ */
 final class CustomEntityTransformer {
 
-  // These events will not be processed and are excluded from output.
-  private static final Set<Integer> IGNORED_EVENTS =
-      Set.of(XMLEvent.START_DOCUMENT, XMLEvent.END_DOCUMENT);
+  /** The default entity length (in characters) at or above which entities are streamed. */
+  static final int DEFAULT_STREAMING_THRESHOLD = 64 * 1024;
 
-  private final XMLEventFactory eventFactory = WstxEventFactory.newFactory();
   private final XMLInputFactory inputFactory;
+  private final XMLOutputFactory fragmentOutputFactory =
+      GraphXmlSerializer.initializeFragmentOutputFactory();
+
+  private volatile CustomEntityCache cache;
+
+  private volatile int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
 
   CustomEntityTransformer(XMLInputFactory inputFactory) {
     this.inputFactory = inputFactory;
   }
 
+  /**
+   * @param cache can be null to disable caching
+   */
+  void setCache(CustomEntityCache cache) {
+    this.cache = cache;
+  }
+
+  CustomEntityCache getCache() {
+    return cache;
+  }
+
+  void setStreamingThreshold(int streamingThreshold) {
+    this.streamingThreshold = streamingThreshold;
+  }
+
   /**
    * Validates that the XML content for all custom entities is well-formed and an 'id' attribute is
    * added to the content's root element matching its key in the customEntities Map.
    *
    * @param customEntities user-defined map of entityId to content
    * @param writer where the transformed content XML will be written to
+   * @param indent whether the writer indents its output, in which case entities are indented as
+   *     children of the document's root element
    * @return An empty list for a successful transformation, otherwise a non-empty list of {@link
    *     TransformationError} is returned.
+   * @throws XMLStreamException if the content can not be written to the writer
    */
-  List<TransformationError> apply(Map<String, String> customEntities, XMLEventWriter writer) {
+  List<TransformationError> apply(
+      Map<String, String> customEntities, XMLStreamWriter2 writer, boolean indent)
+      throws XMLStreamException {
     List<TransformationError> errors = new ArrayList<>();
+    CustomEntityCache cache = this.cache;
+    int streamingThreshold = this.streamingThreshold;
+
+    for (Map.Entry<String, String> entity : customEntities.entrySet()) {
+      String id = entity.getKey();
+      String xml = entity.getValue();
+
+      try {
+        CustomEntityCache.EntityKey key = null;
+        if (cache != null) {
+          key = CustomEntityCache.keyOf(id, xml, indent);
+          String cached = cache.get(key);
+          if (cached != null) {
+            if (cached.isEmpty()) {
+              copy(id, xml, writer);
+            } else {
+              writer.writeRaw(cached);
+            }
+            continue;
+          }
+        }
 
-    customEntities.forEach(
-        (id, xml) -> {
-          try {
-            Deque<XMLEvent> eventQueue = new ArrayDeque<>();
-            boolean wasRootIdAttributeAdded = false;
-
-            XMLEventReader reader = inputFactory.createXMLEventReader(new StringReader(xml));
-            while (reader.hasNext()) {
-              XMLEvent event = reader.nextEvent();
+        if (xml.length() < streamingThreshold) {
+          String fragment = render(id, xml, indent);
+          writer.writeRaw(fragment);
+          if (cache != null) {
+            cache.put(key, fragment);
+          }
+        } else {
+          validate(xml);
+          copy(id, xml, writer);
+          if (cache != null) {
+            cache.putValidated(key);
+          }
+        }
+      } catch (InvalidEntityException e) {
+        errors.add(
+            new TransformationError(
+                String.format("custom entity [%s]", id),
+                new TransformerException(e.getCause().getMessage())));
+      }
+    }
 
-              if (IGNORED_EVENTS.contains(event.getEventType())) {
-                continue;
-              }
+    return errors;
+  }
 
-              if (!wasRootIdAttributeAdded && event.isStartElement()) {
-                event = addIdAttributeToEntityRoot(event.asStartElement(), id);
-                wasRootIdAttributeAdded = true;
-              }
+  private String render(String id, String xml, boolean indent) throws InvalidEntityException {
+    StringWriter buffer = new StringWriter(xml.length() + id.length() + 8);
+    try {
+      XMLStreamWriter2 fragmentWriter =
+          (XMLStreamWriter2) fragmentOutputFactory.createXMLStreamWriter(buffer);
+      if (indent) {
+        // entities are spliced in as children of the root element
+        fragmentWriter = new IndentingStreamWriter(fragmentWriter, 1);
+      }
+      copy(id, xml, fragmentWriter);
+      fragmentWriter.flush();
+      fragmentWriter.close();
+    } catch (XMLStreamException e) {
+      throw new InvalidEntityException(e);
+    }
+    return buffer.toString();
+  }
 
-              eventQueue.addLast(event);
-            }
+  // Reads through the content without retaining it. Text is accessed so that it is fully parsed.
+  private void validate(String xml) throws InvalidEntityException {
+    try {
+      XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(xml));
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.CHARACTERS) {
+            reader.getTextLength();
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new InvalidEntityException(e);
+    }
+  }
 
-            // only writes events once all content for this entity is processed without exceptions
-            for (XMLEvent e : eventQueue) {
-              writer.add(e);
-            }
+  /**
+   * Copies the entity content to the writer, replacing any id attribute of its root element.
+   * Parsing errors are raised as an {@link InvalidEntityException}, while errors from the writer
+   * are rethrown as-is.
+   */
+  private void copy(String id, String xml, XMLStreamWriter2 writer)
+      throws XMLStreamException, InvalidEntityException {
+    XMLStreamReader reader;
+    try {
+      reader = inputFactory.createXMLStreamReader(new StringReader(xml));
+    } catch (XMLStreamException e) {
+      throw new InvalidEntityException(e);
+    }
 
-          } catch (XMLStreamException e) {
-            errors.add(
-                new TransformationError(
-                    String.format("custom entity [%s]", id),
-                    new TransformerException(e.getMessage())));
+    try {
+      boolean wasRootIdAttributeAdded = false;
+      while (true) {
+        int event;
+        try {
+          if (!reader.hasNext()) {
+            break;
           }
-        });
-
-    return errors;
+          event = reader.next();
+        } catch (XMLStreamException e) {
+          throw new InvalidEntityException(e);
+        }
+
+        switch (event) {
+          case XMLStreamConstants.START_ELEMENT -> {
+            writeStartElement(reader, writer, wasRootIdAttributeAdded ? null : id);
+            wasRootIdAttributeAdded = true;
+          }
+          case XMLStreamConstants.END_ELEMENT -> writer.writeEndElement();
+          case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE ->
+              writer.writeCharacters(
+                  reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+          case XMLStreamConstants.CDATA -> writer.writeCData(reader.getText());
+          case XMLStreamConstants.COMMENT -> writer.writeComment(reader.getText());
+          case XMLStreamConstants.PROCESSING_INSTRUCTION ->
+              writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+          case XMLStreamConstants.ENTITY_REFERENCE -> writer.writeEntityRef(reader.getLocalName());
+          default -> {
+            // document start and end events are excluded from output
+          }
+        }
+      }
+    } finally {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        // nothing left to read
+      }
+    }
   }
 
-  private XMLEvent addIdAttributeToEntityRoot(StartElement root, String entityId) {
-    List<Attribute> updatedAttrs = new ArrayList<>();
-    updatedAttrs.add(eventFactory.createAttribute(ID, entityId));
+  private static void writeStartElement(
+      XMLStreamReader reader, XMLStreamWriter2 writer, String entityId) throws XMLStreamException {
+    String prefix = reader.getPrefix();
+    String namespace = reader.getNamespaceURI();
+    writer.writeStartElement(
+        prefix == null ? "" : prefix, reader.getLocalName(), namespace == null ? "" : namespace);
+
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      String nsPrefix = reader.getNamespacePrefix(i);
+      if (nsPrefix == null || nsPrefix.isEmpty()) {
+        writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+      } else {
+        writer.writeNamespace(nsPrefix, reader.getNamespaceURI(i));
+      }
+    }
 
-    Iterator<Attribute> attrs = root.getAttributes();
-    while (attrs.hasNext()) {
-      var attr = attrs.next();
-      if (!ID.equals(attr.getName().getLocalPart())) {
-        updatedAttrs.add(attr);
+    if (entityId != null) {
+      writer.writeAttribute(ID, entityId);
+    }
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String attrPrefix = reader.getAttributePrefix(i);
+      String localName = reader.getAttributeLocalName(i);
+      if (attrPrefix == null || attrPrefix.isEmpty()) {
+        if (entityId == null || !ID.equals(localName)) {
+          writer.writeAttribute(localName, reader.getAttributeValue(i));
+        }
+      } else {
+        writer.writeAttribute(
+            attrPrefix, reader.getAttributeNamespace(i), localName, reader.getAttributeValue(i));
       }
     }
-    return eventFactory.createStartElement(
-        root.getName(), updatedAttrs.iterator(), root.getNamespaces());
+  }
+
+  /** Raised when the content of an entity is not well-formed. */
+  private static final class InvalidEntityException extends Exception {
+    private InvalidEntityException(XMLStreamException cause) {
+      super(cause);
+    }
   }
 }
@@ -0,0 +1,81 @@
+package org.codice.keip.flow.xml;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.validation.TypeInfoProvider;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX content handler that builds a DOM tree of the elements, attributes and text of a document,
+ * so that a document validated by a {@link javax.xml.validation.ValidatorHandler} can be loaded
+ * into a DOM tree in the same pass.
+ *
+ * <p>The tree matches the one built by a namespace-aware {@link
+ * javax.xml.parsers.DocumentBuilder}: namespace declarations are kept as attributes, and
+ * attributes defaulted by the validation schema are not added.
+ */
+final class DomBuildingHandler extends DefaultHandler {
+
+  private final Document document;
+  private final TypeInfoProvider typeInfoProvider;
+
+  private final List<String[]> pendingNamespaceDecls = new ArrayList<>();
+  private Node current;
+
+  /**
+   * @param document an empty document, to add the parsed elements to
+   * @param typeInfoProvider used to filter out schema-defaulted attributes. Can be null if the
+   *     document is not validated.
+   */
+  DomBuildingHandler(Document document, TypeInfoProvider typeInfoProvider) {
+    this.document = document;
+    this.typeInfoProvider = typeInfoProvider;
+    this.current = document;
+  }
+
+  @Override
+  public void startPrefixMapping(String prefix, String uri) {
+    pendingNamespaceDecls.add(new String[] {prefix, uri});
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) {
+    Element element = document.createElementNS(uri.isEmpty() ? null : uri, qName);
+    for (String[] decl : pendingNamespaceDecls) {
+      String name = decl[0].isEmpty() ? XMLNS_ATTRIBUTE : XMLNS_ATTRIBUTE + ":" + decl[0];
+      element.setAttributeNS(XMLNS_ATTRIBUTE_NS_URI, name, decl[1]);
+    }
+    pendingNamespaceDecls.clear();
+
+    for (int i = 0; i < attributes.getLength(); i++) {
+      if (typeInfoProvider == null || typeInfoProvider.isSpecified(i)) {
+        String attributeUri = attributes.getURI(i);
+        element.setAttributeNS(
+            attributeUri.isEmpty() ? null : attributeUri,
+            attributes.getQName(i),
+            attributes.getValue(i));
+      }
+    }
+    current.appendChild(element);
+    current = element;
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) {
+    current = current.getParentNode();
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) {
+    if (current != document) {
+      current.appendChild(document.createTextNode(new String(ch, start, length)));
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package org.codice.keip.flow.xml;
+
+/**
+ * A snapshot of the usage statistics of one of the caches held by a {@link GraphXmlSerializer},
+ * either the per-node XML fragment cache or the custom entity cache. Counters are cumulative since
+ * the cache was created.
+ *
+ * @param maxSizeBytes the approximate maximum size of the cached fragments
+ * @param sizeBytes the approximate size of the currently cached fragments
+ * @param entries the number of currently cached fragments
+ * @param hits the number of nodes or entities written from a cached fragment
+ * @param misses the number of nodes that had to be transformed, or entities that had to be
+ *     validated
+ * @param evictions the number of fragments evicted to stay within the size limit
+ */
+public record FragmentCacheStats(
+    long maxSizeBytes, long sizeBytes, long entries, long hits, long misses, long evictions) {}
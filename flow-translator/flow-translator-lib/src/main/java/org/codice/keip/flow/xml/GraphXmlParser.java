@@ -2,38 +2,64 @@ package org.codice.keip.flow.xml;
 
 import static org.codice.keip.flow.xml.spring.AttributeNames.ID;
 
-import com.ctc.wstx.stax.WstxEventFactory;
 import com.ctc.wstx.stax.WstxOutputFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.CharacterCodingException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.stream.XMLEventWriter;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.TransformerException;
 import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import org.codehaus.stax2.XMLStreamWriter2;
 import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.TranslationObserver;
+import org.codice.keip.flow.TranslationObserver.Phase;
+import org.codice.keip.flow.graph.CompactGraph;
+import org.codice.keip.flow.graph.EipGraphBuilder;
+import org.codice.keip.flow.graph.GuavaGraph;
+import org.codice.keip.flow.model.EdgeProps;
 import org.codice.keip.flow.model.EipGraph;
 import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.xml.StreamingElementHandler.ElementHandlingException;
 import org.w3c.dom.Attr;
+import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 /**
  * Parses an XML document into an intermediate {@link EipGraph} representation. This base class
@@ -46,23 +72,136 @@ public abstract class GraphXmlParser {
   // TODO: Consider deprecating the label field on the EipNode (use id only)
 
   private final XMLOutputFactory outputFactory = WstxOutputFactory.newFactory();
-  private final XmlElementWriter elementWriter =
-      new XmlElementWriter(WstxEventFactory.newFactory());
+  private final XmlElementWriter elementWriter = new XmlElementWriter();
   private final Map<String, String> xmlToEipNamespaceMap;
 
   private final ComponentRegistry registry;
 
-  private Schema validationSchema;
+  private static final ParsingErrorHandler ERROR_HANDLER = new ParsingErrorHandler();
+
+  private static final XMLInputFactory SCAN_INPUT_FACTORY =
+      GraphXmlSerializer.initializeXMLInputFactory();
+
+  private static final DOMImplementation DOM_IMPLEMENTATION = newDomImplementation();
+
+  // Upper bound on the number of bytes read ahead to find the namespaces of the root element
+  private static final int ROOT_PEEK_LIMIT = 64 * 1024;
+
+  // Number of bytes kept to restart a parse when a namespace is declared below the root element
+  private static final int NAMESPACE_REPLAY_LIMIT = 1024 * 1024;
+
+  private volatile Schema validationSchema;
+
+  private volatile ValidationSchemaProvider validationSchemaProvider;
+
+  private volatile ParseMode parseMode = ParseMode.DOM;
+
+  private volatile int parserPoolSize = Runtime.getRuntime().availableProcessors();
+
+  private volatile int compactGraphThreshold = EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD;
+
+  private volatile TranslationObserver observer = TranslationObserver.NOOP;
+
+  private volatile NodeIdStrategy nodeIdStrategy = NodeIdStrategy.RANDOM;
+
+  private volatile XmlParserPool<DocumentBuilder> documentBuilderPool;
+
+  private volatile XmlParserPool<SAXParser> saxParserPool;
 
   public GraphXmlParser(Collection<NamespaceSpec> namespaceSpecs, ComponentRegistry registry) {
     this.xmlToEipNamespaceMap =
         namespaceSpecs.stream()
             .collect(Collectors.toMap(NamespaceSpec::xmlNamespace, NamespaceSpec::eipNamespace));
     this.registry = registry;
+    initParserPools();
   }
 
+  /**
+   * Sets a single {@link Schema} used to validate every input document. Replaces any previously
+   * configured {@link ValidationSchemaProvider}.
+   */
   public void setValidationSchema(Schema validationSchema) {
     this.validationSchema = validationSchema;
+    this.validationSchemaProvider = null;
+    initParserPools();
+  }
+
+  /**
+   * Sets a provider that selects the validation {@link Schema} for each document, based on the
+   * namespaces used in the document. Replaces any previously configured validation schema.
+   *
+   * <p>The schema is chosen from the namespaces of the root element, and applied while the
+   * document is parsed. Namespaces may also be declared on other elements: the parse is then
+   * restarted with a schema chosen from a scan of the whole document, which is read into memory. A
+   * document can only be restarted if the declaration is within its first megabyte, otherwise it
+   * fails to parse.
+   */
+  public void setValidationSchemaProvider(ValidationSchemaProvider validationSchemaProvider) {
+    this.validationSchemaProvider = validationSchemaProvider;
+    this.validationSchema = null;
+    initParserPools();
+  }
+
+  /**
+   * Sets the maximum number of pre-configured parsers kept for reuse across {@link #fromXml} calls.
+   * Once all parsers are in use, additional callers wait for one to be released. Defaults to the
+   * number of available processors.
+   */
+  public void setParserPoolSize(int parserPoolSize) {
+    this.parserPoolSize = parserPoolSize;
+    initParserPools();
+  }
+
+  /**
+   * Returns usage statistics for each parser pool. Which pool a parse uses depends on the {@link
+   * ParseMode} and on how the document is validated (see {@link ParserPoolStats.Pool}).
+   */
+  public Map<ParserPoolStats.Pool, ParserPoolStats> getParserPoolStats() {
+    Map<ParserPoolStats.Pool, ParserPoolStats> stats = new EnumMap<>(ParserPoolStats.Pool.class);
+    stats.put(ParserPoolStats.Pool.DOCUMENT_BUILDER, documentBuilderPool.stats());
+    stats.put(ParserPoolStats.Pool.SAX_PARSER, saxParserPool.stats());
+    return stats;
+  }
+
+  /**
+   * Sets the node count at or above which parsed flows are held in a {@link CompactGraph} instead
+   * of a {@link GuavaGraph}. Defaults to {@link EipGraphBuilder#DEFAULT_COMPACT_GRAPH_THRESHOLD}.
+   */
+  public void setCompactGraphThreshold(int compactGraphThreshold) {
+    this.compactGraphThreshold = compactGraphThreshold;
+  }
+
+  protected int getCompactGraphThreshold() {
+    return compactGraphThreshold;
+  }
+
+  /**
+   * Selects how input documents are read. Defaults to {@link ParseMode#DOM}.
+   *
+   * @see ParseMode
+   */
+  public void setParseMode(ParseMode parseMode) {
+    this.parseMode = parseMode;
+  }
+
+  /**
+   * Sets the observer notified of the {@link Phase#SELECT_SCHEMA}, {@link Phase#PARSE}, {@link
+   * Phase#TRANSFORM_ELEMENTS} and {@link Phase#BUILD_EDGES} phases of each parse. Time spent
+   * waiting for a pooled parser is not included in any phase. Defaults to {@link
+   * TranslationObserver#NOOP}.
+   */
+  public void setObserver(TranslationObserver observer) {
+    this.observer = Objects.requireNonNull(observer);
+  }
+
+  /**
+   * Sets how ids are generated for top-level elements that do not have an id attribute. The
+   * generated id is added to the element's attributes before it is passed to the {@link
+   * XmlElementTransformer}. Defaults to {@link NodeIdStrategy#RANDOM}, use {@link
+   * NodeIdStrategy#CONTENT_HASH} to produce the same flow every time a document is parsed.
+   */
+  public void setNodeIdStrategy(NodeIdStrategy nodeIdStrategy) {
+    this.nodeIdStrategy = Objects.requireNonNull(nodeIdStrategy);
   }
 
   protected abstract boolean isCustomEntity(QName name);
@@ -71,13 +210,42 @@ public abstract class GraphXmlParser {
 
   protected abstract GraphEdgeBuilder graphEdgeBuilder();
 
-  public record XmlParseResult(EipGraph graph, Map<String, String> customEntities) {}
+  /**
+   * @param graph the parsed graph
+   * @param customEntities the custom entities, by id
+   * @param generatedIds the ids that were not read from the document: the ids generated for
+   *     elements without an id attribute (see {@link NodeIdStrategy}), and the ids of edges that
+   *     are not named after an element of the document. These may change each time a document is
+   *     parsed.
+   */
+  public record XmlParseResult(
+      EipGraph graph, Map<String, String> customEntities, Set<String> generatedIds) {
+
+    public XmlParseResult(EipGraph graph, Map<String, String> customEntities) {
+      this(graph, customEntities, Set.of());
+    }
+  }
+
+  /** Strategies for reading (and optionally validating) the input XML document. */
+  public enum ParseMode {
+    /** The full document is loaded into a DOM tree before being transformed. */
+    DOM,
+    /**
+     * The document is validated and transformed in a single SAX pass. A {@link ValidatorHandler}
+     * created from the validation {@link Schema} is chained in front of the element handler, so
+     * each top-level element is transformed as soon as it is closed, without building a DOM.
+     * Memory usage grows with element depth instead of document size.
+     */
+    STREAMING
+  }
 
   /**
    * Parses an XML into an {@link EipGraph} instance.
    *
    * @param xml input xml
-   * @return an {@link XmlParseResult} containing the parsed graph and any custom entities
+   * @return an {@link XmlParseResult} containing the parsed graph and any custom entities. The
+   *     XML of a custom entity is copied from the input (without its id attribute), unless the
+   *     entity uses namespace prefixes.
    * @throws TransformerException thrown if a critical error is encountered while parsing
    *     <h4>DOM vs StAX API for parsing</h4>
    *     <p>We considered using the Stax API (streaming) to parse the input XML without loading the
@@ -91,28 +259,29 @@ public abstract class GraphXmlParser {
    *     use DOM for parsing as well, as the benefits of streaming are largely negated at that
    *     point.
    *     <p>While the DOM model is generally more memory-intensive and may incur a performance cost,
-   *     we expect the provided EIP XML documents to be relatively small (on the order of
-   *     kilobytes). Therefore, the impact is likely negligible. If future monitoring or
-   *     benchmarking indicates that DOM parsing is a bottleneck, a StAX-based approach could be
-   *     revisited, either by introducing an XSD preprocessing step (as mentioned above) or by
-   *     disabling validation entirely.
+   *     we expect most EIP XML documents to be relatively small (on the order of kilobytes). For
+   *     larger documents, the {@link ParseMode#STREAMING} mode pairs a SAX parser with a {@link
+   *     ValidatorHandler}, which keeps the standard {@link Schema} validation without loading the
+   *     full document into memory.
    */
   public final XmlParseResult fromXml(InputStream xml) throws TransformerException {
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setNamespaceAware(true);
-    if (validationSchema != null) {
-      factory.setSchema(validationSchema);
-    }
-
-    final List<EipNode> nodes;
-    final Map<String, String> customEntities = new LinkedHashMap<>();
+    final TranslationObserver observer = this.observer;
+    final ParseMode parseMode = this.parseMode;
+    final ParsedElements parsed;
 
     try {
-      DocumentBuilder builder = factory.newDocumentBuilder();
-      builder.setErrorHandler(new ParsingErrorHandler());
-      Document doc = builder.parse(xml);
-      nodes = parseTopLevelElements(doc.getDocumentElement(), customEntities);
-    } catch (SAXException e) {
+      ValidationSchemaProvider schemaProvider = this.validationSchemaProvider;
+      if (schemaProvider != null) {
+        parsed = parseWithSchemaProvider(xml, schemaProvider, parseMode, observer);
+      } else {
+        parsed = parse(xml, this.validationSchema, false, null, parseMode, observer);
+      }
+    } catch (ElementHandlingException e) {
+      throw e.toTransformerException();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TransformerException("Interrupted while waiting for an xml parser", e);
+    } catch (SAXException | CharacterCodingException e) {
       throw new IllegalArgumentException("Failed to validate input xml", e);
     } catch (ParserConfigurationException | IOException e) {
       throw new TransformerException("Failed to parse input xml", e);
@@ -120,36 +289,372 @@ public abstract class GraphXmlParser {
       throw new TransformerException(e);
     }
 
-    EipGraph graph = graphEdgeBuilder().toGraph(nodes);
-    return new XmlParseResult(graph, customEntities);
+    long start = System.nanoTime();
+    EipGraph graph = graphEdgeBuilder().toGraph(parsed.nodes());
+    observer.phaseCompleted(Phase.BUILD_EDGES, System.nanoTime() - start);
+    return new XmlParseResult(
+        graph,
+        parsed.customEntities(),
+        generatedIds(graph, parsed.nodes(), parsed.ids().generated));
+  }
+
+  // The schema is first chosen for the namespaces of the root element, which is all that is read
+  // ahead of the parse. If the document declares another namespace below its root element, the
+  // parse is restarted with a schema for every namespace found in a scan of the whole document.
+  // Only the first NAMESPACE_REPLAY_LIMIT bytes are kept to restart the parse.
+  private ParsedElements parseWithSchemaProvider(
+      InputStream xml,
+      ValidationSchemaProvider schemaProvider,
+      ParseMode parseMode,
+      TranslationObserver observer)
+      throws ParserConfigurationException,
+          SAXException,
+          IOException,
+          XMLStreamException,
+          TransformerException,
+          InterruptedException {
+    long start = System.nanoTime();
+    BufferedInputStream buffered = new BufferedInputStream(xml);
+    InputStream remaining = buffered;
+    Set<String> rootNamespaces = peekRootNamespaces(buffered);
+    if (rootNamespaces != null) {
+      Schema schema = schemaProvider.getSchema(rootNamespaces);
+      observer.phaseCompleted(Phase.SELECT_SCHEMA, System.nanoTime() - start);
+      ReplayableInputStream input = new ReplayableInputStream(buffered, NAMESPACE_REPLAY_LIMIT);
+      try {
+        return parse(input, schema, true, rootNamespaces, parseMode, observer);
+      } catch (UndeclaredNamespaceException e) {
+        remaining = input.replay();
+        if (remaining == null) {
+          throw new SAXException(
+              String.format(
+                  "Namespace %s is declared below the root element, past the first %d bytes of"
+                      + " the document. Declare it on the root element instead.",
+                  e.namespace, NAMESPACE_REPLAY_LIMIT));
+        }
+        start = System.nanoTime();
+      }
+    }
+
+    byte[] document = remaining.readAllBytes();
+    Schema schema = schemaProvider.getSchema(scanNamespaces(document));
+    observer.phaseCompleted(Phase.SELECT_SCHEMA, System.nanoTime() - start);
+    return parse(new ByteArrayInputStream(document), schema, true, null, parseMode, observer);
   }
 
-  // Walks the through each top-level node, transforms into an EipNode, and adds it to the returned
+  /**
+   * @param schema the schema to validate against, or null to skip validation
+   * @param perDocumentSchema false if the schema is the fixed validation schema, which the pooled
+   *     document builders are pre-configured with
+   * @param declaredNamespaces if not null, the parse fails with an {@link
+   *     UndeclaredNamespaceException} as soon as the document declares another namespace
+   */
+  private ParsedElements parse(
+      InputStream xml,
+      Schema schema,
+      boolean perDocumentSchema,
+      Set<String> declaredNamespaces,
+      ParseMode parseMode,
+      TranslationObserver observer)
+      throws ParserConfigurationException,
+          SAXException,
+          IOException,
+          XMLStreamException,
+          TransformerException,
+          InterruptedException {
+    ParsedElements parsed =
+        new ParsedElements(
+            new ArrayList<>(), new LinkedHashMap<>(), new NodeIdAssigner(this.nodeIdStrategy));
+
+    // custom entities are copied from the source text, unless the encoding is not supported. The
+    // DOM parser only reports elements once the document is read, so their text is captured as
+    // they are read instead.
+    XmlSourceReader source =
+        parseMode == ParseMode.STREAMING
+            ? XmlSourceReader.open(xml, ID)
+            : XmlSourceReader.capture(xml, ID, this::isCustomEntity);
+    InputSource input = source != null ? new InputSource(source) : new InputSource(xml);
+    if (parseMode == ParseMode.STREAMING) {
+      parseStreaming(input, source, schema, declaredNamespaces, parsed, observer);
+    } else if (perDocumentSchema) {
+      parseDomWithValidator(input, source, schema, declaredNamespaces, parsed, observer);
+    } else {
+      parseDom(input, source, parsed, observer);
+    }
+    return parsed;
+  }
+
+  // Edges are either named after an element (e.g. a channel collapsed into an edge), or given an
+  // id derived from their endpoints.
+  private static Set<String> generatedIds(
+      EipGraph graph, List<EipNode> nodes, Set<String> generatedNodeIds) {
+    Set<String> elementIds = HashSet.newHashSet(nodes.size());
+    for (EipNode node : nodes) {
+      elementIds.add(node.id());
+    }
+
+    Set<String> generated = new HashSet<>(generatedNodeIds);
+    graph
+        .traverse()
+        .forEach(
+            node -> {
+              for (EipNode successor : graph.successors(node)) {
+                String edgeId = graph.getEdgeProps(node, successor).map(EdgeProps::id).orElse(null);
+                if (edgeId != null
+                    && (!elementIds.contains(edgeId) || generatedNodeIds.contains(edgeId))) {
+                  generated.add(edgeId);
+                }
+              }
+            });
+    return Collections.unmodifiableSet(generated);
+  }
+
+  // The pooled builders are pre-configured with the fixed validation schema (if any)
+  private void parseDom(
+      InputSource xml,
+      XmlSourceReader source,
+      ParsedElements parsed,
+      TranslationObserver observer)
+      throws ParserConfigurationException,
+          SAXException,
+          IOException,
+          XMLStreamException,
+          TransformerException,
+          InterruptedException {
+    XmlParserPool<DocumentBuilder> pool = this.documentBuilderPool;
+    DocumentBuilder builder = pool.borrow();
+    long start = System.nanoTime();
+    final Document doc;
+    try {
+      doc = builder.parse(xml);
+    } finally {
+      pool.release(builder);
+    }
+    observer.phaseCompleted(Phase.PARSE, System.nanoTime() - start);
+
+    transformDocument(doc, source, parsed, observer);
+  }
+
+  // A schema chosen for the document can not be set on the pooled builders, so the tree is instead
+  // built from the events of a SAX parser, validated by the schema in the same pass.
+  private void parseDomWithValidator(
+      InputSource xml,
+      XmlSourceReader source,
+      Schema schema,
+      Set<String> declaredNamespaces,
+      ParsedElements parsed,
+      TranslationObserver observer)
+      throws ParserConfigurationException,
+          SAXException,
+          IOException,
+          XMLStreamException,
+          TransformerException,
+          InterruptedException {
+    XmlParserPool<SAXParser> pool = this.saxParserPool;
+    SAXParser parser = pool.borrow();
+    long start = System.nanoTime();
+    Document doc = DOM_IMPLEMENTATION.createDocument(null, null, null);
+    try {
+      ValidatorHandler validatorHandler = newValidatorHandler(schema);
+      DomBuildingHandler domHandler =
+          new DomBuildingHandler(
+              doc, validatorHandler == null ? null : validatorHandler.getTypeInfoProvider());
+      parse(parser.getXMLReader(), xml, validatorHandler, domHandler, declaredNamespaces);
+    } finally {
+      pool.release(parser);
+    }
+    observer.phaseCompleted(Phase.PARSE, System.nanoTime() - start);
+
+    transformDocument(doc, source, parsed, observer);
+  }
+
+  private void transformDocument(
+      Document doc, XmlSourceReader source, ParsedElements parsed, TranslationObserver observer)
+      throws XMLStreamException, TransformerException {
+    long start = System.nanoTime();
+    parseTopLevelElements(doc.getDocumentElement(), source, parsed);
+    observer.phaseCompleted(Phase.TRANSFORM_ELEMENTS, System.nanoTime() - start);
+  }
+
+  // Validation and element handling happen in the same pass: the reader feeds the validator,
+  // which forwards (validated) events to the element handler.
+  private void parseStreaming(
+      InputSource xml,
+      XmlSourceReader source,
+      Schema schema,
+      Set<String> declaredNamespaces,
+      ParsedElements parsed,
+      TranslationObserver observer)
+      throws ParserConfigurationException, SAXException, IOException, InterruptedException {
+    XmlParserPool<SAXParser> pool = this.saxParserPool;
+    SAXParser parser = pool.borrow();
+    long start = System.nanoTime();
+    try {
+      ValidatorHandler validatorHandler = newValidatorHandler(schema);
+      StreamingElementHandler elementHandler =
+          new StreamingElementHandler(
+              element -> handleXmlElement(element, source, parsed),
+              this::getEipPrefix,
+              validatorHandler == null ? null : validatorHandler.getTypeInfoProvider());
+      parse(parser.getXMLReader(), xml, validatorHandler, elementHandler, declaredNamespaces);
+    } finally {
+      pool.release(parser);
+    }
+    observer.phaseCompleted(Phase.PARSE, System.nanoTime() - start);
+  }
+
+  private static ValidatorHandler newValidatorHandler(Schema schema) {
+    if (schema == null) {
+      return null;
+    }
+    ValidatorHandler validatorHandler = schema.newValidatorHandler();
+    validatorHandler.setErrorHandler(ERROR_HANDLER);
+    return validatorHandler;
+  }
+
+  // The content handler receives the events forwarded by the validator (if any). Namespace
+  // declarations are checked before they reach the validator.
+  private static void parse(
+      XMLReader reader,
+      InputSource xml,
+      ValidatorHandler validatorHandler,
+      ContentHandler contentHandler,
+      Set<String> declaredNamespaces)
+      throws SAXException, IOException {
+    reader.setErrorHandler(ERROR_HANDLER);
+
+    ContentHandler handler = contentHandler;
+    if (validatorHandler != null) {
+      validatorHandler.setContentHandler(handler);
+      handler = validatorHandler;
+    }
+    if (declaredNamespaces != null) {
+      handler = new NamespaceDeclarationGuard(declaredNamespaces, handler);
+    }
+    reader.setContentHandler(handler);
+    reader.parse(xml);
+  }
+
+  // Returns the namespace of the root element along with the namespaces it declares, or null if
+  // its start tag can not be read within the first ROOT_PEEK_LIMIT bytes. The stream is reset to
+  // where it started.
+  private static Set<String> peekRootNamespaces(BufferedInputStream xml) throws IOException {
+    xml.mark(ROOT_PEEK_LIMIT);
+    byte[] head = xml.readNBytes(ROOT_PEEK_LIMIT);
+    xml.reset();
+
+    try {
+      XMLStreamReader reader =
+          SCAN_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(head));
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+            Set<String> namespaces = new HashSet<>();
+            namespaces.add(reader.getNamespaceURI());
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+              namespaces.add(reader.getNamespaceURI(i));
+            }
+            namespaces.removeIf(ns -> ns == null || ns.isEmpty());
+            return namespaces;
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      // left for the full scan, and then the parser, to report
+    }
+    return null;
+  }
+
+  // Collects the namespaces of every element, along with every namespace declared in the document.
+  // Malformed input is left for the parser to report.
+  private static Set<String> scanNamespaces(byte[] xml) {
+    Set<String> namespaces = new HashSet<>();
+    try {
+      XMLStreamReader reader =
+          SCAN_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+            namespaces.add(reader.getNamespaceURI());
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+              namespaces.add(reader.getNamespaceURI(i));
+            }
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      namespaces.clear();
+    }
+    namespaces.removeIf(ns -> ns == null || ns.isEmpty());
+    return namespaces;
+  }
+
+  private static DOMImplementation newDomImplementation() {
+    try {
+      return DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Parsers are pre-configured with the current validation schema, so the pools are rebuilt
+  // whenever the parser configuration changes.
+  private void initParserPools() {
+    // the schema is applied separately when it is chosen per document
+    Schema schema = this.validationSchema;
+    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+    dbf.setNamespaceAware(true);
+    if (schema != null) {
+      dbf.setSchema(schema);
+    }
+    this.documentBuilderPool =
+        new XmlParserPool<>(
+            parserPoolSize,
+            () -> {
+              DocumentBuilder builder = dbf.newDocumentBuilder();
+              builder.setErrorHandler(ERROR_HANDLER);
+              return builder;
+            },
+            builder -> {
+              builder.reset();
+              builder.setErrorHandler(ERROR_HANDLER);
+            });
+
+    SAXParserFactory spf = SAXParserFactory.newInstance();
+    spf.setNamespaceAware(true);
+    this.saxParserPool = new XmlParserPool<>(parserPoolSize, spf::newSAXParser, SAXParser::reset);
+  }
+
+  // Walks the through each top-level node, transforms into an EipNode, and adds it to the
   // 'nodes' list.
-  private List<EipNode> parseTopLevelElements(Element root, Map<String, String> customEntities)
+  private void parseTopLevelElements(Element root, XmlSourceReader source, ParsedElements parsed)
       throws XMLStreamException, TransformerException {
-    List<EipNode> nodes = new ArrayList<>();
     Node child = root.getFirstChild();
     while (child != null) {
-      handleXmlNode(child, nodes, customEntities);
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        handleXmlElement(parseElement((Element) child), source, parsed);
+      }
       child = child.getNextSibling();
     }
-    return nodes;
   }
 
-  // Parses the subtree for the provided node into an XmlElement. If the element is a custom
-  // entity, save it to the 'customEntities' map, otherwise transform to an EipNode and add to
-  // 'nodes' list.
-  private void handleXmlNode(Node node, List<EipNode> nodes, Map<String, String> customEntities)
+  // If the element is a custom entity, save it to the 'customEntities' map, otherwise transform to
+  // an EipNode and add to 'nodes' list. The source can be null if it is not recorded.
+  private void handleXmlElement(XmlElement element, XmlSourceReader source, ParsedElements parsed)
       throws TransformerException, XMLStreamException {
-    if (node.getNodeType() == Node.ELEMENT_NODE) {
-      XmlElement element = parseElement((Element) node);
-      if (isCustomEntity(element.qname())) {
-        CustomEntity entity = toCustomEntity(element);
-        customEntities.put(entity.id(), entity.xml());
-      } else {
-        nodes.add(getXmlElementTransformer().apply(element, registry));
+    if (isCustomEntity(element.qname())) {
+      CustomEntity entity = toCustomEntity(element, source);
+      parsed.customEntities().put(entity.id(), entity.xml());
+    } else {
+      if (source != null) {
+        source.skipElement(element.localName());
       }
+      parsed.ids().assignIfMissing(element);
+      parsed.nodes().add(getXmlElementTransformer().apply(element, registry));
     }
   }
 
@@ -167,7 +672,11 @@ public abstract class GraphXmlParser {
   }
 
   private XmlElement createXmlElement(Element node) {
-    QName name = new QName(node.getNamespaceURI(), node.getLocalName(), getEipPrefix(node));
+    QName name =
+        new QName(
+            node.getNamespaceURI(),
+            node.getLocalName(),
+            getEipPrefix(node.getNamespaceURI(), node.getLocalName(), node.getPrefix()));
     XmlElement element = new XmlElement(name, new LinkedHashMap<>(), new ArrayList<>());
     NamedNodeMap attrs = node.getAttributes();
     for (int i = 0; i < attrs.getLength(); i++) {
@@ -179,32 +688,34 @@ public abstract class GraphXmlParser {
     return element;
   }
 
-  private String getEipPrefix(Element e) {
-    if (isCustomEntity(toQName(e))) {
+  private String getEipPrefix(String namespaceUri, String localName, String xmlPrefix) {
+    if (isCustomEntity(new QName(namespaceUri, localName, xmlPrefix == null ? "" : xmlPrefix))) {
       return "";
     }
 
-    String prefix = xmlToEipNamespaceMap.get(e.getNamespaceURI());
+    String prefix = xmlToEipNamespaceMap.get(namespaceUri);
     if (prefix == null) {
       throw new IllegalArgumentException(
-          String.format("Unregistered namespace: %s", e.getNamespaceURI()));
+          String.format("Unregistered namespace: %s", namespaceUri));
     }
     return prefix;
   }
 
-  private QName toQName(Element e) {
-    String prefix = e.getPrefix() == null ? "" : e.getPrefix();
-    return new QName(e.getNamespaceURI(), e.getLocalName(), prefix);
-  }
-
-  private CustomEntity toCustomEntity(XmlElement element) throws XMLStreamException {
+  // The entity's source text is copied where possible, which preserves its text content, comments
+  // and formatting. Otherwise, it is rebuilt from the parsed element.
+  private CustomEntity toCustomEntity(XmlElement element, XmlSourceReader source)
+      throws XMLStreamException {
     String id = removeId(element);
+    String xml = source == null ? null : source.copyElement(element.localName());
+    if (xml != null) {
+      return new CustomEntity(id, xml);
+    }
 
     Writer sw = new StringWriter();
-    XMLEventWriter eventWriter = outputFactory.createXMLEventWriter(sw);
-    elementWriter.write(element, eventWriter);
-    eventWriter.flush();
-    eventWriter.close();
+    XMLStreamWriter2 streamWriter = (XMLStreamWriter2) outputFactory.createXMLStreamWriter(sw);
+    elementWriter.write(element, streamWriter);
+    streamWriter.flush();
+    streamWriter.close();
 
     return new CustomEntity(id, sw.toString());
   }
@@ -221,6 +732,60 @@ public abstract class GraphXmlParser {
 
   private record CustomEntity(String id, String xml) {}
 
+  // The elements read from a single parse of a document
+  private record ParsedElements(
+      List<EipNode> nodes, Map<String, String> customEntities, NodeIdAssigner ids) {}
+
+  // Generates the missing ids of a single document's elements. Elements are located by their
+  // position among the preceding top-level elements of the same type.
+  private static final class NodeIdAssigner {
+    private final NodeIdStrategy strategy;
+    private final Map<String, Integer> typeCounts = new HashMap<>();
+    private final Set<String> generated = new HashSet<>();
+
+    private NodeIdAssigner(NodeIdStrategy strategy) {
+      this.strategy = strategy;
+    }
+
+    private void assignIfMissing(XmlElement element) {
+      String type = element.prefix() + ":" + element.localName();
+      int position = typeCounts.merge(type, 1, Integer::sum);
+      if (!element.attributes().containsKey(ID)) {
+        String path = "/" + type + "[" + position + "]";
+        String id = strategy.generateId(path, element);
+        element.attributes().put(ID, id);
+        generated.add(id);
+      }
+    }
+  }
+
+  // Rejects the declaration of namespaces that the validation schema was not chosen for
+  private static final class NamespaceDeclarationGuard extends XMLFilterImpl {
+    private final Set<String> declaredNamespaces;
+
+    private NamespaceDeclarationGuard(Set<String> declaredNamespaces, ContentHandler next) {
+      this.declaredNamespaces = declaredNamespaces;
+      setContentHandler(next);
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+      if (!uri.isEmpty() && !declaredNamespaces.contains(uri)) {
+        throw new UndeclaredNamespaceException(uri);
+      }
+      super.startPrefixMapping(prefix, uri);
+    }
+  }
+
+  private static final class UndeclaredNamespaceException extends SAXException {
+    private final String namespace;
+
+    private UndeclaredNamespaceException(String namespace) {
+      super("Namespace not declared on the root element: " + namespace);
+      this.namespace = namespace;
+    }
+  }
+
   private static class ParsingErrorHandler implements ErrorHandler {
     @Override
     public void warning(SAXParseException exception) {}
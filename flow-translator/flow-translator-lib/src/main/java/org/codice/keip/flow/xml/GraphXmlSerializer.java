@@ -2,7 +2,7 @@ package org.codice.keip.flow.xml;
 
 import static javax.xml.XMLConstants.XML_NS_PREFIX;
 
-import com.ctc.wstx.stax.WstxEventFactory;
+import com.ctc.wstx.api.WstxOutputProperties;
 import com.ctc.wstx.stax.WstxInputFactory;
 import com.ctc.wstx.stax.WstxOutputFactory;
 import java.io.Writer;
@@ -10,27 +10,27 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventFactory;
-import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.Namespace;
-import javax.xml.stream.events.StartElement;
 import javax.xml.transform.TransformerException;
+import org.codehaus.stax2.XMLStreamWriter2;
+import org.codice.keip.flow.TranslationObserver;
+import org.codice.keip.flow.TranslationObserver.Phase;
 import org.codice.keip.flow.error.TransformationError;
 import org.codice.keip.flow.model.EipGraph;
 import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.xml.NodeFragmentRenderer.RenderedNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,10 +43,13 @@ public abstract class GraphXmlSerializer {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(GraphXmlSerializer.class);
   private static final String XSI_PREFIX = "xsi";
+  private static final String XML_VERSION = "1.0";
+  private static final String XML_ENCODING = "UTF-8";
 
-  private final XMLEventFactory eventFactory = WstxEventFactory.newFactory();
   private final XMLOutputFactory outputFactory = WstxOutputFactory.newFactory();
-  private final XmlElementWriter elementWriter = new XmlElementWriter(eventFactory);
+  private final XMLOutputFactory prettyPrintOutputFactory = initializePrettyPrintOutputFactory();
+  private final XMLOutputFactory fragmentOutputFactory = initializeFragmentOutputFactory();
+  private final XmlElementWriter elementWriter = new XmlElementWriter();
   private final Set<String> reservedPrefixes = collectReservedPrefixes();
 
   private final CustomEntityTransformer customEntityTransformer;
@@ -54,6 +57,10 @@ public abstract class GraphXmlSerializer {
   // maps an eipNamespace to a NamespaceSpec
   private final Map<String, NamespaceSpec> registeredNamespaces;
 
+  private volatile NodeFragmentCache fragmentCache;
+
+  private volatile TranslationObserver observer = TranslationObserver.NOOP;
+
   protected GraphXmlSerializer(Collection<NamespaceSpec> namespaceSpecs) {
     Collection<NamespaceSpec> filteredNamespaces = excludeReservedNamespaces(namespaceSpecs);
     this.customEntityTransformer = new CustomEntityTransformer(initializeXMLInputFactory());
@@ -91,46 +98,152 @@ public abstract class GraphXmlSerializer {
     return filtered;
   }
 
+  /**
+   * Enables caching the serialized XML of each node, so nodes that are unchanged between calls to
+   * {@link #toXml} are not transformed again. A cached fragment is reused when the node, the ids
+   * and roles of its direct predecessors and successors, and the connecting edges are all
+   * unchanged. As a result, the cache should only be enabled if the {@link NodeTransformer} does
+   * not inspect the graph beyond a node's immediate neighbours. Disabled by default.
+   *
+   * @param maxSizeBytes the approximate maximum size of all cached fragments, including the node
+   *     content and neighbours they are keyed by. A value of zero disables the cache.
+   */
+  public void setFragmentCacheSize(long maxSizeBytes) {
+    this.fragmentCache = maxSizeBytes == 0 ? null : new NodeFragmentCache(maxSizeBytes);
+  }
+
+  /**
+   * Returns usage statistics for the node fragment cache, or null if the cache is not enabled.
+   *
+   * @see #setFragmentCacheSize(long)
+   */
+  public FragmentCacheStats getFragmentCacheStats() {
+    NodeFragmentCache cache = this.fragmentCache;
+    return cache == null ? null : cache.stats();
+  }
+
+  /**
+   * Enables caching validated custom entities, keyed by their id and a hash of their content, so
+   * entities that are unchanged between calls to {@link #toXml} are not parsed and validated again.
+   * Disabled by default.
+   *
+   * @param maxSizeBytes the approximate maximum size of all cached entities. A value of zero
+   *     disables the cache.
+   */
+  public void setCustomEntityCacheSize(long maxSizeBytes) {
+    customEntityTransformer.setCache(
+        maxSizeBytes == 0 ? null : new CustomEntityCache(maxSizeBytes));
+  }
+
+  /**
+   * Returns usage statistics for the custom entity cache, or null if the cache is not enabled.
+   *
+   * @see #setCustomEntityCacheSize(long)
+   */
+  public FragmentCacheStats getCustomEntityCacheStats() {
+    CustomEntityCache cache = customEntityTransformer.getCache();
+    return cache == null ? null : cache.stats();
+  }
+
+  /**
+   * Sets the length (in characters) at or above which a custom entity is validated in a first pass
+   * and then copied to the output in a second one, rather than being rendered into an intermediate
+   * fragment. Streamed entities are parsed twice, but are never buffered. Defaults to 64K
+   * characters.
+   */
+  public void setCustomEntityStreamingThreshold(int streamingThreshold) {
+    customEntityTransformer.setStreamingThreshold(streamingThreshold);
+  }
+
+  /**
+   * Sets the observer notified of the {@link Phase#PLAN}, {@link Phase#TRANSFORM_NODES} and {@link
+   * Phase#SERIALIZE} phases of each serialization, and of each node transformation. Defaults to
+   * {@link TranslationObserver#NOOP}, in which case node transformations are not timed.
+   */
+  public void setObserver(TranslationObserver observer) {
+    this.observer = Objects.requireNonNull(observer);
+  }
+
   /**
    * Transform an {@link EipGraph} instance to an XML document
    *
    * @param graph input graph
    * @param output where the output XML will be written to
    * @param customEntities user-defined entities to be inlined in the output
+   * @param prettyPrint if true, the output is indented as it is written (four spaces per level),
+   *     and starts with an XML declaration for UTF-8 followed by a line break
    * @return An empty list for a successful transformation, otherwise a non-empty list of {@link
    *     TransformationError} is returned.
    * @throws TransformerException thrown if a critical error preventing the transformation is
    *     encountered
    */
   public final List<TransformationError> toXml(
-      EipGraph graph, Writer output, Map<String, String> customEntities)
+      EipGraph graph, Writer output, Map<String, String> customEntities, boolean prettyPrint)
       throws TransformerException {
+    TranslationObserver observer = this.observer;
+    long start = System.nanoTime();
     List<TransformationError> errors = new ArrayList<>();
     try {
-      XMLEventWriter writer = outputFactory.createXMLEventWriter(output);
-      writer.setDefaultNamespace(defaultNamespace().xmlNamespace());
+      XMLStreamWriter2 writer;
+      if (prettyPrint) {
+        writer =
+            new IndentingStreamWriter(
+                (XMLStreamWriter2) prettyPrintOutputFactory.createXMLStreamWriter(output), 0);
+        writer.setDefaultNamespace(defaultNamespace().xmlNamespace());
+        writer.writeStartDocument(XML_ENCODING, XML_VERSION);
+      } else {
+        writer = (XMLStreamWriter2) outputFactory.createXMLStreamWriter(output);
+        writer.setDefaultNamespace(defaultNamespace().xmlNamespace());
+        writer.writeStartDocument(XML_VERSION);
+      }
 
-      writer.add(eventFactory.createStartDocument());
+      long planStart = System.nanoTime();
+      SerializationPlan plan = createPlan(graph);
+      observer.phaseCompleted(Phase.PLAN, System.nanoTime() - planStart);
 
-      StartElement root = createRootElement(graph);
-      writer.add(root);
+      writeRootStartElement(plan, writer);
 
-      errors.addAll(customEntityTransformer.apply(customEntities, writer));
+      errors.addAll(customEntityTransformer.apply(customEntities, writer, prettyPrint));
 
-      errors.addAll(writeNodes(graph, writer));
+      if (observer == TranslationObserver.NOOP) {
+        errors.addAll(writeNodes(plan, graph, writer, getNodeTransformer(), prettyPrint));
+      } else {
+        ObservedNodeTransformer nodeTransformer =
+            new ObservedNodeTransformer(getNodeTransformer(), observer);
+        errors.addAll(writeNodes(plan, graph, writer, nodeTransformer, prettyPrint));
+        observer.phaseCompleted(Phase.TRANSFORM_NODES, nodeTransformer.totalNanos());
+      }
 
-      writer.add(eventFactory.createEndElement(root.getName(), null));
+      writer.writeEndElement();
 
-      writer.add(eventFactory.createEndDocument());
+      writer.writeEndDocument();
 
       writer.flush();
       writer.close();
     } catch (XMLStreamException | RuntimeException e) {
       throw new TransformerException(e);
     }
+    observer.phaseCompleted(Phase.SERIALIZE, System.nanoTime() - start);
     return errors;
   }
 
+  /**
+   * Transform an {@link EipGraph} instance to an XML document
+   *
+   * @param graph input graph
+   * @param output where the output XML will be written to
+   * @param customEntities user-defined entities to be inlined in the output
+   * @return An empty list for a successful transformation, otherwise a non-empty list of {@link
+   *     TransformationError} is returned.
+   * @throws TransformerException thrown if a critical error preventing the transformation is
+   *     encountered
+   */
+  public final List<TransformationError> toXml(
+      EipGraph graph, Writer output, Map<String, String> customEntities)
+      throws TransformerException {
+    return toXml(graph, output, customEntities, false);
+  }
+
   /**
    * Transform an {@link EipGraph} instance to an XML document
    *
@@ -146,37 +259,53 @@ public abstract class GraphXmlSerializer {
     return toXml(graph, output, Collections.emptyMap());
   }
 
-  private StartElement createRootElement(EipGraph graph) {
-    List<String> eipNamespaces = collectEipNamespaces(graph);
-    return eventFactory.createStartElement(
-        rootElement(), getRootAttributes(eipNamespaces), getRootNamespaces(eipNamespaces));
+  private void writeRootStartElement(SerializationPlan plan, XMLStreamWriter2 writer)
+      throws XMLStreamException {
+    List<String> eipNamespaces = plan.eipNamespaces();
+    QName root = rootElement();
+    writer.writeStartElement(root.getPrefix(), root.getLocalPart(), root.getNamespaceURI());
+
+    writer.writeDefaultNamespace(defaultNamespace().xmlNamespace());
+    writer.writeNamespace(XSI_PREFIX, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+    for (NamespaceSpec spec : requiredNamespaces()) {
+      writer.writeNamespace(spec.eipNamespace(), spec.xmlNamespace());
+    }
+    for (String ns : eipNamespaces) {
+      writer.writeNamespace(ns, getXmlNamespace(ns));
+    }
+
+    writer.writeAttribute(
+        XSI_PREFIX,
+        XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI,
+        "schemaLocation",
+        getSchemaLocations(eipNamespaces));
   }
 
   /**
-   * Does a first pass through the graph to collect all the included namespaces up-front, in order
-   * to define them on the root element. If a node with an unregistered EIP namespace is
-   * encountered, an exception is immediately thrown.
+   * Does a single pass through the graph to collect the traversal order and all the included
+   * namespaces up-front, in order to define them on the root element. If a node with an
+   * unregistered EIP namespace is encountered, an exception is immediately thrown.
    *
-   * <p>This approach forces us to do an extra traversal of the graph, so it might prove too
-   * inefficient.
+   * <p>Node transformation is deferred until the nodes are written, so the transformed elements
+   * for each node can be discarded as soon as they are written out.
    */
-  private List<String> collectEipNamespaces(EipGraph graph) {
-    return graph
-        .traverse()
-        .filter(n -> !this.reservedPrefixes.contains(n.eipId().namespace()))
-        .map(
-            n -> {
-              String ns = n.eipId().namespace();
-              if (!this.registeredNamespaces.containsKey(ns)) {
-                throw new IllegalArgumentException(String.format("Unregistered namespace: %s", ns));
-              }
-              return ns;
-            })
-        .distinct()
-        .toList();
+  private SerializationPlan createPlan(EipGraph graph) {
+    List<EipNode> nodes = graph.traverse().toList();
+    Set<String> eipNamespaces = new LinkedHashSet<>();
+    for (EipNode node : nodes) {
+      String ns = node.eipId().namespace();
+      if (this.reservedPrefixes.contains(ns)) {
+        continue;
+      }
+      if (!this.registeredNamespaces.containsKey(ns)) {
+        throw new IllegalArgumentException(String.format("Unregistered namespace: %s", ns));
+      }
+      eipNamespaces.add(ns);
+    }
+    return new SerializationPlan(nodes, List.copyOf(eipNamespaces));
   }
 
-  private Iterator<Attribute> getRootAttributes(List<String> eipNamespaces) {
+  private String getSchemaLocations(List<String> eipNamespaces) {
     Stream<String> defaultNamespaceLocation =
         Stream.of(defaultNamespace().xmlNamespace(), defaultNamespace().schemaLocation());
     Stream<String> requiredNamespaceLocations =
@@ -186,49 +315,31 @@ public abstract class GraphXmlSerializer {
         eipNamespaces.stream().flatMap(ns -> Stream.of(getXmlNamespace(ns), getSchemaLocation(ns)));
 
     // TODO: Figure out how to safely use a newline inside an attribute
-    String locString =
-        Stream.of(defaultNamespaceLocation, requiredNamespaceLocations, collectedLocations)
-            .flatMap(Function.identity())
-            .collect(Collectors.joining(" "));
-
-    return List.of(
-            eventFactory.createAttribute(
-                XSI_PREFIX,
-                XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI,
-                "schemaLocation",
-                locString))
-        .iterator();
-  }
-
-  private Iterator<Namespace> getRootNamespaces(List<String> eipNamespaces) {
-    Stream<Namespace> defaultNamespace =
-        Stream.of(this.eventFactory.createNamespace(defaultNamespace().xmlNamespace()));
-    Stream<Namespace> xsiNamespace =
-        Stream.of(
-            this.eventFactory.createNamespace(
-                XSI_PREFIX, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI));
-    Stream<Namespace> requiredNamespaces =
-        requiredNamespaces().stream()
-            .map(
-                spec ->
-                    this.eventFactory.createNamespace(spec.eipNamespace(), spec.xmlNamespace()));
-    Stream<Namespace> collectedNamespaces =
-        eipNamespaces.stream()
-            .map(ns -> this.eventFactory.createNamespace(ns, getXmlNamespace(ns)));
-    return Stream.of(defaultNamespace, xsiNamespace, requiredNamespaces, collectedNamespaces)
+    return Stream.of(defaultNamespaceLocation, requiredNamespaceLocations, collectedLocations)
         .flatMap(Function.identity())
-        .iterator();
+        .collect(Collectors.joining(" "));
   }
 
-  private List<TransformationError> writeNodes(EipGraph graph, XMLEventWriter writer) {
+  private List<TransformationError> writeNodes(
+      SerializationPlan plan,
+      EipGraph graph,
+      XMLStreamWriter2 writer,
+      NodeTransformer nodeTransformer,
+      boolean indent)
+      throws XMLStreamException {
+    NodeFragmentCache cache = this.fragmentCache;
+    if (cache != null) {
+      return writeRenderedNodes(plan.nodes(), graph, writer, nodeTransformer, cache, indent);
+    }
+
     List<TransformationError> errors = new ArrayList<>();
 
     // Using a for-each loop rather than stream operations due to the checked exception.
     // If this approach proves inefficient, an alternative is to define our own ErrorListener
     // interface that throws runtime exceptions.
-    for (EipNode node : graph.traverse().toList()) {
+    for (EipNode node : plan.nodes()) {
       try {
-        List<XmlElement> elements = getNodeTransformer().apply(node, graph);
+        List<XmlElement> elements = nodeTransformer.apply(node, graph);
         elements.forEach(e -> elementWriter.write(e, writer));
       } catch (RuntimeException e) {
         TransformationError error = new TransformationError(node.id(), new TransformerException(e));
@@ -238,6 +349,43 @@ public abstract class GraphXmlSerializer {
     return errors;
   }
 
+  /**
+   * Renders each node into a standalone fragment (served from the cache where possible) before
+   * splicing it into the output.
+   */
+  private List<TransformationError> writeRenderedNodes(
+      List<EipNode> nodes,
+      EipGraph graph,
+      XMLStreamWriter2 writer,
+      NodeTransformer nodeTransformer,
+      NodeFragmentCache cache,
+      boolean indent)
+      throws XMLStreamException {
+    List<TransformationError> errors = new ArrayList<>();
+    try (NodeFragmentRenderer renderer = newRenderer(nodeTransformer, cache, indent)) {
+      for (EipNode node : nodes) {
+        writeRendered(renderer.render(node, graph), writer, errors);
+      }
+    }
+    return errors;
+  }
+
+  private static void writeRendered(
+      RenderedNode node, XMLStreamWriter2 writer, List<TransformationError> errors)
+      throws XMLStreamException {
+    if (node.error() != null) {
+      errors.add(node.error());
+    } else {
+      writer.writeRaw(node.fragment());
+    }
+  }
+
+  private NodeFragmentRenderer newRenderer(
+      NodeTransformer nodeTransformer, NodeFragmentCache cache, boolean indent) {
+    return new NodeFragmentRenderer(
+        fragmentOutputFactory, elementWriter, nodeTransformer, cache, indent);
+  }
+
   private String getXmlNamespace(String eipNamespace) {
     NamespaceSpec spec = this.registeredNamespaces.get(eipNamespace);
     return spec == null ? null : spec.xmlNamespace();
@@ -257,6 +405,24 @@ public abstract class GraphXmlSerializer {
         .collect(Collectors.toUnmodifiableSet());
   }
 
+  // The graph traversal order, along with the EIP namespaces used by the traversed nodes
+  private record SerializationPlan(List<EipNode> nodes, List<String> eipNamespaces) {}
+
+  // Fragments hold a sequence of sibling elements without a document root, and rely on the
+  // namespace declarations of the enclosing document.
+  static XMLOutputFactory initializeFragmentOutputFactory() {
+    XMLOutputFactory factory = WstxOutputFactory.newFactory();
+    factory.setProperty(WstxOutputProperties.P_OUTPUT_VALIDATE_STRUCTURE, false);
+    return factory;
+  }
+
+  // Matches the XML declaration written by the JDK's Transformer
+  private static XMLOutputFactory initializePrettyPrintOutputFactory() {
+    XMLOutputFactory factory = WstxOutputFactory.newFactory();
+    factory.setProperty(WstxOutputProperties.P_USE_DOUBLE_QUOTES_IN_XML_DECL, true);
+    return factory;
+  }
+
   static XMLInputFactory initializeXMLInputFactory() {
     XMLInputFactory factory = WstxInputFactory.newFactory();
     factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
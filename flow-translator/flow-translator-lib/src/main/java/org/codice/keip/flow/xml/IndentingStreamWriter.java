@@ -0,0 +1,263 @@
+package org.codice.keip.flow.xml;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.xml.stream.XMLStreamException;
+import org.codehaus.stax2.XMLStreamWriter2;
+import org.codehaus.stax2.util.StreamWriter2Delegate;
+
+/**
+ * Indents the output of an {@link XMLStreamWriter2} as it is written, producing the same layout as
+ * the JDK's {@link javax.xml.transform.Transformer} with indentation enabled:
+ *
+ * <ul>
+ *   <li>every child element, comment and processing instruction starts on a new line, indented by
+ *       {@link #INDENT} per nesting level.
+ *   <li>an element whose only child is text is written on a single line.
+ *   <li>in mixed content, each run of text starts on its own indented line, with any leading line
+ *       breaks of the text dropped.
+ *   <li>CDATA sections are written inline.
+ * </ul>
+ *
+ * <p>Text is held back until the next sibling (or the parent's end tag) is written, since whether
+ * it is indented depends on the content that follows it. Content written with {@link #writeRaw} is
+ * treated as pre-indented child elements.
+ */
+final class IndentingStreamWriter extends StreamWriter2Delegate {
+
+  static final String INDENT = "    ";
+
+  private static final String NEWLINE = "\n";
+
+  // per open element, whether it has child content other than text
+  private final Deque<ElementState> openElements = new ArrayDeque<>();
+  private final StringBuilder pendingText = new StringBuilder();
+
+  private final int baseDepth;
+
+  /**
+   * @param baseDepth the nesting level of the elements written at the top level of this writer. A
+   *     writer for a full document starts at 0.
+   */
+  IndentingStreamWriter(XMLStreamWriter2 delegate, int baseDepth) {
+    super(delegate);
+    // the StreamWriter2Delegate constructor does not initialize the XMLStreamWriter2 delegate
+    setParent(delegate);
+    this.baseDepth = baseDepth;
+  }
+
+  @Override
+  public void writeStartDocument() throws XMLStreamException {
+    super.writeStartDocument();
+    mDelegate2.writeSpace(NEWLINE);
+  }
+
+  @Override
+  public void writeStartDocument(String version) throws XMLStreamException {
+    super.writeStartDocument(version);
+    mDelegate2.writeSpace(NEWLINE);
+  }
+
+  @Override
+  public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+    super.writeStartDocument(encoding, version);
+    mDelegate2.writeSpace(NEWLINE);
+  }
+
+  @Override
+  public void writeStartDocument(String version, String encoding, boolean standAlone)
+      throws XMLStreamException {
+    super.writeStartDocument(version, encoding, standAlone);
+    mDelegate2.writeSpace(NEWLINE);
+  }
+
+  @Override
+  public void writeStartElement(String localName) throws XMLStreamException {
+    beforeChild();
+    super.writeStartElement(localName);
+    openElements.push(new ElementState());
+  }
+
+  @Override
+  public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+    beforeChild();
+    super.writeStartElement(namespaceURI, localName);
+    openElements.push(new ElementState());
+  }
+
+  @Override
+  public void writeStartElement(String prefix, String localName, String namespaceURI)
+      throws XMLStreamException {
+    beforeChild();
+    super.writeStartElement(prefix, localName, namespaceURI);
+    openElements.push(new ElementState());
+  }
+
+  @Override
+  public void writeEmptyElement(String localName) throws XMLStreamException {
+    beforeChild();
+    super.writeEmptyElement(localName);
+  }
+
+  @Override
+  public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+    beforeChild();
+    super.writeEmptyElement(namespaceURI, localName);
+  }
+
+  @Override
+  public void writeEmptyElement(String prefix, String localName, String namespaceURI)
+      throws XMLStreamException {
+    beforeChild();
+    super.writeEmptyElement(prefix, localName, namespaceURI);
+  }
+
+  @Override
+  public void writeEndElement() throws XMLStreamException {
+    beforeEndElement();
+    super.writeEndElement();
+    afterEndElement();
+  }
+
+  @Override
+  public void writeFullEndElement() throws XMLStreamException {
+    beforeEndElement();
+    super.writeFullEndElement();
+    afterEndElement();
+  }
+
+  @Override
+  public void writeComment(String data) throws XMLStreamException {
+    beforeChild();
+    super.writeComment(data);
+  }
+
+  @Override
+  public void writeProcessingInstruction(String target) throws XMLStreamException {
+    beforeChild();
+    super.writeProcessingInstruction(target);
+  }
+
+  @Override
+  public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+    beforeChild();
+    super.writeProcessingInstruction(target, data);
+  }
+
+  @Override
+  public void writeCharacters(String text) throws XMLStreamException {
+    pendingText.append(text);
+  }
+
+  @Override
+  public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+    pendingText.append(text, start, len);
+  }
+
+  @Override
+  public void writeSpace(String text) throws XMLStreamException {
+    pendingText.append(text);
+  }
+
+  @Override
+  public void writeSpace(char[] text, int start, int len) throws XMLStreamException {
+    pendingText.append(text, start, len);
+  }
+
+  @Override
+  public void writeCData(String data) throws XMLStreamException {
+    flushText(false);
+    super.writeCData(data);
+  }
+
+  @Override
+  public void writeCData(char[] text, int start, int len) throws XMLStreamException {
+    flushText(false);
+    super.writeCData(text, start, len);
+  }
+
+  @Override
+  public void writeRaw(String text) throws XMLStreamException {
+    markChildContent();
+    super.writeRaw(text);
+  }
+
+  @Override
+  public void writeRaw(String text, int offset, int length) throws XMLStreamException {
+    markChildContent();
+    super.writeRaw(text, offset, length);
+  }
+
+  @Override
+  public void writeRaw(char[] text, int offset, int length) throws XMLStreamException {
+    markChildContent();
+    super.writeRaw(text, offset, length);
+  }
+
+  private void beforeChild() throws XMLStreamException {
+    markChildContent();
+    flushText(true);
+    if (depth() > 0) {
+      writeIndent(depth());
+    }
+  }
+
+  private void beforeEndElement() throws XMLStreamException {
+    flushText(false);
+    ElementState element = openElements.peek();
+    if (element != null && element.hasChildContent) {
+      writeIndent(depth() - 1);
+    }
+  }
+
+  private void afterEndElement() throws XMLStreamException {
+    openElements.poll();
+    if (depth() == 0) {
+      mDelegate2.writeSpace(NEWLINE);
+    }
+  }
+
+  private void markChildContent() {
+    ElementState parent = openElements.peek();
+    if (parent != null) {
+      parent.hasChildContent = true;
+    }
+  }
+
+  /** @param hasSibling whether the text is followed by a non-text sibling */
+  private void flushText(boolean hasSibling) throws XMLStreamException {
+    if (pendingText.isEmpty()) {
+      return;
+    }
+
+    ElementState parent = openElements.peek();
+    int start = 0;
+    if (hasSibling || (parent != null && parent.hasChildContent)) {
+      writeIndent(depth());
+      while (start < pendingText.length() && isLineBreak(pendingText.charAt(start))) {
+        start++;
+      }
+    }
+    super.writeCharacters(pendingText.substring(start));
+    pendingText.setLength(0);
+  }
+
+  private void writeIndent(int depth) throws XMLStreamException {
+    mDelegate2.writeSpace(NEWLINE);
+    for (int i = 0; i < depth; i++) {
+      mDelegate2.writeSpace(INDENT);
+    }
+  }
+
+  private int depth() {
+    return baseDepth + openElements.size();
+  }
+
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
+
+  private static final class ElementState {
+    private boolean hasChildContent;
+  }
+}
@@ -0,0 +1,187 @@
+package org.codice.keip.flow.xml;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.codice.keip.flow.model.ConnectionType;
+import org.codice.keip.flow.model.EdgeProps;
+import org.codice.keip.flow.model.EipChild;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipId;
+import org.codice.keip.flow.model.EipNode;
+import org.codice.keip.flow.model.Role;
+
+/**
+ * A size-bounded cache of the serialized XML produced for individual nodes. Entries are keyed by
+ * the content of the node along with the ids and roles of its direct neighbours and the connecting
+ * edges, which is everything a {@link NodeTransformer} that only inspects a node's immediate
+ * surroundings can depend on. Unchanged nodes can then be written out without being transformed
+ * again. Indented and unindented fragments of the same node are cached separately.
+ *
+ * <p>The size of an entry is approximated by the character count of its fragment (two bytes per
+ * character), plus an estimate of the memory retained by its key: the node's attributes and
+ * children, and its neighbours and edges. Keys of nodes with large attributes or many connections
+ * can retain more than the fragment itself.
+ *
+ * <p>This class is thread-safe.
+ */
+final class NodeFragmentCache {
+
+  // Rough per-object costs of a 64-bit JVM with compressed references
+  private static final int OBJECT_BYTES = 16;
+  private static final int REFERENCE_BYTES = 4;
+  private static final int STRING_BYTES = 40;
+  private static final int MAP_ENTRY_BYTES = 32;
+
+  private final long maxSizeBytes;
+  private final Cache<FragmentKey, Fragment> fragments;
+  private final AtomicLong sizeBytes = new AtomicLong();
+
+  /**
+   * @param maxSizeBytes the approximate maximum size of all cached fragments
+   */
+  NodeFragmentCache(long maxSizeBytes) {
+    if (maxSizeBytes < 1) {
+      throw new IllegalArgumentException("fragment cache size must be greater than zero");
+    }
+    this.maxSizeBytes = maxSizeBytes;
+    this.fragments =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeBytes)
+            .<FragmentKey, Fragment>weigher((key, fragment) -> fragment.sizeBytes())
+            .<FragmentKey, Fragment>removalListener(
+                notification -> sizeBytes.addAndGet(-notification.getValue().sizeBytes()))
+            .recordStats()
+            .build();
+  }
+
+  static FragmentKey keyOf(EipNode node, EipGraph graph, boolean indented) {
+    return new FragmentKey(
+        NodeContent.of(node),
+        indented,
+        neighbours(graph.predecessors(node), p -> graph.getEdgeProps(p, node).orElse(null)),
+        neighbours(graph.successors(node), s -> graph.getEdgeProps(node, s).orElse(null)));
+  }
+
+  /** Returns the cached fragment for the key, or null if it is not cached. */
+  String get(FragmentKey key) {
+    Fragment fragment = fragments.getIfPresent(key);
+    return fragment != null ? fragment.xml() : null;
+  }
+
+  void put(FragmentKey key, String fragment) {
+    long size = (long) fragment.length() * Character.BYTES + estimateKeySize(key);
+    Fragment entry = new Fragment(fragment, (int) Math.min(size, Integer.MAX_VALUE));
+    sizeBytes.addAndGet(entry.sizeBytes());
+    fragments.put(key, entry);
+  }
+
+  FragmentCacheStats stats() {
+    CacheStats stats = fragments.stats();
+    return new FragmentCacheStats(
+        maxSizeBytes,
+        sizeBytes.get(),
+        fragments.size(),
+        stats.hitCount(),
+        stats.missCount(),
+        stats.evictionCount());
+  }
+
+  // The EipId, Role and ConnectionType instances are shared, so only the references to them count
+  private static long estimateKeySize(FragmentKey key) {
+    NodeContent node = key.node();
+    long size = 2 * OBJECT_BYTES + 12 * REFERENCE_BYTES;
+    size += estimateSize(node.id()) + estimateSize(node.label()) + estimateSize(node.description());
+    size += estimateSize(node.attributes()) + estimateChildrenSize(node.children());
+    for (List<Neighbour> neighbours : List.of(key.predecessors(), key.successors())) {
+      size += OBJECT_BYTES + (long) neighbours.size() * REFERENCE_BYTES;
+      for (Neighbour neighbour : neighbours) {
+        size += OBJECT_BYTES + 3 * REFERENCE_BYTES + estimateSize(neighbour.id());
+        if (neighbour.edge() != null) {
+          size += OBJECT_BYTES + 2 * REFERENCE_BYTES + estimateSize(neighbour.edge().id());
+        }
+      }
+    }
+    return size;
+  }
+
+  private static long estimateChildrenSize(List<EipChild> children) {
+    long size = OBJECT_BYTES + (long) children.size() * REFERENCE_BYTES;
+    for (EipChild child : children) {
+      size += OBJECT_BYTES + 3 * REFERENCE_BYTES;
+      size += estimateSize(child.attributes()) + estimateChildrenSize(child.children());
+    }
+    return size;
+  }
+
+  private static long estimateSize(Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof String text) {
+      return STRING_BYTES + (long) text.length() * Character.BYTES;
+    } else if (value instanceof Map<?, ?> map) {
+      long size = OBJECT_BYTES;
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        size += MAP_ENTRY_BYTES + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+      }
+      return size;
+    } else if (value instanceof Collection<?> collection) {
+      long size = OBJECT_BYTES + (long) collection.size() * REFERENCE_BYTES;
+      for (Object element : collection) {
+        size += estimateSize(element);
+      }
+      return size;
+    }
+    return OBJECT_BYTES;
+  }
+
+  private static List<Neighbour> neighbours(
+      Set<EipNode> nodes, Function<EipNode, EdgeProps> edgeProps) {
+    List<Neighbour> neighbours = new ArrayList<>(nodes.size());
+    for (EipNode n : nodes) {
+      neighbours.add(new Neighbour(n.id(), n.role(), edgeProps.apply(n)));
+    }
+    return neighbours;
+  }
+
+  record FragmentKey(
+      NodeContent node,
+      boolean indented,
+      List<Neighbour> predecessors,
+      List<Neighbour> successors) {}
+
+  // EipNode equality only considers the node id, so its content is compared field by field
+  record NodeContent(
+      String id,
+      EipId eipId,
+      String label,
+      String description,
+      Role role,
+      ConnectionType connectionType,
+      Map<String, Object> attributes,
+      List<EipChild> children) {
+
+    static NodeContent of(EipNode node) {
+      return new NodeContent(
+          node.id(),
+          node.eipId(),
+          node.label(),
+          node.description(),
+          node.role(),
+          node.connectionType(),
+          node.attributes(),
+          node.children());
+    }
+  }
+
+  record Neighbour(String id, Role role, EdgeProps edge) {}
+
+  private record Fragment(String xml, int sizeBytes) {}
+}
@@ -0,0 +1,105 @@
+package org.codice.keip.flow.xml;
+
+import java.io.StringWriter;
+import java.util.List;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerException;
+import org.codehaus.stax2.XMLStreamWriter2;
+import org.codice.keip.flow.error.TransformationError;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipNode;
+
+/**
+ * Transforms nodes and serializes the resulting {@link XmlElement}s into standalone XML fragments,
+ * which can later be spliced into the output document. If a {@link NodeFragmentCache} is provided,
+ * cached fragments are returned without transforming the node, and newly rendered fragments are
+ * added to the cache.
+ *
+ * <p>When indenting, fragments are indented as children of the document's root element, each
+ * element starting on a new line.
+ *
+ * <p>This class is not thread-safe, each thread should use its own instance.
+ */
+final class NodeFragmentRenderer implements AutoCloseable {
+
+  private final XMLOutputFactory fragmentOutputFactory;
+  private final XmlElementWriter elementWriter;
+  private final NodeTransformer nodeTransformer;
+  private final NodeFragmentCache cache;
+  private final boolean indent;
+
+  private final StringWriter buffer = new StringWriter();
+  private XMLStreamWriter2 fragmentWriter;
+
+  /**
+   * @param fragmentOutputFactory creates writers that allow multiple top-level elements
+   * @param cache can be null if fragments should not be cached
+   * @param indent whether to indent the rendered fragments
+   */
+  NodeFragmentRenderer(
+      XMLOutputFactory fragmentOutputFactory,
+      XmlElementWriter elementWriter,
+      NodeTransformer nodeTransformer,
+      NodeFragmentCache cache,
+      boolean indent) {
+    this.fragmentOutputFactory = fragmentOutputFactory;
+    this.elementWriter = elementWriter;
+    this.nodeTransformer = nodeTransformer;
+    this.cache = cache;
+    this.indent = indent;
+  }
+
+  RenderedNode render(EipNode node, EipGraph graph) {
+    NodeFragmentCache.FragmentKey key = null;
+    if (cache != null) {
+      key = NodeFragmentCache.keyOf(node, graph, indent);
+      String cached = cache.get(key);
+      if (cached != null) {
+        return new RenderedNode(cached, null);
+      }
+    }
+
+    String fragment;
+    try {
+      List<XmlElement> elements = nodeTransformer.apply(node, graph);
+      fragment = write(elements);
+    } catch (XMLStreamException | RuntimeException e) {
+      // the writer may be left with unclosed elements, start over with a new one
+      fragmentWriter = null;
+      return new RenderedNode(
+          null, new TransformationError(node.id(), new TransformerException(e)));
+    }
+
+    if (cache != null) {
+      cache.put(key, fragment);
+    }
+    return new RenderedNode(fragment, null);
+  }
+
+  private String write(List<XmlElement> elements) throws XMLStreamException {
+    if (fragmentWriter == null) {
+      fragmentWriter = (XMLStreamWriter2) fragmentOutputFactory.createXMLStreamWriter(buffer);
+      if (indent) {
+        // fragments are spliced in as children of the root element
+        fragmentWriter = new IndentingStreamWriter(fragmentWriter, 1);
+      }
+    }
+    buffer.getBuffer().setLength(0);
+    for (XmlElement e : elements) {
+      elementWriter.write(e, fragmentWriter);
+    }
+    fragmentWriter.flush();
+    return buffer.toString();
+  }
+
+  @Override
+  public void close() throws XMLStreamException {
+    if (fragmentWriter != null) {
+      fragmentWriter.close();
+    }
+  }
+
+  /** Holds either the rendered fragment for a node, or the error raised while rendering it. */
+  record RenderedNode(String fragment, TransformationError error) {}
+}
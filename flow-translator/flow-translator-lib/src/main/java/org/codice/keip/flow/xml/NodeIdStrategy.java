@@ -0,0 +1,35 @@
+package org.codice.keip.flow.xml;
+
+import org.codice.keip.flow.xml.spring.NodeIdGenerator;
+
+/**
+ * Generates the ids of EIP nodes parsed from top-level XML elements that do not have an id
+ * attribute.
+ *
+ * <p>Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface NodeIdStrategy {
+
+  /**
+   * Random ids, see {@link NodeIdGenerator#randomId()}. Parsing the same document
+   * twice produces different ids.
+   */
+  NodeIdStrategy RANDOM = (path, element) -> NodeIdGenerator.randomId();
+
+  /**
+   * Ids derived from a hash of the element's path and attributes, so parsing the same document
+   * twice produces the same ids. The id of an element changes if its attributes change, or if an
+   * element of the same type is added or removed before it.
+   */
+  NodeIdStrategy CONTENT_HASH = new ContentHashNodeIdStrategy();
+
+  /**
+   * @param path the location of the element in its document, formatted as {@code
+   *     /prefix:name[n]}, where n is the (one-based) position of the element among the top-level
+   *     elements of the same type
+   * @param element the element that is missing an id
+   * @return a generated id
+   */
+  String generateId(String path, XmlElement element);
+}
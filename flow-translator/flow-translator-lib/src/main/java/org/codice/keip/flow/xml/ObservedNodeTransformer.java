@@ -0,0 +1,38 @@
+package org.codice.keip.flow.xml;
+
+import java.util.List;
+import org.codice.keip.flow.TranslationObserver;
+import org.codice.keip.flow.model.EipGraph;
+import org.codice.keip.flow.model.EipNode;
+
+/**
+ * Reports the time taken by each call to the wrapped {@link NodeTransformer}, and keeps a running
+ * total that can be read once all nodes are transformed.
+ */
+final class ObservedNodeTransformer implements NodeTransformer {
+
+  private final NodeTransformer delegate;
+  private final TranslationObserver observer;
+  private long totalNanos;
+
+  ObservedNodeTransformer(NodeTransformer delegate, TranslationObserver observer) {
+    this.delegate = delegate;
+    this.observer = observer;
+  }
+
+  @Override
+  public List<XmlElement> apply(EipNode node, EipGraph graph) {
+    long start = System.nanoTime();
+    try {
+      return delegate.apply(node, graph);
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      totalNanos += elapsed;
+      observer.nodeTransformed(node.eipId(), elapsed);
+    }
+  }
+
+  long totalNanos() {
+    return totalNanos;
+  }
+}
@@ -0,0 +1,33 @@
+package org.codice.keip.flow.xml;
+
+/**
+ * A snapshot of the usage statistics of one of the pools of pre-configured XML parsers held by a
+ * {@link GraphXmlParser}. Counters are cumulative since the pool was created.
+ *
+ * @param maxSize the maximum number of parsers the pool will create
+ * @param created the number of parsers created so far
+ * @param idle the number of parsers currently available for reuse
+ * @param hits the number of borrows served by an already created parser
+ * @param misses the number of borrows that required creating a new parser
+ * @param waits the number of borrows that had to wait for a parser to be released
+ * @param totalWaitNanos the cumulative time spent waiting for a parser to be released
+ */
+public record ParserPoolStats(
+    int maxSize, int created, int idle, long hits, long misses, long waits, long totalWaitNanos) {
+
+  /** The parser pools held by a {@link GraphXmlParser}. */
+  public enum Pool {
+    /**
+     * {@link javax.xml.parsers.DocumentBuilder}s, used by {@link GraphXmlParser.ParseMode#DOM}
+     * parses that are not validated or are validated against a single schema.
+     */
+    DOCUMENT_BUILDER,
+
+    /**
+     * {@link javax.xml.parsers.SAXParser}s, used by {@link GraphXmlParser.ParseMode#STREAMING}
+     * parses, and by {@link GraphXmlParser.ParseMode#DOM} parses validated against a schema chosen
+     * per document.
+     */
+    SAX_PARSER
+  }
+}
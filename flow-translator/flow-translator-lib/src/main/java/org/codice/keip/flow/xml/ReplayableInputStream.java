@@ -0,0 +1,94 @@
+package org.codice.keip.flow.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * An {@link InputStream} that keeps a copy of the bytes read from it, up to a limit, so that the
+ * stream can be read again from the start.
+ *
+ * <p>Closing this stream does not close the underlying stream, so that it can still be replayed
+ * after a parser has closed its input. Mark and reset are not supported.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class ReplayableInputStream extends FilterInputStream {
+
+  private final int limit;
+
+  // null once more than limit bytes have been read
+  private ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+
+  /**
+   * @param limit the maximum number of bytes to keep. The stream can not be replayed once more
+   *     bytes have been read.
+   */
+  ReplayableInputStream(InputStream in, int limit) {
+    super(in);
+    this.limit = limit;
+  }
+
+  /**
+   * Returns a stream that reads the bytes read so far followed by the rest of the underlying
+   * stream, or null if more than the limit has already been read.
+   */
+  InputStream replay() {
+    if (recorded == null) {
+      return null;
+    }
+    return new SequenceInputStream(new ByteArrayInputStream(recorded.toByteArray()), in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if (b >= 0 && record(1)) {
+      recorded.write(b);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int n = in.read(b, off, len);
+    if (n > 0 && record(n)) {
+      recorded.write(b, off, n);
+    }
+    return n;
+  }
+
+  // Skipped bytes must be recorded as well, so they are read
+  @Override
+  public long skip(long n) throws IOException {
+    byte[] discarded = new byte[(int) Math.min(n, 8192)];
+    long skipped = 0;
+    while (skipped < n) {
+      int read = read(discarded, 0, (int) Math.min(discarded.length, n - skipped));
+      if (read < 0) {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void close() {}
+
+  // Returns true if the next n bytes should be recorded
+  private boolean record(int n) {
+    if (recorded != null && recorded.size() + n > limit) {
+      recorded = null;
+    }
+    return recorded != null;
+  }
+}
@@ -0,0 +1,157 @@
+package org.codice.keip.flow.xml;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.transform.TransformerException;
+import javax.xml.validation.TypeInfoProvider;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX content handler that builds an {@link XmlElement} subtree for each top-level element
+ * (children of the document root) and hands it off as soon as the element is closed. Only the
+ * subtree currently being parsed is held in memory, so memory usage grows with element depth
+ * rather than with document size.
+ *
+ * <p>The produced {@link XmlElement}s match the ones built from a DOM tree: only element content
+ * is retained, attributes defaulted by the validation schema are dropped, namespace declarations
+ * are kept as attributes, and attributes are ordered by their qualified name.
+ */
+final class StreamingElementHandler extends DefaultHandler {
+
+  private static final Comparator<Attr> ATTR_ORDER = Comparator.comparing(Attr::qname);
+
+  private final TopLevelElementConsumer consumer;
+  private final EipPrefixResolver eipPrefixResolver;
+  private final TypeInfoProvider typeInfoProvider;
+
+  private final Deque<XmlElement> openElements = new ArrayDeque<>();
+  private final List<Attr> pendingNamespaceDecls = new ArrayList<>();
+  private int depth = 0;
+
+  /**
+   * @param consumer called with each completed top-level element
+   * @param eipPrefixResolver maps an element's name to the prefix used in the resulting {@link
+   *     XmlElement}
+   * @param typeInfoProvider used to filter out schema-defaulted attributes. Can be null if the
+   *     document is not validated.
+   */
+  StreamingElementHandler(
+      TopLevelElementConsumer consumer,
+      EipPrefixResolver eipPrefixResolver,
+      TypeInfoProvider typeInfoProvider) {
+    this.consumer = consumer;
+    this.eipPrefixResolver = eipPrefixResolver;
+    this.typeInfoProvider = typeInfoProvider;
+  }
+
+  @Override
+  public void startPrefixMapping(String prefix, String uri) {
+    String name = prefix.isEmpty() ? XMLNS_ATTRIBUTE : XMLNS_ATTRIBUTE + ":" + prefix;
+    pendingNamespaceDecls.add(new Attr(name, uri));
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes)
+      throws SAXException {
+    depth++;
+    if (depth == 1) {
+      // document root, its attributes are not retained
+      pendingNamespaceDecls.clear();
+      return;
+    }
+
+    try {
+      String prefix = eipPrefixResolver.resolve(uri, localName, xmlPrefix(qName));
+      XmlElement element =
+          new XmlElement(
+              new QName(uri, localName, prefix), collectAttributes(attributes), new ArrayList<>());
+      XmlElement parent = openElements.peek();
+      if (parent != null) {
+        parent.children().add(element);
+      }
+      openElements.push(element);
+    } catch (RuntimeException e) {
+      throw new ElementHandlingException(e);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    depth--;
+    if (depth == 0) {
+      return;
+    }
+
+    XmlElement element = openElements.pop();
+    if (depth == 1) {
+      try {
+        consumer.accept(element);
+      } catch (Exception e) {
+        throw new ElementHandlingException(e);
+      }
+    }
+  }
+
+  private Map<String, Object> collectAttributes(Attributes attributes) {
+    List<Attr> attrs = new ArrayList<>(attributes.getLength() + pendingNamespaceDecls.size());
+    attrs.addAll(pendingNamespaceDecls);
+    pendingNamespaceDecls.clear();
+
+    for (int i = 0; i < attributes.getLength(); i++) {
+      if (typeInfoProvider == null || typeInfoProvider.isSpecified(i)) {
+        attrs.add(new Attr(attributes.getQName(i), attributes.getValue(i)));
+      }
+    }
+    attrs.sort(ATTR_ORDER);
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (Attr attr : attrs) {
+      result.put(attr.qname(), attr.value());
+    }
+    return result;
+  }
+
+  private static String xmlPrefix(String qName) {
+    int idx = qName.indexOf(':');
+    return idx < 0 ? "" : qName.substring(0, idx);
+  }
+
+  private record Attr(String qname, String value) {}
+
+  @FunctionalInterface
+  interface EipPrefixResolver {
+    String resolve(String namespaceUri, String localName, String xmlPrefix);
+  }
+
+  @FunctionalInterface
+  interface TopLevelElementConsumer {
+    void accept(XmlElement element) throws Exception;
+  }
+
+  /**
+   * Wraps errors raised while handling parsed elements, to distinguish them from XML validation
+   * errors reported by the parser.
+   */
+  static final class ElementHandlingException extends SAXException {
+    ElementHandlingException(Exception cause) {
+      super(cause);
+    }
+
+    TransformerException toTransformerException() {
+      if (getCause() instanceof TransformerException te) {
+        return te;
+      }
+      return new TransformerException(getCause());
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package org.codice.keip.flow.xml;
+
+import java.util.Set;
+import javax.xml.validation.Schema;
+
+/**
+ * Selects the validation {@link Schema} for an input document, based on the namespaces used in the
+ * document. Allows validating against a {@link Schema} compiled only for the namespaces a document
+ * uses, rather than one covering every supported namespace.
+ *
+ * <p>Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface ValidationSchemaProvider {
+
+  /**
+   * @param namespaceUris the namespace of every element and every namespace declared in the
+   *     document
+   * @return the {@link Schema} to validate the document with, or null to skip validation
+   */
+  Schema getSchema(Set<String> namespaceUris);
+}
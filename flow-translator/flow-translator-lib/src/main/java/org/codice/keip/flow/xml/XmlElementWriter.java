@@ -1,45 +1,56 @@
 package org.codice.keip.flow.xml;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.Map;
-import javax.xml.stream.XMLEventFactory;
-import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
+import org.codehaus.stax2.XMLStreamWriter2;
 
+/**
+ * Writes an {@link XmlElement} tree using the {@link XMLStreamWriter2} cursor API. Attributes are
+ * written directly (no intermediate event objects are created) and the element tree is walked
+ * iteratively, so deeply nested elements can not overflow the call stack.
+ */
 final class XmlElementWriter {
 
-  private final XMLEventFactory eventFactory;
-
-  public XmlElementWriter(XMLEventFactory eventFactory) {
-    this.eventFactory = eventFactory;
-  }
-
-  void write(XmlElement element, XMLEventWriter writer) {
+  void write(XmlElement element, XMLStreamWriter2 writer) {
     try {
-      writer.add(
-          this.eventFactory.createStartElement(
-              element.prefix(),
-              element.namespaceUri(),
-              element.localName(),
-              attributeIterator(element.attributes()),
-              null));
-
-      for (XmlElement c : element.children()) {
-        write(c, writer);
+      writeStartElement(element, writer);
+      if (element.children().isEmpty()) {
+        writer.writeEndElement();
+        return;
       }
 
-      writer.add(
-          this.eventFactory.createEndElement(
-              element.prefix(), element.namespaceUri(), element.localName()));
+      // each entry holds the remaining children of an element that is still open
+      Deque<Iterator<XmlElement>> openElements = new ArrayDeque<>();
+      openElements.push(element.children().iterator());
+      while (!openElements.isEmpty()) {
+        Iterator<XmlElement> children = openElements.peek();
+        if (!children.hasNext()) {
+          openElements.pop();
+          writer.writeEndElement();
+          continue;
+        }
+
+        XmlElement child = children.next();
+        writeStartElement(child, writer);
+        if (child.children().isEmpty()) {
+          writer.writeEndElement();
+        } else {
+          openElements.push(child.children().iterator());
+        }
+      }
     } catch (XMLStreamException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private Iterator<Attribute> attributeIterator(Map<String, Object> attributes) {
-    return attributes.entrySet().stream()
-        .map(e -> this.eventFactory.createAttribute(e.getKey(), e.getValue().toString()))
-        .iterator();
+  private static void writeStartElement(XmlElement element, XMLStreamWriter2 writer)
+      throws XMLStreamException {
+    writer.writeStartElement(element.prefix(), element.localName(), element.namespaceUri());
+    for (Map.Entry<String, Object> attr : element.attributes().entrySet()) {
+      writer.writeAttribute(attr.getKey(), attr.getValue().toString());
+    }
   }
 }
@@ -0,0 +1,115 @@
+package org.codice.keip.flow.xml;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+
+/**
+ * A bounded pool of pre-configured parsers (e.g. a {@link javax.xml.parsers.DocumentBuilder}).
+ * Parsers are created lazily, up to {@code maxSize}, and reset before being returned to the pool.
+ * Once the limit is reached, callers block until a parser is released.
+ *
+ * <p>Each borrowed parser holds one of {@code maxSize} semaphore permits, which is released along
+ * with the parser. A caller holding a permit takes an idle parser, or creates one if there is none,
+ * so a parser discarded on release frees a permit for a waiting caller to create its replacement.
+ *
+ * <p>This class is thread-safe.
+ */
+final class XmlParserPool<T> {
+
+  private final int maxSize;
+  private final Semaphore permits;
+  private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+  private final ParserFactory<T> factory;
+  private final Consumer<T> resetter;
+
+  private final AtomicInteger created = new AtomicInteger();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder waits = new LongAdder();
+  private final LongAdder totalWaitNanos = new LongAdder();
+
+  /**
+   * @param maxSize the maximum number of parsers to create
+   * @param factory creates a new, fully configured parser
+   * @param resetter restores a parser to its initial configured state before it is reused
+   */
+  XmlParserPool(int maxSize, ParserFactory<T> factory, Consumer<T> resetter) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("parser pool size must be greater than zero");
+    }
+    this.maxSize = maxSize;
+    this.permits = new Semaphore(maxSize);
+    this.factory = factory;
+    this.resetter = resetter;
+  }
+
+  T borrow() throws ParserConfigurationException, SAXException, InterruptedException {
+    if (!permits.tryAcquire()) {
+      long start = System.nanoTime();
+      waits.increment();
+      try {
+        permits.acquire();
+      } finally {
+        totalWaitNanos.add(System.nanoTime() - start);
+      }
+    }
+
+    // every parser is either idle or borrowed with a permit, so if none is idle, fewer than
+    // maxSize have been created
+    T parser = idle.poll();
+    if (parser != null) {
+      hits.increment();
+      return parser;
+    }
+    misses.increment();
+    return create();
+  }
+
+  /**
+   * Returns a parser to the pool. If the parser can not be reset, it is discarded and a new one
+   * will be created on demand.
+   */
+  void release(T parser) {
+    try {
+      resetter.accept(parser);
+      idle.offer(parser);
+    } catch (RuntimeException e) {
+      created.decrementAndGet();
+    } finally {
+      permits.release();
+    }
+  }
+
+  ParserPoolStats stats() {
+    return new ParserPoolStats(
+        maxSize,
+        created.get(),
+        idle.size(),
+        hits.sum(),
+        misses.sum(),
+        waits.sum(),
+        totalWaitNanos.sum());
+  }
+
+  private T create() throws ParserConfigurationException, SAXException {
+    created.incrementAndGet();
+    try {
+      return factory.create();
+    } catch (ParserConfigurationException | SAXException | RuntimeException e) {
+      created.decrementAndGet();
+      permits.release();
+      throw e;
+    }
+  }
+
+  @FunctionalInterface
+  interface ParserFactory<T> {
+    T create() throws ParserConfigurationException, SAXException;
+  }
+}
@@ -0,0 +1,576 @@
+package org.codice.keip.flow.xml;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+
+/**
+ * A {@link Reader} that decodes an XML document for a parser while keeping the characters it has
+ * handed out, so that the source text of the document's top-level elements (the children of the
+ * root element) can be copied as-is once the parser has read past them.
+ *
+ * <p>Top-level elements must be visited in document order, with {@link #copyElement} or {@link
+ * #skipElement}. The source text is found with a lexical scan of the retained characters.
+ *
+ * <ul>
+ *   <li>A reader created with {@link #open} is visited each time a streaming parser reports the end
+ *       of a top-level element. The scan relies on the parser having already checked that the
+ *       element is well-formed.
+ *   <li>A reader created with {@link #capture} is meant for parsers that only report elements once
+ *       the whole document is read. Each top-level element is scanned as soon as it has been read,
+ *       and only the source text of the elements accepted by its filter is kept until visited.
+ * </ul>
+ *
+ * <p>Either way, characters before the last scanned element are discarded, so only the element
+ * being parsed (plus the parser's read-ahead) is retained.
+ *
+ * <p>Copying is given up for the rest of the document if its structure can not be matched to the
+ * parsed elements, e.g. due to a DTD, in which case {@link #copyElement} returns null.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class XmlSourceReader extends Reader {
+
+  // Upper bound on the number of bytes read ahead to find the encoding declaration
+  private static final int DECLARATION_PEEK_LIMIT = 1024;
+
+  // Discarded characters are only removed from the buffer in batches of at least this size
+  private static final int COMPACT_THRESHOLD = 16 * 1024;
+
+  private static final Pattern ENCODING_DECLARATION =
+      Pattern.compile("^<\\?xml\\s[^>]*?encoding\\s*=\\s*[\"']([A-Za-z][A-Za-z0-9._-]*)[\"']");
+
+  private final Reader in;
+
+  private final String excludedAttribute;
+
+  // accepts the top-level elements to copy as soon as they are read, null if elements are scanned
+  // when visited
+  private final Predicate<QName> captureFilter;
+
+  private final Deque<CapturedElement> captured = new ArrayDeque<>();
+
+  private final StringBuilder buffer = new StringBuilder();
+
+  // document offset of the first buffered character
+  private int bufferStart = 0;
+
+  // document offset of the end of the last visited top-level element
+  private int cursor = 0;
+
+  private boolean rootStarted = false;
+
+  // default namespace declared by the root element
+  private String rootNamespace = XMLConstants.NULL_NS_URI;
+
+  private boolean enabled = true;
+
+  // set when a scan reaches the end of the buffered characters
+  private boolean truncated = false;
+
+  // number of characters past the cursor to buffer before scanning for captured elements again
+  private int captureRetryLength = 0;
+
+  private XmlSourceReader(Reader in, String excludedAttribute, Predicate<QName> captureFilter) {
+    this.in = in;
+    this.excludedAttribute = excludedAttribute;
+    this.captureFilter = captureFilter;
+  }
+
+  /**
+   * Creates a reader for an XML document, using the encoding given by its byte order mark or XML
+   * declaration (UTF-8 by default). Malformed input is reported as a {@link
+   * java.nio.charset.CharacterCodingException} when read.
+   *
+   * @param excludedAttribute the attribute to remove from the start tag of copied elements
+   * @return the reader, or null if the document's encoding is not supported
+   */
+  static XmlSourceReader open(InputStream xml, String excludedAttribute) throws IOException {
+    Reader decoded = decode(xml);
+    return decoded == null ? null : new XmlSourceReader(decoded, excludedAttribute, null);
+  }
+
+  /**
+   * Like {@link #open}, but the source text of each top-level element accepted by the filter is
+   * copied as soon as the element has been read, and kept until the element is visited. Other
+   * elements are only recorded by name.
+   *
+   * @param captureFilter accepts the qualified names of the elements to copy
+   */
+  static XmlSourceReader capture(
+      InputStream xml, String excludedAttribute, Predicate<QName> captureFilter)
+      throws IOException {
+    Reader decoded = decode(xml);
+    return decoded == null ? null : new XmlSourceReader(decoded, excludedAttribute, captureFilter);
+  }
+
+  private static Reader decode(InputStream xml) throws IOException {
+    InputStream in = xml.markSupported() ? xml : new BufferedInputStream(xml);
+    in.mark(DECLARATION_PEEK_LIMIT);
+    byte[] head = in.readNBytes(DECLARATION_PEEK_LIMIT);
+    in.reset();
+
+    Charset charset = StandardCharsets.UTF_8;
+    int bomLength = 0;
+    if (startsWith(head, 0xEF, 0xBB, 0xBF)) {
+      bomLength = 3;
+    } else if (startsWith(head, 0xFE, 0xFF)) {
+      charset = StandardCharsets.UTF_16BE;
+      bomLength = 2;
+    } else if (startsWith(head, 0xFF, 0xFE)) {
+      charset = StandardCharsets.UTF_16LE;
+      bomLength = 2;
+    } else if (startsWith(head, 0x00, '<', 0x00, '?')) {
+      charset = StandardCharsets.UTF_16BE;
+    } else if (startsWith(head, '<', 0x00, '?', 0x00)) {
+      charset = StandardCharsets.UTF_16LE;
+    } else {
+      Matcher matcher =
+          ENCODING_DECLARATION.matcher(new String(head, StandardCharsets.ISO_8859_1));
+      if (matcher.find()) {
+        try {
+          charset = Charset.forName(matcher.group(1));
+        } catch (IllegalArgumentException e) {
+          return null;
+        }
+      }
+    }
+
+    in.skipNBytes(bomLength);
+    return new InputStreamReader(
+        in,
+        charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT));
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    int n = in.read(cbuf, off, len);
+    if (n > 0 && enabled) {
+      buffer.append(cbuf, off, n);
+      if (captureFilter != null && pendingLength() >= captureRetryLength) {
+        captureElements();
+      }
+    }
+    return n;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Returns the source text of the next top-level element, without the excluded attribute on its
+   * start tag. Null is returned if the source can not be copied, or if the element, or one of its
+   * descendants, has a prefixed name, since the prefix might only be declared by an ancestor.
+   *
+   * @param localName the local name of the element, as reported by the parser
+   */
+  String copyElement(String localName) {
+    if (captureFilter != null) {
+      CapturedElement element = nextCaptured(localName);
+      return element == null ? null : element.source();
+    }
+    ElementSpan span = nextElement(localName);
+    String source = span == null ? null : source(span);
+    release();
+    return source;
+  }
+
+  /** Moves past the next top-level element. */
+  void skipElement(String localName) {
+    if (captureFilter != null) {
+      nextCaptured(localName);
+      return;
+    }
+    nextElement(localName);
+    release();
+  }
+
+  private ElementSpan nextElement(String localName) {
+    if (!enabled) {
+      return null;
+    }
+    ElementSpan span = scanNextElement();
+    if (span == null || !localName.equals(span.localName())) {
+      return disable();
+    }
+    cursor = span.end;
+    return span;
+  }
+
+  private CapturedElement nextCaptured(String localName) {
+    if (captured.isEmpty() && enabled) {
+      // the last elements may have been read without being scanned yet
+      captureElements();
+    }
+    CapturedElement element = captured.poll();
+    if (element == null || !localName.equals(element.localName())) {
+      disable();
+      return null;
+    }
+    return element;
+  }
+
+  // Scans every top-level element that has been fully read, keeping the source text of those
+  // accepted by the capture filter. Scanning is retried once the buffer has doubled, so a large
+  // element is not scanned again on every read.
+  private void captureElements() {
+    while (enabled) {
+      truncated = false;
+      ElementSpan span = scanNextElement();
+      if (span == null) {
+        if (!truncated) {
+          // the end of the root element, or a structure that can not be scanned
+          finishCapture();
+        } else {
+          captureRetryLength = 2 * pendingLength();
+        }
+        return;
+      }
+
+      String namespace = span.defaultNamespace != null ? span.defaultNamespace : rootNamespace;
+      boolean copy = captureFilter.test(new QName(namespace, span.localName()));
+      captured.add(new CapturedElement(span.localName(), copy ? source(span) : null));
+      cursor = span.end;
+      release();
+    }
+  }
+
+  // Once the root element has ended, the captured elements are kept for the parser to visit
+  private void finishCapture() {
+    if (rootStarted && startsWith(skipMisc(cursor), "</")) {
+      enabled = false;
+      clearBuffer();
+    } else {
+      disable();
+    }
+  }
+
+  // Returns the next top-level element, or null if it can not be scanned
+  private ElementSpan scanNextElement() {
+    if (!rootStarted) {
+      int root = skipMisc(cursor);
+      StartTag rootTag = root < 0 ? null : scanStartTag(root);
+      if (rootTag == null) {
+        return null;
+      }
+      if (rootTag.defaultNamespace() != null) {
+        rootNamespace = rootTag.defaultNamespace();
+      }
+      cursor = rootTag.end();
+      rootStarted = true;
+    }
+
+    int start = skipMisc(cursor);
+    StartTag startTag = start < 0 ? null : scanStartTag(start);
+    if (startTag == null) {
+      return null;
+    }
+
+    ElementSpan span = new ElementSpan(start, startTag);
+    int end = startTag.selfClosing() ? startTag.end() : scanContent(startTag.end(), span);
+    if (end < 0) {
+      return null;
+    }
+    span.end = end;
+    return span;
+  }
+
+  private String source(ElementSpan span) {
+    if (span.prefixed()) {
+      return null;
+    }
+    return span.excludedStart < 0
+        ? text(span.start, span.end)
+        : text(span.start, span.excludedStart) + text(span.excludedEnd, span.end);
+  }
+
+  private int pendingLength() {
+    return bufferStart + buffer.length() - cursor;
+  }
+
+  // Skips whitespace, comments and processing instructions up to the next tag. Returns -1 if
+  // anything else is found.
+  private int skipMisc(int pos) {
+    while (true) {
+      int c = charAt(pos);
+      if (c < 0) {
+        return -1;
+      } else if (c != '<') {
+        if (!Character.isWhitespace(c)) {
+          return -1;
+        }
+        pos++;
+      } else if (startsWith(pos, "<?")) {
+        pos = skipPast(pos, "?>");
+      } else if (startsWith(pos, "<!--")) {
+        pos = skipPast(pos, "-->");
+      } else if (startsWith(pos, "<!")) {
+        // DTDs and CDATA sections are not expected before a top-level element
+        return -1;
+      } else {
+        return pos;
+      }
+      if (pos < 0) {
+        return -1;
+      }
+    }
+  }
+
+  // Returns the end of the element whose content starts at pos, or -1 if the content is not fully
+  // buffered. The span is marked as prefixed if any element name has a prefix.
+  private int scanContent(int pos, ElementSpan span) {
+    int depth = 1;
+    while (depth > 0) {
+      pos = indexOf(pos, '<');
+      if (pos < 0) {
+        return -1;
+      }
+      if (startsWith(pos, "<!--")) {
+        pos = skipPast(pos, "-->");
+      } else if (startsWith(pos, "<![CDATA[")) {
+        pos = skipPast(pos, "]]>");
+      } else if (startsWith(pos, "<?")) {
+        pos = skipPast(pos, "?>");
+      } else if (startsWith(pos, "</")) {
+        int nameEnd = scanName(pos + 2);
+        span.markPrefixed(text(pos + 2, nameEnd));
+        pos = skipPast(nameEnd, ">");
+        depth--;
+      } else {
+        StartTag tag = scanStartTag(pos);
+        if (tag == null) {
+          return -1;
+        }
+        span.markPrefixed(tag.name());
+        pos = tag.end();
+        if (!tag.selfClosing()) {
+          depth++;
+        }
+      }
+      if (pos < 0) {
+        return -1;
+      }
+    }
+    return pos;
+  }
+
+  // Scans the start tag at pos, recording the span (including the preceding whitespace) of the
+  // excluded attribute and the default namespace it declares. Returns null if the tag is not fully
+  // buffered, or if pos is not at a start tag.
+  private StartTag scanStartTag(int pos) {
+    int nameEnd = scanName(pos + 1);
+    if (nameEnd == pos + 1) {
+      return null;
+    }
+    String name = text(pos + 1, nameEnd);
+    int attributeStart = -1;
+    int attributeEnd = -1;
+    String defaultNamespace = null;
+
+    int i = nameEnd;
+    while (true) {
+      int whitespaceStart = i;
+      i = skipWhitespace(i);
+      int c = charAt(i);
+      if (c < 0) {
+        return null;
+      } else if (c == '>') {
+        return new StartTag(name, i + 1, false, attributeStart, attributeEnd, defaultNamespace);
+      } else if (c == '/') {
+        return charAt(i + 1) == '>'
+            ? new StartTag(name, i + 2, true, attributeStart, attributeEnd, defaultNamespace)
+            : null;
+      }
+
+      int attributeNameEnd = scanName(i);
+      int equals = skipWhitespace(attributeNameEnd);
+      if (attributeNameEnd == i || charAt(equals) != '=') {
+        return null;
+      }
+      int quoteStart = skipWhitespace(equals + 1);
+      int quote = charAt(quoteStart);
+      if (quote != '"' && quote != '\'') {
+        return null;
+      }
+      int valueEnd = indexOf(quoteStart + 1, (char) quote);
+      if (valueEnd < 0) {
+        return null;
+      }
+      if (matches(i, attributeNameEnd, excludedAttribute)) {
+        attributeStart = whitespaceStart;
+        attributeEnd = valueEnd + 1;
+      } else if (matches(i, attributeNameEnd, XMLConstants.XMLNS_ATTRIBUTE)) {
+        defaultNamespace = text(quoteStart + 1, valueEnd);
+      }
+      i = valueEnd + 1;
+    }
+  }
+
+  private int scanName(int pos) {
+    while (true) {
+      int c = charAt(pos);
+      if (c < 0 || Character.isWhitespace(c) || c == '>' || c == '/' || c == '=') {
+        return pos;
+      }
+      pos++;
+    }
+  }
+
+  private int skipWhitespace(int pos) {
+    int c = charAt(pos);
+    while (c >= 0 && Character.isWhitespace(c)) {
+      c = charAt(++pos);
+    }
+    return pos;
+  }
+
+  // Returns the position after the next occurrence of the delimiter, or -1 if not found
+  private int skipPast(int pos, String delimiter) {
+    int index = buffer.indexOf(delimiter, pos - bufferStart);
+    if (index < 0) {
+      truncated = true;
+      return -1;
+    }
+    return bufferStart + index + delimiter.length();
+  }
+
+  private int indexOf(int pos, char c) {
+    for (int i = pos - bufferStart; i < buffer.length(); i++) {
+      if (buffer.charAt(i) == c) {
+        return bufferStart + i;
+      }
+    }
+    truncated = true;
+    return -1;
+  }
+
+  private boolean startsWith(int pos, String prefix) {
+    if (pos < 0) {
+      return false;
+    }
+    int offset = pos - bufferStart;
+    if (offset + prefix.length() > buffer.length()) {
+      truncated = true;
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (buffer.charAt(offset + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean matches(int start, int end, String name) {
+    return end - start == name.length() && startsWith(start, name);
+  }
+
+  private int charAt(int pos) {
+    int offset = pos - bufferStart;
+    if (offset >= buffer.length()) {
+      truncated = true;
+      return -1;
+    }
+    return buffer.charAt(offset);
+  }
+
+  private String text(int start, int end) {
+    return buffer.substring(start - bufferStart, end - bufferStart);
+  }
+
+  // Discards the characters before the cursor once enough have accumulated
+  private void release() {
+    int discarded = cursor - bufferStart;
+    if (discarded >= COMPACT_THRESHOLD && discarded * 2 >= buffer.length()) {
+      buffer.delete(0, discarded);
+      bufferStart = cursor;
+    }
+  }
+
+  private ElementSpan disable() {
+    enabled = false;
+    captured.clear();
+    clearBuffer();
+    return null;
+  }
+
+  private void clearBuffer() {
+    buffer.setLength(0);
+    buffer.trimToSize();
+  }
+
+  private static String localPart(String name) {
+    return name.substring(name.indexOf(':') + 1);
+  }
+
+  private static boolean startsWith(byte[] bytes, int... prefix) {
+    if (bytes.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if ((bytes[i] & 0xFF) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private record StartTag(
+      String name,
+      int end,
+      boolean selfClosing,
+      int attributeStart,
+      int attributeEnd,
+      String defaultNamespace) {}
+
+  // source is null if the element is not copied
+  private record CapturedElement(String localName, String source) {}
+
+  private static final class ElementSpan {
+    private final int start;
+    private final String name;
+    private final int excludedStart;
+    private final int excludedEnd;
+    private final String defaultNamespace;
+    private int end;
+    private boolean prefixed;
+
+    private ElementSpan(int start, StartTag startTag) {
+      this.start = start;
+      this.name = startTag.name();
+      this.excludedStart = startTag.attributeStart();
+      this.excludedEnd = startTag.attributeEnd();
+      this.defaultNamespace = startTag.defaultNamespace();
+      markPrefixed(startTag.name());
+    }
+
+    private String localName() {
+      return localPart(name);
+    }
+
+    private void markPrefixed(String name) {
+      prefixed |= name.indexOf(':') >= 0;
+    }
+
+    private boolean prefixed() {
+      return prefixed;
+    }
+  }
+}
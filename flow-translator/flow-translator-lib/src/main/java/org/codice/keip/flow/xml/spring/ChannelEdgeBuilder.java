@@ -17,11 +17,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
+import org.codice.keip.flow.graph.EipGraphBuilder;
 import org.codice.keip.flow.graph.GuavaGraph;
+import org.codice.keip.flow.model.AttributeMap;
 import org.codice.keip.flow.model.ConnectionType;
 import org.codice.keip.flow.model.EdgeProps;
 import org.codice.keip.flow.model.EdgeProps.EdgeType;
+import org.codice.keip.flow.model.EipGraph;
 import org.codice.keip.flow.model.EipNode;
 import org.codice.keip.flow.model.Role;
 
@@ -55,17 +57,21 @@ class ChannelEdgeBuilder {
 
   private final Map<String, EipNode> nonChannelNodes;
 
-  private final GuavaGraph.Builder graphBuilder;
+  private final EipGraphBuilder graphBuilder;
 
   ChannelEdgeBuilder(Collection<EipNode> nodes) {
+    this(nodes, GuavaGraph.newBuilder());
+  }
+
+  ChannelEdgeBuilder(Collection<EipNode> nodes, EipGraphBuilder graphBuilder) {
     this.nodes = nodes;
     this.channelConnections = new HashMap<>();
     this.channelNodes = new HashMap<>();
     this.nonChannelNodes = new HashMap<>();
-    this.graphBuilder = GuavaGraph.newBuilder();
+    this.graphBuilder = graphBuilder;
   }
 
-  GuavaGraph buildGraph() {
+  EipGraph buildGraph() {
     for (EipNode node : nodes) {
       if (Role.CHANNEL.equals(node.role())) {
         channelConnections.putIfAbsent(node.id(), new ChannelConnections());
@@ -234,9 +240,7 @@ class ChannelEdgeBuilder {
 
   private Map<String, Object> filterChannelAttributes(
       Map<String, Object> attrs, Set<String> channelAttrNames) {
-    return attrs.entrySet().stream()
-        .filter(entry -> !channelAttrNames.contains(entry.getKey()))
-        .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    return AttributeMap.copyOf(attrs, key -> !channelAttrNames.contains(key));
   }
 
   private record Connection(String node, EdgeType type) {
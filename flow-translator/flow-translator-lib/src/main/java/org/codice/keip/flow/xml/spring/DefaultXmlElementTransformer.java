@@ -2,10 +2,10 @@ package org.codice.keip.flow.xml.spring;
 
 import static org.codice.keip.flow.xml.spring.AttributeNames.ID;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.model.AttributeMap;
 import org.codice.keip.flow.model.EipChild;
 import org.codice.keip.flow.model.EipId;
 import org.codice.keip.flow.model.EipNode;
@@ -20,8 +20,9 @@ public class DefaultXmlElementTransformer implements XmlElementTransformer {
     validateElement(element, registry);
 
     EipId eipId = new EipId(element.prefix(), element.localName());
-    Map<String, Object> filteredAttrs = new LinkedHashMap<>(element.attributes());
-    String id = removeOrGenerateId(filteredAttrs);
+    String id = getOrGenerateId(element.attributes());
+    Map<String, Object> filteredAttrs =
+        AttributeMap.copyOf(element.attributes(), key -> !ID.equals(key));
 
     List<EipChild> children = element.children().stream().map(this::convertChild).toList();
 
@@ -51,8 +52,8 @@ public class DefaultXmlElementTransformer implements XmlElementTransformer {
     }
   }
 
-  private String removeOrGenerateId(Map<String, Object> attributes) {
-    Object id = attributes.remove(ID);
+  private String getOrGenerateId(Map<String, Object> attributes) {
+    Object id = attributes.get(ID);
     if (id == null) {
       return NodeIdGenerator.randomId();
     }
@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.Set;
 import javax.xml.namespace.QName;
 import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.graph.EipGraphBuilder;
 import org.codice.keip.flow.model.EipNode;
 import org.codice.keip.flow.xml.GraphEdgeBuilder;
 import org.codice.keip.flow.xml.GraphXmlParser;
@@ -43,6 +44,9 @@ public class IntegrationGraphXmlParser extends GraphXmlParser {
 
   @Override
   protected GraphEdgeBuilder graphEdgeBuilder() {
-    return (Collection<EipNode> nodes) -> new ChannelEdgeBuilder(nodes).buildGraph();
+    return (Collection<EipNode> nodes) ->
+        new ChannelEdgeBuilder(
+                nodes, EipGraphBuilder.newBuilder(nodes.size(), getCompactGraphThreshold()))
+            .buildGraph();
   }
 }
@@ -29,6 +29,7 @@
 package org.codice.keip.flow.xml.spring;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A class for generating unique String IDs.
@@ -51,13 +52,13 @@ public class NodeIdGenerator {
    *
    * <p>The generated NanoId String will have 10 symbols.
    *
-   * <p>The NanoId String is generated using {@link Random}, so ids are NOT cryptographically
-   * secure.
+   * <p>The NanoId String is generated using the calling thread's {@link ThreadLocalRandom}, so ids
+   * are NOT cryptographically secure, and concurrent callers do not contend on a shared generator.
    *
    * @return A randomly generated NanoId String.
    */
   public static String randomId() {
-    return randomId(DEFAULT_NUMBER_GENERATOR, DEFAULT_ALPHABET, DEFAULT_SIZE);
+    return randomId(ThreadLocalRandom.current(), DEFAULT_ALPHABET, DEFAULT_SIZE);
   }
 
   /**
@@ -0,0 +1,238 @@
+package org.codice.keip.flow
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.codice.keip.flow.model.ConnectionType
+import org.codice.keip.flow.model.EipId
+import org.codice.keip.flow.model.Role
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+import static org.codice.keip.flow.ComponentRegistryIO.readComponentDefinitionJson
+
+class ComponentRegistryTest extends Specification {
+
+    private static final String COMPONENTS_JSON = """\
+            {
+              "integration": [
+                {
+                  "role": "endpoint",
+                  "connectionType": "source",
+                  "eipId": {"namespace": "integration", "name": "inbound-channel-adapter"},
+                  "attributes": [
+                    {"name": "expression", "type": "string", "required": false},
+                    {"name": "channel", "type": "string", "required": false}
+                  ]
+                },
+                {
+                  "role": "channel",
+                  "connectionType": "passthru",
+                  "eipId": {"namespace": "integration", "name": "channel"},
+                  "attributes": [
+                    {"name": "id", "type": "string", "required": true}
+                  ]
+                }
+              ],
+              "ftp": [
+                {
+                  "role": "endpoint",
+                  "connectionType": "sink",
+                  "eipId": {"namespace": "ftp", "name": "outbound-channel-adapter"},
+                  "attributes": [
+                    {"name": "session-factory", "type": "string", "required": true},
+                    {"name": "remote-directory", "type": "string", "required": false},
+                    {"name": "charset", "type": "string", "required": true}
+                  ]
+                },
+                {
+                  "role": "endpoint",
+                  "connectionType": "passthru",
+                  "eipId": {"namespace": "ftp", "name": "no-attributes"}
+                }
+              ]
+            }""".stripIndent()
+
+    // Written by the si-xsd-parser-cli ComponentIndexWriter from the test-scope
+    // eip-schema-definitions JSON
+    private static final Path INDEX_PATH =
+            Path.of(ComponentRegistryTest.getResource("/component-index/springIntegrationEipComponents.idx").toURI())
+
+    @Shared
+    def siComponentsJson = readComponentDefinitionJson().withCloseable { it.readAllBytes() }
+
+    @TempDir
+    Path tempDir
+
+    def registry = ComponentRegistry.fromJson(
+            new ByteArrayInputStream(COMPONENTS_JSON.getBytes(StandardCharsets.UTF_8)))
+
+    def "registered component properties are looked up by eip id"() {
+        given:
+        def eipId = new EipId("ftp", "outbound-channel-adapter")
+
+        expect:
+        registry.isRegistered(eipId)
+        registry.getConnectionType(eipId) == Optional.of(ConnectionType.SINK)
+        registry.getRole(eipId) == Optional.of(Role.ENDPOINT)
+    }
+
+    def "required attributes are listed in definition order"(EipId eipId, List<String> required) {
+        expect:
+        registry.getRequiredAttributes(eipId) == required
+
+        where:
+        eipId                                                | required
+        new EipId("ftp", "outbound-channel-adapter")         | ["session-factory", "charset"]
+        new EipId("integration", "channel")                  | ["id"]
+        new EipId("integration", "inbound-channel-adapter")  | []
+        new EipId("ftp", "no-attributes")                    | []
+    }
+
+    def "unregistered component -> empty properties"() {
+        given:
+        def eipId = new EipId("integration", "unknown")
+
+        expect:
+        !registry.isRegistered(eipId)
+        registry.getConnectionType(eipId).isEmpty()
+        registry.getRole(eipId).isEmpty()
+        registry.getRequiredAttributes(eipId).isEmpty()
+    }
+
+    def "binary index and JSON registries agree on every component"() {
+        given:
+        def jsonRegistry = ComponentRegistry.fromJson(new ByteArrayInputStream(siComponentsJson))
+        def indexRegistry = ComponentRegistry.fromIndex(INDEX_PATH)
+
+        expect:
+        def ids = siComponentIds()
+        ids.size() > 100
+        ids.every { id ->
+            indexRegistry.isRegistered(id)
+                    && indexRegistry.getRole(id) == jsonRegistry.getRole(id)
+                    && indexRegistry.getConnectionType(id) == jsonRegistry.getConnectionType(id)
+                    && indexRegistry.getRequiredAttributes(id) == jsonRegistry.getRequiredAttributes(id)
+        }
+    }
+
+    def "binary index lookup of unregistered component -> empty properties"(EipId eipId) {
+        given:
+        def indexRegistry = ComponentRegistry.fromIndex(INDEX_PATH)
+
+        expect:
+        !indexRegistry.isRegistered(eipId)
+        indexRegistry.getConnectionType(eipId).isEmpty()
+        indexRegistry.getRole(eipId).isEmpty()
+        indexRegistry.getRequiredAttributes(eipId).isEmpty()
+
+        where:
+        eipId << [new EipId("integration", "unknown"),
+                  new EipId("unknown", "channel"),
+                  new EipId("jms", "transformer"),
+                  new EipId("", "")]
+    }
+
+    def "invalid binary index is rejected"(byte[] bytes) {
+        when:
+        ComponentRegistry.fromIndex(ByteBuffer.wrap(bytes))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        bytes << [new byte[0],
+                  "not an index".getBytes(StandardCharsets.UTF_8),
+                  withVersion(Files.readAllBytes(INDEX_PATH), 99),
+                  Arrays.copyOf(Files.readAllBytes(INDEX_PATH), 2000)]
+    }
+
+    def "load from classpath prefers the binary index"(boolean packaged) {
+        given:
+        def index = packaged ? packageInJar(INDEX_PATH) : INDEX_PATH.toUri().toURL()
+        def classLoader = resources([(ComponentRegistry.COMPONENT_INDEX): index])
+
+        when:
+        def loaded = ComponentRegistry.fromClasspath(classLoader)
+
+        then:
+        loaded.getRole(new EipId("integration", "filter")) == Optional.of(Role.ROUTER)
+
+        where:
+        packaged << [false, true]
+    }
+
+    def "load from classpath falls back to JSON if the binary index is missing or invalid"(boolean withIndex) {
+        given:
+        def json = tempDir.resolve("components.json")
+        Files.write(json, siComponentsJson)
+        def invalidIndex = tempDir.resolve("components.idx")
+        Files.writeString(invalidIndex, "not an index")
+
+        def files = [(ComponentRegistry.COMPONENT_DEFINITIONS_JSON): json.toUri().toURL()]
+        if (withIndex) {
+            files[ComponentRegistry.COMPONENT_INDEX] = invalidIndex.toUri().toURL()
+        }
+
+        when:
+        def loaded = ComponentRegistry.fromClasspath(resources(files))
+
+        then:
+        loaded.getRole(new EipId("integration", "filter")) == Optional.of(Role.ROUTER)
+
+        where:
+        withIndex << [true, false]
+    }
+
+    def "load from classpath without component definitions -> exception"() {
+        when:
+        ComponentRegistry.fromClasspath(resources([:]))
+
+        then:
+        thrown(IOException)
+    }
+
+    private List<EipId> siComponentIds() {
+        def json = new ObjectMapper().readTree(siComponentsJson)
+        return json.properties().collectMany { namespace ->
+            namespace.value.collect { new EipId(it.get("eipId").get("namespace").textValue(),
+                    it.get("eipId").get("name").textValue()) }
+        }
+    }
+
+    private static byte[] withVersion(byte[] index, int version) {
+        def copy = index.clone()
+        ByteBuffer.wrap(copy).putShort(4, version as short)
+        return copy
+    }
+
+    private URL packageInJar(Path file) {
+        def jar = tempDir.resolve("components.jar")
+        new JarOutputStream(Files.newOutputStream(jar)).withCloseable {
+            it.putNextEntry(new JarEntry(ComponentRegistry.COMPONENT_INDEX))
+            it.write(Files.readAllBytes(file))
+        }
+        return new URL("jar:${jar.toUri()}!/${ComponentRegistry.COMPONENT_INDEX}")
+    }
+
+    // A classloader that only sees the given resources
+    private static ClassLoader resources(Map<String, URL> resources) {
+        return new ClassLoader(null) {
+            @Override
+            URL getResource(String name) {
+                return resources[name]
+            }
+
+            @Override
+            InputStream getResourceAsStream(String name) {
+                return resources[name]?.openStream()
+            }
+        }
+    }
+}
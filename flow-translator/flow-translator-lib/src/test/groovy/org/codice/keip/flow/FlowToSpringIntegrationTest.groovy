@@ -1,8 +1,14 @@
 package org.codice.keip.flow
 
+import com.fasterxml.jackson.annotation.JsonInclude
+import com.fasterxml.jackson.core.JsonGenerator
 import com.fasterxml.jackson.databind.DeserializationFeature
 import com.fasterxml.jackson.databind.MapperFeature
+import com.fasterxml.jackson.databind.cfg.EnumFeature
 import com.fasterxml.jackson.databind.json.JsonMapper
+import org.codice.keip.flow.TranslationObserver.Direction
+import org.codice.keip.flow.TranslationObserver.Phase
+import org.codice.keip.flow.diff.FlowDiff
 import org.codice.keip.flow.model.EipId
 import org.codice.keip.flow.model.Flow
 import org.codice.keip.flow.xml.NamespaceSpec
@@ -14,6 +20,7 @@ import org.codice.keip.flow.xml.spring.SchemaBuilder
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.nio.charset.StandardCharsets
 import java.nio.file.Path
 
 import static ComponentRegistryIO.readComponentDefinitionJson
@@ -37,6 +44,13 @@ class FlowToSpringIntegrationTest extends Specification {
                       .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
                       .build()
 
+    // the serialization of the webapp responses
+    private static final JsonMapper RESPONSE_MAPPER =
+            JsonMapper.builder()
+                      .enable(EnumFeature.WRITE_ENUMS_TO_LOWERCASE)
+                      .serializationInclusion(JsonInclude.Include.NON_NULL)
+                      .build()
+
     @Shared
     def componentRegistry = ComponentRegistry.fromJson(readComponentDefinitionJson())
 
@@ -68,6 +82,38 @@ class FlowToSpringIntegrationTest extends Specification {
         "flowGraph6.json" | Path.of("end-to-end", "spring-integration-6.xml").toString()
     }
 
+    def "End-to-end streamed flow json to spring-integration xml"(String flowFile, String xmlFile) {
+        given:
+        def json = getFlowJsonStream(flowFile)
+
+        def flowTranslator = new FlowTranslator(new IntegrationGraphXmlSerializer(
+                NAMESPACES_SERIALIZER))
+
+        TranslationObserver observer = Mock()
+        flowTranslator.setObserver(observer)
+        def expectedFlow = MAPPER.readValue(getFlowJson(flowFile), Flow.class)
+
+        when:
+        def output = new StringWriter()
+        def errors = flowTranslator.toXml(json, output, false)
+
+        then:
+        errors.isEmpty()
+        compareXml(output.toString(), readTestXml(xmlFile))
+        1 * observer.phaseCompleted(Phase.BUILD_GRAPH, { it >= 0 })
+        1 * observer.graphTranslated(
+                Direction.TO_XML, expectedFlow.nodes().size(), expectedFlow.edges().size())
+
+        where:
+        flowFile          | xmlFile
+        "flowGraph1.json" | Path.of("end-to-end", "spring-integration-1.xml").toString()
+        "flowGraph2.json" | Path.of("end-to-end", "spring-integration-2.xml").toString()
+        "flowGraph3.json" | Path.of("end-to-end", "spring-integration-3.xml").toString()
+        "flowGraph4.json" | Path.of("end-to-end", "spring-integration-4.xml").toString()
+        "flowGraph5.json" | Path.of("end-to-end", "spring-integration-5.xml").toString()
+        "flowGraph6.json" | Path.of("end-to-end", "spring-integration-6.xml").toString()
+    }
+
     def "Verify transformation error list is populated on node transformation error"() {
         given:
         def flow = MAPPER.readValue(getFlowJson("flowGraph1.json"), Flow.class)
@@ -111,6 +157,35 @@ class FlowToSpringIntegrationTest extends Specification {
         "flowGraph6.json" | Path.of("end-to-end", "spring-integration-6.xml").toString()
     }
 
+    def "End-to-end spring-integration xml to streamed flow json"(String xmlFile) {
+        given:
+        def xmlParser = new IntegrationGraphXmlParser(NAMESPACES_PARSER, componentRegistry)
+        xmlParser.setValidationSchema(springIntegrationSchema)
+        def flowTranslator = new FlowTranslator(xmlParser)
+        def expectedJson = RESPONSE_MAPPER.writeValueAsString(
+                flowTranslator.fromXml(readTestXml(xmlFile)))
+
+        TranslationObserver observer = Mock()
+        flowTranslator.setObserver(observer)
+
+        when:
+        def output = new StringWriter()
+        try (def generator = RESPONSE_MAPPER.getFactory().createGenerator(output)) {
+            flowTranslator.fromXml(readTestXml(xmlFile), generator)
+        }
+
+        then:
+        output.toString() == expectedJson
+        1 * observer.phaseCompleted(Phase.WRITE_JSON, { it >= 0 })
+        1 * observer.graphTranslated(Direction.FROM_XML, _, _)
+        0 * observer._
+
+        where:
+        xmlFile << (1..6).collect {
+            Path.of("end-to-end", "spring-integration-${it}.xml").toString()
+        }
+    }
+
     def "Uninitialized serializer -> UnsupportedOperationException"() {
         given:
         def xmlParser = new IntegrationGraphXmlParser(NAMESPACES_PARSER, componentRegistry)
@@ -138,6 +213,18 @@ class FlowToSpringIntegrationTest extends Specification {
 
         then:
         thrown(UnsupportedOperationException)
+
+        when:
+        flowTranslator.fromXml(is, Stub(JsonGenerator))
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        flowTranslator.diffXml(is, is)
+
+        then:
+        thrown(UnsupportedOperationException)
     }
 
     def "Full initialization of parser and serializer"() {
@@ -160,6 +247,134 @@ class FlowToSpringIntegrationTest extends Specification {
         compareFlows(resultFlow, flow)
     }
 
+    def "Observed flow to xml -> phases, flow size and node transformations reported"() {
+        given:
+        def flow = MAPPER.readValue(getFlowJson("flowGraph1.json"), Flow.class)
+        def serializer = new IntegrationGraphXmlSerializer(NAMESPACES_SERIALIZER)
+        def flowTranslator = new FlowTranslator(serializer)
+
+        TranslationObserver observer = Mock()
+        serializer.setObserver(observer)
+        flowTranslator.setObserver(observer)
+
+        when:
+        flowTranslator.toXml(flow, new StringWriter())
+
+        then:
+        1 * observer.phaseCompleted(Phase.BUILD_GRAPH, { it >= 0 })
+        1 * observer.phaseCompleted(Phase.PLAN, { it >= 0 })
+        1 * observer.phaseCompleted(Phase.TRANSFORM_NODES, { it >= 0 })
+        1 * observer.phaseCompleted(Phase.SERIALIZE, { it >= 0 })
+        flow.nodes().each { node -> 1 * observer.nodeTransformed(node.eipId(), { it >= 0 }) }
+        1 * observer.graphTranslated(Direction.TO_XML, flow.nodes().size(), flow.edges().size())
+        0 * observer._
+    }
+
+    def "Observed xml to flow -> phases and flow size reported"() {
+        given:
+        def xml = readTestXml(Path.of("end-to-end", "spring-integration-1.xml").toString())
+        def expectedFlow = MAPPER.readValue(getFlowJson("flowGraph1.json"), Flow.class)
+        def xmlParser = new IntegrationGraphXmlParser(NAMESPACES_PARSER, componentRegistry)
+        xmlParser.setValidationSchema(springIntegrationSchema)
+        def flowTranslator = new FlowTranslator(xmlParser)
+
+        TranslationObserver observer = Mock()
+        xmlParser.setObserver(observer)
+        flowTranslator.setObserver(observer)
+
+        when:
+        flowTranslator.fromXml(xml)
+
+        then:
+        1 * observer.phaseCompleted(Phase.PARSE, { it >= 0 })
+        1 * observer.phaseCompleted(Phase.TRANSFORM_ELEMENTS, { it >= 0 })
+        1 * observer.phaseCompleted(Phase.BUILD_EDGES, { it >= 0 })
+        1 * observer.phaseCompleted(Phase.BUILD_FLOW, { it >= 0 })
+        1 * observer.graphTranslated(
+                Direction.FROM_XML, expectedFlow.nodes().size(), expectedFlow.edges().size())
+        0 * observer._
+    }
+
+    def "Diff of a flow with itself -> no changes"(String flowFile) {
+        given:
+        def flow = MAPPER.readValue(getFlowJson(flowFile), Flow.class)
+        def flowTranslator = new FlowTranslator(new IntegrationGraphXmlSerializer(
+                NAMESPACES_SERIALIZER))
+
+        TranslationObserver observer = Mock()
+        flowTranslator.setObserver(observer)
+
+        when:
+        def diff = flowTranslator.diff(flow, flow)
+
+        then:
+        !diff.hasChanges()
+        1 * observer.phaseCompleted(Phase.BUILD_GRAPH, { it >= 0 })
+        1 * observer.phaseCompleted(Phase.DIFF, { it >= 0 })
+        0 * observer._
+
+        where:
+        flowFile << (1..6).collect { "flowGraph${it}.json".toString() }
+    }
+
+    def "Diff of spring-integration xml with generated ids -> only the modified node reported"() {
+        given:
+        def xmlParser = new IntegrationGraphXmlParser(NAMESPACES_PARSER, componentRegistry)
+        xmlParser.setValidationSchema(springIntegrationSchema)
+        def flowTranslator = new FlowTranslator(xmlParser)
+
+        def xml = readTestXml("multi-node-missing-ids.xml").text
+        def modifiedXml = xml.replace("payload + ' processed'", "payload")
+
+        when:
+        def unchanged = flowTranslator.diffXml(toStream(xml), toStream(xml))
+        def diff = flowTranslator.diffXml(toStream(xml), toStream(modifiedXml))
+
+        then:
+        !unchanged.hasChanges()
+        diff.addedNodes().isEmpty()
+        diff.removedNodes().isEmpty()
+        diff.modifiedNodes().size() == 1
+        diff.modifiedNodes()[0].attributes() ==
+                [new FlowDiff.ValueChange("expression", "payload + ' processed'", "payload")]
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+        diff.modifiedEdges().isEmpty()
+    }
+
+    def "Diff of spring-integration xml with renamed ids -> renamed channel and bean reported"(
+            String xmlFile, List renamedNodes) {
+        given:
+        def xmlParser = new IntegrationGraphXmlParser(NAMESPACES_PARSER, componentRegistry)
+        xmlParser.setValidationSchema(springIntegrationSchema)
+        def flowTranslator = new FlowTranslator(xmlParser)
+
+        def xml = readTestXml(xmlFile).text
+        def renamedChannel = xml.replace("transformerOut", "renamedOut")
+        def renamedBean = xml.replace('id="messageSource"', 'id="renamedSource"')
+                             .replace('channel="messageSource"', 'channel="renamedSource"')
+                             .replace('id="appender"', 'id="renamedAppender"')
+
+        when:
+        def channelDiff = flowTranslator.diffXml(toStream(xml), toStream(renamedChannel))
+        def beanDiff = flowTranslator.diffXml(toStream(xml), toStream(renamedBean))
+
+        then:
+        channelDiff.hasChanges()
+        channelDiff.modifiedNodes().isEmpty()
+        channelDiff.modifiedEdges().size() == 1
+        channelDiff.modifiedEdges()[0].before().id() == "transformerOut"
+        channelDiff.modifiedEdges()[0].after().id() == "renamedOut"
+
+        beanDiff.modifiedNodes().collect { [it.previousId(), it.id()] } == renamedNodes
+        beanDiff.modifiedEdges()*.after()*.id() == ["renamedSource"]
+
+        where:
+        xmlFile                      | renamedNodes
+        "multi-node.xml"             | [["appender", "renamedAppender"]]
+        "multi-node-missing-ids.xml" | []
+    }
+
     static BufferedReader getFlowJson(String filename) {
         Path path = Path.of("json").resolve(filename)
         return FlowToSpringIntegrationTest.class
@@ -168,6 +383,17 @@ class FlowToSpringIntegrationTest extends Specification {
                                           .newReader()
     }
 
+    static InputStream getFlowJsonStream(String filename) {
+        Path path = Path.of("json").resolve(filename)
+        return FlowToSpringIntegrationTest.class
+                                          .getClassLoader()
+                                          .getResourceAsStream(path.toString())
+    }
+
+    static InputStream toStream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))
+    }
+
     NodeTransformer buildExceptionalTransformer(EipId errorTrigger) {
         return (node, graph) -> {
             if (node.eipId() == errorTrigger) {
@@ -179,8 +405,14 @@ class FlowToSpringIntegrationTest extends Specification {
 
     // order insensitive comparison
     boolean compareFlows(Flow first, Flow second) {
+        compareCustomEntities(first.customEntities(), second.customEntities())
         return first.nodes().toSorted() == second.nodes().toSorted() &&
-                first.edges().toSorted() == second.edges().toSorted() &&
-                first.customEntities() == second.customEntities()
+                first.edges().toSorted() == second.edges().toSorted()
+    }
+
+    // entities parsed from xml keep the formatting of the source document
+    void compareCustomEntities(Map<String, String> first, Map<String, String> second) {
+        assert first.keySet() == second.keySet()
+        first.each { id, xml -> compareXml(xml, second[id]) }
     }
 }
@@ -0,0 +1,370 @@
+package org.codice.keip.flow.diff
+
+import org.codice.keip.flow.diff.FlowDiff.ChangeType
+import org.codice.keip.flow.diff.FlowDiff.ChildChange
+import org.codice.keip.flow.diff.FlowDiff.EdgeChange
+import org.codice.keip.flow.diff.FlowDiff.ValueChange
+import org.codice.keip.flow.graph.EipGraphBuilder
+import org.codice.keip.flow.model.EdgeProps
+import org.codice.keip.flow.model.EipChild
+import org.codice.keip.flow.model.EipId
+import org.codice.keip.flow.model.EipNode
+import org.codice.keip.flow.model.Flow
+import org.codice.keip.flow.model.FlowEdge
+import org.codice.keip.flow.xml.GraphXmlParser.XmlParseResult
+import spock.lang.Specification
+
+import static org.codice.keip.flow.model.ConnectionType.PASSTHRU
+import static org.codice.keip.flow.model.Role.ROUTER
+import static org.codice.keip.flow.model.Role.TRANSFORMER
+
+class GraphDifferTest extends Specification {
+
+    private static final EipId TRANSFORMER_ID = new EipId("integration", "transformer")
+    private static final EipId FILTER_ID = new EipId("integration", "filter")
+    private static final EipId POLLER_ID = new EipId("integration", "poller")
+
+    def differ = new GraphDiffer()
+
+    def "identical flows -> no changes"(int threshold) {
+        given:
+        def flow = new Flow([newNode("1"), newNode("2"), newNode("3")],
+                [new FlowEdge("a", "1", "2"), new FlowEdge("b", "2", "3")])
+
+        when:
+        def diff = diff(flow, flow, threshold)
+
+        then:
+        !diff.hasChanges()
+
+        where:
+        threshold << [1, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD]
+    }
+
+    def "added and removed nodes and edges"(int threshold) {
+        given:
+        def before = new Flow([newNode("1"), newNode("2", ["expression": "x"]), newNode("3")],
+                [new FlowEdge("a", "1", "2"), new FlowEdge("b", "2", "3")])
+        def after = new Flow([newNode("1"), newNode("3"), newNode("4", FILTER_ID, [:])],
+                [new FlowEdge("c", "1", "4"), new FlowEdge("d", "4", "3")])
+
+        when:
+        def diff = diff(before, after, threshold)
+
+        then:
+        diff.addedNodes()*.id() == ["4"]
+        diff.removedNodes()*.id() == ["2"]
+        diff.modifiedNodes().isEmpty()
+        diff.addedEdges() == [new FlowEdge("c", "1", "4"), new FlowEdge("d", "4", "3")]
+        diff.removedEdges() == [new FlowEdge("a", "1", "2"), new FlowEdge("b", "2", "3")]
+        diff.modifiedEdges().isEmpty()
+
+        where:
+        threshold << [1, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD]
+    }
+
+    def "modified node properties and attributes"() {
+        given:
+        def before = new EipNode("1", TRANSFORMER_ID, "label", null, TRANSFORMER, PASSTHRU,
+                ["expression": "x", "ref": "bean", "unset": null], null)
+        def after = new EipNode("1", TRANSFORMER_ID, "new label", "desc", ROUTER, PASSTHRU,
+                ["expression": "y", "order": "2"], null)
+
+        when:
+        def diff = diff(new Flow([before], []), new Flow([after], []), 1)
+
+        then:
+        diff.modifiedNodes().size() == 1
+        with(diff.modifiedNodes()[0]) {
+            id() == "1"
+            previousId() == null
+            properties() == [new ValueChange("label", "label", "new label"),
+                             new ValueChange("description", null, "desc"),
+                             new ValueChange("role", TRANSFORMER, ROUTER)]
+            attributes() == [new ValueChange("expression", "x", "y"),
+                             new ValueChange("ref", "bean", null),
+                             new ValueChange("order", null, "2")]
+            children().isEmpty()
+        }
+    }
+
+    def "null attribute values are treated as missing"() {
+        given:
+        def before = newNode("1", ["expression": "x", "unset": null])
+        def after = newNode("1", ["expression": "x"])
+
+        expect:
+        !diff(new Flow([before], []), new Flow([after], []), 1).hasChanges()
+    }
+
+    def "renamed node with the same content -> matched by content"(int threshold) {
+        given:
+        def before = new Flow(
+                [newNode("1"), newNode("2", ["expression": "x"]), newNode("3")],
+                [new FlowEdge("a", "1", "2"), new FlowEdge("b", "2", "3")])
+        def after = new Flow(
+                [newNode("1"), newNode("renamed", ["expression": "x"]), newNode("3")],
+                [new FlowEdge("a", "1", "renamed"), new FlowEdge("b", "renamed", "3")])
+
+        when:
+        def diff = diff(before, after, threshold)
+
+        then:
+        diff.addedNodes().isEmpty()
+        diff.removedNodes().isEmpty()
+        diff.modifiedNodes().size() == 1
+        with(diff.modifiedNodes()[0]) {
+            id() == "renamed"
+            previousId() == "2"
+            properties().isEmpty()
+            attributes().isEmpty()
+        }
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+        diff.modifiedEdges().isEmpty()
+
+        where:
+        threshold << [1, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD]
+    }
+
+    def "chain of renamed and modified nodes -> matched through their edges"(int threshold) {
+        given:
+        def before = new Flow(
+                [newNode("in"), newNode("b1", ["expression": "1"]),
+                 newNode("c1", FILTER_ID, ["expression": "1"]), newNode("out")],
+                [new FlowEdge("a", "in", "b1"), new FlowEdge("b", "b1", "c1"),
+                 new FlowEdge("c", "c1", "out")])
+        def after = new Flow(
+                [newNode("in"), newNode("b2", ["expression": "2"]),
+                 newNode("c2", FILTER_ID, ["expression": "2"]), newNode("out")],
+                [new FlowEdge("a", "in", "b2"), new FlowEdge("b", "b2", "c2"),
+                 new FlowEdge("c", "c2", "out")])
+
+        when:
+        def diff = diff(before, after, threshold)
+
+        then:
+        diff.addedNodes().isEmpty()
+        diff.removedNodes().isEmpty()
+        diff.modifiedNodes().collect { [it.previousId(), it.id()] } == [["b1", "b2"], ["c1", "c2"]]
+        diff.modifiedNodes().every {
+            it.attributes() == [new ValueChange("expression", "1", "2")]
+        }
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+
+        where:
+        threshold << [1, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD]
+    }
+
+    def "several unmatched neighbours of the same type -> not matched through edges"() {
+        given:
+        def before = new Flow(
+                [newNode("in"), newNode("x1", ["expression": "1"]),
+                 newNode("y1", ["expression": "2"])],
+                [new FlowEdge("a", "in", "x1"), new FlowEdge("b", "in", "y1")])
+        def after = new Flow(
+                [newNode("in"), newNode("x2", ["expression": "3"]),
+                 newNode("y2", ["expression": "4"])],
+                [new FlowEdge("a", "in", "x2"), new FlowEdge("b", "in", "y2")])
+
+        when:
+        def diff = diff(before, after, 1)
+
+        then:
+        diff.addedNodes()*.id().toSet() == ["x2", "y2"].toSet()
+        diff.removedNodes()*.id().toSet() == ["x1", "y1"].toSet()
+        diff.modifiedNodes().isEmpty()
+        diff.addedEdges().size() == 2
+        diff.removedEdges().size() == 2
+    }
+
+    def "identical nodes with new ids -> paired in traversal order"() {
+        given:
+        def before = new Flow([newNode("1"), newNode("2")], [new FlowEdge("a", "1", "2")])
+        def after = new Flow([newNode("3"), newNode("4")], [new FlowEdge("a", "3", "4")])
+
+        when:
+        def diff = diff(before, after, 1)
+
+        then:
+        diff.modifiedNodes().collect { [it.previousId(), it.id()] } == [["1", "3"], ["2", "4"]]
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+        diff.modifiedEdges().isEmpty()
+    }
+
+    def "generated ids -> nodes and edges that only differ by generated id are not reported"() {
+        given:
+        def before = new Flow([newNode("1"), newNode("2", ["expression": "x"])],
+                [new FlowEdge("ch-1-2", "1", "2")])
+        def after = new Flow([newNode("3"), newNode("4", ["expression": "y"])],
+                [new FlowEdge("ch-3-4", "3", "4")])
+
+        when:
+        def diff = differ.diff(
+                new XmlParseResult(EipGraphBuilder.from(before, 1), [:], ["1", "2", "ch-1-2"] as Set),
+                new XmlParseResult(EipGraphBuilder.from(after, 1), [:], ["3", "4", "ch-3-4"] as Set))
+
+        then:
+        diff.modifiedNodes().size() == 1
+        with(diff.modifiedNodes()[0]) {
+            id() == "4"
+            previousId() == "2"
+            attributes() == [new ValueChange("expression", "x", "y")]
+        }
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+        diff.modifiedEdges().isEmpty()
+    }
+
+    def "ids read from the documents -> renamed nodes and edges reported"() {
+        given:
+        def before = new Flow([newNode("1"), newNode("2")], [new FlowEdge("channel", "1", "2")])
+        def after = new Flow([newNode("1"), newNode("renamed")],
+                [new FlowEdge("renamed-channel", "1", "renamed")])
+
+        when:
+        def diff = differ.diff(
+                new XmlParseResult(EipGraphBuilder.from(before, 1), [:], ["1"] as Set),
+                new XmlParseResult(EipGraphBuilder.from(after, 1), [:], ["1"] as Set))
+
+        then:
+        diff.modifiedNodes().collect { [it.previousId(), it.id()] } == [["2", "renamed"]]
+        diff.modifiedEdges() == [new EdgeChange(new FlowEdge("channel", "1", "2"),
+                new FlowEdge("renamed-channel", "1", "renamed"))]
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+    }
+
+    def "modified edges"() {
+        given:
+        def before = new Flow([newNode("1"), newNode("2"), newNode("3")],
+                [new FlowEdge("a", "1", "2"), new FlowEdge("b", "2", "3")])
+        def after = new Flow([newNode("1"), newNode("2"), newNode("3")],
+                [new FlowEdge("a", "1", "2", EdgeProps.EdgeType.DISCARD),
+                 new FlowEdge("renamed", "2", "3")])
+
+        when:
+        def diff = diff(before, after, 1)
+
+        then:
+        diff.modifiedEdges() == [
+                new EdgeChange(new FlowEdge("a", "1", "2"),
+                        new FlowEdge("a", "1", "2", EdgeProps.EdgeType.DISCARD)),
+                new EdgeChange(new FlowEdge("b", "2", "3"), new FlowEdge("renamed", "2", "3"))]
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+    }
+
+    def "children compared by position after the common start and end"() {
+        given:
+        def header = new EipChild(new EipId("integration", "header"), ["name": "h"], null)
+        def before = newNode("1").withChildren([
+                new EipChild(POLLER_ID, ["fixed-rate": "5000"],
+                        [new EipChild(TRANSFORMER_ID, ["expression": "x"], null)]),
+                header])
+        def after = newNode("1").withChildren([
+                new EipChild(FILTER_ID, ["ref": "f"], null),
+                new EipChild(POLLER_ID, ["fixed-rate": "1000"],
+                        [new EipChild(TRANSFORMER_ID, ["expression": "y"], null)]),
+                header])
+
+        when:
+        def diff = diff(new Flow([before], []), new Flow([after], []), 1)
+
+        then:
+        diff.modifiedNodes()[0].children() == [
+                new ChildChange(ChangeType.REMOVED, "0", POLLER_ID,
+                        [new ValueChange("fixed-rate", "5000", null)]),
+                new ChildChange(ChangeType.REMOVED, "0/0", TRANSFORMER_ID,
+                        [new ValueChange("expression", "x", null)]),
+                new ChildChange(ChangeType.ADDED, "0", FILTER_ID,
+                        [new ValueChange("ref", null, "f")]),
+                new ChildChange(ChangeType.ADDED, "1", POLLER_ID,
+                        [new ValueChange("fixed-rate", null, "1000")]),
+                new ChildChange(ChangeType.ADDED, "1/0", TRANSFORMER_ID,
+                        [new ValueChange("expression", null, "y")])]
+    }
+
+    def "modified nested child attributes"() {
+        given:
+        def before = newNode("1").withChildren([
+                new EipChild(POLLER_ID, ["fixed-rate": "5000"],
+                        [new EipChild(TRANSFORMER_ID, ["expression": "x"], null)])])
+        def after = newNode("1").withChildren([
+                new EipChild(POLLER_ID, ["fixed-rate": "5000"],
+                        [new EipChild(TRANSFORMER_ID, ["expression": "y"], null)]),
+                new EipChild(FILTER_ID, [:], null)])
+
+        when:
+        def diff = diff(new Flow([before], []), new Flow([after], []), 1)
+
+        then:
+        diff.modifiedNodes()[0].children() == [
+                new ChildChange(ChangeType.MODIFIED, "0/0", TRANSFORMER_ID,
+                        [new ValueChange("expression", "x", "y")]),
+                new ChildChange(ChangeType.ADDED, "1", FILTER_ID, [])]
+    }
+
+    def "custom entity changes"() {
+        given:
+        def before = new Flow([newNode("1")], [], ["a": "<bean id='a'/>", "b": "<bean id='b'/>"])
+        def after = new Flow([newNode("1")], [], ["a": "<bean id='a2'/>", "c": "<bean id='c'/>"])
+
+        when:
+        def diff = diff(before, after, 1)
+
+        then:
+        diff.customEntities() == [new ValueChange("a", "<bean id='a'/>", "<bean id='a2'/>"),
+                                  new ValueChange("b", "<bean id='b'/>", null),
+                                  new ValueChange("c", null, "<bean id='c'/>")]
+        diff.hasChanges()
+    }
+
+    def "large flow with a renamed chain -> every node matched"() {
+        given:
+        int size = 50_000
+        def before = chain(size, "b", "x")
+        // the ids and attributes of the nodes between the two ends all change
+        def after = chain(size, "a", "y")
+
+        when:
+        def diff = diff(before, after, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD)
+
+        then:
+        diff.addedNodes().isEmpty()
+        diff.removedNodes().isEmpty()
+        diff.modifiedNodes().size() == size - 2
+        diff.addedEdges().isEmpty()
+        diff.removedEdges().isEmpty()
+    }
+
+    FlowDiff diff(Flow before, Flow after, int threshold) {
+        return differ.diff(
+                EipGraphBuilder.from(before, threshold), before.customEntities(),
+                EipGraphBuilder.from(after, threshold), after.customEntities())
+    }
+
+    // in -> prefix1 -> ... -> out, with an expression attribute on the inner nodes
+    private static Flow chain(int size, String prefix, String expression) {
+        def ids = ["in", *(1..<(size - 1)).collect { "$prefix$it".toString() }, "out"]
+        def nodes = ids.withIndex().collect { id, i ->
+            i == 0 || i == size - 1 ? newNode(id) : newNode(id, ["expression": expression + i])
+        }
+        def edges = (1..<size).collect { new FlowEdge("e$it", ids[it - 1], ids[it]) }
+        return new Flow(nodes, edges)
+    }
+
+    private static EipNode newNode(String id) {
+        return newNode(id, TRANSFORMER_ID, [:])
+    }
+
+    private static EipNode newNode(String id, Map<String, Object> attributes) {
+        return newNode(id, TRANSFORMER_ID, attributes)
+    }
+
+    private static EipNode newNode(String id, EipId eipId, Map<String, Object> attributes) {
+        return new EipNode(id, eipId, null, null, TRANSFORMER, PASSTHRU, attributes, null)
+    }
+}
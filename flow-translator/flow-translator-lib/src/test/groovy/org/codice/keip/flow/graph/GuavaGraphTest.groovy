@@ -263,6 +263,75 @@ class GuavaGraphTest extends Specification {
         resultFlow == flow
     }
 
+    def "cycle downstream of an unreachable cycle -> upstream cycle traversed first"() {
+        given:
+        def nodeA = newNode("a")
+        def nodeB = newNode("b")
+        def nodeC = newNode("c")
+        def nodeD = newNode("d")
+
+        // c and d are added first, but the a <-> b cycle feeds into the c <-> d cycle
+        def flow = new Flow([nodeC, nodeD, nodeA, nodeB], [
+                new FlowEdge("e1", "a", "b"),
+                new FlowEdge("e2", "b", "a"),
+                new FlowEdge("e3", "b", "c"),
+                new FlowEdge("e4", "c", "d"),
+                new FlowEdge("e5", "d", "c")])
+        def graph = GuavaGraph.from(flow)
+
+        expect:
+        getIds(graph.traverse()) == ["a", "b", "c", "d"]
+        getIds(graph.traverse()) == ["a", "b", "c", "d"]
+    }
+
+    def "strongly connected components, topological levels and cycle detection"() {
+        given:
+        def nodes = (1..6).collect { newNode(it.toString()) }
+        def flow = new Flow(nodes, [
+                new FlowEdge("a", "1", "2"),
+                new FlowEdge("b", "2", "3"),
+                new FlowEdge("c", "3", "1"),
+                new FlowEdge("d", "3", "4"),
+                new FlowEdge("e", "5", "4"),
+                new FlowEdge("f", "4", "6")])
+        def graph = GuavaGraph.from(flow)
+
+        expect:
+        graph.stronglyConnectedComponents().collect { getIds(it.stream()) } ==
+                [["5"], ["1", "2", "3"], ["4"], ["6"]]
+        nodes.collect { graph.topologicalLevel(it) } == [0, 0, 0, 1, 0, 2]
+        graph.hasCycle()
+    }
+
+    def "acyclic graph -> every node is its own component"() {
+        given:
+        def node1 = newNode("1")
+        def node2 = newNode("2")
+        def node3 = newNode("3")
+
+        def flow = new Flow([node1, node2, node3],
+                [new FlowEdge("a", "1", "2"), new FlowEdge("b", "1", "3"),
+                 new FlowEdge("c", "2", "3")])
+        def graph = GuavaGraph.from(flow)
+
+        expect:
+        graph.stronglyConnectedComponents().collect { getIds(it.stream()) } ==
+                [["1"], ["2"], ["3"]]
+        [node1, node2, node3].collect { graph.topologicalLevel(it) } == [0, 1, 2]
+        !graph.hasCycle()
+    }
+
+    def "topological level of an unknown node -> exception thrown"() {
+        given:
+        def graph = GuavaGraph.from(new Flow([newNode("1")], []))
+
+        when:
+        graph.topologicalLevel(newNode("2"))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
     private static EipNode newNode(String id) {
         return new EipNode(
                 id, new EipId("test", "a"), null, null,
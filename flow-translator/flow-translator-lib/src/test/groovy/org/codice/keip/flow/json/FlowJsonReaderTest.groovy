@@ -0,0 +1,200 @@
+package org.codice.keip.flow.json
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.MapperFeature
+import com.fasterxml.jackson.databind.json.JsonMapper
+import org.codice.keip.flow.graph.CompactGraph
+import org.codice.keip.flow.graph.EipGraphBuilder
+import org.codice.keip.flow.graph.GuavaGraph
+import org.codice.keip.flow.model.EdgeProps.EdgeType
+import org.codice.keip.flow.model.EipNode
+import org.codice.keip.flow.model.Flow
+import org.codice.keip.flow.model.Role
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Path
+
+class FlowJsonReaderTest extends Specification {
+
+    private static final JsonMapper MAPPER =
+            JsonMapper.builder()
+                      .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+                      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                      .build()
+
+    private static final String NODE =
+            '{"id": "n1", "eipId": {"namespace": "integration", "name": "filter"}, "role": "router", "connectionType": "tee"}'
+
+    def reader = new FlowJsonReader()
+
+    def "read flow json -> same graph as the bound flow"(String flowFile) {
+        given:
+        def bytes = readFlowJson(flowFile)
+        def expected = MAPPER.readValue(bytes, Flow.class)
+
+        when:
+        def result = read(bytes)
+
+        then:
+        def flow = result.graph().toFlow()
+        nodeFields(flow) == nodeFields(expected)
+        flow.edges().toSorted() == expected.edges().toSorted()
+        result.customEntities() == expected.customEntities()
+        result.nodeCount() == expected.nodes().size()
+        result.edgeCount() == expected.edges().size()
+
+        where:
+        flowFile << (1..6).collect { "flowGraph${it}.json" }
+    }
+
+    def "graph implementation is chosen from the node count"(int threshold, Class graphType) {
+        given:
+        def json = """{"nodes": [${NODE}, ${NODE.replace('"n1"', '"n2"')}]}"""
+
+        when:
+        def result = reader.read(toStream(json), threshold)
+
+        then:
+        graphType.isInstance(result.graph())
+        result.nodeCount() == 2
+
+        where:
+        threshold                                      | graphType
+        EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD | GuavaGraph
+        2                                              | CompactGraph
+        1                                              | CompactGraph
+    }
+
+    def "edges listed before their nodes are added once the nodes are read"() {
+        given:
+        def json = """{
+            "edges": [{"id": "e1", "source": "n1", "target": "n2", "type": "DISCARD"}],
+            "nodes": [${NODE}, ${NODE.replace('"n1"', '"n2"')}]
+        }"""
+
+        when:
+        def flow = read(json).graph().toFlow()
+
+        then:
+        flow.edges().size() == 1
+        with(flow.edges()[0]) {
+            source() == "n1"
+            target() == "n2"
+            type() == EdgeType.DISCARD
+        }
+    }
+
+    def "unknown properties are ignored and enums are case-insensitive"() {
+        given:
+        def json = """{
+            "version": 2,
+            "nodes": [{
+                "id": "n1",
+                "eipId": {"namespace": "integration", "name": "filter", "extra": [1, {"a": 2}]},
+                "role": "ROUTER",
+                "connectionType": "Tee",
+                "position": {"x": 1, "y": 2}
+            }]
+        }"""
+
+        when:
+        def node = read(json).graph().toFlow().nodes()[0]
+
+        then:
+        node.role() == Role.ROUTER
+        node.eipId().name() == "filter"
+    }
+
+    def "attribute values keep their JSON types"() {
+        given:
+        def json = """{"nodes": [${withAttributes('{"s": "text", "i": 5, "l": 10000000000, "d": 1.5, "b": true}')}]}"""
+
+        when:
+        def attributes = read(json).graph().toFlow().nodes()[0].attributes()
+
+        then:
+        attributes == ["s": "text", "i": 5, "l": 10000000000L, "d": 1.5d, "b": true]
+        attributes["i"] instanceof Integer
+        attributes["d"] instanceof Double
+    }
+
+    def "invalid flow json -> error points to the invalid value"(String json, String pointer) {
+        when:
+        read(json)
+
+        then:
+        def e = thrown(FlowJsonException)
+        e.pointer == pointer
+        e.message.startsWith("Invalid flow JSON at '${pointer}'")
+
+        where:
+        json                                                                       | pointer
+        '[]'                                                                       | ''
+        '{"nodes": {}}'                                                            | '/nodes'
+        '{"nodes": ["n1"]}'                                                        | '/nodes/0'
+        """{"nodes": [${NODE.replace('"role": "router", ', '')}]}"""               | '/nodes/0'
+        """{"nodes": [${NODE.replace('router', 'UNKNOWN')}]}"""                    | '/nodes/0/role'
+        """{"nodes": [${NODE.replace('"n1"', '1')}]}"""                            | '/nodes/0/id'
+        """{"nodes": [${NODE.replace('"name": "filter"', '"name": null')}]}"""     | '/nodes/0/eipId'
+        """{"nodes": [${withAttributes('{"a": {"nested": true}}')}]}"""            | '/nodes/0/attributes/a'
+        """{"nodes": [${withChildren('[{"attributes": {}}]')}]}"""                 | '/nodes/0/children/0'
+        """{"nodes": [${NODE}], "edges": [{"id": "e1", "source": "n1"}]}"""        | '/edges/0'
+        """{"nodes": [${NODE}], "edges": [{"id": "e1", "source": "n1", "target": "n2"}]}""" | '/edges/0'
+        """{"edges": [{"id": "e1", "source": "n1", "target": "n2"}], "nodes": []}""" | '/edges/0'
+        '{"customEntities": {"e1": 5}}'                                            | '/customEntities/e1'
+        '{"nodes": [{"id": "n1",}]}'                                               | '/nodes/0/id'
+    }
+
+    def "duplicate node ids read before the graph builder is chosen -> error points to the duplicate"() {
+        when:
+        reader.read(toStream("""{"nodes": [${NODE}, ${NODE}]}"""), 10)
+
+        then:
+        def e = thrown(FlowJsonException)
+        e.pointer == "/nodes/1/id"
+    }
+
+    def "duplicate node ids read after the graph builder is chosen -> error points to the duplicate"() {
+        when:
+        reader.read(toStream("""{"nodes": [${NODE}, ${NODE}]}"""), 1)
+
+        then:
+        def e = thrown(FlowJsonException)
+        e.pointer == "/nodes/1/id"
+    }
+
+    FlowJsonReader.FlowJsonResult read(String json) {
+        return read(json.getBytes(StandardCharsets.UTF_8))
+    }
+
+    FlowJsonReader.FlowJsonResult read(byte[] json) {
+        return reader.read(
+                new ByteArrayInputStream(json), EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD)
+    }
+
+    static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))
+    }
+
+    static String withAttributes(String attributes) {
+        return NODE[0..-2] + """, "attributes": ${attributes}}"""
+    }
+
+    static String withChildren(String children) {
+        return NODE[0..-2] + """, "children": ${children}}"""
+    }
+
+    static byte[] readFlowJson(String filename) {
+        Path path = Path.of("json").resolve(filename)
+        return FlowJsonReaderTest.class.getClassLoader().getResource(path.toString()).bytes
+    }
+
+    // EipNode equality only compares ids
+    static List nodeFields(Flow flow) {
+        return flow.nodes().toSorted { it.id() }.collect { EipNode node ->
+            [node.id(), node.eipId(), node.label(), node.description(), node.role(),
+             node.connectionType(), node.attributes(), node.children()]
+        }
+    }
+}
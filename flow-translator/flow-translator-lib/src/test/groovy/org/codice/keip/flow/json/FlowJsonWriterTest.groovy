@@ -0,0 +1,122 @@
+package org.codice.keip.flow.json
+
+import com.fasterxml.jackson.annotation.JsonInclude
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.MapperFeature
+import com.fasterxml.jackson.databind.cfg.EnumFeature
+import com.fasterxml.jackson.databind.json.JsonMapper
+import org.codice.keip.flow.graph.EipGraphBuilder
+import org.codice.keip.flow.model.EdgeProps
+import org.codice.keip.flow.model.EipGraph
+import org.codice.keip.flow.model.EipId
+import org.codice.keip.flow.model.EipNode
+import org.codice.keip.flow.model.Flow
+import spock.lang.Specification
+
+import java.nio.file.Path
+
+import static org.codice.keip.flow.model.ConnectionType.PASSTHRU
+import static org.codice.keip.flow.model.Role.TRANSFORMER
+
+class FlowJsonWriterTest extends Specification {
+
+    // the serialization of the webapp responses
+    private static final JsonMapper MAPPER =
+            JsonMapper.builder()
+                      .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+                      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                      .enable(EnumFeature.WRITE_ENUMS_TO_LOWERCASE)
+                      .serializationInclusion(JsonInclude.Include.NON_NULL)
+                      .build()
+
+    def writer = new FlowJsonWriter()
+
+    def "write graph -> same json as the serialized flow"(String flowFile, int threshold) {
+        given:
+        def flow = MAPPER.readValue(readFlowJson(flowFile), Flow.class)
+        def graph = EipGraphBuilder.from(flow, threshold)
+        def expected = graph.toFlow()
+
+        when:
+        def output = new StringWriter()
+        def size = write(graph, flow.customEntities(), output)
+
+        then:
+        output.toString() == MAPPER.writeValueAsString(
+                new Flow(expected.nodes(), expected.edges(), flow.customEntities()))
+        size.nodeCount() == expected.nodes().size()
+        size.edgeCount() == expected.edges().size()
+
+        where:
+        [flowFile, threshold] << [(1..6).collect { "flowGraph${it}.json" },
+                                  [1, EipGraphBuilder.DEFAULT_COMPACT_GRAPH_THRESHOLD]].combinations()
+    }
+
+    def "optional properties, null attributes and missing custom entities"() {
+        given:
+        def node1 = new EipNode("n1", new EipId("integration", "transformer"), null, null,
+                TRANSFORMER, PASSTHRU, ["a": null, "b": 5], null)
+        def node2 = new EipNode("n2", new EipId("integration", "transformer"), "label", "desc",
+                TRANSFORMER, PASSTHRU, null, null)
+        def graph = EipGraphBuilder.from(new Flow([node1, node2], []), 1)
+
+        when:
+        def output = new StringWriter()
+        write(graph, null, output)
+
+        then:
+        output.toString() == MAPPER.writeValueAsString(new Flow(graph.toFlow().nodes(), []))
+    }
+
+    def "edges without a type are written with the default type"() {
+        given:
+        def node1 = new EipNode("n1", new EipId("integration", "transformer"), null, null,
+                TRANSFORMER, PASSTHRU, null, null)
+        def node2 = new EipNode("n2", new EipId("integration", "transformer"), null, null,
+                TRANSFORMER, PASSTHRU, null, null)
+        EipGraph graph = Stub() {
+            traverse() >> { [node1, node2].stream() }
+            successors(node1) >> [node2].toSet()
+            successors(node2) >> [].toSet()
+            getEdgeProps(node1, node2) >> Optional.of(new EdgeProps("e1", null))
+        }
+
+        when:
+        def output = new StringWriter()
+        write(graph, [:], output)
+
+        then:
+        MAPPER.readTree(output.toString()).get("edges").get(0).get("type").asText() == "default"
+    }
+
+    def "flow nested in an enclosing document"() {
+        given:
+        def flow = MAPPER.readValue(readFlowJson("flowGraph1.json"), Flow.class)
+        def graph = EipGraphBuilder.from(flow, 1)
+        def expected = graph.toFlow()
+
+        when:
+        def output = new StringWriter()
+        try (def generator = new JsonFactory().createGenerator(output)) {
+            generator.writeStartObject()
+            generator.writeFieldName("data")
+            writer.write(graph, [:], generator)
+            generator.writeEndObject()
+        }
+
+        then:
+        output.toString() == MAPPER.writeValueAsString(["data": expected])
+    }
+
+    FlowJsonWriter.FlowJsonSize write(EipGraph graph, Map<String, String> entities, Writer output) {
+        try (def generator = new JsonFactory().createGenerator(output)) {
+            return writer.write(graph, entities, generator)
+        }
+    }
+
+    static byte[] readFlowJson(String filename) {
+        Path path = Path.of("json").resolve(filename)
+        return FlowJsonWriterTest.class.getClassLoader().getResource(path.toString()).bytes
+    }
+}
@@ -0,0 +1,103 @@
+package org.codice.keip.flow.model
+
+import spock.lang.Specification
+
+class AttributeMapTest extends Specification {
+
+    def "copy keeps the entries and their order"() {
+        given:
+        def source = new LinkedHashMap<String, Object>()
+        source.put("z-last", "1")
+        source.put("expression", "payload")
+        source.put("order", 2)
+        source.put("nullable", null)
+
+        when:
+        def attributes = AttributeMap.copyOf(source)
+
+        then:
+        attributes == source
+        source == attributes
+        attributes.hashCode() == source.hashCode()
+        attributes.keySet().toList() == ["z-last", "expression", "order", "nullable"]
+        attributes.size() == 4
+        attributes.get("order") == 2
+        attributes.containsKey("nullable")
+        attributes.get("nullable") == null
+        !attributes.containsKey("missing")
+        attributes.get("missing") == null
+    }
+
+    def "copy with a key filter excludes the filtered entries"() {
+        given:
+        def source = ["id": "node1", "expression": "payload", "input-channel": "in"]
+
+        expect:
+        AttributeMap.copyOf(source, { it != "id" }) == ["expression": "payload", "input-channel": "in"]
+        AttributeMap.copyOf(source, { false }).is(AttributeMap.of())
+    }
+
+    def "copy of an attribute map or an empty map does not allocate a new map"() {
+        given:
+        def attributes = AttributeMap.copyOf(["expression": "payload"])
+
+        expect:
+        AttributeMap.copyOf(attributes).is(attributes)
+        AttributeMap.copyOf([:]).is(AttributeMap.of())
+        AttributeMap.copyOf(null).is(AttributeMap.of())
+    }
+
+    def "attribute maps cannot be modified"(Closure modification) {
+        given:
+        def attributes = AttributeMap.copyOf(["expression": "payload"])
+
+        when:
+        modification(attributes)
+
+        then:
+        thrown(UnsupportedOperationException)
+        attributes == ["expression": "payload"]
+
+        where:
+        modification << [
+                { it.put("order", 1) },
+                { it.remove("expression") },
+                { it.clear() },
+                { it.entrySet().iterator().with { next(); remove() } },
+                { it.putAll(["order": 1]) }
+        ]
+    }
+
+    def "null attribute names are rejected"() {
+        when:
+        AttributeMap.copyOf([(null): "value"])
+
+        then:
+        thrown(NullPointerException)
+    }
+
+    def "nodes share interned attribute names and eip ids"() {
+        given:
+        def first = new EipNode("n1", new EipId("integration", "transformer"), null, null,
+                Role.TRANSFORMER, ConnectionType.PASSTHRU, [(new String("expression")): "payload"], null)
+        def second = new EipNode("n2", new EipId("integration", "transformer"), null, null,
+                Role.TRANSFORMER, ConnectionType.PASSTHRU, [(new String("expression")): "headers"], null)
+
+        expect:
+        first.eipId().is(second.eipId())
+        first.attributes().keySet()[0].is(second.attributes().keySet()[0])
+        first.attributes() instanceof AttributeMap
+        first.attributes().is(first.attributes())
+    }
+
+    def "nodes without attributes have an empty attribute map"() {
+        given:
+        def node = new EipNode("n1", new EipId("integration", "transformer"), null, null,
+                Role.TRANSFORMER, ConnectionType.PASSTHRU, null, null)
+        def child = new EipChild(new EipId("integration", "poller"), null, null)
+
+        expect:
+        node.attributes().isEmpty()
+        child.attributes().isEmpty()
+    }
+}
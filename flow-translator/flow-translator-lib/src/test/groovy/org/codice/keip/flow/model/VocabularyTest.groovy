@@ -0,0 +1,49 @@
+package org.codice.keip.flow.model
+
+import spock.lang.Specification
+
+class VocabularyTest extends Specification {
+
+    def "interned names and eip ids are canonical"() {
+        given:
+        def name = new String("vocabulary-test-name")
+        def eipId = new EipId(new String("vocabulary-test"), new String("component"))
+
+        expect:
+        Vocabulary.intern(new String("vocabulary-test-name")).is(Vocabulary.intern(name))
+        Vocabulary.intern(new EipId("vocabulary-test", "component")).is(Vocabulary.intern(eipId))
+        Vocabulary.intern(eipId) == eipId
+        Vocabulary.intern(eipId).namespace().is(Vocabulary.intern("vocabulary-test"))
+        Vocabulary.intern((String) null) == null
+        Vocabulary.intern((EipId) null) == null
+    }
+
+    def "registered names are interned"() {
+        given:
+        def registered = new String("vocabulary-test-registered")
+
+        when:
+        Vocabulary.register([registered])
+
+        then:
+        Vocabulary.intern(new String("vocabulary-test-registered")).is(registered)
+    }
+
+    def "the number of learned values is bounded, registered values are always interned"() {
+        given:
+        def interner = new Interner<String>(2)
+        interner.intern("first")
+        interner.intern("second")
+        def overflow = new String("overflow")
+        def registered = new String("registered")
+
+        when:
+        interner.register(registered)
+
+        then:
+        interner.intern(overflow).is(overflow)
+        !interner.intern(new String("overflow")).is(overflow)
+        interner.intern(new String("registered")).is(registered)
+        interner.intern(new String("first")) == "first"
+    }
+}
@@ -1,24 +1,20 @@
 package org.codice.keip.flow.xml
 
-import com.ctc.wstx.stax.WstxEventFactory
 import com.ctc.wstx.stax.WstxOutputFactory
+import org.codehaus.stax2.XMLStreamWriter2
 import spock.lang.Specification
 
 import javax.xml.namespace.QName
-import javax.xml.stream.XMLEventFactory
-import javax.xml.stream.XMLEventWriter
 
 import static org.codice.keip.flow.xml.XmlComparisonUtil.compareXml
 
 class CustomEntityTransformerTest extends Specification {
 
-    private static final XMLEventFactory EVENT_FACTORY = WstxEventFactory.newFactory()
-
     private static final QName testroot = new QName("testroot")
 
     def xmlOutput = new StringWriter()
 
-    def xmlWriter = initializeEventWriter()
+    def xmlWriter = initializeStreamWriter()
 
     def entityTransformer = new CustomEntityTransformer(
             GraphXmlSerializer.initializeXMLInputFactory())
@@ -34,8 +30,8 @@ class CustomEntityTransformerTest extends Specification {
                 '<testroot><bean id="e1" class="com.example.Test"><property name="limit" value="65536"/></bean><arbitrary id="e2">test</arbitrary></testroot>'
 
         when:
-        def errors = entityTransformer.apply(entities, xmlWriter)
-        closeEventWriter(xmlWriter)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
 
         then:
         errors.isEmpty()
@@ -50,8 +46,8 @@ class CustomEntityTransformerTest extends Specification {
                 '<testroot><arbitrary id="one">test</arbitrary></testroot>'
 
         when:
-        def errors = entityTransformer.apply(entities, xmlWriter)
-        closeEventWriter(xmlWriter)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
 
         then:
         errors.isEmpty()
@@ -67,8 +63,8 @@ class CustomEntityTransformerTest extends Specification {
                 '<testroot><top id="nested" order="one"><second id="2" order="two"><third order="three"/></second></top></testroot>'
 
         when:
-        def errors = entityTransformer.apply(entities, xmlWriter)
-        closeEventWriter(xmlWriter)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
 
         then:
         errors.isEmpty()
@@ -80,8 +76,8 @@ class CustomEntityTransformerTest extends Specification {
         def entities = ["one": '<!--root comment--><arbitrary>test</arbitrary>']
 
         when:
-        def errors = entityTransformer.apply(entities, xmlWriter)
-        closeEventWriter(xmlWriter)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
 
         then:
         errors.isEmpty()
@@ -95,8 +91,8 @@ class CustomEntityTransformerTest extends Specification {
         def entities = ["one": '<arbitrary>test</arbitrary><other>more</other>']
 
         when:
-        def errors = entityTransformer.apply(entities, xmlWriter)
-        closeEventWriter(xmlWriter)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
 
         then:
         errors.size() == 1
@@ -109,8 +105,8 @@ class CustomEntityTransformerTest extends Specification {
         def entities = ["one": content]
 
         when:
-        def errors = entityTransformer.apply(entities, xmlWriter)
-        closeEventWriter(xmlWriter)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
 
         then:
         errors.size() == 1
@@ -126,8 +122,8 @@ class CustomEntityTransformerTest extends Specification {
         def entities = ["one": content, "two": '<extra role="other"/>']
 
         when:
-        def errors = entityTransformer.apply(entities, xmlWriter)
-        closeEventWriter(xmlWriter)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
 
         then:
         errors.size() == 1
@@ -138,14 +134,124 @@ class CustomEntityTransformerTest extends Specification {
         content << invalidXmlExamples()
     }
 
-    XMLEventWriter initializeEventWriter() {
-        def writer = WstxOutputFactory.newFactory().createXMLEventWriter(xmlOutput)
-        writer.add(EVENT_FACTORY.createStartElement(testroot, null, null))
+    def "Transform large custom entities in two passes -> same output as rendered entities"() {
+        given:
+        def entities = [
+                "e1": '<bean class="com.example.Test"><!--limit--><property name="limit" value="65536" /></bean>',
+                "e2": '<arbitrary id="unused"><![CDATA[<test>]]></arbitrary>'
+        ]
+
+        def rendered = transformToString(new CustomEntityTransformer(
+                GraphXmlSerializer.initializeXMLInputFactory()), entities)
+
+        when:
+        entityTransformer.setStreamingThreshold(1)
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
+
+        then:
+        errors.isEmpty()
+        xmlOutput.toString() == rendered
+    }
+
+    def "Transform a large custom entity with invalid content -> nothing written and error returned"(String content) {
+        given:
+        def entities = ["one": content, "two": '<extra role="other"/>']
+        entityTransformer.setStreamingThreshold(1)
+
+        when:
+        def errors = entityTransformer.apply(entities, xmlWriter, false)
+        closeStreamWriter(xmlWriter)
+
+        then:
+        errors.size() == 1
+        errors[0].source() == "custom entity [one]"
+        compareXml(xmlOutput.toString(), '<testroot><extra id="two" role="other"/></testroot>')
+
+        where:
+        content << invalidXmlExamples() + ['<unclosed><child>text</child>']
+    }
+
+    def "Cached custom entities are written without being validated again"(int streamingThreshold) {
+        given:
+        def entities = [
+                "e1": '<bean class="com.example.Test"><property name="limit" value="65536" /></bean>',
+                "e2": '<arbitrary>test</arbitrary>'
+        ]
+        def cache = new CustomEntityCache(1024 * 1024)
+        entityTransformer.setCache(cache)
+        entityTransformer.setStreamingThreshold(streamingThreshold)
+
+        def first = transformToString(entityTransformer, entities)
+
+        when:
+        def second = transformToString(entityTransformer, entities)
+
+        then:
+        second == first
+        compareXml(second,
+                '<testroot><bean id="e1" class="com.example.Test"><property name="limit" value="65536"/></bean><arbitrary id="e2">test</arbitrary></testroot>')
+        with(cache.stats()) {
+            entries == 2
+            hits == 2
+            misses == 2
+        }
+
+        where:
+        streamingThreshold << [CustomEntityTransformer.DEFAULT_STREAMING_THRESHOLD, 1]
+    }
+
+    def "Cached custom entities are keyed by id and content"() {
+        given:
+        def cache = new CustomEntityCache(1024 * 1024)
+        entityTransformer.setCache(cache)
+        transformToString(entityTransformer, ["one": '<arbitrary>test</arbitrary>'])
+
+        when:
+        def renamed = transformToString(entityTransformer, ["two": '<arbitrary>test</arbitrary>'])
+        def changed = transformToString(entityTransformer, ["one": '<arbitrary>changed</arbitrary>'])
+
+        then:
+        compareXml(renamed, '<testroot><arbitrary id="two">test</arbitrary></testroot>')
+        compareXml(changed, '<testroot><arbitrary id="one">changed</arbitrary></testroot>')
+        with(cache.stats()) {
+            entries == 3
+            hits == 0
+        }
+    }
+
+    def "Invalid custom entities are not cached"() {
+        given:
+        def cache = new CustomEntityCache(1024 * 1024)
+        entityTransformer.setCache(cache)
+        transformToString(entityTransformer, ["one": '<unclosed>'])
+
+        when:
+        def errors = entityTransformer.apply(["one": '<unclosed>'], xmlWriter, false)
+
+        then:
+        errors.size() == 1
+        cache.stats().entries == 0
+    }
+
+    String transformToString(CustomEntityTransformer transformer, Map<String, String> entities) {
+        def output = new StringWriter()
+        def writer = (XMLStreamWriter2) WstxOutputFactory.newFactory().createXMLStreamWriter(output)
+        writer.writeStartElement(testroot.getLocalPart())
+        transformer.apply(entities, writer, false)
+        writer.writeEndElement()
+        writer.close()
+        return output.toString()
+    }
+
+    XMLStreamWriter2 initializeStreamWriter() {
+        def writer = (XMLStreamWriter2) WstxOutputFactory.newFactory().createXMLStreamWriter(xmlOutput)
+        writer.writeStartElement(testroot.getLocalPart())
         return writer
     }
 
-    void closeEventWriter(XMLEventWriter writer) {
-        writer.add(EVENT_FACTORY.createEndElement(testroot, null))
+    void closeStreamWriter(XMLStreamWriter2 writer) {
+        writer.writeEndElement()
         writer.flush()
         writer.close()
     }
@@ -0,0 +1,94 @@
+package org.codice.keip.flow.xml
+
+import com.ctc.wstx.api.WstxOutputProperties
+import com.ctc.wstx.stax.WstxInputFactory
+import com.ctc.wstx.stax.WstxOutputFactory
+import org.codehaus.stax2.XMLStreamWriter2
+import org.codehaus.stax2.evt.XMLEvent2
+import spock.lang.Specification
+
+import javax.xml.stream.events.XMLEvent
+
+class IndentingStreamWriterTest extends Specification {
+
+    def xmlOutput = new StringWriter()
+
+    def writer = new IndentingStreamWriter(
+            (XMLStreamWriter2) WstxOutputFactory.newFactory().createXMLStreamWriter(xmlOutput), 0)
+
+    def "nested elements are indented by four spaces per level"() {
+        when:
+        copy("<r><a x='1'><b><c/></b><d/></a><e/></r>")
+
+        then:
+        xmlOutput.toString() == '''\
+<r>
+    <a x="1">
+        <b>
+            <c/>
+        </b>
+        <d/>
+    </a>
+    <e/>
+</r>
+'''
+    }
+
+    def "element content layout matches the JDK Transformer"(String input, String expected) {
+        when:
+        copy(input)
+
+        then:
+        xmlOutput.toString() == expected
+
+        where:
+        input                                        | expected
+        "<r/>"                                       | "<r/>\n"
+        "<r><a>text</a><b>  </b></r>"                | "<r>\n    <a>text</a>\n    <b>  </b>\n</r>\n"
+        "<r><a>mixed<b/>tail</a></r>"                | "<r>\n    <a>\n        mixed\n        <b/>\n        tail\n    </a>\n</r>\n"
+        "<r><a>\n  <b/>\n</a></r>"                   | "<r>\n    <a>\n          \n        <b/>\n        \n    </a>\n</r>\n"
+        "<r><!-- c --><a><?pi data?></a></r>"        | "<r>\n    <!-- c -->\n    <a>\n        <?pi data?>\n    </a>\n</r>\n"
+        "<r><a><![CDATA[x]]><b/></a></r>"            | "<r>\n    <a><![CDATA[x]]>\n        <b/>\n    </a>\n</r>\n"
+        "<r><a>x<![CDATA[y]]></a></r>"               | "<r>\n    <a>x<![CDATA[y]]></a>\n</r>\n"
+    }
+
+    def "line break written after the XML declaration"() {
+        when:
+        writer.writeStartDocument("UTF-8", "1.0")
+        writer.writeEmptyElement("r")
+        writer.writeEndDocument()
+        writer.flush()
+
+        then:
+        xmlOutput.toString() == "<?xml version='1.0' encoding='UTF-8'?>\n<r/>"
+    }
+
+    def "fragment writer indents top-level elements as children of a root element"() {
+        given:
+        def factory = WstxOutputFactory.newFactory()
+        factory.setProperty(WstxOutputProperties.P_OUTPUT_VALIDATE_STRUCTURE, false)
+        def fragmentWriter = new IndentingStreamWriter((XMLStreamWriter2) factory.createXMLStreamWriter(xmlOutput), 1)
+
+        when:
+        fragmentWriter.writeStartElement("a")
+        fragmentWriter.writeEmptyElement("b")
+        fragmentWriter.writeEndElement()
+        fragmentWriter.writeStartElement("c")
+        fragmentWriter.writeEndElement()
+        fragmentWriter.flush()
+
+        then:
+        xmlOutput.toString() == "\n    <a>\n        <b/>\n    </a>\n    <c/>"
+    }
+
+    private void copy(String xml) {
+        def reader = WstxInputFactory.newFactory().createXMLEventReader(new StringReader(xml))
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent()
+            if (!event.isStartDocument() && !event.isEndDocument()) {
+                ((XMLEvent2) event).writeUsing(writer)
+            }
+        }
+        writer.flush()
+    }
+}
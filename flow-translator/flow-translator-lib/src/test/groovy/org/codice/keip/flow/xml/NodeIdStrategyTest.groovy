@@ -0,0 +1,58 @@
+package org.codice.keip.flow.xml
+
+import spock.lang.Specification
+
+import static org.codice.keip.flow.xml.spring.NodeIdGenerator.DEFAULT_ALPHABET
+import static org.codice.keip.flow.xml.spring.NodeIdGenerator.DEFAULT_SIZE
+
+class NodeIdStrategyTest extends Specification {
+
+    private static final String PATH = "/integration:transformer[1]"
+
+    def "content hash ids are the same for the same path and attributes"() {
+        given:
+        def element = buildElement(["expression": "payload", "input-channel": "in"])
+        def reordered = buildElement(["input-channel": "in", "expression": "payload"])
+
+        when:
+        def id = NodeIdStrategy.CONTENT_HASH.generateId(PATH, element)
+
+        then:
+        id.size() == DEFAULT_SIZE
+        id.every { DEFAULT_ALPHABET.contains(it as char) }
+        NodeIdStrategy.CONTENT_HASH.generateId(PATH, element) == id
+        NodeIdStrategy.CONTENT_HASH.generateId(PATH, reordered) == id
+    }
+
+    def "content hash ids differ when the path or attributes differ"(String path, Map attributes) {
+        given:
+        def id = NodeIdStrategy.CONTENT_HASH.generateId(PATH, buildElement(["expression": "payload"]))
+
+        expect:
+        NodeIdStrategy.CONTENT_HASH.generateId(path, buildElement(attributes)) != id
+
+        where:
+        path                          | attributes
+        "/integration:transformer[2]" | ["expression": "payload"]
+        "/integration:filter[1]"      | ["expression": "payload"]
+        PATH                          | ["expression": "headers"]
+        PATH                          | ["expression": "payload", "order": "1"]
+        PATH                          | ["expressio": "npayload"]
+    }
+
+    def "random ids differ between calls"() {
+        given:
+        def element = buildElement([:])
+
+        when:
+        def ids = (0..<100).collect { NodeIdStrategy.RANDOM.generateId(PATH, element) }
+
+        then:
+        ids.every { it.size() == DEFAULT_SIZE }
+        ids.toSet().size() == 100
+    }
+
+    private static XmlElement buildElement(Map<String, Object> attributes) {
+        return new XmlElement("integration", "transformer", attributes, [])
+    }
+}
@@ -0,0 +1,71 @@
+package org.codice.keip.flow.xml
+
+import com.ctc.wstx.stax.WstxOutputFactory
+import org.codehaus.stax2.XMLStreamWriter2
+import spock.lang.Specification
+
+import javax.xml.namespace.QName
+
+class XmlElementWriterTest extends Specification {
+
+    def xmlOutput = new StringWriter()
+
+    def xmlWriter = (XMLStreamWriter2) WstxOutputFactory.newFactory().createXMLStreamWriter(xmlOutput)
+
+    def elementWriter = new XmlElementWriter()
+
+    def "write nested elements with attributes"() {
+        given:
+        def element = new XmlElement("int", "chain", ["id": "c1", "order": 2], [
+                new XmlElement("int", "transformer", ["expression": "payload"], []),
+                new XmlElement("int", "filter", [:], [
+                        new XmlElement("int", "poller", ["fixed-rate": 1000], [])
+                ])
+        ])
+
+        when:
+        elementWriter.write(element, xmlWriter)
+        xmlWriter.flush()
+
+        then:
+        xmlOutput.toString() == '<int:chain id="c1" order="2">' +
+                '<int:transformer expression="payload"/>' +
+                '<int:filter><int:poller fixed-rate="1000"/></int:filter>' +
+                '</int:chain>'
+    }
+
+    def "write element with a namespace uri"() {
+        given:
+        def element = new XmlElement(
+                new QName("http://www.example.com/test", "entity", "ex"), ["xmlns:ex": "http://www.example.com/test"], [])
+
+        when:
+        elementWriter.write(element, xmlWriter)
+        xmlWriter.flush()
+
+        then:
+        xmlOutput.toString() == '<ex:entity xmlns:ex="http://www.example.com/test"/>'
+    }
+
+    def "deeply nested elements do not overflow the stack"() {
+        given:
+        int depth = 50_000
+        def root = new XmlElement("", "level", [:], [])
+        def current = root
+        (1..<depth).each {
+            def child = new XmlElement("", "level", [:], [])
+            current.children().add(child)
+            current = child
+        }
+
+        when:
+        elementWriter.write(root, xmlWriter)
+        xmlWriter.flush()
+
+        then:
+        def output = xmlOutput.toString()
+        output.count("<level>") == depth - 1
+        output.count("</level>") == depth - 1
+        output.count("<level/>") == 1
+    }
+}
@@ -0,0 +1,149 @@
+package org.codice.keip.flow.xml
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class XmlParserPoolTest extends Specification {
+
+    def counter = new AtomicInteger()
+
+    def resetCount = new AtomicInteger()
+
+    def "released parsers are reset and reused"() {
+        given:
+        def pool = new XmlParserPool<Integer>(2, { counter.incrementAndGet() }, { resetCount.incrementAndGet() })
+
+        when:
+        def first = pool.borrow()
+        pool.release(first)
+        def second = pool.borrow()
+
+        then:
+        first == second
+        resetCount.get() == 1
+        pool.stats() == new ParserPoolStats(2, 1, 0, 1, 1, 0, 0)
+    }
+
+    def "parsers are created up to the max pool size"() {
+        given:
+        def pool = new XmlParserPool<Integer>(2, { counter.incrementAndGet() }, {})
+
+        when:
+        def parsers = [pool.borrow(), pool.borrow()]
+        parsers.each { pool.release(it) }
+
+        then:
+        parsers == [1, 2]
+        with(pool.stats()) {
+            created() == 2
+            idle() == 2
+            misses() == 2
+            hits() == 0
+        }
+    }
+
+    def "borrow blocks until a parser is released when the pool is exhausted"() {
+        given:
+        def pool = new XmlParserPool<Integer>(1, { counter.incrementAndGet() }, {})
+        def parser = pool.borrow()
+        def started = new CountDownLatch(1)
+
+        when:
+        def waiting = CompletableFuture.supplyAsync {
+            started.countDown()
+            pool.borrow()
+        }
+        started.await()
+        Thread.sleep(100)
+        def doneBeforeRelease = waiting.isDone()
+        pool.release(parser)
+
+        then:
+        !doneBeforeRelease
+        waiting.get(5, TimeUnit.SECONDS) == parser
+        with(pool.stats()) {
+            created() == 1
+            waits() == 1
+            totalWaitNanos() > 0
+        }
+    }
+
+    def "a parser that fails to reset is discarded"() {
+        given:
+        def pool = new XmlParserPool<Integer>(1, { counter.incrementAndGet() }, {
+            throw new IllegalStateException("reset failed")
+        })
+
+        when:
+        pool.release(pool.borrow())
+        def replacement = pool.borrow()
+
+        then:
+        replacement == 2
+        pool.stats().created() == 1
+    }
+
+    def "a discarded parser lets a waiting borrow create its replacement"() {
+        given:
+        def pool = new XmlParserPool<Integer>(1, { counter.incrementAndGet() }, {
+            throw new IllegalStateException("reset failed")
+        })
+        def parser = pool.borrow()
+        def started = new CountDownLatch(1)
+
+        when:
+        def waiting = CompletableFuture.supplyAsync {
+            started.countDown()
+            pool.borrow()
+        }
+        started.await()
+        Thread.sleep(100)
+        pool.release(parser)
+        def replacement = waiting.get(5, TimeUnit.SECONDS)
+
+        then:
+        replacement == 2
+        with(pool.stats()) {
+            created() == 1
+            waits() == 1
+            misses() == 2
+        }
+    }
+
+    def "a failed parser creation does not consume a pool slot"() {
+        given:
+        def fail = true
+        def pool = new XmlParserPool<Integer>(1, {
+            if (fail) {
+                throw new IllegalStateException("creation failed")
+            }
+            counter.incrementAndGet()
+        }, {})
+
+        when:
+        pool.borrow()
+
+        then:
+        thrown(IllegalStateException)
+        pool.stats().created() == 0
+
+        when:
+        fail = false
+        def parser = pool.borrow()
+
+        then:
+        parser == 1
+    }
+
+    def "invalid pool size -> exception thrown"() {
+        when:
+        new XmlParserPool<Integer>(0, { counter.incrementAndGet() }, {})
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
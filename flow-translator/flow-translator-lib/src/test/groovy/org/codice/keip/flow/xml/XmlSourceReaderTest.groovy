@@ -0,0 +1,90 @@
+package org.codice.keip.flow.xml
+
+import spock.lang.Specification
+
+import javax.xml.namespace.QName
+import java.nio.charset.StandardCharsets
+import java.util.function.Predicate
+
+class XmlSourceReaderTest extends Specification {
+
+    static final String BEANS = "http://www.springframework.org/schema/beans"
+
+    static final String INTEGRATION = "http://www.springframework.org/schema/integration"
+
+    def "capture -> only accepted elements are kept, read characters are released"() {
+        given:
+        def loggers = (1..5000).collect { "    <int:logging-channel-adapter id=\"log$it\" level=\"INFO\"/>" }.join("\n")
+        def xml = """<beans xmlns="$BEANS" xmlns:int="$INTEGRATION">
+    <bean id="first">first</bean>
+$loggers
+    <bean id="last"><!-- last --></bean>
+    <other xmlns="$INTEGRATION" id="third"/>
+</beans>
+"""
+        def reader = capture(xml, { it.namespaceURI == BEANS })
+
+        when:
+        def maxBuffered = readAll(reader)
+
+        then:
+        xml.length() > 256 * 1024
+        maxBuffered < 64 * 1024
+
+        reader.copyElement("bean") == "<bean>first</bean>"
+        (1..5000).each { reader.skipElement("logging-channel-adapter") }
+        reader.copyElement("bean") == "<bean><!-- last --></bean>"
+        reader.copyElement("other") == null
+    }
+
+    def "capture -> elements split across reads are copied"() {
+        given:
+        def xml = """<beans xmlns="$BEANS"><bean class = 'a' id="e1"><property name="p" value="&lt;v&gt;"/></bean></beans>"""
+        def reader = capture(xml, { true })
+
+        when:
+        readAll(reader, 3)
+
+        then:
+        reader.copyElement("bean") == """<bean class = 'a'><property name="p" value="&lt;v&gt;"/></bean>"""
+    }
+
+    def "capture -> elements that do not match the parsed elements are not copied"() {
+        given:
+        def xml = """<!DOCTYPE beans><beans xmlns="$BEANS"><bean id="e1"/></beans>"""
+        def reader = capture(xml, { true })
+
+        when:
+        readAll(reader)
+
+        then:
+        reader.copyElement("bean") == null
+    }
+
+    def "open -> elements are scanned when visited"() {
+        given:
+        def xml = """<beans xmlns="$BEANS" xmlns:int="$INTEGRATION"><bean id="e1">text</bean><int:channel id="c"/><bean id="e2"/></beans>"""
+        def reader = XmlSourceReader.open(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "id")
+        readAll(reader)
+
+        expect:
+        reader.copyElement("bean") == "<bean>text</bean>"
+        reader.copyElement("channel") == null
+        reader.copyElement("bean") == "<bean/>"
+    }
+
+    private static XmlSourceReader capture(String xml, Closure<Boolean> filter) {
+        return XmlSourceReader.capture(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "id", filter as Predicate<QName>)
+    }
+
+    // Reads the whole document the way a parser would, returning the largest number of buffered characters
+    private static int readAll(XmlSourceReader reader, int chunkSize = 8192) {
+        def chars = new char[chunkSize]
+        int maxBuffered = 0
+        while (reader.read(chars, 0, chars.length) >= 0) {
+            maxBuffered = Math.max(maxBuffered, reader.@buffer.length())
+        }
+        return maxBuffered
+    }
+}
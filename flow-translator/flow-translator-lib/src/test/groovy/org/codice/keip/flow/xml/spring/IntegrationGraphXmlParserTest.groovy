@@ -4,14 +4,22 @@ import org.codice.keip.flow.ComponentRegistry
 import org.codice.keip.flow.model.ConnectionType
 import org.codice.keip.flow.model.EipId
 import org.codice.keip.flow.model.EipNode
+import org.codice.keip.flow.model.Flow
 import org.codice.keip.flow.model.Role
+import org.codice.keip.flow.xml.GraphXmlParser.ParseMode
 import org.codice.keip.flow.xml.NamespaceSpec
+import org.codice.keip.flow.xml.NodeIdStrategy
+import org.codice.keip.flow.xml.ParserPoolStats.Pool
 import org.codice.keip.flow.xml.XmlElement
 import org.codice.keip.flow.xml.XmlElementTransformer
 import org.xml.sax.SAXException
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
 import javax.xml.transform.TransformerException
 
 import static org.codice.keip.flow.ComponentRegistryIO.readComponentDefinitionJson
@@ -179,7 +187,7 @@ class IntegrationGraphXmlParserTest extends Specification {
         nodes.getFirst().id() == "test-id"
 
         def expectedEntities = [
-                "e1": '<bean class="com.example.Test"><property name="limit" value="65536"/></bean>',
+                "e1": '<bean class="com.example.Test">\n        <property name="limit" value="65536"/>\n    </bean>',
                 "e2": '<bean lazy-init="true"/>']
 
         result.customEntities() == expectedEntities
@@ -197,7 +205,7 @@ class IntegrationGraphXmlParserTest extends Specification {
         graph.traverse().count() == 0
 
         def expectedEntities = [
-                "e1": '<bean class="com.example.Test"><property name="limit" value="65536"/></bean>',
+                "e1": '<bean class="com.example.Test">\n        <property name="limit" value="65536"/>\n    </bean>',
                 "e2": '<bean lazy-init="true"/>']
 
         result.customEntities() == expectedEntities
@@ -295,6 +303,51 @@ class IntegrationGraphXmlParserTest extends Specification {
         }
     }
 
+    def "xml to graph with missing element ids and content hash ids -> same flow on every parse"() {
+        given:
+        def domParser = initParser()
+        domParser.setNodeIdStrategy(NodeIdStrategy.CONTENT_HASH)
+        def streamingParser = initParser()
+        streamingParser.setNodeIdStrategy(NodeIdStrategy.CONTENT_HASH)
+        streamingParser.setParseMode(ParseMode.STREAMING)
+
+        when:
+        def results = [domParser, domParser, streamingParser].collect {
+            it.fromXml(readTestXml("multi-node-missing-ids.xml")).graph().toFlow()
+        }
+
+        then:
+        def ids = results[0].nodes()*.id()
+        ids.size() == 3
+        ids.every { it.size() == 10 }
+        ids.toSet().size() == 3
+        results.every { describe(it) == describe(results[0]) }
+    }
+
+    def "content hash ids -> identical elements get distinct ids, existing ids are kept"() {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setNodeIdStrategy(NodeIdStrategy.CONTENT_HASH)
+        def xml = """<beans xmlns="http://www.springframework.org/schema/beans"
+                            xmlns:integration="http://www.springframework.org/schema/integration">
+                         <integration:inbound-channel-adapter id="in" channel="c1" expression="'test'">
+                             <integration:poller fixed-rate="5000"/>
+                         </integration:inbound-channel-adapter>
+                         <integration:publish-subscribe-channel id="c1"/>
+                         <integration:logging-channel-adapter channel="c1" level="WARN"/>
+                         <integration:logging-channel-adapter channel="c1" level="WARN"/>
+                     </beans>"""
+
+        when:
+        def nodes = localParser.fromXml(new ByteArrayInputStream(xml.bytes)).graph().toFlow().nodes()
+
+        then:
+        def loggers = nodes.findAll { it.eipId().name() == "logging-channel-adapter" }*.id()
+        loggers.size() == 2
+        loggers[0] != loggers[1]
+        nodes*.id().contains("in")
+    }
+
     def "xsd validation with invalid xml -> failure"(String xmlFilePath) {
         given:
         InputStream xml = readTestXml(xmlFilePath)
@@ -315,6 +368,411 @@ class IntegrationGraphXmlParserTest extends Specification {
         ]
     }
 
+    def "streaming parse mode produces the same result as the DOM parse mode"(String xmlFilePath) {
+        given:
+        def streamingParser = initParser()
+        streamingParser.setParseMode(ParseMode.STREAMING)
+
+        when:
+        def domResult = initParser().fromXml(readTestXml(xmlFilePath))
+        def streamingResult = streamingParser.fromXml(readTestXml(xmlFilePath))
+
+        then:
+        streamingResult.customEntities() == domResult.customEntities()
+        describe(streamingResult.graph().toFlow()) == describe(domResult.graph().toFlow())
+
+        where:
+        xmlFilePath << [
+                "nested-children.xml",
+                "multi-node.xml",
+                "multi-channel-connections.xml",
+                "alternative-prefixes.xml",
+                "default-namespaces.xml",
+                "single-node-with-custom-entities.xml",
+                "custom-entities-only.xml",
+                "empty.xml"
+        ]
+    }
+
+    def "streaming parse mode without a validation schema"() {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(ParseMode.STREAMING)
+
+        when:
+        def result = localParser.fromXml(readTestXml("nested-children.xml"))
+
+        then:
+        result.customEntities().isEmpty()
+        def nodeIds = result.graph().traverse().map { it.id() }.toList()
+        nodeIds == ["messageGenerator", "checkPayload", "resultSender", "testLogger"]
+    }
+
+    def "streaming parse mode with id-less custom entity -> exception thrown"() {
+        given:
+        def localParser = initParser()
+        localParser.setParseMode(ParseMode.STREAMING)
+
+        when:
+        localParser.fromXml(readTestXml("invalid/custom-entity-no-id.xml"))
+
+        then:
+        thrown(TransformerException)
+    }
+
+    def "streaming parse mode with an unregistered namespace and no validation -> exception thrown"() {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(ParseMode.STREAMING)
+
+        when:
+        localParser.fromXml(readTestXml("invalid/unknown-namespace.xml"))
+
+        then:
+        def ex = thrown(TransformerException)
+        ex.cause instanceof IllegalArgumentException
+    }
+
+    def "streaming parse mode xsd validation with invalid xml -> failure"(String xmlFilePath) {
+        given:
+        def localParser = initParser()
+        localParser.setParseMode(ParseMode.STREAMING)
+
+        when:
+        localParser.fromXml(readTestXml(xmlFilePath))
+
+        then:
+        def ex = thrown(IllegalArgumentException)
+        ex.cause instanceof SAXException
+
+        where:
+        xmlFilePath << [
+                "invalid/unknown-attribute.xml",
+                "invalid/unknown-element.xml",
+                "invalid/unknown-namespace.xml",
+        ]
+    }
+
+    def "validation schema provider receives the document namespaces"(ParseMode parseMode) {
+        given:
+        def requested = []
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        localParser.setValidationSchemaProvider({ namespaces ->
+            requested << namespaces
+            springIntegrationSchema
+        })
+
+        when:
+        def result = localParser.fromXml(readTestXml("nested-children.xml"))
+
+        then:
+        requested == [[
+                "http://www.springframework.org/schema/beans",
+                "http://www.w3.org/2001/XMLSchema-instance",
+                "http://www.springframework.org/schema/integration"] as Set]
+        describe(result.graph().toFlow()) == describe(initParser().fromXml(readTestXml("nested-children.xml")).graph().toFlow())
+
+        where:
+        parseMode << [ParseMode.DOM, ParseMode.STREAMING]
+    }
+
+    def "namespace declared below the root element -> parse restarted with a schema for every namespace"(ParseMode parseMode) {
+        given:
+        def xml = """\
+            <beans xmlns="http://www.springframework.org/schema/beans"
+                   xmlns:integration="http://www.springframework.org/schema/integration">
+                <integration:inbound-channel-adapter id="generator" channel="in" expression="'test'">
+                    <integration:poller fixed-rate="5000"/>
+                </integration:inbound-channel-adapter>
+                <integration:channel id="in"/>
+                <jms:outbound-channel-adapter xmlns:jms="http://www.springframework.org/schema/integration/jms"
+                                              id="sender" channel="in" destination-name="queue"/>
+            </beans>""".stripIndent()
+
+        def requested = []
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        localParser.setValidationSchemaProvider({ namespaces ->
+            requested << namespaces
+            springIntegrationSchema
+        })
+
+        when:
+        def result = localParser.fromXml(new ByteArrayInputStream(xml.bytes))
+
+        then:
+        requested == [
+                ["http://www.springframework.org/schema/beans",
+                 "http://www.springframework.org/schema/integration"] as Set,
+                ["http://www.springframework.org/schema/beans",
+                 "http://www.springframework.org/schema/integration",
+                 "http://www.springframework.org/schema/integration/jms"] as Set]
+        result.graph().traverse().map { it.id() }.toList() == ["generator", "sender"]
+
+        where:
+        parseMode << [ParseMode.DOM, ParseMode.STREAMING]
+    }
+
+    def "namespace declared below the root element past the first megabyte -> failure"(ParseMode parseMode) {
+        given:
+        def loggers = (1..20000).collect { "    <integration:logging-channel-adapter id=\"log$it\" level=\"INFO\"/>" }.join("\n")
+        def xml = """<beans xmlns="http://www.springframework.org/schema/beans"
+       xmlns:integration="http://www.springframework.org/schema/integration">
+$loggers
+    <jms:outbound-channel-adapter xmlns:jms="http://www.springframework.org/schema/integration/jms"
+                                  id="sender" channel="in" destination-name="queue"/>
+</beans>
+"""
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        localParser.setValidationSchemaProvider({ springIntegrationSchema })
+
+        when:
+        localParser.fromXml(new ByteArrayInputStream(xml.bytes))
+
+        then:
+        xml.length() > 1024 * 1024
+        def e = thrown(IllegalArgumentException)
+        e.cause.message.contains("http://www.springframework.org/schema/integration/jms")
+
+        where:
+        parseMode << [ParseMode.DOM, ParseMode.STREAMING]
+    }
+
+    def "validation schema provider with invalid xml -> failure"(ParseMode parseMode, String xmlFilePath) {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        localParser.setValidationSchemaProvider({ springIntegrationSchema })
+
+        when:
+        localParser.fromXml(readTestXml(xmlFilePath))
+
+        then:
+        def ex = thrown(IllegalArgumentException)
+        ex.cause instanceof SAXException
+
+        where:
+        [parseMode, xmlFilePath] << [
+                [ParseMode.DOM, ParseMode.STREAMING],
+                ["invalid/unknown-attribute.xml", "invalid/unknown-element.xml", "invalid/unknown-namespace.xml"]
+        ].combinations()
+    }
+
+    def "validation schema provider returning null skips validation"(ParseMode parseMode) {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        localParser.setValidationSchemaProvider({ null })
+
+        when:
+        def result = localParser.fromXml(readTestXml("nested-children.xml"))
+
+        then:
+        def nodeIds = result.graph().traverse().map { it.id() }.toList()
+        nodeIds == ["messageGenerator", "checkPayload", "resultSender", "testLogger"]
+
+        where:
+        parseMode << [ParseMode.DOM, ParseMode.STREAMING]
+    }
+
+    def "pooled parsers are reused across calls"(ParseMode parseMode, Pool pool, Pool unusedPool) {
+        given:
+        def localParser = initParser()
+        localParser.setParseMode(parseMode)
+
+        when:
+        3.times { localParser.fromXml(readTestXml("nested-children.xml")) }
+
+        then:
+        with(localParser.getParserPoolStats()[pool]) {
+            created() == 1
+            idle() == 1
+            misses() == 1
+            hits() == 2
+        }
+        localParser.getParserPoolStats()[unusedPool].created() == 0
+
+        where:
+        parseMode           | pool                  | unusedPool
+        ParseMode.DOM       | Pool.DOCUMENT_BUILDER | Pool.SAX_PARSER
+        ParseMode.STREAMING | Pool.SAX_PARSER       | Pool.DOCUMENT_BUILDER
+    }
+
+    def "DOM parse with a per-document schema -> parser taken from the SAX parser pool"() {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setValidationSchemaProvider({ springIntegrationSchema })
+
+        when:
+        localParser.fromXml(readTestXml("nested-children.xml"))
+
+        then:
+        localParser.getParserPoolStats()[Pool.SAX_PARSER].misses() == 1
+        localParser.getParserPoolStats()[Pool.DOCUMENT_BUILDER].created() == 0
+    }
+
+    def "pooled parser is reusable after a validation failure"(ParseMode parseMode, Pool pool) {
+        given:
+        def localParser = initParser()
+        localParser.setParseMode(parseMode)
+
+        when:
+        localParser.fromXml(readTestXml("invalid/unknown-element.xml"))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def result = localParser.fromXml(readTestXml("nested-children.xml"))
+
+        then:
+        result.graph().traverse().count() == 4
+        localParser.getParserPoolStats()[pool].created() == 1
+
+        where:
+        parseMode           | pool
+        ParseMode.DOM       | Pool.DOCUMENT_BUILDER
+        ParseMode.STREAMING | Pool.SAX_PARSER
+    }
+
+    def "concurrent parsing with a bounded parser pool"() {
+        given:
+        def localParser = initParser()
+        localParser.setParserPoolSize(2)
+
+        when:
+        def results = (1..16).collect {
+            CompletableFuture.supplyAsync { localParser.fromXml(readTestXml("nested-children.xml")) }
+        }.collect { it.get(30, TimeUnit.SECONDS) }
+
+        then:
+        results.every { it.graph().traverse().count() == 4 }
+        with(localParser.getParserPoolStats()[Pool.DOCUMENT_BUILDER]) {
+            maxSize() == 2
+            created() <= 2
+            hits() + misses() == 16
+        }
+    }
+
+    def "custom entity source is copied with its text, comments and formatting"(ParseMode parseMode) {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        def xml = """<?xml version="1.0" encoding="UTF-8"?>
+<beans xmlns="http://www.springframework.org/schema/beans"
+       xmlns:integration="http://www.springframework.org/schema/integration">
+    <!-- leading comment -->
+    <bean class = 'com.example.Test'
+          id = 'e1' >
+        <property name="script"><value><![CDATA[if (a < b) { return "</bean>"; }]]></value></property>
+        <!-- a <comment/> -->
+        <property name="limit">&lt;65536&gt;</property>
+    </bean>
+    <integration:logging-channel-adapter id="logger"/>
+    <bean id="e2"/>
+</beans>
+"""
+
+        when:
+        def result = localParser.fromXml(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+
+        then:
+        result.customEntities() == [
+                "e1": """<bean class = 'com.example.Test' >
+        <property name="script"><value><![CDATA[if (a < b) { return "</bean>"; }]]></value></property>
+        <!-- a <comment/> -->
+        <property name="limit">&lt;65536&gt;</property>
+    </bean>""",
+                "e2": '<bean/>']
+        result.graph().traverse().map { it.id() }.toList() == ["logger"]
+
+        where:
+        parseMode << [ParseMode.DOM, ParseMode.STREAMING]
+    }
+
+    def "custom entity source is decoded using the document encoding"(ParseMode parseMode, Charset charset, byte[] bom) {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        def xml = """<?xml version="1.0" encoding="${charset.name()}"?>
+<beans xmlns="http://www.springframework.org/schema/beans">
+    <bean id="e1"><description>Données à traiter</description></bean>
+</beans>
+"""
+
+        when:
+        def input = new ByteArrayInputStream([*bom, *xml.getBytes(charset)] as byte[])
+        def result = localParser.fromXml(input)
+
+        then:
+        result.customEntities() == ["e1": '<bean><description>Données à traiter</description></bean>']
+
+        where:
+        [parseMode, encoding] << [
+                [ParseMode.DOM, ParseMode.STREAMING],
+                [
+                        [StandardCharsets.UTF_8, [] as byte[]],
+                        [StandardCharsets.UTF_8, [0xEF, 0xBB, 0xBF] as byte[]],
+                        [StandardCharsets.ISO_8859_1, [] as byte[]],
+                        [StandardCharsets.UTF_16BE, [0xFE, 0xFF] as byte[]],
+                ]
+        ].combinations()
+        charset = encoding[0] as Charset
+        bom = encoding[1] as byte[]
+    }
+
+    def "custom entities after a large number of nodes are copied from the source"(ParseMode parseMode) {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        def loggers = (1..2000).collect { "    <integration:logging-channel-adapter id=\"log$it\"/>" }.join("\n")
+        def xml = """<beans xmlns="http://www.springframework.org/schema/beans"
+       xmlns:integration="http://www.springframework.org/schema/integration">
+    <bean id="first">first</bean>
+$loggers
+    <bean id="last">last</bean>
+</beans>
+"""
+
+        when:
+        def result = localParser.fromXml(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+
+        then:
+        result.customEntities() == ["first": "<bean>first</bean>", "last": "<bean>last</bean>"]
+        result.graph().traverse().count() == 2000
+
+        where:
+        parseMode << [ParseMode.DOM, ParseMode.STREAMING]
+    }
+
+    def "xml with malformed encoding -> failure"(ParseMode parseMode) {
+        given:
+        def localParser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
+        localParser.setParseMode(parseMode)
+        def xml = [*'<beans xmlns="http://www.springframework.org/schema/beans"><bean id="e1">'.getBytes(StandardCharsets.UTF_8),
+                   0xC3, 0x28,
+                   *'</bean></beans>'.getBytes(StandardCharsets.UTF_8)] as byte[]
+
+        when:
+        localParser.fromXml(new ByteArrayInputStream(xml))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        parseMode << [ParseMode.DOM, ParseMode.STREAMING]
+    }
+
+    // EipNode equality only considers the node id, compare the full node content instead
+    private static List describe(Flow flow) {
+        def nodes = flow.nodes().collect {
+            [it.id(), it.eipId(), it.role(), it.connectionType(), it.attributes(), it.children()]
+        }
+        return [nodes, flow.edges()]
+    }
+
     private IntegrationGraphXmlParser initParser() {
         def parser = new IntegrationGraphXmlParser(NAMESPACES, componentRegistry)
         parser.setValidationSchema(springIntegrationSchema)
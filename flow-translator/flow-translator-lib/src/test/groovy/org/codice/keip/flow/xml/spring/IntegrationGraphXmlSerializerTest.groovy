@@ -1,21 +1,31 @@
 package org.codice.keip.flow.xml.spring
 
 
+import org.codice.keip.flow.TranslationObserver
+import org.codice.keip.flow.graph.GuavaGraph
 import org.codice.keip.flow.model.ConnectionType
 import org.codice.keip.flow.model.EdgeProps
 import org.codice.keip.flow.model.EipChild
 import org.codice.keip.flow.model.EipGraph
 import org.codice.keip.flow.model.EipId
 import org.codice.keip.flow.model.EipNode
+import org.codice.keip.flow.model.Flow
+import org.codice.keip.flow.model.FlowEdge
 import org.codice.keip.flow.model.Role
 import org.codice.keip.flow.xml.NamespaceSpec
 import org.codice.keip.flow.xml.NodeTransformer
+import org.codice.keip.flow.xml.XmlElement
 import org.w3c.dom.Node
 import org.xmlunit.builder.Input
 import org.xmlunit.xpath.JAXPXPathEngine
 import spock.lang.Specification
 
+import javax.xml.transform.OutputKeys
 import javax.xml.transform.TransformerException
+import javax.xml.transform.TransformerFactory
+import javax.xml.transform.stream.StreamResult
+import javax.xml.transform.stream.StreamSource
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.stream.Stream
 
 import static org.codice.keip.flow.xml.XmlComparisonUtil.compareXml
@@ -111,6 +121,31 @@ class IntegrationGraphXmlSerializerTest extends Specification {
         compareXml(xmlOutput.toString(), readTestXml("multi-node.xml"))
     }
 
+    def "Graph is only traversed once per transformation"() {
+        given:
+        EipNode node = Stub {
+            id() >> "test-id"
+            eipId() >> new EipId("jms", "inbound-channel-adapter")
+            role() >> Role.ENDPOINT
+            connectionType() >> ConnectionType.SOURCE
+            attributes() >> ["pub-sub-domain": "true"]
+            children() >> [new EipChild(POLLER_ID, ["fixed-delay": 1000], null)]
+        }
+
+        EipGraph mockGraph = Mock {
+            predecessors(_) >> []
+            successors(_) >> []
+        }
+
+        when:
+        def errors = graphSerializer.toXml(mockGraph, xmlOutput)
+
+        then:
+        1 * mockGraph.traverse() >> { _ -> Stream.of(node) }
+        errors.isEmpty()
+        compareXml(xmlOutput.toString(), readTestXml("single-node.xml"))
+    }
+
     def "Transforming node with a unregistered EIP namespace throws an exception"() {
         given:
         EipNode node = Stub {
@@ -220,6 +255,306 @@ class IntegrationGraphXmlSerializerTest extends Specification {
         compareXml(xmlOutput.toString(), readTestXml("custom-entities-only.xml"))
     }
 
+    def "Fragment cache enabled -> unchanged nodes are not transformed again"() {
+        given: "inbound adapter -> transformer -> outbound adapter"
+        def flow = createLinearFlow("'TestMessage'")
+        int transformCount = 0
+        NodeTransformer countingTransformer = (node, graph) -> {
+            transformCount++
+            return new DefaultNodeTransformer().apply(node, graph)
+        }
+        def cachingSerializer = new IntegrationGraphXmlSerializer(NAMESPACES, countingTransformer)
+        cachingSerializer.setFragmentCacheSize(1 << 20)
+
+        def expectedOutput = new StringWriter()
+        graphSerializer.toXml(GuavaGraph.from(flow), expectedOutput)
+
+        when: "the same flow is serialized twice"
+        def firstOutput = new StringWriter()
+        cachingSerializer.toXml(GuavaGraph.from(flow), firstOutput)
+        def secondOutput = new StringWriter()
+        def errors = cachingSerializer.toXml(GuavaGraph.from(flow), secondOutput)
+
+        then:
+        errors.isEmpty()
+        transformCount == 3
+        firstOutput.toString() == expectedOutput.toString()
+        secondOutput.toString() == expectedOutput.toString()
+        with(cachingSerializer.getFragmentCacheStats()) {
+            entries() == 3
+            hits() == 3
+            misses() == 3
+        }
+
+        when: "a single node is changed"
+        def changedFlow = createLinearFlow("'UpdatedMessage'")
+        def changedOutput = new StringWriter()
+        cachingSerializer.toXml(GuavaGraph.from(changedFlow), changedOutput)
+        expectedOutput = new StringWriter()
+        graphSerializer.toXml(GuavaGraph.from(changedFlow), expectedOutput)
+
+        then: "only the changed node is transformed"
+        transformCount == 4
+        changedOutput.toString() == expectedOutput.toString()
+    }
+
+    def "Fragment cache enabled -> edge changes invalidate the connected nodes"() {
+        given:
+        def flow = createLinearFlow("'TestMessage'")
+        int transformCount = 0
+        NodeTransformer countingTransformer = (node, graph) -> {
+            transformCount++
+            return new DefaultNodeTransformer().apply(node, graph)
+        }
+        def cachingSerializer = new IntegrationGraphXmlSerializer(NAMESPACES, countingTransformer)
+        cachingSerializer.setFragmentCacheSize(1 << 20)
+        cachingSerializer.toXml(GuavaGraph.from(flow), new StringWriter())
+
+        when: "the edge between the transformer and outbound adapter is renamed"
+        def edges = [flow.edges()[0], new FlowEdge("renamed", "appender", "logger")]
+        def output = new StringWriter()
+        cachingSerializer.toXml(GuavaGraph.from(new Flow(flow.nodes(), edges)), output)
+
+        then:
+        transformCount == 5
+        output.toString().contains('output-channel="renamed"')
+        output.toString().contains('channel="renamed"')
+    }
+
+    def "Fragment cache enabled -> nodes that fail to transform are not cached"() {
+        given:
+        def flow = createLinearFlow("'TestMessage'")
+        def inbound = flow.nodes()[0]
+        def cachingSerializer = new IntegrationGraphXmlSerializer(
+                NAMESPACES, buildExceptionalTransformer(inbound))
+        cachingSerializer.setFragmentCacheSize(1 << 20)
+
+        when:
+        def firstErrors = cachingSerializer.toXml(GuavaGraph.from(flow), new StringWriter())
+        def secondErrors = cachingSerializer.toXml(GuavaGraph.from(flow), new StringWriter())
+
+        then:
+        firstErrors*.source() == ["messageGenerator"]
+        secondErrors*.source() == ["messageGenerator"]
+        cachingSerializer.getFragmentCacheStats().entries() == 2
+    }
+
+    def "Fragment cache is bounded by size"() {
+        given:
+        def flow = createLinearFlow("'TestMessage'")
+        def cachingSerializer = new IntegrationGraphXmlSerializer(NAMESPACES)
+        cachingSerializer.setFragmentCacheSize(400)
+
+        when:
+        cachingSerializer.toXml(GuavaGraph.from(flow), new StringWriter())
+
+        then:
+        def stats = cachingSerializer.getFragmentCacheStats()
+        stats.evictions() > 0
+        stats.sizeBytes() <= 400
+    }
+
+    def "Fragment cache size includes the node content held by the cache keys"() {
+        given: "a transformer that ignores the node attributes"
+        def largeExpression = "'" + "x" * 10_000 + "'"
+        def flow = createLinearFlow(largeExpression)
+        NodeTransformer fixedTransformer = (node, graph) -> [new XmlElement("integration", "bridge", [:], [])]
+        def cachingSerializer = new IntegrationGraphXmlSerializer(NAMESPACES, fixedTransformer)
+        cachingSerializer.setFragmentCacheSize(1 << 20)
+
+        when:
+        def output = new StringWriter()
+        cachingSerializer.toXml(GuavaGraph.from(flow), output)
+
+        then:
+        !output.toString().contains(largeExpression)
+        with(cachingSerializer.getFragmentCacheStats()) {
+            entries() == 3
+            sizeBytes() > largeExpression.length() * Character.BYTES
+        }
+    }
+
+    def "Fragment cache disabled by default"() {
+        expect:
+        graphSerializer.getFragmentCacheStats() == null
+    }
+
+    def "Fragment cache enabled -> same output and errors as without the cache"() {
+        given: "many short chains, with some nodes failing to transform"
+        def nodes = []
+        def edges = []
+        for (int i = 0; i < 5000; i++) {
+            if (i % 10 == 0) {
+                nodes << new EipNode("n$i", new EipId("integration", "inbound-channel-adapter"), null, null,
+                        Role.ENDPOINT, ConnectionType.SOURCE, ["expression": "'$i'"], [new EipChild(POLLER_ID, ["fixed-rate": i], null)])
+            } else {
+                nodes << new EipNode("n$i", new EipId("integration", "transformer"), null, null,
+                        Role.TRANSFORMER, ConnectionType.PASSTHRU, ["expression": "payload"], null)
+                edges << new FlowEdge("e$i", "n${i - 1}", "n$i")
+            }
+        }
+        def graph = GuavaGraph.from(new Flow(nodes, edges))
+
+        NodeTransformer failingTransformer = (node, g) -> {
+            if (node.id().endsWith("7")) {
+                throw new RuntimeException("${node.id()} transformer error")
+            }
+            return new DefaultNodeTransformer().apply(node, g)
+        }
+
+        def uncached = new IntegrationGraphXmlSerializer(NAMESPACES, failingTransformer)
+        def cached = new IntegrationGraphXmlSerializer(NAMESPACES, failingTransformer)
+        cached.setFragmentCacheSize(16 << 20)
+
+        when:
+        def expectedOutput = new StringWriter()
+        def expectedErrors = uncached.toXml(graph, expectedOutput)
+        def cachedOutput = new StringWriter()
+        def cachedErrors = cached.toXml(graph, cachedOutput)
+
+        then:
+        expectedErrors.size() == 500
+        cachedErrors*.source() == expectedErrors*.source()
+        cachedOutput.toString() == expectedOutput.toString()
+    }
+
+    def "Observer -> every transformed node is reported, except for cached fragments"() {
+        given:
+        def nodes = (0..<1000).collect {
+            new EipNode("n$it", new EipId("integration", "transformer"), null, null,
+                    Role.TRANSFORMER, ConnectionType.PASSTHRU, ["expression": "payload"], null)
+        }
+        def graph = GuavaGraph.from(new Flow(nodes, []))
+
+        def transformed = new ConcurrentLinkedQueue<EipId>()
+        def phases = new ConcurrentLinkedQueue<TranslationObserver.Phase>()
+        def observer = new TranslationObserver() {
+            @Override
+            void phaseCompleted(TranslationObserver.Phase phase, long durationNanos) {
+                phases.add(phase)
+            }
+
+            @Override
+            void nodeTransformed(EipId eipId, long durationNanos) {
+                transformed.add(eipId)
+            }
+        }
+
+        graphSerializer.setFragmentCacheSize(1 << 20)
+        graphSerializer.setObserver(observer)
+
+        when:
+        graphSerializer.toXml(graph, new StringWriter())
+
+        then:
+        transformed.size() == 1000
+        transformed.every { it == new EipId("integration", "transformer") }
+        phases as List == [TranslationObserver.Phase.PLAN, TranslationObserver.Phase.TRANSFORM_NODES, TranslationObserver.Phase.SERIALIZE]
+
+        when: "the same graph is serialized again"
+        transformed.clear()
+        graphSerializer.toXml(graph, new StringWriter())
+
+        then:
+        transformed.isEmpty()
+    }
+
+    def "Pretty print -> output is indented the same as the JDK Transformer"(long fragmentCacheSize) {
+        given:
+        def graph = GuavaGraph.from(createLinearFlow("'TestMessage'"))
+        def customEntities = ["e1": '<bean class="com.example.Test">\n  <property name="limit">65536<!-- max --></property>\n</bean>',
+                              "e2": '<bean id="e123" lazy-init="true"/>']
+        graphSerializer.setFragmentCacheSize(fragmentCacheSize)
+
+        when:
+        def rawOutput = new StringWriter()
+        graphSerializer.toXml(graph, rawOutput, customEntities)
+        def errors = graphSerializer.toXml(graph, xmlOutput, customEntities, true)
+
+        then:
+        errors.isEmpty()
+        xmlOutput.toString() == indentWithTransformer(rawOutput.toString())
+        xmlOutput.toString().startsWith('<?xml version="1.0" encoding="UTF-8"?>\n<beans ')
+
+        where:
+        fragmentCacheSize << [0, 16 << 20]
+    }
+
+    def "Fragment cache enabled -> indented and unindented fragments are cached separately"() {
+        given:
+        def graph = GuavaGraph.from(createLinearFlow("'TestMessage'"))
+        graphSerializer.setFragmentCacheSize(1 << 20)
+
+        when:
+        def rawOutput = new StringWriter()
+        graphSerializer.toXml(graph, rawOutput)
+        graphSerializer.toXml(graph, xmlOutput, [:], true)
+
+        then:
+        graphSerializer.getFragmentCacheStats().entries() == 6
+        compareXml(xmlOutput.toString(), rawOutput.toString())
+        xmlOutput.toString() != rawOutput.toString()
+    }
+
+    def "Custom entity cache and streaming -> output is unchanged"(boolean prettyPrint, long entityCacheSize, int streamingThreshold) {
+        given:
+        def graph = GuavaGraph.from(createLinearFlow("'TestMessage'"))
+        def customEntities = ["e1": '<bean class="com.example.Test">\n  <property name="limit">65536<!-- max --></property>\n</bean>',
+                              "e2": '<bean id="e123" lazy-init="true"/>']
+        def expected = new StringWriter()
+        graphSerializer.toXml(graph, expected, customEntities, prettyPrint)
+
+        def cachingSerializer = new IntegrationGraphXmlSerializer(NAMESPACES)
+        cachingSerializer.setCustomEntityCacheSize(entityCacheSize)
+        cachingSerializer.setCustomEntityStreamingThreshold(streamingThreshold)
+
+        when:
+        def outputs = (0..<2).collect {
+            def output = new StringWriter()
+            assert cachingSerializer.toXml(graph, output, customEntities, prettyPrint).isEmpty()
+            output.toString()
+        }
+
+        then:
+        outputs.every { it == expected.toString() }
+        entityCacheSize == 0 || cachingSerializer.getCustomEntityCacheStats().hits() == 2
+
+        where:
+        prettyPrint | entityCacheSize | streamingThreshold
+        false       | 1 << 20         | Integer.MAX_VALUE
+        true        | 1 << 20         | Integer.MAX_VALUE
+        false       | 0               | 1
+        true        | 0               | 1
+        true        | 1 << 20         | 1
+    }
+
+    def "Custom entity cache disabled by default"() {
+        expect:
+        graphSerializer.getCustomEntityCacheStats() == null
+    }
+
+    Flow createLinearFlow(String inboundExpression) {
+        def inbound = new EipNode("messageGenerator", new EipId("integration", "inbound-channel-adapter"), null, null,
+                Role.ENDPOINT, ConnectionType.SOURCE, ["expression": inboundExpression], [new EipChild(POLLER_ID, ["fixed-rate": 5000], null)])
+        def transformer = new EipNode("appender", new EipId("integration", "transformer"), null, null,
+                Role.TRANSFORMER, ConnectionType.PASSTHRU, ["expression": "payload + ' world'"], null)
+        def outbound = new EipNode("logger", new EipId("integration", "logging-channel-adapter"), null, null,
+                Role.ENDPOINT, ConnectionType.SINK, ["level": "WARN"], null)
+        def edges = [new FlowEdge("chan1", "messageGenerator", "appender"),
+                     new FlowEdge("chan2", "appender", "logger")]
+        return new Flow([inbound, transformer, outbound], edges)
+    }
+
+    // The indentation previously applied by re-parsing the output
+    static String indentWithTransformer(String xml) {
+        def transformer = TransformerFactory.newInstance().newTransformer()
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes")
+        transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "yes")
+        def output = new StringWriter()
+        transformer.transform(new StreamSource(new StringReader(xml)), new StreamResult(output))
+        return output.toString()
+    }
+
     Optional<EdgeProps> createEdgeProps(String id) {
         return Optional.of(new EdgeProps(id))
     }
@@ -0,0 +1,119 @@
+package org.codice.keip.flow.web.admission;
+
+import static org.codice.keip.flow.web.diff.DiffController.FLOW_DIFF_ENDPOINT;
+import static org.codice.keip.flow.web.diff.DiffController.XML_DIFF_ENDPOINT;
+import static org.codice.keip.flow.web.translation.BatchTranslationController.BATCH_FLOW_TO_XML_ENDPOINT;
+import static org.codice.keip.flow.web.translation.BatchTranslationController.BATCH_XML_TO_FLOW_ENDPOINT;
+import static org.codice.keip.flow.web.translation.TranslationController.FLOW_TO_RAW_XML_ENDPOINT;
+import static org.codice.keip.flow.web.translation.TranslationController.FLOW_TO_XML_ENDPOINT;
+import static org.codice.keip.flow.web.translation.TranslationController.XML_TO_FLOW_ENDPOINT;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Limits the number of concurrent translation requests, with separate budgets for interactive
+// and bulk traffic. Interactive requests over budget are rejected with a 503 (the server is
+// saturated), while bulk requests get a 429 so that batch clients back off.
+@Configuration
+@ConditionalOnProperty(
+    prefix = "keip.admission",
+    name = "enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+public class AdmissionConfiguration {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionConfiguration.class);
+
+  private static final DataSize DEFAULT_BULK_THRESHOLD = DataSize.ofKilobytes(256);
+
+  private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+  private final ConcurrencyBudget interactiveBudget;
+
+  private final ConcurrencyBudget bulkBudget;
+
+  private final long bulkThresholdBytes;
+
+  private final Duration retryAfter;
+
+  public AdmissionConfiguration(AdmissionProps admissionProps) {
+    int processors = Runtime.getRuntime().availableProcessors();
+    int interactiveMax =
+        admissionProps.interactiveMaxConcurrent() != null
+            ? admissionProps.interactiveMaxConcurrent()
+            : 4 * processors;
+    int bulkMax =
+        admissionProps.bulkMaxConcurrent() != null
+            ? admissionProps.bulkMaxConcurrent()
+            : Math.max(1, processors / 2);
+
+    this.interactiveBudget =
+        new ConcurrencyBudget("interactive", interactiveMax, HttpStatus.SERVICE_UNAVAILABLE);
+    this.bulkBudget = new ConcurrencyBudget("bulk", bulkMax, HttpStatus.TOO_MANY_REQUESTS);
+    this.bulkThresholdBytes =
+        admissionProps.bulkThreshold() != null
+            ? admissionProps.bulkThreshold().toBytes()
+            : DEFAULT_BULK_THRESHOLD.toBytes();
+    this.retryAfter =
+        admissionProps.retryAfter() != null ? admissionProps.retryAfter() : DEFAULT_RETRY_AFTER;
+  }
+
+  @Bean
+  public WebMvcConfigurer configureAdmissionControl() {
+    LOGGER.info(
+        "Enable admission control (interactive limit: {}, bulk limit: {}, bulk threshold: {}"
+            + " bytes)",
+        this.interactiveBudget.maxConcurrent(),
+        this.bulkBudget.maxConcurrent(),
+        this.bulkThresholdBytes);
+    return new WebMvcConfigurer() {
+      @Override
+      public void addInterceptors(InterceptorRegistry registry) {
+        registry
+            .addInterceptor(
+                new AdmissionInterceptor(
+                    interactiveBudget, bulkBudget, bulkThresholdBytes, retryAfter))
+            .addPathPatterns(
+                FLOW_TO_XML_ENDPOINT,
+                FLOW_TO_RAW_XML_ENDPOINT,
+                XML_TO_FLOW_ENDPOINT,
+                FLOW_DIFF_ENDPOINT,
+                XML_DIFF_ENDPOINT);
+        // batch requests are bulk traffic regardless of their size
+        registry
+            .addInterceptor(
+                new AdmissionInterceptor(interactiveBudget, bulkBudget, 0, retryAfter))
+            .addPathPatterns(BATCH_FLOW_TO_XML_ENDPOINT, BATCH_XML_TO_FLOW_ENDPOINT);
+      }
+    };
+  }
+
+  @Bean
+  public MeterBinder admissionMetrics() {
+    return registry -> {
+      for (ConcurrencyBudget budget : List.of(this.interactiveBudget, this.bulkBudget)) {
+        Gauge.builder("keip.admission.in.flight", budget, ConcurrencyBudget::inFlight)
+            .description("Number of admitted translation requests in progress")
+            .tag("traffic.class", budget.trafficClass())
+            .register(registry);
+        FunctionCounter.builder(
+                "keip.admission.rejected", budget, ConcurrencyBudget::rejectedCount)
+            .description("Number of translation requests rejected for exceeding the budget")
+            .tag("traffic.class", budget.trafficClass())
+            .register(registry);
+      }
+    };
+  }
+}
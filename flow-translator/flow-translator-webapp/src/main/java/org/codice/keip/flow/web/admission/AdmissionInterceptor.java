@@ -0,0 +1,70 @@
+package org.codice.keip.flow.web.admission;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Admits a translation request only if the concurrency budget of its traffic class has a free
+ * permit, and otherwise rejects it right away with an {@link AdmissionRejectedException}.
+ *
+ * <p>The cost of a request is estimated from its body size, which grows with the node count of the
+ * flow (or the element count of the XML document) being translated. Requests with a body of at
+ * least {@code bulkThresholdBytes}, or of unknown size, are bulk traffic. Smaller requests, such as
+ * those sent while editing a flow in the canvas, are interactive traffic. Keeping a separate budget
+ * for each class stops long-running bulk translations from delaying interactive ones.
+ */
+final class AdmissionInterceptor implements HandlerInterceptor {
+
+  private static final String BUDGET_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".budget";
+
+  private final ConcurrencyBudget interactiveBudget;
+
+  private final ConcurrencyBudget bulkBudget;
+
+  private final long bulkThresholdBytes;
+
+  private final Duration retryAfter;
+
+  AdmissionInterceptor(
+      ConcurrencyBudget interactiveBudget,
+      ConcurrencyBudget bulkBudget,
+      long bulkThresholdBytes,
+      Duration retryAfter) {
+    this.interactiveBudget = interactiveBudget;
+    this.bulkBudget = bulkBudget;
+    this.bulkThresholdBytes = bulkThresholdBytes;
+    this.retryAfter = retryAfter;
+  }
+
+  @Override
+  public boolean preHandle(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    ConcurrencyBudget budget = isBulk(request) ? this.bulkBudget : this.interactiveBudget;
+    if (!budget.tryAcquire()) {
+      throw new AdmissionRejectedException(
+          String.format(
+              "Too many concurrent %s translation requests (limit: %d)",
+              budget.trafficClass(), budget.maxConcurrent()),
+          budget.rejectionStatus(),
+          this.retryAfter);
+    }
+    request.setAttribute(BUDGET_ATTRIBUTE, budget);
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(
+      HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    if (request.getAttribute(BUDGET_ATTRIBUTE) instanceof ConcurrencyBudget budget) {
+      request.removeAttribute(BUDGET_ATTRIBUTE);
+      budget.release();
+    }
+  }
+
+  private boolean isBulk(HttpServletRequest request) {
+    long contentLength = request.getContentLengthLong();
+    return contentLength < 0 || contentLength >= this.bulkThresholdBytes;
+  }
+}
@@ -0,0 +1,27 @@
+package org.codice.keip.flow.web.admission;
+
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * @param interactiveMaxConcurrent maximum number of interactive translation requests handled at
+ *     once. If not set, defaults to four times the number of available processors.
+ * @param bulkMaxConcurrent maximum number of bulk translation requests handled at once. If not set,
+ *     defaults to half the number of available processors (at least one), which leaves processors
+ *     free for interactive requests.
+ * @param bulkThreshold request body size at or above which a single-flow translation request is
+ *     treated as bulk traffic. Requests of unknown size and batch requests are always bulk. If not
+ *     set, defaults to 256KB.
+ * @param retryAfter delay suggested to rejected clients in the Retry-After header. If not set,
+ *     defaults to 1 second.
+ */
+@ConfigurationProperties(prefix = "keip.admission")
+@Validated
+public record AdmissionProps(
+    @Positive Integer interactiveMaxConcurrent,
+    @Positive Integer bulkMaxConcurrent,
+    DataSize bulkThreshold,
+    Duration retryAfter) {}
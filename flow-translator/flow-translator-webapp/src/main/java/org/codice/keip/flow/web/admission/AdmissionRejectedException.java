@@ -0,0 +1,26 @@
+package org.codice.keip.flow.web.admission;
+
+import java.time.Duration;
+import org.springframework.http.HttpStatus;
+
+/** Thrown when a request is rejected because the concurrency budget of its traffic class is spent. */
+public class AdmissionRejectedException extends RuntimeException {
+
+  private final HttpStatus status;
+
+  private final Duration retryAfter;
+
+  AdmissionRejectedException(String message, HttpStatus status, Duration retryAfter) {
+    super(message);
+    this.status = status;
+    this.retryAfter = retryAfter;
+  }
+
+  public HttpStatus getStatus() {
+    return status;
+  }
+
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+}
@@ -0,0 +1,63 @@
+package org.codice.keip.flow.web.admission;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.http.HttpStatus;
+
+/** A fixed number of permits shared by the requests of one traffic class. */
+final class ConcurrencyBudget {
+
+  private final String trafficClass;
+
+  private final int maxConcurrent;
+
+  private final HttpStatus rejectionStatus;
+
+  private final Semaphore permits;
+
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * @param rejectionStatus the status of the response sent when a request of this traffic class is
+   *     rejected
+   */
+  ConcurrencyBudget(String trafficClass, int maxConcurrent, HttpStatus rejectionStatus) {
+    this.trafficClass = trafficClass;
+    this.maxConcurrent = maxConcurrent;
+    this.rejectionStatus = rejectionStatus;
+    this.permits = new Semaphore(maxConcurrent);
+  }
+
+  /** Takes a permit if one is available, without waiting for one to be released. */
+  boolean tryAcquire() {
+    if (this.permits.tryAcquire()) {
+      return true;
+    }
+    this.rejected.increment();
+    return false;
+  }
+
+  void release() {
+    this.permits.release();
+  }
+
+  String trafficClass() {
+    return trafficClass;
+  }
+
+  HttpStatus rejectionStatus() {
+    return rejectionStatus;
+  }
+
+  int maxConcurrent() {
+    return maxConcurrent;
+  }
+
+  int inFlight() {
+    return this.maxConcurrent - this.permits.availablePermits();
+  }
+
+  long rejectedCount() {
+    return this.rejected.sum();
+  }
+}
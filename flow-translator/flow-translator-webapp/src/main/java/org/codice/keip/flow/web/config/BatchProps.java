@@ -0,0 +1,15 @@
+package org.codice.keip.flow.web.config;
+
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * @param maxInFlight maximum number of entries of a single batch request that are translated
+ *     concurrently. Once reached, no further entries are read from the request until a translated
+ *     entry is written to the response. If not set, defaults to twice the number of available
+ *     processors.
+ */
+@ConfigurationProperties(prefix = "keip.batch")
+@Validated
+public record BatchProps(@Positive Integer maxInFlight) {}
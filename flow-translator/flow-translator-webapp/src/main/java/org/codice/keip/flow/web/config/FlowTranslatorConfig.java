@@ -1,49 +1,284 @@
 package org.codice.keip.flow.web.config;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.codice.keip.flow.ComponentRegistry;
 import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.web.config.SchemaCache.BuildResult;
+import org.codice.keip.flow.xml.FragmentCacheStats;
 import org.codice.keip.flow.xml.GraphXmlParser;
 import org.codice.keip.flow.xml.GraphXmlSerializer;
+import org.codice.keip.flow.xml.NodeIdStrategy;
+import org.codice.keip.flow.xml.ParserPoolStats;
+import org.codice.keip.flow.xml.ParserPoolStats.Pool;
 import org.codice.keip.flow.xml.spring.IntegrationGraphXmlParser;
 import org.codice.keip.flow.xml.spring.IntegrationGraphXmlSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 import org.xml.sax.SAXException;
 
 @Configuration
 public class FlowTranslatorConfig {
 
+  private static final int DEFAULT_SCHEMA_CACHE_SIZE = 32;
+
+  private static final DataSize DEFAULT_FRAGMENT_CACHE_SIZE = DataSize.ofMegabytes(32);
+
+  private static final DataSize DEFAULT_ENTITY_CACHE_SIZE = DataSize.ofMegabytes(8);
+
   private final NamespaceProps namespaceProps;
 
-  public FlowTranslatorConfig(NamespaceProps namespaceProps) {
+  private final ParserProps parserProps;
+
+  private final SerializerProps serializerProps;
+
+  public FlowTranslatorConfig(
+      NamespaceProps namespaceProps, ParserProps parserProps, SerializerProps serializerProps) {
     this.namespaceProps = namespaceProps;
+    this.parserProps = parserProps;
+    this.serializerProps = serializerProps;
+  }
+
+  @Bean
+  public FlowTranslator springIntegrationFlowTranslator(
+      GraphXmlSerializer serializer,
+      GraphXmlParser parser,
+      MicrometerTranslationObserver translationObserver) {
+    FlowTranslator flowTranslator = new FlowTranslator(serializer, parser);
+    flowTranslator.setObserver(translationObserver);
+    return flowTranslator;
   }
 
   @Bean
-  public FlowTranslator springIntegrationFlowTranslator() {
+  public ComponentRegistry componentRegistry() {
+    try {
+      // Definitions are included on the classpath by the `eip-schema-definitions` dependency
+      return ComponentRegistry.fromClasspath(FlowTranslatorConfig.class.getClassLoader());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Bean
+  public MicrometerTranslationObserver translationObserver(
+      MeterRegistry registry, ComponentRegistry componentRegistry) {
+    return new MicrometerTranslationObserver(registry, componentRegistry);
+  }
+
+  @Bean
+  public GraphXmlSerializer springIntegrationGraphXmlSerializer(
+      MicrometerTranslationObserver translationObserver) {
     GraphXmlSerializer serializer =
         new IntegrationGraphXmlSerializer(this.namespaceProps.namespaceMappings());
+    DataSize fragmentCacheSize =
+        this.serializerProps.fragmentCacheSize() != null
+            ? this.serializerProps.fragmentCacheSize()
+            : DEFAULT_FRAGMENT_CACHE_SIZE;
+    serializer.setFragmentCacheSize(fragmentCacheSize.toBytes());
+    DataSize entityCacheSize =
+        this.serializerProps.entityCacheSize() != null
+            ? this.serializerProps.entityCacheSize()
+            : DEFAULT_ENTITY_CACHE_SIZE;
+    serializer.setCustomEntityCacheSize(entityCacheSize.toBytes());
+    serializer.setObserver(translationObserver);
+    return serializer;
+  }
 
-    GraphXmlParser parser;
+  @Bean
+  @ConditionalOnProperty(
+      prefix = "keip.parser",
+      name = "namespace-scoped-schemas",
+      havingValue = "false",
+      matchIfMissing = true)
+  BuildResult springIntegrationSchema() {
     try {
-      parser =
-          new IntegrationGraphXmlParser(
-              this.namespaceProps.namespaceMappings(),
-              ComponentRegistry.fromJson(readComponentDefinitionJson()));
-
-      parser.setValidationSchema(
-          SchemaBuilder.buildSpringIntegrationSchemas(this.namespaceProps.namespaceMappings()));
+      return new SchemaCache(this.parserProps.schemaCacheDir())
+          .getOrBuild(this.namespaceProps.namespaceMappings());
     } catch (IOException | SAXException e) {
       throw new RuntimeException(e);
     }
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "keip.parser", name = "namespace-scoped-schemas")
+  NamespaceScopedSchemaProvider namespaceScopedSchemaProvider() {
+    int cacheSize =
+        this.parserProps.schemaCacheSize() != null
+            ? this.parserProps.schemaCacheSize()
+            : DEFAULT_SCHEMA_CACHE_SIZE;
+    return new NamespaceScopedSchemaProvider(this.namespaceProps.namespaceMappings(), cacheSize);
+  }
+
+  @Bean
+  public GraphXmlParser springIntegrationGraphXmlParser(
+      ObjectProvider<BuildResult> springIntegrationSchema,
+      ObjectProvider<NamespaceScopedSchemaProvider> namespaceScopedSchemaProvider,
+      ComponentRegistry componentRegistry,
+      MicrometerTranslationObserver translationObserver) {
+    GraphXmlParser parser =
+        new IntegrationGraphXmlParser(this.namespaceProps.namespaceMappings(), componentRegistry);
+
+    NamespaceScopedSchemaProvider schemaProvider = namespaceScopedSchemaProvider.getIfAvailable();
+    if (schemaProvider != null) {
+      parser.setValidationSchemaProvider(schemaProvider);
+    } else {
+      parser.setValidationSchema(springIntegrationSchema.getObject().schema());
+    }
+
+    if (this.parserProps.poolSize() != null) {
+      parser.setParserPoolSize(this.parserProps.poolSize());
+    }
+    if (this.parserProps.parseMode() != null) {
+      parser.setParseMode(this.parserProps.parseMode());
+    }
+    if (this.parserProps.deterministicIds()) {
+      parser.setNodeIdStrategy(NodeIdStrategy.CONTENT_HASH);
+    }
+    parser.setObserver(translationObserver);
+    return parser;
+  }
 
-    return new FlowTranslator(serializer, parser);
+  @Bean
+  @ConditionalOnProperty(
+      prefix = "keip.parser",
+      name = "namespace-scoped-schemas",
+      havingValue = "false",
+      matchIfMissing = true)
+  MeterBinder schemaBuildMetrics(BuildResult springIntegrationSchema) {
+    long buildTimeNanos = springIntegrationSchema.buildTime().toNanos();
+    return registry ->
+        TimeGauge.builder(
+                "keip.schema.build.time", () -> buildTimeNanos, TimeUnit.NANOSECONDS)
+            .description("Time taken to load the validation schemas at startup")
+            .tag("cache", springIntegrationSchema.cached() ? "hit" : "miss")
+            .register(registry);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "keip.parser", name = "namespace-scoped-schemas")
+  MeterBinder namespaceScopedSchemaMetrics(NamespaceScopedSchemaProvider schemaProvider) {
+    return registry -> {
+      Gauge.builder("keip.schema.cache.size", schemaProvider, NamespaceScopedSchemaProvider::size)
+          .description("Number of compiled namespace-scoped validation schemas")
+          .register(registry);
+      FunctionCounter.builder(
+              "keip.schema.cache.hits", schemaProvider, NamespaceScopedSchemaProvider::hitCount)
+          .description("Number of documents validated with an already compiled schema")
+          .register(registry);
+      FunctionCounter.builder(
+              "keip.schema.cache.misses", schemaProvider, NamespaceScopedSchemaProvider::missCount)
+          .description("Number of documents that required compiling a schema")
+          .register(registry);
+    };
+  }
+
+  @Bean
+  public MeterBinder parserPoolMetrics(GraphXmlParser parser) {
+    return registry -> {
+      for (Pool pool : Pool.values()) {
+        String poolName = pool.name().toLowerCase(Locale.ROOT).replace('_', '-');
+        Function<GraphXmlParser, ParserPoolStats> stats = p -> p.getParserPoolStats().get(pool);
+        Gauge.builder("keip.parser.pool.max", parser, p -> stats.apply(p).maxSize())
+            .description("Maximum number of pooled xml parsers")
+            .tag("pool", poolName)
+            .register(registry);
+        Gauge.builder("keip.parser.pool.created", parser, p -> stats.apply(p).created())
+            .description("Number of xml parsers currently created by the pool")
+            .tag("pool", poolName)
+            .register(registry);
+        Gauge.builder("keip.parser.pool.idle", parser, p -> stats.apply(p).idle())
+            .description("Number of idle xml parsers available for reuse")
+            .tag("pool", poolName)
+            .register(registry);
+        FunctionCounter.builder("keip.parser.pool.hits", parser, p -> stats.apply(p).hits())
+            .description("Number of requests served by an idle pooled parser")
+            .tag("pool", poolName)
+            .register(registry);
+        FunctionCounter.builder("keip.parser.pool.misses", parser, p -> stats.apply(p).misses())
+            .description("Number of requests that required creating a new parser")
+            .tag("pool", poolName)
+            .register(registry);
+        FunctionTimer.builder(
+                "keip.parser.pool.wait",
+                parser,
+                p -> stats.apply(p).waits(),
+                p -> stats.apply(p).totalWaitNanos(),
+                TimeUnit.NANOSECONDS)
+            .description("Time spent waiting for a parser to be released by the pool")
+            .tag("pool", poolName)
+            .register(registry);
+      }
+    };
+  }
+
+  @Bean
+  public MeterBinder fragmentCacheMetrics(GraphXmlSerializer serializer) {
+    return registry -> {
+      if (serializer.getFragmentCacheStats() == null) {
+        return;
+      }
+      bindCacheMetrics(
+          registry,
+          "keip.serializer.fragment.cache",
+          serializer,
+          GraphXmlSerializer::getFragmentCacheStats,
+          "node xml fragments",
+          "Number of nodes written from a cached xml fragment",
+          "Number of nodes that had to be transformed");
+    };
+  }
+
+  @Bean
+  public MeterBinder customEntityCacheMetrics(GraphXmlSerializer serializer) {
+    return registry -> {
+      if (serializer.getCustomEntityCacheStats() == null) {
+        return;
+      }
+      bindCacheMetrics(
+          registry,
+          "keip.serializer.entity.cache",
+          serializer,
+          GraphXmlSerializer::getCustomEntityCacheStats,
+          "custom entities",
+          "Number of custom entities written without being validated again",
+          "Number of custom entities that had to be validated");
+    };
   }
 
-  private static InputStream readComponentDefinitionJson() {
-    // Included on the classpath by adding a dependency on the `eip-schema-definitions` artifact
-    return FlowTranslatorConfig.class.getResourceAsStream("/springIntegrationEipComponents.json");
+  private static void bindCacheMetrics(
+      MeterRegistry registry,
+      String prefix,
+      GraphXmlSerializer serializer,
+      Function<GraphXmlSerializer, FragmentCacheStats> stats,
+      String entryDescription,
+      String hitDescription,
+      String missDescription) {
+    Gauge.builder(prefix + ".size", serializer, s -> stats.apply(s).sizeBytes())
+        .description("Approximate size of the cached " + entryDescription)
+        .baseUnit("bytes")
+        .register(registry);
+    Gauge.builder(prefix + ".entries", serializer, s -> stats.apply(s).entries())
+        .description("Number of cached " + entryDescription)
+        .register(registry);
+    FunctionCounter.builder(prefix + ".hits", serializer, s -> stats.apply(s).hits())
+        .description(hitDescription)
+        .register(registry);
+    FunctionCounter.builder(prefix + ".misses", serializer, s -> stats.apply(s).misses())
+        .description(missDescription)
+        .register(registry);
+    FunctionCounter.builder(prefix + ".evictions", serializer, s -> stats.apply(s).evictions())
+        .description("Number of " + entryDescription + " evicted to stay within the cache size")
+        .register(registry);
   }
 }
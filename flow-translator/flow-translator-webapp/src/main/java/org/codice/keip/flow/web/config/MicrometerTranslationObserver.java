@@ -0,0 +1,138 @@
+package org.codice.keip.flow.web.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.codice.keip.flow.ComponentRegistry;
+import org.codice.keip.flow.TranslationObserver;
+import org.codice.keip.flow.model.EipId;
+
+/**
+ * Publishes translation measurements as Micrometer meters:
+ *
+ * <ul>
+ *   <li>{@code keip.translation.phase}: a timer per translation phase, tagged by {@code phase}
+ *   <li>{@code keip.translation.graph.nodes} and {@code keip.translation.graph.edges}: the size of
+ *       the translated flows, tagged by {@code direction}
+ *   <li>{@code keip.translation.node.transform}: the time taken to transform a node into XML,
+ *       tagged by the {@code namespace} and {@code name} of its EIP component. Components that are
+ *       not in the {@link ComponentRegistry} share a single timer tagged as {@code unknown}, so
+ *       clients cannot create an unbounded number of meters by sending made up components.
+ * </ul>
+ *
+ * Meters are registered up front (or on first use, for the per-component timers) and kept in
+ * maps, so recording a measurement does not require a registry lookup.
+ */
+public class MicrometerTranslationObserver implements TranslationObserver {
+
+  static final String PHASE_TIMER = "keip.translation.phase";
+
+  static final String NODE_COUNT_SUMMARY = "keip.translation.graph.nodes";
+
+  static final String EDGE_COUNT_SUMMARY = "keip.translation.graph.edges";
+
+  static final String NODE_TRANSFORM_TIMER = "keip.translation.node.transform";
+
+  static final String UNKNOWN_COMPONENT_TAG = "unknown";
+
+  private static final Duration MIN_EXPECTED_PHASE_DURATION = Duration.ofNanos(100_000);
+
+  private static final Duration MAX_EXPECTED_PHASE_DURATION = Duration.ofSeconds(30);
+
+  private final MeterRegistry registry;
+
+  private final ComponentRegistry componentRegistry;
+
+  private final Map<Phase, Timer> phaseTimers = new EnumMap<>(Phase.class);
+
+  private final Map<Direction, DistributionSummary> nodeCounts = new EnumMap<>(Direction.class);
+
+  private final Map<Direction, DistributionSummary> edgeCounts = new EnumMap<>(Direction.class);
+
+  private final Map<EipId, Timer> nodeTransformTimers = new ConcurrentHashMap<>();
+
+  private final Timer unknownNodeTransformTimer;
+
+  public MicrometerTranslationObserver(
+      MeterRegistry registry, ComponentRegistry componentRegistry) {
+    this.registry = registry;
+    this.componentRegistry = componentRegistry;
+    for (Phase phase : Phase.values()) {
+      this.phaseTimers.put(phase, phaseTimer(phase.name().toLowerCase(Locale.ROOT)));
+    }
+
+    for (Direction direction : Direction.values()) {
+      String tag = direction.name().toLowerCase(Locale.ROOT);
+      this.nodeCounts.put(
+          direction,
+          DistributionSummary.builder(NODE_COUNT_SUMMARY)
+              .description("Number of nodes in a translated flow")
+              .baseUnit("nodes")
+              .tag("direction", tag)
+              .publishPercentileHistogram()
+              .register(registry));
+      this.edgeCounts.put(
+          direction,
+          DistributionSummary.builder(EDGE_COUNT_SUMMARY)
+              .description("Number of edges in a translated flow")
+              .baseUnit("edges")
+              .tag("direction", tag)
+              .publishPercentileHistogram()
+              .register(registry));
+    }
+
+    this.unknownNodeTransformTimer =
+        nodeTransformTimer(UNKNOWN_COMPONENT_TAG, UNKNOWN_COMPONENT_TAG);
+  }
+
+  @Override
+  public void phaseCompleted(Phase phase, long durationNanos) {
+    this.phaseTimers.get(phase).record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void graphTranslated(Direction direction, int nodeCount, int edgeCount) {
+    this.nodeCounts.get(direction).record(nodeCount);
+    this.edgeCounts.get(direction).record(edgeCount);
+  }
+
+  @Override
+  public void nodeTransformed(EipId eipId, long durationNanos) {
+    Timer timer = this.nodeTransformTimers.get(eipId);
+    if (timer == null) {
+      // ids come from the request, only registered components get their own timer
+      timer =
+          this.componentRegistry.isRegistered(eipId)
+              ? this.nodeTransformTimers.computeIfAbsent(
+                  eipId, id -> nodeTransformTimer(id.namespace(), id.name()))
+              : this.unknownNodeTransformTimer;
+    }
+    timer.record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Timer phaseTimer(String phase) {
+    return Timer.builder(PHASE_TIMER)
+        .description("Time taken by a phase of a flow translation")
+        .tag("phase", phase)
+        .publishPercentileHistogram()
+        .minimumExpectedValue(MIN_EXPECTED_PHASE_DURATION)
+        .maximumExpectedValue(MAX_EXPECTED_PHASE_DURATION)
+        .register(this.registry);
+  }
+
+  // No histogram: the number of timers is bounded by the component registry, but each histogram
+  // adds dozens of time series per component.
+  private Timer nodeTransformTimer(String namespace, String name) {
+    return Timer.builder(NODE_TRANSFORM_TIMER)
+        .description("Time taken to transform a node into xml elements")
+        .tag("namespace", namespace)
+        .tag("name", name)
+        .register(this.registry);
+  }
+}
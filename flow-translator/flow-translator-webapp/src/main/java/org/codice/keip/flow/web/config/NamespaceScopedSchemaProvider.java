@@ -0,0 +1,127 @@
+package org.codice.keip.flow.web.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.xml.validation.Schema;
+import org.codice.keip.flow.xml.NamespaceSpec;
+import org.codice.keip.flow.xml.ValidationSchemaProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * A {@link ValidationSchemaProvider} that compiles a {@link Schema} covering only the configured
+ * namespaces a document declares. Schemas are compiled on first use and kept in an LRU cache keyed
+ * by the set of matched namespaces. Concurrent requests for the same namespace set share a single
+ * compilation.
+ *
+ * <p>Declared namespaces without a configured {@link NamespaceSpec} are ignored, so elements from
+ * those namespaces fail validation.
+ */
+class NamespaceScopedSchemaProvider implements ValidationSchemaProvider {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NamespaceScopedSchemaProvider.class);
+
+  private final List<NamespaceSpec> namespaceSpecs;
+
+  private final Map<List<String>, CompletableFuture<Schema>> schemas;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  NamespaceScopedSchemaProvider(List<NamespaceSpec> namespaceSpecs, int maxCacheSize) {
+    if (maxCacheSize < 1) {
+      throw new IllegalArgumentException("schema cache size must be greater than zero");
+    }
+    this.namespaceSpecs = List.copyOf(namespaceSpecs);
+    this.schemas =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(
+              Map.Entry<List<String>, CompletableFuture<Schema>> eldest) {
+            return size() > maxCacheSize;
+          }
+        };
+  }
+
+  @Override
+  public Schema getSchema(Set<String> namespaceUris) {
+    List<NamespaceSpec> matched =
+        namespaceSpecs.stream().filter(s -> namespaceUris.contains(s.xmlNamespace())).toList();
+    List<String> key = matched.stream().map(NamespaceSpec::xmlNamespace).toList();
+
+    CompletableFuture<Schema> future;
+    boolean compile = false;
+    synchronized (schemas) {
+      future = schemas.get(key);
+      if (future == null) {
+        future = new CompletableFuture<>();
+        schemas.put(key, future);
+        compile = true;
+      }
+    }
+
+    if (compile) {
+      misses.increment();
+      compile(key, matched, future);
+    } else {
+      hits.increment();
+    }
+
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw e;
+    }
+  }
+
+  int size() {
+    synchronized (schemas) {
+      return schemas.size();
+    }
+  }
+
+  long hitCount() {
+    return hits.sum();
+  }
+
+  long missCount() {
+    return misses.sum();
+  }
+
+  private void compile(
+      List<String> key, List<NamespaceSpec> specs, CompletableFuture<Schema> future) {
+    long start = System.nanoTime();
+    try {
+      Schema schema = SchemaBuilder.compile(SchemaBuilder.loadSchemaResources(specs));
+      LOGGER.debug(
+          "Compiled validation schema for namespaces {} in {} ms",
+          key,
+          (System.nanoTime() - start) / 1_000_000);
+      future.complete(schema);
+    } catch (IOException | SAXException | RuntimeException e) {
+      // failed compilations are not cached
+      synchronized (schemas) {
+        schemas.remove(key, future);
+      }
+      RuntimeException ex =
+          switch (e) {
+            case IOException io -> new UncheckedIOException(io);
+            case SAXException sax -> new IllegalStateException("Failed to compile schemas", sax);
+            default -> (RuntimeException) e;
+          };
+      future.completeExceptionally(ex);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package org.codice.keip.flow.web.config;
+
+import jakarta.validation.constraints.Positive;
+import java.nio.file.Path;
+import org.codice.keip.flow.xml.GraphXmlParser.ParseMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * @param poolSize maximum number of pooled xml parsers. If not set, the library default (number of
+ *     available processors) is used.
+ * @param namespaceScopedSchemas if true, each document is validated against a schema compiled
+ *     lazily for only the namespaces it declares, instead of a single schema covering every
+ *     configured namespace. Documents are then read into memory to be scanned for namespace
+ *     declarations before they are parsed.
+ * @param schemaCacheSize maximum number of namespace-scoped schemas to keep compiled
+ * @param deterministicIds if true, missing element ids are derived from the element's path and
+ *     attributes instead of being random, so the same xml is always translated to the same flow
+ * @param schemaCacheDir directory where the validation schemas are persisted in a preprocessed
+ *     form, so they compile faster on the next start. If not set, the schemas are compiled from
+ *     their original documents on every start.
+ * @param parseMode how input documents are read. If not set, the library default ({@link
+ *     ParseMode#DOM}) is used.
+ */
+@ConfigurationProperties(prefix = "keip.parser")
+@Validated
+public record ParserProps(
+    @Positive Integer poolSize,
+    boolean namespaceScopedSchemas,
+    @Positive Integer schemaCacheSize,
+    boolean deterministicIds,
+    Path schemaCacheDir,
+    ParseMode parseMode) {}
@@ -1,17 +1,31 @@
 package org.codice.keip.flow.web.config;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import org.codice.keip.flow.xml.NamespaceSpec;
 import org.springframework.beans.factory.xml.PluggableSchemaResolver;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.w3c.dom.ls.LSInput;
 import org.w3c.dom.ls.LSResourceResolver;
 import org.xml.sax.InputSource;
@@ -28,64 +42,155 @@ class SchemaBuilder {
 
   private static final String CLASSPATH_PREFIX = "classpath:";
 
-  static Schema buildSpringIntegrationSchemas(List<NamespaceSpec> namespaceSpecs)
-      throws IOException, SAXException {
-
-    List<InputStream> springIntegrationSchemas = new ArrayList<>();
-    try {
+  /**
+   * Reads the spring-beans schemas and every classpath schema referenced by the provided {@link
+   * NamespaceSpec}s. Specs with a non-classpath location or a missing resource are skipped.
+   */
+  static List<SchemaResource> loadSchemaResources(List<NamespaceSpec> namespaceSpecs)
+      throws IOException {
+    List<SchemaResource> resources = loadSpringBeansSchemas();
+
+    for (NamespaceSpec spec : namespaceSpecs) {
+      if (!spec.schemaLocation().startsWith(CLASSPATH_PREFIX)) {
+        continue;
+      }
 
-      for (NamespaceSpec spec : namespaceSpecs) {
-        if (!spec.schemaLocation().startsWith(CLASSPATH_PREFIX)) {
-          continue;
+      try (InputStream is =
+          SchemaBuilder.class
+              .getClassLoader()
+              .getResourceAsStream(spec.schemaLocation().substring(CLASSPATH_PREFIX.length()))) {
+        if (is != null) {
+          resources.add(new SchemaResource(spec.schemaLocation(), is.readAllBytes()));
         }
+      }
+    }
 
-        InputStream is =
-            SchemaBuilder.class
-                .getClassLoader()
-                .getResourceAsStream(spec.schemaLocation().substring(CLASSPATH_PREFIX.length()));
+    return resources;
+  }
 
-        if (is != null) {
-          springIntegrationSchemas.add(is);
+  static Schema compile(List<SchemaResource> resources) throws SAXException {
+    return compile(resources, new HashMap<>());
+  }
+
+  /**
+   * Compiles the provided schemas. Imported schemas are read from {@code imports} (keyed by system
+   * id) when present, otherwise they are resolved from the classpath and added to {@code imports}.
+   */
+  static Schema compile(List<SchemaResource> resources, Map<String, byte[]> imports)
+      throws SAXException {
+    Source[] srcArr =
+        resources.stream()
+            .map(r -> new StreamSource(new ByteArrayInputStream(r.content())))
+            .toArray(Source[]::new);
+    SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    schemaFactory.setResourceResolver(new ClasspathLSResourceResolver(imports));
+    return schemaFactory.newSchema(srcArr);
+  }
+
+  /**
+   * Reads the imported schemas with the given system ids, resolved from the classpath the same way
+   * as by {@link #compile}. System ids that can not be resolved are left out of the result.
+   */
+  static Map<String, byte[]> resolveImports(Collection<String> systemIds) throws IOException {
+    ClasspathLSResourceResolver resolver = new ClasspathLSResourceResolver(new HashMap<>());
+    Map<String, byte[]> imports = new HashMap<>();
+    for (String systemId : systemIds) {
+      try (InputStream resource = resolver.resolveFromClasspath(null, systemId)) {
+        if (resource != null) {
+          imports.put(systemId, resource.readAllBytes());
         }
       }
+    }
+    return imports;
+  }
 
-      List<Source> schemaSources = buildSpringBeansSchemas();
-      schemaSources.addAll(springIntegrationSchemas.stream().map(StreamSource::new).toList());
-      Source[] srcArr = schemaSources.toArray(new Source[0]);
-      SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-      schemaFactory.setResourceResolver(new ClasspathLSResourceResolver());
-      return schemaFactory.newSchema(srcArr);
-    } finally {
-      for (InputStream is : springIntegrationSchemas) {
-        is.close();
+  /**
+   * Removes the {@code xsd:annotation} elements (documentation and tooling hints) of a schema
+   * document. Annotations do not take part in validation, but make up most of the Spring schemas.
+   */
+  static byte[] stripAnnotations(byte[] schema) throws IOException, SAXException {
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(schema));
+      NodeList annotations =
+          document.getElementsByTagNameNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "annotation");
+      // the list is live, so it is emptied from the end
+      for (int i = annotations.getLength() - 1; i >= 0; i--) {
+        Node annotation = annotations.item(i);
+        annotation.getParentNode().removeChild(annotation);
       }
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(schema.length / 2);
+      TransformerFactory.newInstance()
+          .newTransformer()
+          .transform(new DOMSource(document), new StreamResult(out));
+      return out.toByteArray();
+    } catch (ParserConfigurationException | TransformerException e) {
+      throw new IOException("Failed to preprocess schema", e);
     }
   }
 
-  private static List<Source> buildSpringBeansSchemas() throws IOException {
+  private static List<SchemaResource> loadSpringBeansSchemas() throws IOException {
     PluggableSchemaResolver resolver =
         new PluggableSchemaResolver(SchemaBuilder.class.getClassLoader());
 
-    List<Source> sources = new ArrayList<>();
+    List<SchemaResource> resources = new ArrayList<>();
     for (String schemaLocation : INIT_SCHEMA_URIS) {
       InputSource inputSource = resolver.resolveEntity(null, schemaLocation);
       if (inputSource != null) {
-        sources.add(new StreamSource(inputSource.getByteStream()));
+        try (InputStream is = inputSource.getByteStream()) {
+          resources.add(new SchemaResource(schemaLocation, is.readAllBytes()));
+        }
       }
     }
 
-    return sources;
+    return resources;
   }
 
+  record SchemaResource(String location, byte[] content) {}
+
   // Workaround for groovy xsd including the scripting-core xsd with a schemaLocation only
-  // (no namespaceUri)
+  // (no namespaceUri).
+  // Imports of schemas that were not passed in directly (e.g. the integration xsd imported by the
+  // jms xsd, when validating against a namespace-scoped schema) are resolved from the classpath
+  // through the spring.schemas mappings.
   private static class ClasspathLSResourceResolver implements LSResourceResolver {
 
+    private final PluggableSchemaResolver schemaResolver =
+        new PluggableSchemaResolver(SchemaBuilder.class.getClassLoader());
+
+    // resolved imports by system id
+    private final Map<String, byte[]> imports;
+
+    private ClasspathLSResourceResolver(Map<String, byte[]> imports) {
+      this.imports = imports;
+    }
+
     @Override
     public LSInput resolveResource(
         String type, String namespaceURI, String publicId, String systemId, String baseURI) {
-      if (systemId != null
-          && systemId.equals(
+      if (systemId == null) {
+        return null;
+      }
+
+      byte[] content = imports.get(systemId);
+      if (content == null) {
+        try (InputStream resource = resolveFromClasspath(publicId, systemId)) {
+          if (resource == null) {
+            return null;
+          }
+          content = resource.readAllBytes();
+        } catch (IOException e) {
+          return null;
+        }
+        imports.put(systemId, content);
+      }
+      return new ClasspathLSInput(publicId, systemId, new ByteArrayInputStream(content));
+    }
+
+    private InputStream resolveFromClasspath(String publicId, String systemId) throws IOException {
+      if (systemId.equals(
               "https://www.springframework.org/schema/integration/scripting/spring-integration-scripting-core.xsd")) {
         InputStream resource =
             SchemaBuilder.class
@@ -93,11 +198,12 @@ class SchemaBuilder {
                 .getResourceAsStream(
                     "org/springframework/integration/scripting/config/spring-integration-scripting-core.xsd");
         if (resource != null) {
-          // Does the SchemaFactory close the 'resource' InputStream?
-          return new ClasspathLSInput(publicId, systemId, resource);
+          return resource;
         }
       }
-      return null;
+
+      InputSource inputSource = schemaResolver.resolveEntity(publicId, systemId);
+      return inputSource != null ? inputSource.getByteStream() : null;
     }
   }
 
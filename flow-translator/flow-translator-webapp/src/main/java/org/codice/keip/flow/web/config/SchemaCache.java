@@ -0,0 +1,313 @@
+package org.codice.keip.flow.web.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import javax.xml.validation.Schema;
+import org.codice.keip.flow.web.config.SchemaBuilder.SchemaResource;
+import org.codice.keip.flow.xml.NamespaceSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Persists the validation schemas in a preprocessed form, so they compile faster on the next
+ * start. Compiled {@link Schema}s (Xerces grammars) cannot be serialized, so the schema documents
+ * are stored instead: the configured schemas and every schema they import, with their {@code
+ * xsd:annotation} elements removed, in a single file per set of schemas. Loading them skips the
+ * classpath resolution of the imports and the parsing of the annotations, which make up most of
+ * the Spring schemas.
+ *
+ * <p>Entries are keyed by the schema locations and a hash of their content, so a change to any
+ * configured location or to the bundled XSDs forces a full compile. The imported schemas are only
+ * known once the configured schemas are compiled, so an entry also records a hash of every import
+ * it contains, which is checked against the documents the imports currently resolve to. An entry
+ * that cannot be read, does not match its key or its imports, or fails its checksum is discarded,
+ * and the schemas are compiled from their original documents.
+ */
+class SchemaCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SchemaCache.class);
+
+  private static final int MAGIC = 0x4b584344; // "KXCD"
+
+  private static final int FORMAT_VERSION = 2;
+
+  private static final String FILE_PREFIX = "validation-schemas-";
+
+  private static final String FILE_SUFFIX = ".xsdset";
+
+  private final Path directory;
+
+  private final ImportResolver importResolver;
+
+  /**
+   * @param directory where to persist the preprocessed schemas, or null to always compile them from
+   *     their original documents
+   */
+  SchemaCache(Path directory) {
+    this(directory, SchemaBuilder::resolveImports);
+  }
+
+  SchemaCache(Path directory, ImportResolver importResolver) {
+    this.directory = directory;
+    this.importResolver = importResolver;
+  }
+
+  /**
+   * Returns the {@link Schema} for the provided specs, compiled from the persisted schema documents
+   * if they were saved by a previous build with the same schemas.
+   */
+  BuildResult getOrBuild(List<NamespaceSpec> namespaceSpecs) throws IOException, SAXException {
+    long start = System.nanoTime();
+    List<SchemaResource> resources = SchemaBuilder.loadSchemaResources(namespaceSpecs);
+    String key = cacheKey(resources);
+
+    Schema schema = null;
+    if (directory != null) {
+      schema = compilePersisted(key);
+    }
+    boolean cached = schema != null;
+    if (!cached) {
+      schema =
+          directory != null
+              ? compileAndPersist(key, resources)
+              : SchemaBuilder.compile(resources);
+    }
+
+    Duration buildTime = Duration.ofNanos(System.nanoTime() - start);
+    LOGGER.info(
+        "Loaded {} validation schemas in {} ms (cache {}, key: {})",
+        resources.size(),
+        buildTime.toMillis(),
+        directory == null ? "disabled" : cached ? "hit" : "miss",
+        key);
+    return new BuildResult(schema, key, cached, buildTime);
+  }
+
+  static String cacheKey(List<SchemaResource> resources) {
+    MessageDigest digest = sha256();
+    for (SchemaResource resource : resources) {
+      digest.update(resource.location().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(resource.content());
+      digest.update((byte) 0);
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  Path entryPath(String key) {
+    return directory.resolve(FILE_PREFIX + key + FILE_SUFFIX);
+  }
+
+  // Returns null if there is no usable entry for the key
+  private Schema compilePersisted(String key) {
+    Path path = entryPath(key);
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+
+    try {
+      SchemaSet schemaSet = read(path, key);
+      verifyImports(schemaSet);
+      return SchemaBuilder.compile(schemaSet.sources(), new HashMap<>(schemaSet.imports()));
+    } catch (IOException | SAXException | RuntimeException e) {
+      LOGGER.warn("Discarding the persisted validation schemas at {}", path, e);
+      deleteQuietly(path);
+      return null;
+    }
+  }
+
+  // Throws if an import now resolves to a different document than the one it was persisted from
+  private void verifyImports(SchemaSet schemaSet) throws IOException {
+    Map<String, byte[]> current = importResolver.resolve(schemaSet.importDigests().keySet());
+    for (Map.Entry<String, byte[]> entry : schemaSet.importDigests().entrySet()) {
+      byte[] content = current.get(entry.getKey());
+      if (content == null || !MessageDigest.isEqual(sha256().digest(content), entry.getValue())) {
+        throw new IOException("The imported schema " + entry.getKey() + " has changed");
+      }
+    }
+  }
+
+  // The schemas are compiled from their preprocessed documents, so a persisted set is known to
+  // compile before it is saved. Imports are hashed before being preprocessed, to match them with
+  // the documents they resolve to on load.
+  private Schema compileAndPersist(String key, List<SchemaResource> resources)
+      throws SAXException {
+    List<SchemaResource> sources = new ArrayList<>(resources.size());
+    Map<String, byte[]> imports = new LinkedHashMap<>();
+    Map<String, byte[]> importDigests = new LinkedHashMap<>();
+    Schema schema;
+    try {
+      for (SchemaResource resource : resources) {
+        sources.add(
+            new SchemaResource(
+                resource.location(), SchemaBuilder.stripAnnotations(resource.content())));
+      }
+      schema = SchemaBuilder.compile(sources, imports);
+      for (Map.Entry<String, byte[]> entry : imports.entrySet()) {
+        importDigests.put(entry.getKey(), sha256().digest(entry.getValue()));
+        entry.setValue(SchemaBuilder.stripAnnotations(entry.getValue()));
+      }
+    } catch (IOException | SAXException e) {
+      LOGGER.warn("Failed to preprocess the validation schemas, they will not be persisted", e);
+      return SchemaBuilder.compile(resources);
+    }
+
+    try {
+      write(key, new SchemaSet(sources, imports, importDigests));
+    } catch (IOException e) {
+      LOGGER.warn("Failed to persist the validation schemas to {}", directory, e);
+    }
+    return schema;
+  }
+
+  private SchemaSet read(Path path, String key) throws IOException {
+    CRC32 checksum = new CRC32();
+    try (InputStream file = new BufferedInputStream(Files.newInputStream(path));
+        DataInputStream in = new DataInputStream(new CheckedInputStream(file, checksum))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        throw new IOException("Unsupported file format");
+      }
+      if (!key.equals(in.readUTF())) {
+        throw new IOException("The persisted schemas do not match the key");
+      }
+
+      List<SchemaResource> sources = new ArrayList<>();
+      for (int i = in.readInt(); i > 0; i--) {
+        sources.add(new SchemaResource(in.readUTF(), readBytes(in)));
+      }
+      Map<String, byte[]> imports = new LinkedHashMap<>();
+      Map<String, byte[]> importDigests = new LinkedHashMap<>();
+      for (int i = in.readInt(); i > 0; i--) {
+        String systemId = in.readUTF();
+        importDigests.put(systemId, readBytes(in));
+        imports.put(systemId, readBytes(in));
+      }
+
+      long expected = checksum.getValue();
+      if (new DataInputStream(file).readLong() != expected) {
+        throw new IOException("Checksum mismatch");
+      }
+      return new SchemaSet(sources, imports, importDigests);
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid document length: " + length);
+    }
+    return in.readNBytes(length);
+  }
+
+  // Written to a temporary file first, so a concurrent start never reads a partial entry. Entries
+  // for other keys are left over from previous configurations and are removed.
+  private void write(String key, SchemaSet schemaSet) throws IOException {
+    Files.createDirectories(directory);
+    Path tmp = Files.createTempFile(directory, FILE_PREFIX, ".tmp");
+    try {
+      CRC32 checksum = new CRC32();
+      try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, checksum));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(key);
+        out.writeInt(schemaSet.sources().size());
+        for (SchemaResource source : schemaSet.sources()) {
+          out.writeUTF(source.location());
+          out.writeInt(source.content().length);
+          out.write(source.content());
+        }
+        out.writeInt(schemaSet.imports().size());
+        for (Map.Entry<String, byte[]> entry : schemaSet.imports().entrySet()) {
+          byte[] digest = schemaSet.importDigests().get(entry.getKey());
+          out.writeUTF(entry.getKey());
+          out.writeInt(digest.length);
+          out.write(digest);
+          out.writeInt(entry.getValue().length);
+          out.write(entry.getValue());
+        }
+        out.flush();
+        new DataOutputStream(file).writeLong(checksum.getValue());
+      }
+      move(tmp, entryPath(key));
+    } finally {
+      deleteQuietly(tmp);
+    }
+
+    try (DirectoryStream<Path> entries =
+        Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+      for (Path entry : entries) {
+        if (!entry.equals(entryPath(key))) {
+          deleteQuietly(entry);
+        }
+      }
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOGGER.debug("Failed to delete {}", path, e);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform implementation is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * The preprocessed schema documents, the documents they import by system id, and the SHA-256
+   * digests of the imported documents before they were preprocessed.
+   */
+  private record SchemaSet(
+      List<SchemaResource> sources,
+      Map<String, byte[]> imports,
+      Map<String, byte[]> importDigests) {}
+
+  /** Reads the documents that imports resolve to, by system id. */
+  @FunctionalInterface
+  interface ImportResolver {
+    Map<String, byte[]> resolve(Collection<String> systemIds) throws IOException;
+  }
+
+  record BuildResult(Schema schema, String key, boolean cached, Duration buildTime) {}
+}
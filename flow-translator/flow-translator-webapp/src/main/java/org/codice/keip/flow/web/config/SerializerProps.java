@@ -0,0 +1,14 @@
+package org.codice.keip.flow.web.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param fragmentCacheSize approximate maximum size of the serialized node fragments cached
+ *     between translations, along with the node content they are keyed by. A size of zero disables
+ *     the cache. If not set, a default of 32MB is used.
+ * @param entityCacheSize approximate maximum size of the validated custom entities cached between
+ *     translations. A size of zero disables the cache. If not set, a default of 8MB is used.
+ */
+@ConfigurationProperties(prefix = "keip.serializer")
+public record SerializerProps(DataSize fragmentCacheSize, DataSize entityCacheSize) {}
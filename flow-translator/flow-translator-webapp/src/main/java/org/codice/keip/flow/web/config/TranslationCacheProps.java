@@ -0,0 +1,16 @@
+package org.codice.keip.flow.web.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * @param maxSize approximate maximum size of the translation results cached by request content. A
+ *     size of zero disables the cache. If not set, a default of 64MB is used.
+ * @param maxRequestSize maximum request body size of a cached translation. Larger requests, and
+ *     requests without a known content length, are streamed into the translator instead of being
+ *     buffered to compute their cache key. If not set, a default of 1MB is used.
+ */
+@ConfigurationProperties(prefix = "keip.translation-cache")
+@Validated
+public record TranslationCacheProps(DataSize maxSize, DataSize maxRequestSize) {}
@@ -0,0 +1,63 @@
+package org.codice.keip.flow.web.diff;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Compares two versions of a flow, given either as EIP Flow JSONs or as Spring Integration XMLs,
+ * and returns their structural differences.
+ */
+@RestController
+@RequestMapping
+public class DiffController {
+
+  private static final String ROOT_PATH = "/diff";
+  public static final String FLOW_DIFF_ENDPOINT = ROOT_PATH + "/flow";
+  public static final String XML_DIFF_ENDPOINT = ROOT_PATH + "/springXml";
+
+  private static final String DIFF_DESCRIPTION =
+      "Nodes are matched by id, then by content, and then through the edges of matched nodes, so"
+          + " nodes whose ids were generated are still compared with their previous version. The"
+          + " response lists the added, removed and modified nodes (with their attribute and child"
+          + " changes), edges and custom entities.";
+
+  private final DiffService diffService;
+
+  DiffController(DiffService diffService) {
+    this.diffService = diffService;
+  }
+
+  @Operation(
+      summary = "Compare two EIP Flow JSONs",
+      description =
+          "The request is a JSON object of the form {\"before\": {...}, \"after\": {...}}. "
+              + DIFF_DESCRIPTION)
+  @PostMapping(
+      path = FLOW_DIFF_ENDPOINT,
+      consumes = APPLICATION_JSON_VALUE,
+      produces = APPLICATION_JSON_VALUE)
+  ResponseEntity<DiffResponse> diffFlows(@RequestBody FlowDiffRequest request) {
+    return ResponseEntity.ok(this.diffService.diff(request));
+  }
+
+  @Operation(
+      summary = "Compare two Spring Integration XMLs",
+      description =
+          "The request is a JSON object of the form {\"before\": \"...\", \"after\": \"...\"}."
+              + " Changes between the ids generated for elements without an id attribute are not"
+              + " reported. "
+              + DIFF_DESCRIPTION)
+  @PostMapping(
+      path = XML_DIFF_ENDPOINT,
+      consumes = APPLICATION_JSON_VALUE,
+      produces = APPLICATION_JSON_VALUE)
+  ResponseEntity<DiffResponse> diffXml(@RequestBody XmlDiffRequest request) {
+    return ResponseEntity.ok(this.diffService.diff(request));
+  }
+}
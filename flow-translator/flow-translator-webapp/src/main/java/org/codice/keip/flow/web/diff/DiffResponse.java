@@ -0,0 +1,5 @@
+package org.codice.keip.flow.web.diff;
+
+import org.codice.keip.flow.diff.FlowDiff;
+
+record DiffResponse(FlowDiff data) {}
@@ -0,0 +1,44 @@
+package org.codice.keip.flow.web.diff;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.transform.TransformerException;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.diff.FlowDiff;
+import org.springframework.stereotype.Service;
+
+@Service
+class DiffService {
+
+  private final FlowTranslator flowTranslator;
+
+  DiffService(FlowTranslator flowTranslator) {
+    this.flowTranslator = flowTranslator;
+  }
+
+  DiffResponse diff(FlowDiffRequest request) {
+    if (request.before() == null || request.after() == null) {
+      throw new IllegalArgumentException("Both the 'before' and 'after' flows are required");
+    }
+    return new DiffResponse(this.flowTranslator.diff(request.before(), request.after()));
+  }
+
+  DiffResponse diff(XmlDiffRequest request) {
+    if (request.before() == null || request.after() == null) {
+      throw new IllegalArgumentException(
+          "Both the 'before' and 'after' XML documents are required");
+    }
+    try {
+      FlowDiff diff =
+          this.flowTranslator.diffXml(toStream(request.before()), toStream(request.after()));
+      return new DiffResponse(diff);
+    } catch (TransformerException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static InputStream toStream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
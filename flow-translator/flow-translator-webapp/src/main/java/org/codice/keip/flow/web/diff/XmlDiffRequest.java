@@ -0,0 +1,3 @@
+package org.codice.keip.flow.web.diff;
+
+record XmlDiffRequest(String before, String after) {}
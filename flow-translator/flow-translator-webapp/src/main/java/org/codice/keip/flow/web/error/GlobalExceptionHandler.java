@@ -1,8 +1,12 @@
 package org.codice.keip.flow.web.error;
 
 import java.io.IOException;
+import java.util.List;
+import org.codice.keip.flow.json.FlowJsonException;
+import org.codice.keip.flow.web.admission.AdmissionRejectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -22,6 +26,19 @@ public class GlobalExceptionHandler {
     return buildResponse(ApiError.of(new IOException(ex.getMessage())), HttpStatus.BAD_REQUEST);
   }
 
+  @ExceptionHandler(FlowJsonException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public ResponseEntity<DefaultErrorResponse> invalidFlowJson(FlowJsonException ex) {
+    LOGGER.error("Invalid flow JSON", ex);
+    // not ApiError.of, which reports the parser's exception for malformed documents
+    ApiError<Object> error =
+        new ApiError<>(
+            ex.getMessage(),
+            ex.getClass().getSimpleName(),
+            List.of(new JsonErrorDetail(ex.getPointer())));
+    return buildResponse(error, HttpStatus.BAD_REQUEST);
+  }
+
   @ExceptionHandler(IllegalArgumentException.class)
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   public ResponseEntity<DefaultErrorResponse> illegalArgument(IllegalArgumentException ex) {
@@ -29,6 +46,16 @@ public class GlobalExceptionHandler {
     return buildResponse(ApiError.of(ex), HttpStatus.BAD_REQUEST);
   }
 
+  @ExceptionHandler(AdmissionRejectedException.class)
+  public ResponseEntity<DefaultErrorResponse> admissionRejected(AdmissionRejectedException ex) {
+    // expected under load, so not logged as an error
+    LOGGER.debug("Request rejected: {}", ex.getMessage());
+    long retryAfterSeconds = Math.max(1, ex.getRetryAfter().plusMillis(999).toSeconds());
+    return ResponseEntity.status(ex.getStatus())
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+        .body(new DefaultErrorResponse(ApiError.of(ex)));
+  }
+
   @ExceptionHandler(Exception.class)
   @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
   public ResponseEntity<DefaultErrorResponse> defaultExceptionHandler(Exception ex) {
@@ -0,0 +1,6 @@
+package org.codice.keip.flow.web.error;
+
+/**
+ * @param pointer the JSON pointer to the invalid value in the request body
+ */
+public record JsonErrorDetail(String pointer) {}
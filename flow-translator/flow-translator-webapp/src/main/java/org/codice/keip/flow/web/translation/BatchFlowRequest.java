@@ -0,0 +1,6 @@
+package org.codice.keip.flow.web.translation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+// The flow is kept as a JSON tree, to be translated like a flowToXml request body
+record BatchFlowRequest(String id, JsonNode flow) implements BatchItem {}
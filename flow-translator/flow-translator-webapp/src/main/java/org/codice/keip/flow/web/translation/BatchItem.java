@@ -0,0 +1,7 @@
+package org.codice.keip.flow.web.translation;
+
+/** A single entry of a batch translation request, identified by a caller-supplied id. */
+interface BatchItem {
+
+  String id();
+}
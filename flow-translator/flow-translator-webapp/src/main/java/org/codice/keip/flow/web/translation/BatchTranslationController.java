@@ -0,0 +1,71 @@
+package org.codice.keip.flow.web.translation;
+
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Batch variants of the {@link TranslationController} endpoints. Requests and responses are
+ * streamed as newline-delimited JSON, with one entry per line.
+ */
+@RestController
+@RequestMapping
+public class BatchTranslationController {
+
+  private static final String ROOT_PATH = "/translation/batch";
+  public static final String BATCH_FLOW_TO_XML_ENDPOINT = ROOT_PATH + "/toSpringXml";
+  public static final String BATCH_XML_TO_FLOW_ENDPOINT = ROOT_PATH + "/toFlow";
+
+  private final BatchTranslationService batchTranslationService;
+
+  BatchTranslationController(BatchTranslationService batchTranslationService) {
+    this.batchTranslationService = batchTranslationService;
+  }
+
+  @Operation(
+      summary = "Translate a batch of EIP Flow JSONs to Spring Integration XMLs",
+      description =
+          "Each request line is a JSON object of the form {\"id\": \"...\", \"flow\": {...}}. A"
+              + " {\"id\": \"...\", \"data\": \"...\", \"error\": {...}} line is returned for each"
+              + " request line as soon as it is translated, in no particular order.")
+  @PostMapping(
+      path = BATCH_FLOW_TO_XML_ENDPOINT,
+      consumes = APPLICATION_NDJSON_VALUE,
+      produces = APPLICATION_NDJSON_VALUE)
+  void batchFlowToXml(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      @RequestParam(defaultValue = "false") boolean prettyPrint)
+      throws IOException {
+    response.setContentType(APPLICATION_NDJSON_VALUE);
+    try (InputStream body = request.getInputStream()) {
+      this.batchTranslationService.toXml(body, response.getOutputStream(), prettyPrint);
+    }
+  }
+
+  @Operation(
+      summary = "Translate a batch of Spring Integration XMLs to EIP Flow JSONs",
+      description =
+          "Each request line is a JSON object of the form {\"id\": \"...\", \"xml\": \"...\"}. A"
+              + " {\"id\": \"...\", \"data\": {...}, \"error\": {...}} line is returned for each"
+              + " request line as soon as it is translated, in no particular order.")
+  @PostMapping(
+      path = BATCH_XML_TO_FLOW_ENDPOINT,
+      consumes = APPLICATION_NDJSON_VALUE,
+      produces = APPLICATION_NDJSON_VALUE)
+  void batchXmlToFlow(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    response.setContentType(APPLICATION_NDJSON_VALUE);
+    try (InputStream body = request.getInputStream()) {
+      this.batchTranslationService.fromXml(body, response.getOutputStream());
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package org.codice.keip.flow.web.translation;
+
+import org.codice.keip.flow.web.error.ApiError;
+
+record BatchTranslationResponse<T>(String id, T data, ApiError<TranslationErrorDetail> error) {
+
+  static <T> BatchTranslationResponse<T> of(String id, TranslationResponse<T> response) {
+    return new BatchTranslationResponse<>(id, response.data(), response.error());
+  }
+}
@@ -0,0 +1,212 @@
+package org.codice.keip.flow.web.translation;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.codice.keip.flow.model.Flow;
+import org.codice.keip.flow.web.config.BatchProps;
+import org.codice.keip.flow.web.error.ApiError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Translates a stream of newline-delimited JSON entries, writing a newline-delimited JSON {@link
+ * BatchTranslationResponse} for each entry as soon as it is translated. Responses are therefore not
+ * necessarily written in the same order as the input entries, and are matched to their entries by
+ * id. If an entry does not have an id, its (1-based) line number is used instead.
+ *
+ * <p>Entries are translated concurrently, but only up to a fixed number are read ahead of the
+ * responses being written, so memory usage is bounded regardless of the size of the batch.
+ */
+@Service
+class BatchTranslationService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchTranslationService.class);
+
+  private static final byte NEWLINE = '\n';
+
+  private final TranslationService translationService;
+
+  private final JsonMapper mapper;
+
+  private final TaskExecutor executor;
+
+  private final int maxInFlight;
+
+  BatchTranslationService(
+      TranslationService translationService,
+      JsonMapper mapper,
+      @Qualifier("applicationTaskExecutor") TaskExecutor executor,
+      BatchProps batchProps) {
+    this.translationService = translationService;
+    this.mapper = mapper;
+    this.executor = executor;
+    this.maxInFlight =
+        batchProps.maxInFlight() != null
+            ? batchProps.maxInFlight()
+            : Runtime.getRuntime().availableProcessors() * 2;
+  }
+
+  /** Translates a stream of {@link BatchFlowRequest}s to Spring Integration XML. */
+  void toXml(InputStream ndjson, OutputStream output, boolean prettyPrint) throws IOException {
+    translate(
+        ndjson,
+        output,
+        BatchFlowRequest.class,
+        request -> translateFlow(request.flow(), prettyPrint));
+  }
+
+  /** Translates a stream of {@link BatchXmlRequest}s to EIP {@link Flow}s. */
+  void fromXml(InputStream ndjson, OutputStream output) throws IOException {
+    translate(
+        ndjson,
+        output,
+        BatchXmlRequest.class,
+        request -> {
+          InputStream xml = new ByteArrayInputStream(request.xml().getBytes(UTF_8));
+          return this.translationService.fromXml(xml);
+        });
+  }
+
+  // The flow goes through the same path as a flowToXml request body, so it is cached under the
+  // same key.
+  private TranslationResponse<String> translateFlow(JsonNode flow, boolean prettyPrint) {
+    try {
+      return this.translationService.toXml(this.mapper.writeValueAsBytes(flow), prettyPrint);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private <T extends BatchItem> void translate(
+      InputStream ndjson,
+      OutputStream output,
+      Class<T> entryType,
+      Function<T, TranslationResponse<?>> translator)
+      throws IOException {
+    ObjectReader reader = this.mapper.readerFor(entryType);
+    ResponseWriter responseWriter = new ResponseWriter(output);
+    Semaphore inFlight = new Semaphore(this.maxInFlight);
+
+    BufferedReader lines = new BufferedReader(new InputStreamReader(ndjson, UTF_8));
+    try {
+      String line;
+      long lineNumber = 0;
+      while ((line = lines.readLine()) != null && !responseWriter.failed()) {
+        lineNumber++;
+        if (line.isBlank()) {
+          continue;
+        }
+
+        inFlight.acquire();
+        String entry = line;
+        String lineId = String.valueOf(lineNumber);
+        try {
+          this.executor.execute(
+              () -> {
+                try {
+                  responseWriter.write(translateEntry(entry, lineId, reader, translator));
+                } finally {
+                  inFlight.release();
+                }
+              });
+        } catch (RuntimeException e) {
+          inFlight.release();
+          throw e;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for batch entries to be translated", e);
+    } finally {
+      // wait for the remaining entries, to avoid writing to the response after it is completed
+      inFlight.acquireUninterruptibly(this.maxInFlight);
+    }
+
+    responseWriter.rethrowFailure();
+  }
+
+  private <T extends BatchItem> BatchTranslationResponse<?> translateEntry(
+      String entry,
+      String lineId,
+      ObjectReader reader,
+      Function<T, TranslationResponse<?>> translator) {
+    String id = lineId;
+    try {
+      T request = reader.readValue(entry);
+      if (request.id() != null) {
+        id = request.id();
+      }
+      return BatchTranslationResponse.of(id, translator.apply(request));
+    } catch (Exception e) {
+      LOGGER.debug("Failed to translate batch entry: {}", id, e);
+      return new BatchTranslationResponse<>(id, null, ApiError.of(e));
+    }
+  }
+
+  /**
+   * Serializes each response on the calling thread, then writes it to the output as a single line.
+   * The first write failure (e.g. the client disconnected) is kept, and later responses are
+   * dropped.
+   */
+  private final class ResponseWriter {
+
+    private final OutputStream output;
+
+    private final Lock lock = new ReentrantLock();
+
+    private volatile IOException failure;
+
+    private ResponseWriter(OutputStream output) {
+      this.output = output;
+    }
+
+    void write(BatchTranslationResponse<?> response) {
+      if (failure != null) {
+        return;
+      }
+      try {
+        byte[] line = mapper.writeValueAsBytes(response);
+        // a lock rather than a synchronized block, so that a blocked write does not pin the
+        // carrier of a virtual thread
+        lock.lock();
+        try {
+          output.write(line);
+          output.write(NEWLINE);
+          output.flush();
+        } finally {
+          lock.unlock();
+        }
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+
+    boolean failed() {
+      return failure != null;
+    }
+
+    void rethrowFailure() throws IOException {
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+}
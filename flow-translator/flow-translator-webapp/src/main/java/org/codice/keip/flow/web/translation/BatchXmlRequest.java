@@ -0,0 +1,3 @@
+package org.codice.keip.flow.web.translation;
+
+record BatchXmlRequest(String id, String xml) implements BatchItem {}
@@ -0,0 +1,244 @@
+package org.codice.keip.flow.web.translation;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import org.codice.keip.flow.FlowTranslator;
+import org.codice.keip.flow.web.config.NamespaceProps;
+import org.codice.keip.flow.web.config.TranslationCacheProps;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * A size-bounded cache of translation results, keyed by a digest of the request content and the
+ * translator configuration. Flows are digested in a canonical JSON form (object members sorted by
+ * name, no insignificant whitespace) so that formatting and member order do not affect the key,
+ * while XML documents are digested as is. The same digest is used as the response ETag.
+ *
+ * <p>When several requests with the same key arrive at once, only one of them runs the translation
+ * and the others wait for its result. They wait on a future rather than in a monitor, so a request
+ * on a virtual thread does not pin its carrier thread while it waits. Failed translations are not
+ * cached. Least recently used results are evicted first, and the size of a result is approximated
+ * from its character count (or its byte count, for flow translations cached as encoded JSON
+ * responses).
+ */
+@Component
+class TranslationCache implements MeterBinder {
+
+  private static final DataSize DEFAULT_MAX_SIZE = DataSize.ofMegabytes(64);
+
+  private static final DataSize DEFAULT_MAX_REQUEST_SIZE = DataSize.ofMegabytes(1);
+
+  // Documents are bound to plain maps and lists, keeping null members and the exact value of
+  // decimal numbers, and written back with map entries sorted by key.
+  private static final JsonMapper CANONICAL_MAPPER =
+      JsonMapper.builder()
+          .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+          .enable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+          .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+          .build();
+
+  private final byte[] configDigest;
+
+  private final long maxSizeBytes;
+
+  private final long maxRequestSizeBytes;
+
+  // null if the cache is disabled
+  private final Cache<String, CachedResult> results;
+
+  // translations in progress, so that concurrent requests with the same key share their result
+  private final ConcurrentMap<String, CompletableFuture<CachedResult>> inFlight =
+      new ConcurrentHashMap<>();
+
+  private final AtomicLong sizeBytes = new AtomicLong();
+
+  TranslationCache(TranslationCacheProps cacheProps, NamespaceProps namespaceProps) {
+    this.configDigest = digestConfig(namespaceProps);
+    this.maxSizeBytes =
+        cacheProps.maxSize() != null ? cacheProps.maxSize().toBytes() : DEFAULT_MAX_SIZE.toBytes();
+    this.maxRequestSizeBytes =
+        cacheProps.maxRequestSize() != null
+            ? cacheProps.maxRequestSize().toBytes()
+            : DEFAULT_MAX_REQUEST_SIZE.toBytes();
+    this.results = this.maxSizeBytes > 0 ? buildCache(this.maxSizeBytes) : null;
+  }
+
+  /**
+   * Returns true if the translation of a request body of the given size should be cached. Computing
+   * the key of a request document requires reading it whole, so only bodies of a known size (not
+   * negative) up to the maximum request size are cached.
+   */
+  boolean accepts(long requestSize) {
+    return this.results != null && requestSize >= 0 && requestSize <= this.maxRequestSizeBytes;
+  }
+
+  /**
+   * Returns the key of a flow JSON document to XML translation request. The document is digested in
+   * a canonical form, re-serialized with object members sorted by name and without insignificant
+   * whitespace, so that its formatting and member order do not affect the key. Malformed documents,
+   * which fail to translate anyway, are digested as is.
+   */
+  String keyOf(byte[] json, boolean prettyPrint) {
+    Hasher hasher = newHasher("toXml").putBoolean(prettyPrint);
+    Object document;
+    try {
+      document = CANONICAL_MAPPER.readValue(json, Object.class);
+    } catch (IOException e) {
+      return hasher.putBytes(json).hash().toString();
+    }
+    try (OutputStream out = Funnels.asOutputStream(hasher)) {
+      CANONICAL_MAPPER.writeValue(out, document);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Returns the key of an XML to Flow translation request. */
+  String keyOf(byte[] xml) {
+    return newHasher("toFlow").putBytes(xml).hash().toString();
+  }
+
+  /**
+   * Returns the cached result for the key, or runs the translation and caches its result. If the
+   * cache is disabled, the translation is always run.
+   *
+   * @param resultSize estimates the size of a translation result in bytes
+   */
+  @SuppressWarnings("unchecked")
+  <T> T get(String key, Supplier<T> translation, ToLongFunction<T> resultSize) {
+    if (this.results == null) {
+      return translation.get();
+    }
+
+    CachedResult cached = this.results.getIfPresent(key);
+    if (cached != null) {
+      return (T) cached.response();
+    }
+
+    CompletableFuture<CachedResult> pending = new CompletableFuture<>();
+    CompletableFuture<CachedResult> running = this.inFlight.putIfAbsent(key, pending);
+    if (running == null) {
+      translate(key, translation, resultSize, pending);
+      running = pending;
+    }
+
+    try {
+      return (T) running.join().response();
+    } catch (CompletionException e) {
+      // rethrow the translation failure as if the cache was not there
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    if (this.results == null) {
+      return;
+    }
+    Gauge.builder("keip.translation.cache.size", this.sizeBytes, AtomicLong::get)
+        .description("Approximate size of the cached translation results")
+        .baseUnit("bytes")
+        .register(registry);
+    Gauge.builder("keip.translation.cache.max.size", () -> this.maxSizeBytes)
+        .description("Approximate maximum size of the cached translation results")
+        .baseUnit("bytes")
+        .register(registry);
+    Gauge.builder("keip.translation.cache.entries", this.results, Cache::size)
+        .description("Number of cached translation results")
+        .register(registry);
+    Gauge.builder("keip.translation.cache.hit.ratio", this.results, c -> c.stats().hitRate())
+        .description("Ratio of translation requests served from the cache")
+        .register(registry);
+    FunctionCounter.builder(
+            "keip.translation.cache.hits", this.results, c -> c.stats().hitCount())
+        .description("Number of translation requests served from the cache")
+        .register(registry);
+    FunctionCounter.builder(
+            "keip.translation.cache.misses", this.results, c -> c.stats().missCount())
+        .description("Number of translation requests that had to be translated")
+        .register(registry);
+    FunctionCounter.builder(
+            "keip.translation.cache.evictions", this.results, c -> c.stats().evictionCount())
+        .description("Number of translation results evicted to stay within the cache size")
+        .register(registry);
+  }
+
+  private <T> void translate(
+      String key,
+      Supplier<T> translation,
+      ToLongFunction<T> resultSize,
+      CompletableFuture<CachedResult> pending) {
+    try {
+      // a request with the same key may have completed since the cache was checked
+      CachedResult result = this.results.asMap().get(key);
+      if (result == null) {
+        T response = translation.get();
+        long size = resultSize.applyAsLong(response) + (long) key.length() * Character.BYTES;
+        result = new CachedResult(response, (int) Math.min(size, Integer.MAX_VALUE));
+        this.sizeBytes.addAndGet(result.sizeBytes());
+        this.results.put(key, result);
+      }
+      pending.complete(result);
+    } catch (RuntimeException | Error e) {
+      pending.completeExceptionally(e);
+    } finally {
+      this.inFlight.remove(key, pending);
+    }
+  }
+
+  private Hasher newHasher(String translation) {
+    return Hashing.sha256()
+        .newHasher()
+        .putBytes(this.configDigest)
+        .putString(translation, StandardCharsets.UTF_8);
+  }
+
+  private Cache<String, CachedResult> buildCache(long maxSizeBytes) {
+    return CacheBuilder.newBuilder()
+        .maximumWeight(maxSizeBytes)
+        .<String, CachedResult>weigher((key, result) -> result.sizeBytes())
+        .<String, CachedResult>removalListener(
+            notification -> this.sizeBytes.addAndGet(-notification.getValue().sizeBytes()))
+        .recordStats()
+        .build();
+  }
+
+  // Results depend on the registered namespaces and the translator implementation, so a change
+  // to either must invalidate previously issued keys (and ETags).
+  private static byte[] digestConfig(NamespaceProps namespaceProps) {
+    return Hashing.sha256()
+        .newHasher()
+        .putString(String.valueOf(namespaceProps.namespaceMappings()), StandardCharsets.UTF_8)
+        .putString(
+            String.valueOf(FlowTranslator.class.getPackage().getImplementationVersion()),
+            StandardCharsets.UTF_8)
+        .hash()
+        .asBytes();
+  }
+
+  private record CachedResult(Object response, int sizeBytes) {}
+}
@@ -3,17 +3,34 @@ package org.codice.keip.flow.web.translation;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
 
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import org.codice.keip.flow.model.Flow;
+import org.codice.keip.flow.web.error.ApiError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -27,31 +44,134 @@ public class TranslationController {
 
   private static final String ROOT_PATH = "/translation";
   public static final String FLOW_TO_XML_ENDPOINT = ROOT_PATH + "/toSpringXml";
+  public static final String FLOW_TO_RAW_XML_ENDPOINT = FLOW_TO_XML_ENDPOINT + "/raw";
   public static final String XML_TO_FLOW_ENDPOINT = ROOT_PATH + "/toFlow";
 
+  public static final String TRANSLATION_ERRORS_TRAILER = "X-Translation-Errors";
+
+  private static final String ETAG_DESCRIPTION =
+      "Successful responses to requests with a Content-Length up to the maximum cached request"
+          + " size are tagged with an ETag derived from the request content. Sending it back in an"
+          + " 'If-None-Match' header with the same request returns a 304 (Not Modified) response"
+          + " without translating again.";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TranslationController.class);
+
   private final TranslationService flowTranslationService;
 
-  TranslationController(TranslationService flowTranslationService) {
+  // Trailer values must be single-line ASCII
+  private final ObjectWriter trailerWriter;
+
+  TranslationController(TranslationService flowTranslationService, JsonMapper mapper) {
     this.flowTranslationService = flowTranslationService;
+    this.trailerWriter = mapper.writer().with(JsonWriteFeature.ESCAPE_NON_ASCII);
   }
 
-  @Operation(summary = "Translate an EIP Flow JSON to a Spring Integration XML")
+  // The request body is read straight into the translation graph rather than bound to a Flow, so
+  // its schema is declared explicitly.
+  @Operation(
+      summary = "Translate an EIP Flow JSON to a Spring Integration XML",
+      description = ETAG_DESCRIPTION,
+      requestBody =
+          @io.swagger.v3.oas.annotations.parameters.RequestBody(
+              required = true,
+              description = "EIP Flow JSON",
+              content =
+                  @Content(
+                      mediaType = APPLICATION_JSON_VALUE,
+                      schema = @Schema(implementation = Flow.class))))
   @PostMapping(
       path = FLOW_TO_XML_ENDPOINT,
       consumes = APPLICATION_JSON_VALUE,
       produces = APPLICATION_JSON_VALUE)
   ResponseEntity<TranslationResponse<String>> flowToXml(
-      @RequestBody Flow eipFlow, @RequestParam(defaultValue = "false") boolean prettyPrint) {
-    TranslationResponse<String> response = this.flowTranslationService.toXml(eipFlow, prettyPrint);
-    if (response.error() == null) {
-      return ResponseEntity.ok(response);
-    } else {
-      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+      HttpServletRequest request,
+      @RequestParam(defaultValue = "false") boolean prettyPrint,
+      @RequestHeader HttpHeaders headers)
+      throws IOException {
+    try (InputStream body = request.getInputStream()) {
+      if (!this.flowTranslationService.isCacheable(request.getContentLengthLong())) {
+        return toResponseEntity(this.flowTranslationService.toXml(body, prettyPrint), null);
+      }
+
+      // the whole document is needed to compute its key before translating it, which is bounded by
+      // the maximum cached request size
+      byte[] json = body.readAllBytes();
+      String key = this.flowTranslationService.keyOf(json, prettyPrint);
+      return toCachedResponseEntity(
+          key, headers, () -> this.flowTranslationService.toXml(json, prettyPrint, key));
+    }
+  }
+
+  @Operation(
+      summary = "Translate an EIP Flow JSON to a Spring Integration XML, streamed as raw XML",
+      description =
+          "The XML is written to the response as it is generated, so the status is always 200 once"
+              + " the translation starts. Partial translation errors are sent as a JSON encoded"
+              + " error in the '"
+              + TRANSLATION_ERRORS_TRAILER
+              + "' HTTP trailer, if the client supports trailers.",
+      requestBody =
+          @io.swagger.v3.oas.annotations.parameters.RequestBody(
+              required = true,
+              description = "EIP Flow JSON",
+              content =
+                  @Content(
+                      mediaType = APPLICATION_JSON_VALUE,
+                      schema = @Schema(implementation = Flow.class))))
+  @PostMapping(
+      path = FLOW_TO_RAW_XML_ENDPOINT,
+      consumes = APPLICATION_JSON_VALUE,
+      produces = APPLICATION_XML_VALUE)
+  void flowToRawXml(
+      HttpServletRequest request,
+      @RequestParam(defaultValue = "false") boolean prettyPrint,
+      HttpServletResponse response)
+      throws IOException {
+    response.setContentType(APPLICATION_XML_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+    Map<String, String> trailers = new ConcurrentHashMap<>();
+    try {
+      response.setHeader(HttpHeaders.TRAILER, TRANSLATION_ERRORS_TRAILER);
+      response.setTrailerFields(() -> trailers);
+    } catch (IllegalStateException e) {
+      LOGGER.debug("HTTP trailers are not supported, partial translation errors will be dropped");
+    }
+
+    Writer output =
+        new BufferedWriter(
+            new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+    ApiError<TranslationErrorDetail> error;
+    try (InputStream body = request.getInputStream()) {
+      // the request is fully read before any XML is written, so invalid flows are still reported
+      // through the response status
+      error = this.flowTranslationService.writeXml(body, prettyPrint, output);
+    } catch (RuntimeException e) {
+      if (!response.isCommitted()) {
+        // nothing has been sent yet, so let the exception handler write an error response
+        response.reset();
+        throw e;
+      }
+      // too late to report a failure through the response status
+      LOGGER.error("Failed to translate flow after the response was committed", e);
+      error = ApiError.of(e);
     }
+
+    if (error != null) {
+      trailers.put(TRANSLATION_ERRORS_TRAILER, this.trailerWriter.writeValueAsString(error));
+    }
+    output.flush();
   }
 
+  // The response is written straight to the output instead of being returned as a
+  // TranslationResponse, so its schema is declared explicitly.
   @Operation(
       summary = "Translate a Spring Integration XML to an EIP Flow JSON",
+      description =
+          ETAG_DESCRIPTION
+              + " The flow is written to the response as it is encoded, once the XML has been"
+              + " parsed.",
       requestBody =
           @io.swagger.v3.oas.annotations.parameters.RequestBody(
               required = true,
@@ -59,20 +179,86 @@ public class TranslationController {
               content =
                   @Content(
                       mediaType = APPLICATION_XML_VALUE,
-                      schema = @Schema(type = "string", format = "xml"))))
+                      schema = @Schema(type = "string", format = "xml"))),
+      responses =
+          @ApiResponse(
+              responseCode = "200",
+              description = "A translation response with the EIP Flow JSON as its data",
+              content =
+                  @Content(
+                      mediaType = APPLICATION_JSON_VALUE,
+                      schema = @Schema(implementation = TranslationResponse.class))))
   @PostMapping(
       path = XML_TO_FLOW_ENDPOINT,
       consumes = APPLICATION_XML_VALUE,
       produces = APPLICATION_JSON_VALUE)
-  ResponseEntity<TranslationResponse<Flow>> xmlToFlow(HttpServletRequest request)
+  void xmlToFlow(
+      HttpServletRequest request, @RequestHeader HttpHeaders headers, HttpServletResponse response)
       throws IOException {
     try (InputStream body = request.getInputStream()) {
-      TranslationResponse<Flow> response = this.flowTranslationService.fromXml(body);
-      if (response.error() == null) {
-        return ResponseEntity.ok(response);
-      } else {
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+      if (!this.flowTranslationService.isCacheable(request.getContentLengthLong())) {
+        response.setContentType(APPLICATION_JSON_VALUE);
+        try {
+          this.flowTranslationService.writeFlowJson(body, response.getOutputStream());
+        } catch (RuntimeException e) {
+          // the XML is fully parsed before the flow is written, so translation failures are reported
+          // through the response status
+          if (!response.isCommitted()) {
+            response.reset();
+          }
+          throw e;
+        }
+        return;
+      }
+
+      // the whole document is needed to compute its key before translating it, which is bounded by
+      // the maximum cached request size
+      byte[] xml = body.readAllBytes();
+      String key = this.flowTranslationService.keyOf(xml);
+      String eTag = "\"" + key + "\"";
+      if (matchesAny(eTag, headers.getIfNoneMatch())) {
+        response.setStatus(HttpStatus.NOT_MODIFIED.value());
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        return;
+      }
+
+      byte[] json = this.flowTranslationService.toFlowJson(xml, key);
+      response.setContentType(APPLICATION_JSON_VALUE);
+      response.setContentLength(json.length);
+      response.setHeader(HttpHeaders.ETAG, eTag);
+      response.getOutputStream().write(json);
+    }
+  }
+
+  /**
+   * Responds with 304 (Not Modified) if the client already holds the translation identified by the
+   * key, otherwise translates the request and tags the response with the key.
+   */
+  private static <T> ResponseEntity<TranslationResponse<T>> toCachedResponseEntity(
+      String key, HttpHeaders requestHeaders, Supplier<TranslationResponse<T>> translation) {
+    String eTag = "\"" + key + "\"";
+    if (matchesAny(eTag, requestHeaders.getIfNoneMatch())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+    return toResponseEntity(translation.get(), eTag);
+  }
+
+  private static <T> ResponseEntity<TranslationResponse<T>> toResponseEntity(
+      TranslationResponse<T> response, String eTag) {
+    if (response.error() == null) {
+      return ResponseEntity.ok().eTag(eTag).body(response);
+    } else {
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+    }
+  }
+
+  // If-None-Match uses weak comparison, so weak validators match as well
+  private static boolean matchesAny(String eTag, List<String> ifNoneMatch) {
+    for (String candidate : ifNoneMatch) {
+      if (candidate.equals("*") || candidate.replaceFirst("^W/", "").equals(eTag)) {
+        return true;
       }
     }
+    return false;
   }
 }
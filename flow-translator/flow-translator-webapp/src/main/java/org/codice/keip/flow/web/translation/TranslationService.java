@@ -1,17 +1,18 @@
 package org.codice.keip.flow.web.translation;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Reader;
-import java.io.StringReader;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.List;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import org.codice.keip.flow.FlowTranslator;
 import org.codice.keip.flow.error.TransformationError;
 import org.codice.keip.flow.model.Flow;
@@ -25,25 +26,88 @@ class TranslationService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TranslationService.class);
 
-  private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+  // Closing a generator neither closes nor flushes its output, so that a servlet response is not
+  // committed before the controller can reset it.
+  private static final JsonFactory JSON_FACTORY =
+      JsonFactory.builder()
+          .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+          .disable(StreamWriteFeature.FLUSH_PASSED_TO_STREAM)
+          .build();
 
   private final FlowTranslator flowTranslator;
 
-  TranslationService(FlowTranslator flowTranslator) {
+  private final TranslationCache cache;
+
+  TranslationService(FlowTranslator flowTranslator, TranslationCache cache) {
     this.flowTranslator = flowTranslator;
+    this.cache = cache;
+  }
+
+  /**
+   * Returns true if the translation of a request document of the given size (negative if unknown)
+   * is cached, in which case the document must be read whole to compute its key.
+   */
+  boolean isCacheable(long requestSize) {
+    return this.cache.accepts(requestSize);
   }
 
-  TranslationResponse<String> toXml(Flow flow) {
-    return toXml(flow, false);
+  /** Returns the cache key (and ETag) of a flow JSON document to XML translation. */
+  String keyOf(byte[] json, boolean prettyPrint) {
+    return this.cache.keyOf(json, prettyPrint);
+  }
+
+  /** Returns the cache key (and ETag) of an XML to Flow translation. */
+  String keyOf(byte[] xml) {
+    return this.cache.keyOf(xml);
+  }
+
+  /**
+   * Translates a flow JSON document to XML, reading the document straight into the translation
+   * graph instead of binding it to a {@link Flow}.
+   *
+   * @throws org.codice.keip.flow.json.FlowJsonException if the document is not a valid flow
+   */
+  TranslationResponse<String> toXml(InputStream json, boolean prettyPrint) {
+    StringWriter output = new StringWriter();
+    ApiError<TranslationErrorDetail> error = writeXml(json, prettyPrint, output);
+    return new TranslationResponse<>(output.toString(), error);
+  }
+
+  /**
+   * Translates a buffered flow JSON document to XML, through the cache if the document is small
+   * enough to be cached.
+   *
+   * @throws org.codice.keip.flow.json.FlowJsonException if the document is not a valid flow
+   */
+  TranslationResponse<String> toXml(byte[] json, boolean prettyPrint) {
+    if (!this.cache.accepts(json.length)) {
+      return toXml(new ByteArrayInputStream(json), prettyPrint);
+    }
+    return toXml(json, prettyPrint, this.cache.keyOf(json, prettyPrint));
   }
 
-  TranslationResponse<String> toXml(Flow flow, boolean prettyPrint) {
-    try (StringWriter output = new StringWriter()) {
-      List<TransformationError> errors = this.flowTranslator.toXml(flow, output);
-      String data =
-          prettyPrint ? this.prettyPrint(new StringReader(output.toString())) : output.toString();
-      return new TranslationResponse<>(data, toApiError(errors));
-    } catch (TransformerException | IOException e) {
+  /** Returns the cached translation for the key, translating the document if it is not cached. */
+  TranslationResponse<String> toXml(byte[] json, boolean prettyPrint, String key) {
+    return this.cache.get(
+        key,
+        () -> toXml(new ByteArrayInputStream(json), prettyPrint),
+        response -> (long) response.data().length() * Character.BYTES);
+  }
+
+  /**
+   * Writes the XML translation of a flow JSON document to the output as it is generated. The
+   * document is fully read before any XML is written, so an invalid document leaves the output
+   * untouched.
+   *
+   * @return the partial translation errors, or null if the translation was error-free
+   * @throws org.codice.keip.flow.json.FlowJsonException if the document is not a valid flow
+   */
+  ApiError<TranslationErrorDetail> writeXml(InputStream json, boolean prettyPrint, Writer output) {
+    try {
+      return toApiError(this.flowTranslator.toXml(json, output, prettyPrint));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (TransformerException e) {
       throw new RuntimeException(e);
     }
   }
@@ -57,16 +121,39 @@ class TranslationService {
     }
   }
 
-  private String prettyPrint(Reader rawXml) throws TransformerException {
-    Transformer transformer = this.transformerFactory.newTransformer();
-
-    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-    // Add a line break after XML declaration
-    transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "yes");
+  /**
+   * Writes the flow translation of an XML document to the output as a JSON encoded {@link
+   * TranslationResponse}, without building the {@link Flow} or the response. The document is fully
+   * parsed before the flow is written, but the start of the response may already be written to the
+   * output when parsing fails. The output is not flushed.
+   */
+  void writeFlowJson(InputStream xml, OutputStream output) {
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+      // an XML to flow translation never has partial errors, so the response only holds the data
+      generator.writeStartObject();
+      generator.writeFieldName("data");
+      this.flowTranslator.fromXml(xml, generator);
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (TransformerException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
-    StringWriter output = new StringWriter();
-    transformer.transform(new StreamSource(rawXml), new StreamResult(output));
-    return output.toString();
+  /**
+   * Returns the cached JSON encoded flow translation response for the key, translating the XML if
+   * it is not cached.
+   */
+  byte[] toFlowJson(byte[] xml, String key) {
+    return this.cache.get(
+        key,
+        () -> {
+          ByteArrayOutputStream output = new ByteArrayOutputStream(xml.length);
+          writeFlowJson(new ByteArrayInputStream(xml), output);
+          return output.toByteArray();
+        },
+        json -> json.length);
   }
 
   private ApiError<TranslationErrorDetail> toApiError(List<TransformationError> errors) {
@@ -0,0 +1,127 @@
+package org.codice.keip.flow.web.admission
+
+import jakarta.servlet.http.HttpServletRequest
+import jakarta.servlet.http.HttpServletResponse
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+
+import java.time.Duration
+
+class AdmissionInterceptorTest extends Specification {
+
+    private static final long BULK_THRESHOLD = 1024
+
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(3)
+
+    def interactiveBudget = new ConcurrencyBudget("interactive", 2, HttpStatus.SERVICE_UNAVAILABLE)
+
+    def bulkBudget = new ConcurrencyBudget("bulk", 1, HttpStatus.TOO_MANY_REQUESTS)
+
+    def interceptor = new AdmissionInterceptor(interactiveBudget, bulkBudget, BULK_THRESHOLD, RETRY_AFTER)
+
+    def response = Stub(HttpServletResponse)
+
+    def "requests are admitted to the budget matching their estimated cost"(long contentLength, boolean bulk) {
+        when:
+        def admitted = interceptor.preHandle(request(contentLength), response, null)
+
+        then:
+        admitted
+        interactiveBudget.inFlight() == (bulk ? 0 : 1)
+        bulkBudget.inFlight() == (bulk ? 1 : 0)
+
+        where:
+        contentLength      | bulk
+        0                  | false
+        BULK_THRESHOLD - 1 | false
+        BULK_THRESHOLD     | true
+        -1                 | true
+    }
+
+    def "exhausted interactive budget -> rejected with service unavailable"() {
+        given:
+        2.times { interceptor.preHandle(request(10), response, null) }
+
+        when:
+        interceptor.preHandle(request(10), response, null)
+
+        then:
+        def ex = thrown(AdmissionRejectedException)
+        ex.status == HttpStatus.SERVICE_UNAVAILABLE
+        ex.retryAfter == RETRY_AFTER
+        interactiveBudget.rejectedCount() == 1
+    }
+
+    def "exhausted bulk budget -> rejected with too many requests, interactive requests still admitted"() {
+        given:
+        interceptor.preHandle(request(BULK_THRESHOLD), response, null)
+
+        when:
+        interceptor.preHandle(request(BULK_THRESHOLD), response, null)
+
+        then:
+        def ex = thrown(AdmissionRejectedException)
+        ex.status == HttpStatus.TOO_MANY_REQUESTS
+        bulkBudget.rejectedCount() == 1
+
+        when:
+        def admitted = interceptor.preHandle(request(10), response, null)
+
+        then:
+        admitted
+    }
+
+    def "completed request -> permit returned to its budget"() {
+        given:
+        def first = request(BULK_THRESHOLD)
+        interceptor.preHandle(first, response, null)
+
+        when:
+        interceptor.afterCompletion(first, response, null, null)
+        def admitted = interceptor.preHandle(request(BULK_THRESHOLD), response, null)
+
+        then:
+        admitted
+        bulkBudget.inFlight() == 1
+    }
+
+    def "rejected request completion -> no permit returned"() {
+        given:
+        interceptor.preHandle(request(BULK_THRESHOLD), response, null)
+        def rejected = request(BULK_THRESHOLD)
+
+        when:
+        interceptor.preHandle(rejected, response, null)
+
+        then:
+        thrown(AdmissionRejectedException)
+
+        when:
+        interceptor.afterCompletion(rejected, response, null, null)
+
+        then:
+        bulkBudget.inFlight() == 1
+    }
+
+    def "zero bulk threshold -> every request is bulk"() {
+        given:
+        def batchInterceptor = new AdmissionInterceptor(interactiveBudget, bulkBudget, 0, RETRY_AFTER)
+
+        when:
+        batchInterceptor.preHandle(request(0), response, null)
+
+        then:
+        bulkBudget.inFlight() == 1
+        interactiveBudget.inFlight() == 0
+    }
+
+    private HttpServletRequest request(long contentLength) {
+        Map<String, Object> attributes = [:]
+        return Stub(HttpServletRequest) {
+            getContentLengthLong() >> contentLength
+            getAttribute(_ as String) >> { String name -> attributes[name] }
+            setAttribute(_ as String, _) >> { String name, Object value -> attributes[name] = value }
+            removeAttribute(_ as String) >> { String name -> attributes.remove(name) }
+        }
+    }
+}
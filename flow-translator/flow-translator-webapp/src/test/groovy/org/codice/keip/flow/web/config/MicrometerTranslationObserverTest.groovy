@@ -0,0 +1,94 @@
+package org.codice.keip.flow.web.config
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.codice.keip.flow.ComponentRegistry
+import org.codice.keip.flow.TranslationObserver.Direction
+import org.codice.keip.flow.TranslationObserver.Phase
+import org.codice.keip.flow.model.EipId
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+import static org.codice.keip.flow.web.config.MicrometerTranslationObserver.EDGE_COUNT_SUMMARY
+import static org.codice.keip.flow.web.config.MicrometerTranslationObserver.NODE_COUNT_SUMMARY
+import static org.codice.keip.flow.web.config.MicrometerTranslationObserver.NODE_TRANSFORM_TIMER
+import static org.codice.keip.flow.web.config.MicrometerTranslationObserver.PHASE_TIMER
+import static org.codice.keip.flow.web.config.MicrometerTranslationObserver.UNKNOWN_COMPONENT_TAG
+
+class MicrometerTranslationObserverTest extends Specification {
+
+    private static final ComponentRegistry COMPONENT_REGISTRY =
+            ComponentRegistry.fromClasspath(MicrometerTranslationObserverTest.classLoader)
+
+    def registry = new SimpleMeterRegistry()
+
+    def observer = new MicrometerTranslationObserver(registry, COMPONENT_REGISTRY)
+
+    def "completed phases are recorded by a timer tagged with the phase"() {
+        when:
+        observer.phaseCompleted(Phase.BUILD_GRAPH, 2_000_000)
+        observer.phaseCompleted(Phase.BUILD_GRAPH, 3_000_000)
+        observer.phaseCompleted(Phase.SELECT_SCHEMA, 1_000)
+
+        then:
+        def buildGraph = registry.get(PHASE_TIMER).tag("phase", "build_graph").timer()
+        buildGraph.count() == 2
+        buildGraph.totalTime(TimeUnit.MILLISECONDS) == 5
+
+        registry.get(PHASE_TIMER).tag("phase", "select_schema").timer().count() == 1
+        registry.get(PHASE_TIMER).tag("phase", "serialize").timer().count() == 0
+    }
+
+    def "translated graph sizes are recorded per direction"() {
+        when:
+        observer.graphTranslated(Direction.TO_XML, 10, 9)
+        observer.graphTranslated(Direction.FROM_XML, 4, 2)
+        observer.graphTranslated(Direction.FROM_XML, 6, 5)
+
+        then:
+        registry.get(NODE_COUNT_SUMMARY).tag("direction", "to_xml").summary().totalAmount() == 10
+        registry.get(EDGE_COUNT_SUMMARY).tag("direction", "to_xml").summary().totalAmount() == 9
+
+        def fromXmlNodes = registry.get(NODE_COUNT_SUMMARY).tag("direction", "from_xml").summary()
+        fromXmlNodes.count() == 2
+        fromXmlNodes.totalAmount() == 10
+        registry.get(EDGE_COUNT_SUMMARY).tag("direction", "from_xml").summary().totalAmount() == 7
+    }
+
+    def "node transformations are recorded per eip component"() {
+        when:
+        observer.nodeTransformed(new EipId("integration", "filter"), 1_000)
+        observer.nodeTransformed(new EipId("integration", "filter"), 3_000)
+        observer.nodeTransformed(new EipId("jms", "inbound-channel-adapter"), 2_000)
+
+        then:
+        def filter = registry.get(NODE_TRANSFORM_TIMER)
+                .tag("namespace", "integration")
+                .tag("name", "filter")
+                .timer()
+        filter.count() == 2
+        filter.totalTime(TimeUnit.NANOSECONDS) == 4_000
+
+        registry.get(NODE_TRANSFORM_TIMER)
+                .tag("namespace", "jms")
+                .tag("name", "inbound-channel-adapter")
+                .timer()
+                .count() == 1
+    }
+
+    def "unregistered eip components share a single timer"() {
+        when:
+        1000.times { observer.nodeTransformed(new EipId("made-up-${it}", "component-${it}"), 1_000) }
+        observer.nodeTransformed(new EipId("integration", "filter"), 1_000)
+
+        then:
+        registry.find(NODE_TRANSFORM_TIMER).timers().size() == 2
+
+        def unknown = registry.get(NODE_TRANSFORM_TIMER)
+                .tag("namespace", UNKNOWN_COMPONENT_TAG)
+                .tag("name", UNKNOWN_COMPONENT_TAG)
+                .timer()
+        unknown.count() == 1000
+        unknown.totalTime(TimeUnit.NANOSECONDS) == 1_000_000
+    }
+}
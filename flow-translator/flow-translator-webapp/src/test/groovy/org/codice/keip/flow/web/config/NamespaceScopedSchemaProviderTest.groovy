@@ -0,0 +1,101 @@
+package org.codice.keip.flow.web.config
+
+import org.codice.keip.flow.xml.NamespaceSpec
+import spock.lang.Specification
+
+import javax.xml.transform.stream.StreamSource
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class NamespaceScopedSchemaProviderTest extends Specification {
+
+    private static final String BEANS_NS = "http://www.springframework.org/schema/beans"
+    private static final String INTEGRATION_NS = "http://www.springframework.org/schema/integration"
+    private static final String JMS_NS = "http://www.springframework.org/schema/integration/jms"
+
+    private static final List<NamespaceSpec> SPECS = [
+            new NamespaceSpec("integration", INTEGRATION_NS, "classpath:org/springframework/integration/config/spring-integration.xsd"),
+            new NamespaceSpec("jms", JMS_NS, "classpath:org/springframework/integration/jms/config/spring-integration-jms.xsd")
+    ]
+
+    private static final String INTEGRATION_XML = """\
+            <beans xmlns="${BEANS_NS}" xmlns:integration="${INTEGRATION_NS}">
+                <integration:channel id="test"/>
+            </beans>""".stripIndent()
+
+    private static final String JMS_XML = """\
+            <beans xmlns="${BEANS_NS}" xmlns:jms="${JMS_NS}">
+                <jms:channel id="test" queue-name="queue"/>
+            </beans>""".stripIndent()
+
+    def "schemas are compiled once per declared namespace set"() {
+        given:
+        def provider = new NamespaceScopedSchemaProvider(SPECS, 4)
+
+        when:
+        def first = provider.getSchema([BEANS_NS, INTEGRATION_NS] as Set)
+        def second = provider.getSchema([INTEGRATION_NS, BEANS_NS, "http://unknown"] as Set)
+
+        then:
+        second.is(first)
+        provider.size() == 1
+        provider.missCount() == 1
+        provider.hitCount() == 1
+    }
+
+    def "schema only covers the declared namespaces"() {
+        given:
+        def provider = new NamespaceScopedSchemaProvider(SPECS, 4)
+        def schema = provider.getSchema([BEANS_NS, INTEGRATION_NS] as Set)
+
+        when:
+        schema.newValidator().validate(new StreamSource(new StringReader(INTEGRATION_XML)))
+
+        then:
+        noExceptionThrown()
+
+        when:
+        schema.newValidator().validate(new StreamSource(new StringReader(JMS_XML)))
+
+        then:
+        thrown(org.xml.sax.SAXException)
+    }
+
+    def "least recently used schema is evicted"() {
+        given:
+        def provider = new NamespaceScopedSchemaProvider(SPECS, 2)
+        def integration = provider.getSchema([INTEGRATION_NS] as Set)
+        provider.getSchema([JMS_NS] as Set)
+        provider.getSchema([INTEGRATION_NS] as Set)
+
+        when:
+        provider.getSchema([INTEGRATION_NS, JMS_NS] as Set)
+
+        then:
+        provider.size() == 2
+        provider.getSchema([INTEGRATION_NS] as Set).is(integration)
+        provider.missCount() == 3
+    }
+
+    def "concurrent requests for the same namespaces share a single compilation"() {
+        given:
+        def provider = new NamespaceScopedSchemaProvider(SPECS, 4)
+
+        when:
+        def schemas = (1..8).collect {
+            CompletableFuture.supplyAsync { provider.getSchema([INTEGRATION_NS] as Set) }
+        }.collect { it.get(30, TimeUnit.SECONDS) }
+
+        then:
+        schemas.every { it.is(schemas[0]) }
+        provider.missCount() == 1
+    }
+
+    def "invalid cache size -> exception thrown"() {
+        when:
+        new NamespaceScopedSchemaProvider(SPECS, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,160 @@
+package org.codice.keip.flow.web.config
+
+import org.codice.keip.flow.web.config.SchemaBuilder.SchemaResource
+import org.codice.keip.flow.xml.NamespaceSpec
+import org.xml.sax.SAXException
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import javax.xml.transform.stream.StreamSource
+import java.nio.file.Files
+import java.nio.file.Path
+
+class SchemaCacheTest extends Specification {
+
+    private static final List<NamespaceSpec> SPECS = [
+            new NamespaceSpec("integration", "http://www.springframework.org/schema/integration", "classpath:org/springframework/integration/config/spring-integration.xsd"),
+            new NamespaceSpec("jms", "http://www.springframework.org/schema/integration/jms", "classpath:org/springframework/integration/jms/config/spring-integration-jms.xsd")
+    ]
+
+    private static final String VALID_XML = """\
+            <beans xmlns="http://www.springframework.org/schema/beans"
+                   xmlns:integration="http://www.springframework.org/schema/integration"
+                   xmlns:jms="http://www.springframework.org/schema/integration/jms">
+                <integration:channel id="in"/>
+                <jms:outbound-channel-adapter id="out" channel="in" destination-name="queue"/>
+            </beans>""".stripIndent()
+
+    private static final String INVALID_XML = VALID_XML.replace('id="in"', 'id="in" unknown="x"')
+
+    @TempDir
+    Path cacheDir
+
+    def "schemas are persisted and compiled from the persisted documents on the next start"() {
+        when:
+        def first = new SchemaCache(cacheDir).getOrBuild(SPECS)
+        // a new instance stands in for a restart
+        def second = new SchemaCache(cacheDir).getOrBuild(SPECS)
+
+        then:
+        !first.cached()
+        second.cached()
+        second.key() == first.key()
+        Files.isRegularFile(new SchemaCache(cacheDir).entryPath(first.key()))
+
+        and: "both schemas validate the same way"
+        [first, second].every { isValid(it, VALID_XML) && !isValid(it, INVALID_XML) }
+    }
+
+    def "no cache directory -> schemas are compiled every time"() {
+        when:
+        def first = new SchemaCache(null).getOrBuild(SPECS)
+        def second = new SchemaCache(null).getOrBuild(SPECS)
+
+        then:
+        !first.cached()
+        !second.cached()
+        second.key() == first.key()
+        isValid(second, VALID_XML)
+    }
+
+    def "different schema locations produce a different entry, replacing the previous one"() {
+        given:
+        def schemaCache = new SchemaCache(cacheDir)
+
+        when:
+        def first = schemaCache.getOrBuild(SPECS)
+        def second = schemaCache.getOrBuild(SPECS.subList(0, 1))
+
+        then:
+        !second.cached()
+        second.key() != first.key()
+        Files.list(cacheDir).toList() == [schemaCache.entryPath(second.key())]
+    }
+
+    def "unusable persisted entry -> discarded and compiled from the original documents"(
+            Closure<byte[]> corrupt) {
+        given:
+        def schemaCache = new SchemaCache(cacheDir)
+        def key = schemaCache.getOrBuild(SPECS).key()
+        def entry = schemaCache.entryPath(key)
+        Files.write(entry, corrupt(Files.readAllBytes(entry)))
+
+        when:
+        def result = schemaCache.getOrBuild(SPECS)
+
+        then:
+        !result.cached()
+        isValid(result, VALID_XML)
+        !isValid(result, INVALID_XML)
+
+        and: "the entry is rewritten"
+        schemaCache.getOrBuild(SPECS).cached()
+
+        where:
+        corrupt << [
+                { byte[] bytes -> new byte[0] },
+                { byte[] bytes -> Arrays.copyOf(bytes, bytes.length - 100) },
+                { byte[] bytes -> bytes[bytes.length - 20] ^= 1; bytes },
+                { byte[] bytes -> bytes[12] ^= 1; bytes }
+        ]
+    }
+
+    def "imported schema changed since the entry was persisted -> entry discarded"() {
+        given:
+        def key = new SchemaCache(cacheDir).getOrBuild(SPECS).key()
+        def changedImport = { Collection<String> systemIds ->
+            def imports = SchemaBuilder.resolveImports(systemIds)
+            def systemId = imports.keySet().first()
+            imports[systemId] = imports[systemId] + " ".bytes
+            imports
+        }
+
+        when:
+        def unchanged = new SchemaCache(cacheDir).getOrBuild(SPECS)
+        def changed = new SchemaCache(cacheDir, changedImport as SchemaCache.ImportResolver).getOrBuild(SPECS)
+
+        then:
+        unchanged.cached()
+        !changed.cached()
+        changed.key() == key
+        isValid(changed, VALID_XML)
+    }
+
+    def "cache key depends on schema content"() {
+        given:
+        def original = [new SchemaResource("classpath:test.xsd", "<xs:schema/>".bytes)]
+        def modified = [new SchemaResource("classpath:test.xsd", "<xs:schema />".bytes)]
+
+        expect:
+        SchemaCache.cacheKey(original) == SchemaCache.cacheKey(original)
+        SchemaCache.cacheKey(original) != SchemaCache.cacheKey(modified)
+    }
+
+    def "annotations are stripped from schema documents"() {
+        given:
+        def xsd = """\
+            <xsd:schema xmlns:xsd="http://www.w3.org/2001/XMLSchema">
+                <xsd:element name="test">
+                    <xsd:annotation><xsd:documentation>docs</xsd:documentation></xsd:annotation>
+                </xsd:element>
+            </xsd:schema>""".stripIndent()
+
+        when:
+        def stripped = new String(SchemaBuilder.stripAnnotations(xsd.bytes))
+
+        then:
+        !stripped.contains("annotation")
+        !stripped.contains("docs")
+        stripped.contains('<xsd:element name="test">')
+    }
+
+    private static boolean isValid(SchemaCache.BuildResult result, String xml) {
+        try {
+            result.schema().newValidator().validate(new StreamSource(new StringReader(xml)))
+            return true
+        } catch (SAXException ignored) {
+            return false
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.codice.keip.flow.web.diff
+
+import com.fasterxml.jackson.databind.json.JsonMapper
+import org.codice.keip.flow.diff.FlowDiff
+import org.codice.keip.flow.diff.FlowDiff.ChangeType
+import org.codice.keip.flow.diff.FlowDiff.ChildChange
+import org.codice.keip.flow.diff.FlowDiff.NodeChange
+import org.codice.keip.flow.diff.FlowDiff.ValueChange
+import org.codice.keip.flow.model.ConnectionType
+import org.codice.keip.flow.model.EipId
+import org.codice.keip.flow.model.EipNode
+import org.codice.keip.flow.model.FlowEdge
+import org.codice.keip.flow.model.Role
+import org.codice.keip.flow.web.config.JacksonMapperConfig
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest
+import org.springframework.boot.test.context.TestConfiguration
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Import
+import org.springframework.http.HttpStatus
+import org.springframework.test.web.servlet.MockMvc
+import spock.lang.Specification
+import spock.mock.DetachedMockFactory
+
+import java.nio.file.Path
+
+import static org.codice.keip.flow.web.diff.DiffController.FLOW_DIFF_ENDPOINT
+import static org.codice.keip.flow.web.diff.DiffController.XML_DIFF_ENDPOINT
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status
+
+@WebMvcTest(controllers = DiffController)
+@Import(JacksonMapperConfig.class)
+class DiffControllerTest extends Specification {
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build()
+
+    private static final EipId POLLER_ID = new EipId("integration", "poller")
+
+    @Autowired
+    MockMvc mvc
+
+    @Autowired
+    DiffService diffService
+
+    def "valid flow diff request -> returns ok response with the diff"() {
+        given:
+        diffService.diff(_ as FlowDiffRequest) >> new DiffResponse(buildDiff())
+        def flow = MAPPER.readTree(readFlowJson("sample-flow.json"))
+        def request = MAPPER.writeValueAsString(["before": flow, "after": flow])
+
+        when:
+        def response = mvc.perform(post(FLOW_DIFF_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(request))
+                          .andExpect(status().isOk())
+                          .andExpect(content().contentType(APPLICATION_JSON_VALUE))
+                          .andReturn().getResponse().getContentAsString()
+
+        then:
+        verifyDiff(MAPPER.readTree(response).get("data"))
+    }
+
+    def "valid xml diff request -> returns ok response with the diff"() {
+        given:
+        diffService.diff(_ as XmlDiffRequest) >> new DiffResponse(buildDiff())
+        def request = MAPPER.writeValueAsString(["before": "<beans/>", "after": "<beans/>"])
+
+        when:
+        def response = mvc.perform(post(XML_DIFF_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(request))
+                          .andExpect(status().isOk())
+                          .andExpect(content().contentType(APPLICATION_JSON_VALUE))
+                          .andReturn().getResponse().getContentAsString()
+
+        then:
+        verifyDiff(MAPPER.readTree(response).get("data"))
+    }
+
+    def "diff request failure -> returns error response"(Exception ex, int httpStatusCode) {
+        given:
+        diffService.diff(_ as XmlDiffRequest) >> { throw ex }
+        def request = MAPPER.writeValueAsString(["before": "<beans/>", "after": "<beans/>"])
+
+        expect:
+        def response = mvc.perform(post(XML_DIFF_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(request))
+                          .andExpect(status().is(httpStatusCode))
+                          .andReturn().getResponse().getContentAsString()
+        MAPPER.readTree(response).get("error").get("message").asText() == ex.getMessage()
+
+        where:
+        ex                                        | httpStatusCode
+        new IllegalArgumentException("bad input") | HttpStatus.BAD_REQUEST.value()
+        new RuntimeException("unknown")           | HttpStatus.INTERNAL_SERVER_ERROR.value()
+    }
+
+    def "malformed diff request -> returns bad request"() {
+        expect:
+        mvc.perform(post(FLOW_DIFF_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content('{"before": '))
+           .andExpect(status().isBadRequest())
+    }
+
+    // enums are written in lowercase and null values are left out
+    private static void verifyDiff(def data) {
+        assert data.get("addedNodes").get(0).get("id").asText() == "added"
+        assert data.get("addedNodes").get(0).get("role").asText() == "transformer"
+        assert data.get("removedEdges").get(0).get("type").asText() == "default"
+        def change = data.get("modifiedNodes").get(0)
+        assert change.get("id").asText() == "modified"
+        assert !change.has("previousId")
+        assert change.get("attributes").get(0).get("name").asText() == "expression"
+        assert change.get("attributes").get(0).get("before").asText() == "x"
+        assert !change.get("attributes").get(0).has("after")
+        assert change.get("children").get(0).get("type").asText() == "added"
+        assert change.get("children").get(0).get("path").asText() == "0"
+        assert data.get("customEntities").isEmpty()
+    }
+
+    private static FlowDiff buildDiff() {
+        def added = new EipNode("added", new EipId("integration", "transformer"), null, null,
+                Role.TRANSFORMER, ConnectionType.PASSTHRU, [:], [])
+        def change = new NodeChange("modified", null, [],
+                [new ValueChange("expression", "x", null)],
+                [new ChildChange(ChangeType.ADDED, "0", POLLER_ID,
+                        [new ValueChange("fixed-rate", null, "5000")])])
+        return new FlowDiff([added], [], [change], [], [new FlowEdge("e1", "a", "b")], [], [])
+    }
+
+    static String readFlowJson(String filename) {
+        Path path = Path.of("json").resolve(filename)
+        return DiffControllerTest.class.getClassLoader()
+                                 .getResource(path.toString()).text
+    }
+
+    @TestConfiguration
+    static class MockConfig {
+        def detachedMockFactory = new DetachedMockFactory()
+
+        @Bean
+        DiffService diffService() {
+            return detachedMockFactory.Stub(DiffService)
+        }
+    }
+}
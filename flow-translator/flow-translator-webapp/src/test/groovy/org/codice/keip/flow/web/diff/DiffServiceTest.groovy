@@ -0,0 +1,67 @@
+package org.codice.keip.flow.web.diff
+
+import org.codice.keip.flow.FlowTranslator
+import org.codice.keip.flow.diff.FlowDiff
+import org.codice.keip.flow.model.Flow
+import spock.lang.Specification
+
+import javax.xml.transform.TransformerException
+
+class DiffServiceTest extends Specification {
+
+    private static final FlowDiff EMPTY_DIFF = new FlowDiff([], [], [], [], [], [], [])
+
+    FlowTranslator flowTranslator = Mock()
+
+    def diffSvc = new DiffService(flowTranslator)
+
+    def "diff flows -> delegates to the translator"() {
+        given:
+        def before = new Flow([], [])
+        def after = new Flow([], [])
+
+        when:
+        def response = diffSvc.diff(new FlowDiffRequest(before, after))
+
+        then:
+        1 * flowTranslator.diff(before, after) >> EMPTY_DIFF
+        response == new DiffResponse(EMPTY_DIFF)
+    }
+
+    def "diff xml documents -> delegates to the translator"() {
+        when:
+        def response = diffSvc.diff(new XmlDiffRequest("<before/>", "<after/>"))
+
+        then:
+        1 * flowTranslator.diffXml(
+                { it.text == "<before/>" }, { it.text == "<after/>" }) >> EMPTY_DIFF
+        response == new DiffResponse(EMPTY_DIFF)
+    }
+
+    def "missing version -> IllegalArgumentException"(Object request) {
+        when:
+        diffSvc.diff(request)
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * flowTranslator._
+
+        where:
+        request << [new FlowDiffRequest(new Flow([], []), null),
+                    new FlowDiffRequest(null, new Flow([], [])),
+                    new XmlDiffRequest("<before/>", null),
+                    new XmlDiffRequest(null, "<after/>")]
+    }
+
+    def "xml parsing error -> throw runtime exception"() {
+        given:
+        flowTranslator.diffXml(_, _) >> { throw new TransformerException("bad xml") }
+
+        when:
+        diffSvc.diff(new XmlDiffRequest("<before/>", "<after/>"))
+
+        then:
+        def e = thrown(RuntimeException)
+        e.getCause() instanceof TransformerException
+    }
+}
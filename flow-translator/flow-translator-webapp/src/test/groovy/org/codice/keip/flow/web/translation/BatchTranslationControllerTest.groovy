@@ -0,0 +1,76 @@
+package org.codice.keip.flow.web.translation
+
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest
+import org.springframework.boot.test.context.TestConfiguration
+import org.springframework.context.annotation.Bean
+import org.springframework.test.web.servlet.MockMvc
+import spock.lang.Specification
+import spock.mock.DetachedMockFactory
+
+import static org.codice.keip.flow.web.translation.BatchTranslationController.BATCH_FLOW_TO_XML_ENDPOINT
+import static org.codice.keip.flow.web.translation.BatchTranslationController.BATCH_XML_TO_FLOW_ENDPOINT
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status
+
+@WebMvcTest(controllers = BatchTranslationController)
+class BatchTranslationControllerTest extends Specification {
+
+    private static final String REQUEST_LINES = '{"id": "a"}\n{"id": "b"}\n'
+
+    private static final String RESPONSE_LINES = '{"id":"a","data":"<a/>"}\n{"id":"b","data":"<b/>"}\n'
+
+    @Autowired
+    MockMvc mvc
+
+    @Autowired
+    BatchTranslationService batchTranslationService
+
+    def "batch of flows to XML -> request and response are streamed as ndjson"(boolean prettyPrint) {
+        given:
+        batchTranslationService.toXml(_ as InputStream, _ as OutputStream, prettyPrint) >> { args ->
+            assert args[0].text == REQUEST_LINES
+            args[1].write(RESPONSE_LINES.bytes)
+        }
+
+        expect:
+        mvc.perform(post(BATCH_FLOW_TO_XML_ENDPOINT)
+                .contentType(APPLICATION_NDJSON_VALUE)
+                .queryParam("prettyPrint", prettyPrint.toString())
+                .content(REQUEST_LINES))
+           .andExpect(status().isOk())
+           .andExpect(content().contentType(APPLICATION_NDJSON_VALUE))
+           .andExpect(content().string(RESPONSE_LINES))
+
+        where:
+        prettyPrint << [true, false]
+    }
+
+    def "batch of XMLs to flows -> request and response are streamed as ndjson"() {
+        given:
+        batchTranslationService.fromXml(_ as InputStream, _ as OutputStream) >> { args ->
+            assert args[0].text == REQUEST_LINES
+            args[1].write(RESPONSE_LINES.bytes)
+        }
+
+        expect:
+        mvc.perform(post(BATCH_XML_TO_FLOW_ENDPOINT)
+                .contentType(APPLICATION_NDJSON_VALUE)
+                .content(REQUEST_LINES))
+           .andExpect(status().isOk())
+           .andExpect(content().contentType(APPLICATION_NDJSON_VALUE))
+           .andExpect(content().string(RESPONSE_LINES))
+    }
+
+    @TestConfiguration
+    static class MockConfig {
+        def detachedMockFactory = new DetachedMockFactory()
+
+        @Bean
+        BatchTranslationService batchTranslationService() {
+            return detachedMockFactory.Stub(BatchTranslationService)
+        }
+    }
+}
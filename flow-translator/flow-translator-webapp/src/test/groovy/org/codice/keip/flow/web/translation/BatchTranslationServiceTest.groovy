@@ -0,0 +1,130 @@
+package org.codice.keip.flow.web.translation
+
+import com.fasterxml.jackson.databind.json.JsonMapper
+import org.codice.keip.flow.model.Flow
+import org.codice.keip.flow.web.config.BatchProps
+import org.codice.keip.flow.web.config.JacksonMapperConfig
+import org.springframework.core.task.SimpleAsyncTaskExecutor
+import org.springframework.core.task.SyncTaskExecutor
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicInteger
+
+class BatchTranslationServiceTest extends Specification {
+
+    private static final String OUTPUT_XML = "<test>canned</test>"
+
+    private static final JsonMapper MAPPER = new JacksonMapperConfig().objectMapper()
+
+    private static final String FLOW_JSON = '{"nodes": [{"id": "n1", "attributes": {"k": "v"}}], "edges": []}'
+
+    TranslationService translationService = Stub()
+
+    def output = new ByteArrayOutputStream()
+
+    def "batch of flows -> one response line per entry, tagged with the entry id"() {
+        given:
+        translationService.toXml({ MAPPER.readTree(it as byte[]) == MAPPER.readTree(FLOW_JSON) }, false) >>
+                new TranslationResponse(OUTPUT_XML, null)
+        def batchSvc = newService(new SyncTaskExecutor(), 4)
+
+        when:
+        batchSvc.toXml(toInput(flowEntry("a"), "", flowEntry("b")), output, false)
+
+        then:
+        def responses = readResponses()
+        responses*.id == ["a", "b"]
+        responses*.data == [OUTPUT_XML, OUTPUT_XML]
+        responses.every { it.error == null }
+    }
+
+    def "entry without an id -> line number used as id"() {
+        given:
+        translationService.toXml(_ as byte[], false) >> new TranslationResponse(OUTPUT_XML, null)
+        def batchSvc = newService(new SyncTaskExecutor(), 4)
+
+        when:
+        batchSvc.toXml(toInput(flowEntry("a"), '{"flow": {"nodes": [], "edges": []}}'), output, false)
+
+        then:
+        readResponses()*.id == ["a", "2"]
+    }
+
+    def "failing entries -> error response for each failed entry, remaining entries are translated"() {
+        given:
+        translationService.toXml(_ as byte[], false) >> { throw new RuntimeException("translation failed") } >>
+                new TranslationResponse(OUTPUT_XML, null)
+        def batchSvc = newService(new SyncTaskExecutor(), 4)
+
+        when:
+        batchSvc.toXml(toInput(flowEntry("a"), "not json", flowEntry("c")), output, false)
+
+        then:
+        def responses = readResponses()
+        responses*.id == ["a", "2", "c"]
+        responses[0].error.message == "translation failed"
+        responses[1].error != null
+        responses[2].data == OUTPUT_XML
+        responses[2].error == null
+    }
+
+    def "batch of xml documents -> translated to flows"() {
+        given:
+        def flow = new Flow([], [])
+        translationService.fromXml({ it.text == "<beans/>" }) >> new TranslationResponse(flow, null)
+        def batchSvc = newService(new SyncTaskExecutor(), 4)
+
+        when:
+        batchSvc.fromXml(toInput('{"id": "x1", "xml": "<beans/>"}'), output)
+
+        then:
+        def responses = readResponses()
+        responses*.id == ["x1"]
+        responses[0].data == [nodes: [], edges: [], customEntities: [:]]
+    }
+
+    def "concurrent translation -> number of entries in flight never exceeds the limit"() {
+        given:
+        def inFlight = new AtomicInteger()
+        def maxObserved = new AtomicInteger()
+        // Spock serializes stubbed invocations, so a subclass is used to allow concurrent calls
+        translationService = new TranslationService(null, null) {
+            @Override
+            TranslationResponse<String> toXml(byte[] json, boolean prettyPrint) {
+                int current = inFlight.incrementAndGet()
+                maxObserved.accumulateAndGet(current, Math::max)
+                Thread.sleep(5)
+                inFlight.decrementAndGet()
+                return new TranslationResponse(OUTPUT_XML, null)
+            }
+        }
+        def batchSvc = newService(new SimpleAsyncTaskExecutor(), 3)
+        def entries = (1..50).collect { flowEntry("f$it") }
+
+        when:
+        batchSvc.toXml(toInput(*entries), output, false)
+
+        then:
+        def responses = readResponses()
+        responses*.id as Set == (1..50).collect { "f$it".toString() } as Set
+        maxObserved.get() <= 3
+        maxObserved.get() > 1
+    }
+
+    private BatchTranslationService newService(executor, int maxInFlight) {
+        return new BatchTranslationService(translationService, MAPPER, executor, new BatchProps(maxInFlight))
+    }
+
+    private static String flowEntry(String id) {
+        return """{"id": "${id}", "flow": ${FLOW_JSON}}"""
+    }
+
+    private static InputStream toInput(String... lines) {
+        return new ByteArrayInputStream(lines.join("\n").getBytes(StandardCharsets.UTF_8))
+    }
+
+    private List<Map> readResponses() {
+        return output.toString(StandardCharsets.UTF_8).readLines().collect { MAPPER.readValue(it, Map) }
+    }
+}
@@ -0,0 +1,239 @@
+package org.codice.keip.flow.web.translation
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.codice.keip.flow.web.config.NamespaceProps
+import org.codice.keip.flow.web.config.TranslationCacheProps
+import org.codice.keip.flow.xml.NamespaceSpec
+import org.springframework.util.unit.DataSize
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class TranslationCacheTest extends Specification {
+
+    private static final NamespaceProps NAMESPACES = new NamespaceProps([
+            new NamespaceSpec("integration", "http://www.springframework.org/schema/integration", "classpath:org/springframework/integration/config/spring-integration.xsd")
+    ])
+
+    def cache = newCache(DataSize.ofMegabytes(1))
+
+    def "flow json key depends on the document, pretty-printing and translation direction"() {
+        given:
+        def json = '{"nodes": [{"id": "n1"}], "edges": []}'.bytes
+
+        expect:
+        cache.keyOf(json, false) == cache.keyOf(json.clone(), false)
+        cache.keyOf(json, false) != cache.keyOf('{"nodes": [{"id": "n2"}], "edges": []}'.bytes, false)
+        cache.keyOf(json, false) != cache.keyOf(json, true)
+        cache.keyOf(json, false) != cache.keyOf(json)
+    }
+
+    def "flow json key does not depend on whitespace or member order"() {
+        given:
+        def json = '{"nodes": [{"id": "n1", "attributes": {"k1": "v1", "k2": 1.50}}], "edges": []}'
+        def reformatted = """\
+            {
+              "edges" : [ ],
+              "nodes" : [ { "attributes" : { "k2" : 1.50, "k1" : "v1" }, "id" : "n1" } ]
+            }""".stripIndent()
+
+        expect:
+        cache.keyOf(json.bytes, false) == cache.keyOf(reformatted.bytes, false)
+    }
+
+    def "flow json key depends on array order, null members and exact numbers"() {
+        given:
+        def json = '{"nodes": [{"id": "n1"}, {"id": "n2"}], "value": 0.1000000000000000001}'
+
+        expect:
+        cache.keyOf(json.bytes, false) != cache.keyOf(other.bytes, false)
+
+        where:
+        other << [
+                '{"nodes": [{"id": "n2"}, {"id": "n1"}], "value": 0.1000000000000000001}',
+                '{"nodes": [{"id": "n1"}, {"id": "n2"}], "value": 0.1}',
+                '{"nodes": [{"id": "n1", "label": null}, {"id": "n2"}], "value": 0.1000000000000000001}'
+        ]
+    }
+
+    def "malformed flow json is keyed by its content"() {
+        expect:
+        cache.keyOf('{"nodes": ['.bytes, false) == cache.keyOf('{"nodes": ['.bytes, false)
+        cache.keyOf('{"nodes": ['.bytes, false) != cache.keyOf('{"nodes":['.bytes, false)
+        cache.keyOf('{"nodes": []} {}'.bytes, false) != cache.keyOf('{"nodes": []}'.bytes, false)
+    }
+
+    def "keys depend on the configured namespaces"() {
+        given:
+        def json = '{"nodes": []}'.bytes
+        def xml = "<test/>".bytes
+        def otherCache = new TranslationCache(new TranslationCacheProps(null, null), new NamespaceProps([]))
+
+        expect:
+        cache.keyOf(json, false) != otherCache.keyOf(json, false)
+        cache.keyOf(xml) != otherCache.keyOf(xml)
+    }
+
+    def "second request with the same key is served from the cache"() {
+        given:
+        def translations = new AtomicInteger()
+
+        when:
+        def first = cache.get("key", { translate(translations) }, { 100L })
+        def second = cache.get("key", { translate(translations) }, { 100L })
+
+        then:
+        translations.get() == 1
+        second.is(first)
+    }
+
+    def "failed translations are not cached"() {
+        given:
+        def translations = new AtomicInteger()
+
+        when:
+        cache.get("key", { throw new IllegalArgumentException("bad input") }, { 100L })
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        def response = cache.get("key", { translate(translations) }, { 100L })
+
+        then:
+        translations.get() == 1
+        response.data() == "xml-1"
+    }
+
+    def "concurrent requests with the same key are translated once"() {
+        given:
+        def translations = new AtomicInteger()
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        def futures = (1..4).collect {
+            executor.submit({
+                cache.get("key", {
+                    started.countDown()
+                    release.await(5, TimeUnit.SECONDS)
+                    return translate(translations)
+                }, { 100L })
+            })
+        }
+        started.await(5, TimeUnit.SECONDS)
+        // give the remaining requests time to block on the translation in progress
+        Thread.sleep(100)
+        release.countDown()
+        def responses = futures.collect { it.get(5, TimeUnit.SECONDS) }
+
+        then:
+        translations.get() == 1
+        responses.every { it.is(responses[0]) }
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "concurrent requests waiting on a failed translation -> failure rethrown to each, not cached"() {
+        given:
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def executor = Executors.newVirtualThreadPerTaskExecutor()
+
+        when:
+        def futures = (1..4).collect {
+            executor.submit({
+                try {
+                    cache.get("key", {
+                        started.countDown()
+                        release.await(5, TimeUnit.SECONDS)
+                        throw new IllegalArgumentException("bad input")
+                    }, { 100L })
+                } catch (IllegalArgumentException e) {
+                    return e
+                }
+            } as Callable)
+        }
+        started.await(5, TimeUnit.SECONDS)
+        // give the remaining requests time to wait on the translation in progress
+        Thread.sleep(100)
+        release.countDown()
+        def failures = futures.collect { it.get(5, TimeUnit.SECONDS) }
+
+        then:
+        failures*.class == [IllegalArgumentException] * 4
+        failures*.message == ["bad input"] * 4
+        cache.get("key", { translate(new AtomicInteger()) }, { 100L }).data() == "xml-1"
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "least recently used results are evicted to stay within the maximum size"() {
+        given:
+        def registry = new SimpleMeterRegistry()
+        def smallCache = newCache(DataSize.ofKilobytes(10))
+        smallCache.bindTo(registry)
+        def translations = new AtomicInteger()
+
+        when:
+        (1..10).each { smallCache.get("key-${it}".toString(), { translate(translations) }, { 2048L }) }
+
+        then:
+        registry.get("keip.translation.cache.size").gauge().value() <= 10 * 1024
+        registry.get("keip.translation.cache.evictions").functionCounter().count() > 0
+        registry.get("keip.translation.cache.misses").functionCounter().count() == 10
+
+        when:
+        smallCache.get("key-10", { translate(translations) }, { 2048L })
+
+        then:
+        translations.get() == 10
+        registry.get("keip.translation.cache.hits").functionCounter().count() == 1
+    }
+
+    def "zero maximum size disables the cache"() {
+        given:
+        def disabledCache = newCache(DataSize.ofBytes(0))
+        def translations = new AtomicInteger()
+
+        when:
+        disabledCache.get("key", { translate(translations) }, { 100L })
+        disabledCache.get("key", { translate(translations) }, { 100L })
+
+        then:
+        !disabledCache.accepts(0)
+        translations.get() == 2
+    }
+
+    def "only requests of a known size up to the maximum request size are cached"(long requestSize, boolean accepted) {
+        given:
+        def limitedCache = new TranslationCache(
+                new TranslationCacheProps(DataSize.ofMegabytes(1), DataSize.ofKilobytes(1)), NAMESPACES)
+
+        expect:
+        limitedCache.accepts(requestSize) == accepted
+        !newCache(DataSize.ofBytes(0)).accepts(0)
+
+        where:
+        requestSize | accepted
+        0           | true
+        1024        | true
+        1025        | false
+        -1          | false
+    }
+
+    private static TranslationResponse<String> translate(AtomicInteger translations) {
+        return new TranslationResponse<>("xml-${translations.incrementAndGet()}".toString(), null)
+    }
+
+    private static TranslationCache newCache(DataSize maxSize) {
+        return new TranslationCache(new TranslationCacheProps(maxSize, null), NAMESPACES)
+    }
+}
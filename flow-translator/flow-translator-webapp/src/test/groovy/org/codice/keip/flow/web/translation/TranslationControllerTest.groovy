@@ -1,6 +1,7 @@
 package org.codice.keip.flow.web.translation
 
 import com.fasterxml.jackson.databind.json.JsonMapper
+import org.codice.keip.flow.json.FlowJsonException
 import org.codice.keip.flow.model.ConnectionType
 import org.codice.keip.flow.model.EipId
 import org.codice.keip.flow.model.EipNode
@@ -23,12 +24,15 @@ import spock.mock.DetachedMockFactory
 import javax.xml.transform.TransformerException
 import java.nio.file.Path
 
+import static org.codice.keip.flow.web.translation.TranslationController.FLOW_TO_RAW_XML_ENDPOINT
 import static org.codice.keip.flow.web.translation.TranslationController.FLOW_TO_XML_ENDPOINT
+import static org.codice.keip.flow.web.translation.TranslationController.TRANSLATION_ERRORS_TRAILER
 import static org.codice.keip.flow.web.translation.TranslationController.XML_TO_FLOW_ENDPOINT
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE
 import static org.springframework.http.MediaType.APPLICATION_XML_VALUE
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status
 
 @WebMvcTest(controllers = TranslationController)
@@ -50,7 +54,7 @@ class TranslationControllerTest extends Specification {
     def "valid flow json to XML -> returns ok response with body"() {
         given:
         def translationResult = new TranslationResponse(OUTPUT_XML, null)
-        translationService.toXml(_ as Flow, false) >> translationResult
+        translationService.toXml(_ as InputStream, false) >> translationResult
 
         expect:
         MvcResult mvcResult = mvc.perform(post(FLOW_TO_XML_ENDPOINT)
@@ -66,7 +70,7 @@ class TranslationControllerTest extends Specification {
     def "valid flow json to pretty-printed XML -> returns ok response with body"() {
         given:
         def translationResult = new TranslationResponse(OUTPUT_XML, null)
-        translationService.toXml(_ as Flow, true) >> translationResult
+        translationService.toXml(_ as InputStream, true) >> translationResult
 
         expect:
         MvcResult mvcResult = mvc.perform(post(FLOW_TO_XML_ENDPOINT)
@@ -85,7 +89,7 @@ class TranslationControllerTest extends Specification {
         def errDetails = new TranslationErrorDetail("node1", "unknown node")
         def err = ApiError.of(new TransformerException("unsupported node type"), [errDetails])
         def translationResult = new TranslationResponse(OUTPUT_XML, err)
-        translationService.toXml(_ as Flow, _ as Boolean) >> translationResult
+        translationService.toXml(_ as InputStream, _ as Boolean) >> translationResult
 
         expect:
         MvcResult mvcResult = mvc.perform(post(FLOW_TO_XML_ENDPOINT)
@@ -100,7 +104,7 @@ class TranslationControllerTest extends Specification {
 
     def "flow json to XML with fatal transformation errors -> returns error response with no body"(Exception ex, int httpStatusCode) {
         given:
-        translationService.toXml(_ as Flow, _ as Boolean) >> { throw ex }
+        translationService.toXml(_ as InputStream, _ as Boolean) >> { throw ex }
 
         expect:
         MvcResult mvcResult = mvc.perform(post(FLOW_TO_XML_ENDPOINT)
@@ -118,26 +122,169 @@ class TranslationControllerTest extends Specification {
         new RuntimeException("unknown")           | HttpStatus.INTERNAL_SERVER_ERROR.value()
     }
 
-    def "malformed flow json -> deserialization error -> returns error response with no body"() {
+    def "flow json to XML with caching enabled -> returns ok response tagged with the cache key"() {
         given:
         def translationResult = new TranslationResponse(OUTPUT_XML, null)
-        translationService.toXml(_ as Flow, _ as Boolean) >> translationResult
+        translationService.isCacheable(_) >> true
+        translationService.keyOf(_ as byte[], false) >> "flowkey"
+        translationService.toXml(_ as byte[], false, "flowkey") >> translationResult
 
         expect:
         MvcResult mvcResult = mvc.perform(post(FLOW_TO_XML_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .header("If-None-Match", '"otherkey"')
+                .content(readFlowJson("sample-flow.json")))
+                                 .andExpect(status().isOk())
+                                 .andExpect(header().string("ETag", '"flowkey"'))
+                                 .andReturn()
+
+        verifyTranslationResult(mvcResult, translationResult)
+    }
+
+    def "flow json to XML with matching If-None-Match -> returns not modified without translating"(String ifNoneMatch) {
+        given:
+        translationService.isCacheable(_) >> true
+        translationService.keyOf(_ as byte[], false) >> "flowkey"
+        translationService.toXml(_ as byte[], false, _ as String) >> { throw new IllegalStateException("translated") }
+
+        expect:
+        mvc.perform(post(FLOW_TO_XML_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .header("If-None-Match", ifNoneMatch)
+                .content(readFlowJson("sample-flow.json")))
+           .andExpect(status().isNotModified())
+           .andExpect(header().string("ETag", '"flowkey"'))
+           .andExpect(content().string(""))
+
+        where:
+        ifNoneMatch << ['"flowkey"', 'W/"flowkey"', '"otherkey", "flowkey"', "*"]
+    }
+
+    def "flow json to XML above the maximum cached request size -> translated from the stream without an ETag"() {
+        given:
+        def json = readFlowJson("sample-flow.json")
+        def translationResult = new TranslationResponse(OUTPUT_XML, null)
+        translationService.isCacheable(json.bytes.length) >> false
+        translationService.isCacheable(_) >> true
+        translationService.keyOf(_ as byte[], false) >> { throw new IllegalStateException("buffered") }
+        translationService.toXml(_ as InputStream, false) >> translationResult
+
+        expect:
+        MvcResult mvcResult = mvc.perform(post(FLOW_TO_XML_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(json))
+                                 .andExpect(status().isOk())
+                                 .andExpect(header().doesNotExist("ETag"))
+                                 .andReturn()
+
+        verifyTranslationResult(mvcResult, translationResult)
+    }
+
+    def "flow json to XML with caching enabled and non-critical errors -> error response is not tagged"() {
+        given:
+        def errDetails = new TranslationErrorDetail("node1", "unknown node")
+        def err = ApiError.of(new TransformerException("unsupported node type"), [errDetails])
+        translationService.isCacheable(_) >> true
+        translationService.keyOf(_ as byte[], false) >> "flowkey"
+        translationService.toXml(_ as byte[], false, "flowkey") >> new TranslationResponse(OUTPUT_XML, err)
+
+        expect:
+        mvc.perform(post(FLOW_TO_XML_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(readFlowJson("sample-flow.json")))
+           .andExpect(status().isInternalServerError())
+           .andExpect(header().doesNotExist("ETag"))
+    }
+
+    def "invalid flow json -> returns bad request with the location of the error"(String endpoint) {
+        given:
+        def ex = new FlowJsonException("/nodes/0/role", "unknown role 'UNKNOWN'")
+        translationService.toXml(_ as InputStream, _ as Boolean) >> { throw ex }
+        translationService.writeXml(_ as InputStream, _ as Boolean, _ as Writer) >> { throw ex }
+
+        expect:
+        MvcResult mvcResult = mvc.perform(post(endpoint)
                 .contentType(APPLICATION_JSON_VALUE)
                 .content(readFlowJson("invalid-role-flow.json")))
                                  .andExpect(status().isBadRequest())
                                  .andExpect(content().contentType(APPLICATION_JSON_VALUE))
                                  .andReturn()
         // Verify expected API error format is returned
-        MAPPER.readValue(mvcResult.getResponse().getContentAsString(), DefaultErrorResponse.class)
+        def response = MAPPER.readValue(mvcResult.getResponse().getContentAsString(), DefaultErrorResponse.class)
+        with(response.error()) {
+            message() == ex.getMessage()
+            type() == "FlowJsonException"
+            details() == [["pointer": "/nodes/0/role"]]
+        }
+
+        where:
+        endpoint << [FLOW_TO_XML_ENDPOINT, FLOW_TO_RAW_XML_ENDPOINT]
+    }
+
+    def "valid flow json to raw XML -> XML is streamed as the response body"(boolean prettyPrint) {
+        given:
+        translationService.writeXml(_ as InputStream, prettyPrint, _ as Writer) >> { args ->
+            args[2].write(OUTPUT_XML)
+            return null
+        }
+
+        expect:
+        mvc.perform(post(FLOW_TO_RAW_XML_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .queryParam("prettyPrint", prettyPrint.toString())
+                .content(readFlowJson("sample-flow.json")))
+           .andExpect(status().isOk())
+           .andExpect(content().contentTypeCompatibleWith(APPLICATION_XML_VALUE))
+           .andExpect(header().string("Trailer", TRANSLATION_ERRORS_TRAILER))
+           .andExpect(content().string(OUTPUT_XML))
+
+        where:
+        prettyPrint << [true, false]
+    }
+
+    def "flow json to raw XML with non-critical transformation errors -> returns ok response with partial body"() {
+        given:
+        def errDetails = new TranslationErrorDetail("node1", "unknown node")
+        def err = ApiError.of(new TransformerException("unsupported node type"), [errDetails])
+        translationService.writeXml(_ as InputStream, _ as Boolean, _ as Writer) >> { args ->
+            args[2].write(OUTPUT_XML)
+            return err
+        }
+
+        expect:
+        mvc.perform(post(FLOW_TO_RAW_XML_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(readFlowJson("sample-flow.json")))
+           .andExpect(status().isOk())
+           .andExpect(content().string(OUTPUT_XML))
+    }
+
+    def "flow json to raw XML with fatal transformation errors before any output -> returns error response"(Exception ex, int httpStatusCode) {
+        given:
+        translationService.writeXml(_ as InputStream, _ as Boolean, _ as Writer) >> { throw ex }
+
+        expect:
+        MvcResult mvcResult = mvc.perform(post(FLOW_TO_RAW_XML_ENDPOINT)
+                .contentType(APPLICATION_JSON_VALUE)
+                .content(readFlowJson("sample-flow.json")))
+                                 .andExpect(status().is(httpStatusCode))
+                                 .andExpect(content().contentType(APPLICATION_JSON_VALUE))
+                                 .andReturn()
+
+        verifyTranslationResult(mvcResult, new TranslationResponse(null, ApiError.of(ex)))
+
+        where:
+        ex                                        | httpStatusCode
+        new IllegalArgumentException("bad input") | HttpStatus.BAD_REQUEST.value()
+        new RuntimeException("unknown")           | HttpStatus.INTERNAL_SERVER_ERROR.value()
     }
 
     def "valid XML to flow json -> returns ok response with body"() {
         given:
         def translationResult = new TranslationResponse(OUTPUT_FLOW, null)
-        translationService.fromXml(_ as InputStream) >> translationResult
+        translationService.writeFlowJson(_ as InputStream, _ as OutputStream) >> { args ->
+            args[1].write(MAPPER.writeValueAsBytes(translationResult))
+        }
 
         expect:
         MvcResult mvcResult = mvc.perform(post(XML_TO_FLOW_ENDPOINT)
@@ -152,7 +299,7 @@ class TranslationControllerTest extends Specification {
 
     def "XML to flow json with fatal transformation errors -> returns error response with no body"(Exception ex, int httpStatusCode) {
         given:
-        translationService.fromXml(_ as InputStream) >> { throw ex }
+        translationService.writeFlowJson(_ as InputStream, _ as OutputStream) >> { throw ex }
 
         expect:
         MvcResult mvcResult = mvc.perform(post(XML_TO_FLOW_ENDPOINT)
@@ -171,24 +318,62 @@ class TranslationControllerTest extends Specification {
         new IOException("stream error")           | HttpStatus.INTERNAL_SERVER_ERROR.value()
     }
 
-    def "XML to flow json with non-critical transformation errors -> returns error response with partial body"() {
+    def "XML to flow json failing after the start of the response is written -> returns only the error response"() {
         given:
-        def errDetails = new TranslationErrorDetail("node1", "unknown node")
-        def err = ApiError.of(new TransformerException("unsupported node type"), [errDetails])
-        def translationResult = new TranslationResponse(OUTPUT_FLOW, err)
-        translationService.fromXml(_ as InputStream) >> translationResult
+        def ex = new IllegalArgumentException("bad input")
+        translationService.writeFlowJson(_ as InputStream, _ as OutputStream) >> { args ->
+            args[1].write('{"data":'.bytes)
+            throw ex
+        }
 
         expect:
         MvcResult mvcResult = mvc.perform(post(XML_TO_FLOW_ENDPOINT)
                 .contentType(APPLICATION_XML_VALUE)
                 .content(readXml("formatted-sample.xml")))
-                                 .andExpect(status().isInternalServerError())
+                                 .andExpect(status().isBadRequest())
+                                 .andExpect(content().contentType(APPLICATION_JSON_VALUE))
+                                 .andReturn()
+
+        verifyTranslationResult(mvcResult, new TranslationResponse(null, ApiError.of(ex)))
+    }
+
+    def "XML to flow json with caching enabled -> returns ok response tagged with the cache key"() {
+        given:
+        def xml = readXml("formatted-sample.xml")
+        def translationResult = new TranslationResponse(OUTPUT_FLOW, null)
+        translationService.isCacheable(_) >> true
+        translationService.keyOf({ new String(it as byte[]) == xml }) >> "xmlkey"
+        translationService.toFlowJson({ new String(it as byte[]) == xml }, "xmlkey") >>
+                MAPPER.writeValueAsBytes(translationResult)
+
+        expect:
+        MvcResult mvcResult = mvc.perform(post(XML_TO_FLOW_ENDPOINT)
+                .contentType(APPLICATION_XML_VALUE)
+                .content(xml))
+                                 .andExpect(status().isOk())
                                  .andExpect(content().contentType(APPLICATION_JSON_VALUE))
+                                 .andExpect(header().string("ETag", '"xmlkey"'))
                                  .andReturn()
 
         verifyTranslationResult(mvcResult, translationResult)
     }
 
+    def "XML to flow json with matching If-None-Match -> returns not modified without translating"() {
+        given:
+        translationService.isCacheable(_) >> true
+        translationService.keyOf(_ as byte[]) >> "xmlkey"
+        translationService.toFlowJson(_ as byte[], _ as String) >> { throw new IllegalStateException("translated") }
+
+        expect:
+        mvc.perform(post(XML_TO_FLOW_ENDPOINT)
+                .contentType(APPLICATION_XML_VALUE)
+                .header("If-None-Match", '"xmlkey"')
+                .content(readXml("formatted-sample.xml")))
+           .andExpect(status().isNotModified())
+           .andExpect(header().string("ETag", '"xmlkey"'))
+           .andExpect(content().string(""))
+    }
+
     private static void verifyTranslationResult(MvcResult actual, Object expected) {
         def responseJson = actual.getResponse().getContentAsString()
         assert MAPPER.readValue(responseJson, TranslationResponse.class) == expected
@@ -1,9 +1,14 @@
 package org.codice.keip.flow.web.translation
 
+import com.fasterxml.jackson.core.JsonGenerator
 import org.codice.keip.flow.FlowTranslator
 import org.codice.keip.flow.error.TransformationError
+import org.codice.keip.flow.json.FlowJsonException
 import org.codice.keip.flow.model.EipNode
 import org.codice.keip.flow.model.Flow
+import org.codice.keip.flow.web.config.NamespaceProps
+import org.codice.keip.flow.web.config.TranslationCacheProps
+import org.springframework.util.unit.DataSize
 import spock.lang.Specification
 
 import javax.xml.transform.TransformerException
@@ -17,11 +22,13 @@ class TranslationServiceTest extends Specification {
 
     FlowTranslator flowTranslator = Stub()
 
-    def translationSvc = new TranslationService(flowTranslator)
+    TranslationCache disabledCache = Stub()
 
-    def "transform flow to xml error-free -> transformed data plus null error field"() {
+    def translationSvc = new TranslationService(flowTranslator, disabledCache)
+
+    def "transform flow json to xml error-free -> transformed data plus null error field"() {
         given:
-        flowTranslator.toXml(_ as Flow, _ as Writer) >> {
+        flowTranslator.toXml(_ as InputStream, _ as Writer, false) >> {
             args ->
                 {
                     Writer w = args[1]
@@ -31,15 +38,51 @@ class TranslationServiceTest extends Specification {
         }
 
         when:
-        def response = translationSvc.toXml(new Flow([], []))
+        def response = translationSvc.toXml(new ByteArrayInputStream("{}".bytes), false)
 
         then:
         response == new TranslationResponse(OUTPUT_XML, null)
     }
 
-    def "transform flow to xml with non-critical errors -> transformed partial data plus detailed error field"() {
+    def "transform flow json to xml with critical error -> throw runtime exception"() {
         given:
-        flowTranslator.toXml(_ as Flow, _ as Writer) >> {
+        flowTranslator.toXml(_ as InputStream, _ as Writer, false) >> { throw new TransformerException("oops") }
+
+        when:
+        translationSvc.toXml(new ByteArrayInputStream("{}".bytes), false)
+
+        then:
+        thrown(RuntimeException)
+    }
+
+    def "write flow json xml to output -> xml written to the provided writer"(boolean prettyPrint, String expectedXml) {
+        given:
+        flowTranslator.toXml(_ as InputStream, _ as Writer, prettyPrint) >> {
+            args ->
+                {
+                    Writer w = args[1]
+                    w.write(readXml(expectedXml))
+                    return [new TransformationError("node1", new TransformerException("oops"))]
+                }
+        }
+        def output = new StringWriter()
+
+        when:
+        def error = translationSvc.writeXml(new ByteArrayInputStream("{}".bytes), prettyPrint, output)
+
+        then:
+        output.toString() == readXml(expectedXml)
+        error.details().size() == 1
+
+        where:
+        prettyPrint | expectedXml
+        false       | "sample-integration-route.xml"
+        true        | "formatted-sample.xml"
+    }
+
+    def "transform flow json to xml with non-critical errors -> transformed partial data plus detailed error field"() {
+        given:
+        flowTranslator.toXml(_ as InputStream, _ as Writer, false) >> {
             args ->
                 {
                     Writer w = args[1]
@@ -49,43 +92,38 @@ class TranslationServiceTest extends Specification {
         }
 
         when:
-        def response = translationSvc.toXml(new Flow([], []))
+        def response = translationSvc.toXml(new ByteArrayInputStream("{}".bytes), false)
 
         then:
         with(response) {
             data() == OUTPUT_XML
-            error() != null
-            error().details().size() == 1
+            error().details() == [new TranslationErrorDetail("node1", "oops")]
         }
     }
 
-    def "transform flow to xml with critical error -> throw runtime exception"() {
+    def "transform flow json to xml with invalid json -> flow json exception thrown"() {
         given:
-        flowTranslator.toXml(_ as Flow, _ as Writer) >> { throw new TransformerException("oops") }
+        def ex = new FlowJsonException("/nodes", "expected an array")
+        flowTranslator.toXml(_ as InputStream, _ as Writer, _ as Boolean) >> { throw ex }
 
         when:
-        translationSvc.toXml(new Flow([], []))
+        translationSvc.writeXml(new ByteArrayInputStream("{}".bytes), false, new StringWriter())
 
         then:
-        thrown(RuntimeException)
+        thrown(FlowJsonException)
     }
 
-    def "transform flow to xml with pretty print -> transformed data is formatted, no errors"() {
+    def "transform flow json to xml with unreadable json -> unchecked io exception thrown"() {
         given:
-        flowTranslator.toXml(_ as Flow, _ as Writer) >> {
-            args ->
-                {
-                    Writer w = args[1]
-                    w.write(readXml("sample-integration-route.xml"))
-                    return []
-                }
+        flowTranslator.toXml(_ as InputStream, _ as Writer, _ as Boolean) >> {
+            throw new IOException("closed")
         }
 
         when:
-        def response = translationSvc.toXml(new Flow([], []), true)
+        translationSvc.toXml(new ByteArrayInputStream("{}".bytes), false)
 
         then:
-        response == new TranslationResponse(readXml("formatted-sample.xml"), null)
+        thrown(UncheckedIOException)
     }
 
     def "transform xml to flow error-free -> transformed data plus null error field"() {
@@ -112,6 +150,126 @@ class TranslationServiceTest extends Specification {
         thrown(RuntimeException)
     }
 
+    def "write xml to flow json -> flow written as the data of a translation response"() {
+        given:
+        flowTranslator.fromXml(_ as InputStream, _ as JsonGenerator) >> { args ->
+            JsonGenerator generator = args[1]
+            generator.writeStartObject()
+            generator.writeArrayFieldStart("nodes")
+            generator.writeEndArray()
+            generator.writeEndObject()
+        }
+        def closed = false
+        def output = new ByteArrayOutputStream() {
+            @Override
+            void close() {
+                closed = true
+            }
+        }
+
+        when:
+        translationSvc.writeFlowJson(new ByteArrayInputStream("".bytes), output)
+
+        then:
+        output.toString() == '{"data":{"nodes":[]}}'
+        !closed
+    }
+
+    def "write xml to flow json with error -> throw runtime exception"() {
+        given:
+        flowTranslator.fromXml(_ as InputStream, _ as JsonGenerator) >> {
+            throw new TransformerException("oops")
+        }
+
+        when:
+        translationSvc.writeFlowJson(new ByteArrayInputStream("".bytes), new ByteArrayOutputStream())
+
+        then:
+        thrown(RuntimeException)
+    }
+
+    def "buffered flow json to xml translation -> cached up to the maximum request size"(String json, int expectedTranslations) {
+        given:
+        def cachingSvc = new TranslationService(flowTranslator, newCache())
+        def translations = 0
+        flowTranslator.toXml(_ as InputStream, _ as Writer, false) >> {
+            args ->
+                {
+                    translations++
+                    Writer w = args[1]
+                    w.write(OUTPUT_XML)
+                    return []
+                }
+        }
+
+        when:
+        def first = cachingSvc.toXml(json.bytes, false)
+        def second = cachingSvc.toXml(json.bytes, false)
+
+        then:
+        translations == expectedTranslations
+        first == new TranslationResponse(OUTPUT_XML, null)
+        second == first
+
+        where:
+        json                                       | expectedTranslations
+        '{"nodes": []}'                            | 1
+        '{"nodes": [], "label": "' + "x" * 2048 + '"}' | 2
+    }
+
+    def "repeated flow json to xml translation -> served from the cache"() {
+        given:
+        def cachingSvc = new TranslationService(flowTranslator, newCache())
+        def json = '{"nodes": []}'.bytes
+        def translations = 0
+        flowTranslator.toXml(_ as InputStream, _ as Writer, false) >> {
+            args ->
+                {
+                    translations++
+                    Writer w = args[1]
+                    w.write(OUTPUT_XML)
+                    return []
+                }
+        }
+
+        when:
+        def first = cachingSvc.toXml(json, false, cachingSvc.keyOf(json, false))
+        def second = cachingSvc.toXml(json, false, cachingSvc.keyOf(json, false))
+
+        then:
+        translations == 1
+        first == new TranslationResponse(OUTPUT_XML, null)
+        second.is(first)
+    }
+
+    def "repeated xml to flow json translation -> served from the cache"() {
+        given:
+        def cachingSvc = new TranslationService(flowTranslator, newCache())
+        def xml = readXml("sample-integration-route.xml").bytes
+        def translations = 0
+        flowTranslator.fromXml(_ as InputStream, _ as JsonGenerator) >> { args ->
+            translations++
+            JsonGenerator generator = args[1]
+            generator.writeStartObject()
+            generator.writeEndObject()
+        }
+
+        when:
+        def first = cachingSvc.toFlowJson(xml, cachingSvc.keyOf(xml))
+        def second = cachingSvc.toFlowJson(xml, cachingSvc.keyOf(xml))
+
+        then:
+        translations == 1
+        new String(first) == '{"data":{}}'
+        second.is(first)
+    }
+
+    private static TranslationCache newCache() {
+        return new TranslationCache(
+                new TranslationCacheProps(DataSize.ofMegabytes(1), DataSize.ofKilobytes(1)),
+                new NamespaceProps([]))
+    }
+
     private Flow buildOutputFlow() {
         EipNode test = Stub() {
             id() >> "test"
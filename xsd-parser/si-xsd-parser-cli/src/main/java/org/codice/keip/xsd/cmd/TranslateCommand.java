@@ -7,6 +7,7 @@ import java.util.concurrent.Callable;
 import org.codice.keip.xsd.EipSchemaTranslation;
 import org.codice.keip.xsd.client.XmlSchemaClient;
 import org.codice.keip.xsd.config.XsdSourceConfiguration;
+import org.codice.keip.xsd.model.serdes.ComponentIndexWriter;
 import org.codice.keip.xsd.model.serdes.SchemaSerializer;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -31,6 +32,12 @@ public class TranslateCommand implements Callable<Integer> {
           "Specify the path to write the translated EIP Schema JSON. If a file does not exist at the path, it will be created. If a file already exists, it will be overwritten.")
   private File output;
 
+  @Option(
+      names = {"-i", "--index-output"},
+      description =
+          "Optionally, the path to also write a compact binary index of the EIP components (role, connection type and required attributes), for fast lookups. If a file already exists, it will be overwritten.")
+  private File indexOutput;
+
   @Override
   public Integer call() throws Exception {
     XsdSourceConfiguration sourceConfig = parseSourceFile();
@@ -39,6 +46,10 @@ public class TranslateCommand implements Callable<Integer> {
 
     SchemaSerializer.writeSchemaToJsonFile(translation.getEipSchema(), output);
 
+    if (indexOutput != null) {
+      ComponentIndexWriter.writeIndexToFile(translation.getEipSchema(), indexOutput);
+    }
+
     return translation.getErrors().isEmpty() ? 0 : 1;
   }
 
@@ -0,0 +1,255 @@
+package org.codice.keip.xsd.model.serdes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.codice.keip.xsd.model.eip.Attribute;
+import org.codice.keip.xsd.model.eip.ConnectionType;
+import org.codice.keip.xsd.model.eip.EipComponent;
+import org.codice.keip.xsd.model.eip.EipId;
+import org.codice.keip.xsd.model.eip.EipSchema;
+import org.codice.keip.xsd.model.eip.Role;
+
+/**
+ * Writes a compact binary index of the components of an {@link EipSchema}, for consumers that
+ * only need to look up the role, connection type and required attributes of a component (see
+ * {@code ComponentRegistry} in {@code flow-translator-lib}). The index can be memory-mapped and
+ * searched in place, without parsing the full component definitions JSON.
+ *
+ * <p>Components are placed in a table using a minimal perfect hash (hash and displace), so a
+ * lookup takes a single probe. Every string is stored once in a string table and referenced by
+ * index. The format (big-endian, strings are UTF-8 prefixed with their unsigned 16-bit length):
+ *
+ * <pre>
+ * int    magic ("KCIX")
+ * short  format version
+ * short  role count, followed by the role names
+ * short  connection type count, followed by the connection type names
+ * int    string count, followed by the strings
+ * int    component count (n)
+ * int[n] displacements, indexed by bucket
+ * n x    component: u16 namespace, u16 name, u8 role, u8 connection type,
+ *        u16 required attribute count, int offset of the first required attribute
+ * int    required attribute count (m)
+ * u16[m] required attribute names
+ * </pre>
+ *
+ * <p>A key is hashed with {@link #hash(String, String)}, and its bucket is {@code slot(hash, 0,
+ * n)}. A displacement of 0 marks an empty bucket, a positive displacement {@code d} places the
+ * key at {@code slot(hash, d, n)}, and a negative one places it directly at {@code -d - 1}.
+ * Lookups must compare the namespace and name stored at the slot, since keys that are not in the
+ * index also map to a slot.
+ */
+public class ComponentIndexWriter {
+
+  static final int MAGIC = 0x4B434958;
+
+  static final short VERSION = 1;
+
+  private static final int MAX_DISPLACEMENT = 1 << 24;
+
+  private static final int MAX_STRINGS = 0xFFFF;
+
+  public static void writeIndexToFile(EipSchema eipSchema, File file) throws IOException {
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists()) {
+      parent.mkdirs();
+    }
+
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      writeIndex(eipSchema, out);
+    }
+  }
+
+  static void writeIndex(EipSchema eipSchema, OutputStream output) throws IOException {
+    List<EipComponent> components = new ArrayList<>();
+    eipSchema.toMap().values().forEach(components::addAll);
+
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    for (EipComponent component : components) {
+      intern(strings, component.getEipId().namespace());
+      intern(strings, component.getEipId().name());
+      for (Attribute attribute : component.getAttributes()) {
+        if (attribute.required()) {
+          intern(strings, attribute.name());
+        }
+      }
+    }
+
+    EipComponent[] table = new EipComponent[components.size()];
+    int[] displacements = buildPerfectHash(components, table);
+
+    DataOutputStream out = new DataOutputStream(output);
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    writeNames(out, Role.values());
+    writeNames(out, ConnectionType.values());
+
+    out.writeInt(strings.size());
+    for (String s : strings.keySet()) {
+      writeString(out, s);
+    }
+
+    out.writeInt(table.length);
+    for (int displacement : displacements) {
+      out.writeInt(displacement);
+    }
+
+    List<Integer> requiredAttributes = new ArrayList<>();
+    for (EipComponent component : table) {
+      List<Integer> required =
+          component.getAttributes().stream()
+              .filter(Attribute::required)
+              .map(a -> strings.get(a.name()))
+              .toList();
+      out.writeShort(strings.get(component.getEipId().namespace()));
+      out.writeShort(strings.get(component.getEipId().name()));
+      out.writeByte(component.getRole().ordinal());
+      out.writeByte(component.getConnectionType().ordinal());
+      out.writeShort(required.size());
+      out.writeInt(requiredAttributes.size());
+      requiredAttributes.addAll(required);
+    }
+
+    out.writeInt(requiredAttributes.size());
+    for (int name : requiredAttributes) {
+      out.writeShort(name);
+    }
+    out.flush();
+  }
+
+  /**
+   * Hashes a component id (32-bit FNV-1a over the UTF-16 chars of {@code namespace:name}).
+   * Consumers of the index must use the same function.
+   */
+  static int hash(String namespace, String name) {
+    int h = 0x811C9DC5;
+    for (int i = 0; i < namespace.length(); i++) {
+      h = (h ^ namespace.charAt(i)) * 0x01000193;
+    }
+    h = (h ^ ':') * 0x01000193;
+    for (int i = 0; i < name.length(); i++) {
+      h = (h ^ name.charAt(i)) * 0x01000193;
+    }
+    return h;
+  }
+
+  /** Maps a hash to a table slot, for the given displacement (0 for the bucket). */
+  static int slot(int hash, int displacement, int size) {
+    int h = hash ^ (displacement * 0x9E3779B9);
+    // murmur3 finalizer
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return Integer.remainderUnsigned(h, size);
+  }
+
+  private static int[] buildPerfectHash(List<EipComponent> components, EipComponent[] table) {
+    int size = table.length;
+    List<List<EipComponent>> buckets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      buckets.add(new ArrayList<>());
+    }
+
+    Set<EipId> ids = new HashSet<>();
+    for (EipComponent component : components) {
+      if (!ids.add(component.getEipId())) {
+        throw new IllegalArgumentException("Duplicate component: " + component.getEipId());
+      }
+      buckets.get(slot(hash(component.getEipId()), 0, size)).add(component);
+    }
+
+    int[] displacements = new int[size];
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      order.add(i);
+    }
+    order.sort(Comparator.comparingInt((Integer b) -> buckets.get(b).size()).reversed());
+
+    int nextFree = 0;
+    for (int bucket : order) {
+      List<EipComponent> keys = buckets.get(bucket);
+      if (keys.size() > 1) {
+        displacements[bucket] = placeBucket(keys, table);
+      } else if (keys.size() == 1) {
+        while (table[nextFree] != null) {
+          nextFree++;
+        }
+        table[nextFree] = keys.getFirst();
+        displacements[bucket] = -nextFree - 1;
+      }
+    }
+    return displacements;
+  }
+
+  // Finds a displacement that sends every key of the bucket to a distinct free slot
+  private static int placeBucket(List<EipComponent> keys, EipComponent[] table) {
+    int[] slots = new int[keys.size()];
+    for (int displacement = 1; displacement < MAX_DISPLACEMENT; displacement++) {
+      if (tryPlace(keys, table, displacement, slots)) {
+        for (int i = 0; i < slots.length; i++) {
+          table[slots[i]] = keys.get(i);
+        }
+        return displacement;
+      }
+    }
+    throw new IllegalStateException("Failed to build the component index hash table");
+  }
+
+  private static boolean tryPlace(
+      List<EipComponent> keys, EipComponent[] table, int displacement, int[] slots) {
+    for (int i = 0; i < keys.size(); i++) {
+      int slot = slot(hash(keys.get(i).getEipId()), displacement, table.length);
+      if (table[slot] != null) {
+        return false;
+      }
+      for (int j = 0; j < i; j++) {
+        if (slots[j] == slot) {
+          return false;
+        }
+      }
+      slots[i] = slot;
+    }
+    return true;
+  }
+
+  private static int hash(EipId eipId) {
+    return hash(eipId.namespace(), eipId.name());
+  }
+
+  private static void intern(Map<String, Integer> strings, String s) {
+    if (!strings.containsKey(s)) {
+      if (strings.size() == MAX_STRINGS) {
+        throw new IllegalArgumentException("Too many distinct strings for the component index");
+      }
+      strings.put(s, strings.size());
+    }
+  }
+
+  // Names are written as they appear in the JSON definitions
+  private static void writeNames(DataOutputStream out, Enum<?>[] values) throws IOException {
+    out.writeShort(values.length);
+    for (Enum<?> value : values) {
+      writeString(out, value.name().toLowerCase());
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,185 @@
+package org.codice.keip.xsd.model.serdes
+
+import org.codice.keip.xsd.model.eip.Attribute
+import org.codice.keip.xsd.model.eip.AttributeType
+import org.codice.keip.xsd.model.eip.ConnectionType
+import org.codice.keip.xsd.model.eip.EipComponent
+import org.codice.keip.xsd.model.eip.EipId
+import org.codice.keip.xsd.model.eip.EipSchema
+import org.codice.keip.xsd.model.eip.Role
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.nio.file.Path
+
+class ComponentIndexWriterTest extends Specification {
+
+    @TempDir
+    File testDir
+
+    def "Every component of the index is found with a single probe"(int componentCount) {
+        given:
+        def components = buildComponents(componentCount)
+
+        when:
+        def index = readIndex(writeIndex(EipSchema.from(["test-ns": components])))
+
+        then:
+        index.size == componentCount
+        components.every { index.find(it.eipId) == expected(it) }
+
+        where:
+        componentCount << [1, 2, 10, 257, 5000]
+    }
+
+    def "Components that are not in the index are not found"() {
+        given:
+        def index = readIndex(writeIndex(EipSchema.from(["test-ns": buildComponents(100)])))
+
+        expect:
+        index.find(new EipId("other", "component-1")) == null
+        index.find(new EipId("test-ns", "component-100")) == null
+    }
+
+    def "Empty schema produces an empty index"() {
+        when:
+        def index = readIndex(writeIndex(new EipSchema()))
+
+        then:
+        index.size == 0
+    }
+
+    def "Components of multiple namespaces are indexed"() {
+        given:
+        def first = buildComponent(new EipId("first", "shared-name"), 0)
+        def second = buildComponent(new EipId("second", "shared-name"), 1)
+
+        when:
+        def index = readIndex(writeIndex(EipSchema.from(["first": [first], "second": [second]])))
+
+        then:
+        index.find(first.eipId) == expected(first)
+        index.find(second.eipId) == expected(second)
+    }
+
+    def "Duplicate components are rejected"() {
+        given:
+        def component = buildComponent(new EipId("test-ns", "dup"), 0)
+
+        when:
+        writeIndex(EipSchema.from(["test-ns": [component, component]]))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Write index to file - missing parent directories are created automatically"() {
+        given:
+        def outputFile = Path.of(testDir.path, "first", "second", "components.idx").toFile()
+        def schema = EipSchema.from(["test-ns": buildComponents(3)])
+
+        when:
+        ComponentIndexWriter.writeIndexToFile(schema, outputFile)
+
+        then:
+        outputFile.bytes == writeIndex(schema)
+    }
+
+    private static byte[] writeIndex(EipSchema schema) {
+        def out = new ByteArrayOutputStream()
+        ComponentIndexWriter.writeIndex(schema, out)
+        return out.toByteArray()
+    }
+
+    private static List<EipComponent> buildComponents(int count) {
+        return (0..<count).collect { buildComponent(new EipId("test-ns", "component-$it"), it) }
+    }
+
+    private static EipComponent buildComponent(EipId eipId, int seed) {
+        def roles = Role.values()
+        def connectionTypes = ConnectionType.values()
+        def builder = new EipComponent.Builder(
+                eipId, roles[seed % roles.length], connectionTypes[seed % connectionTypes.length])
+        (0..<(seed % 4)).each {
+            builder.addAttribute(
+                    new Attribute.Builder("attr-$it", AttributeType.STRING).required(it % 2 == 0).build())
+        }
+        return builder.build()
+    }
+
+    private static Map expected(EipComponent component) {
+        return [role          : component.role,
+                connectionType: component.connectionType,
+                required      : component.attributes.findAll { it.required() }*.name()]
+    }
+
+    private static TestIndex readIndex(byte[] bytes) {
+        def buffer = ByteBuffer.wrap(bytes)
+        assert buffer.getInt() == ComponentIndexWriter.MAGIC
+        assert buffer.getShort() == ComponentIndexWriter.VERSION
+
+        def roles = readNames(buffer).collect { Role.valueOf(it.toUpperCase()) }
+        def connectionTypes = readNames(buffer).collect { ConnectionType.valueOf(it.toUpperCase()) }
+        def strings = (0..<buffer.getInt()).collect { readString(buffer) }
+
+        def size = buffer.getInt()
+        def displacements = (0..<size).collect { buffer.getInt() }
+        def entries = (0..<size).collect {
+            [namespace     : strings[Short.toUnsignedInt(buffer.getShort())],
+             name          : strings[Short.toUnsignedInt(buffer.getShort())],
+             role          : roles[Byte.toUnsignedInt(buffer.get())],
+             connectionType: connectionTypes[Byte.toUnsignedInt(buffer.get())],
+             requiredCount : Short.toUnsignedInt(buffer.getShort()),
+             requiredOffset: buffer.getInt()]
+        }
+        def required = (0..<buffer.getInt()).collect { strings[Short.toUnsignedInt(buffer.getShort())] }
+        assert !buffer.hasRemaining()
+
+        return new TestIndex(size, displacements, entries, required)
+    }
+
+    private static List<String> readNames(ByteBuffer buffer) {
+        return (0..<Short.toUnsignedInt(buffer.getShort())).collect { readString(buffer) }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        def bytes = new byte[Short.toUnsignedInt(buffer.getShort())]
+        buffer.get(bytes)
+        return new String(bytes, StandardCharsets.UTF_8)
+    }
+
+    private static class TestIndex {
+        final int size
+        final List<Integer> displacements
+        final List<Map> entries
+        final List<String> required
+
+        TestIndex(int size, List<Integer> displacements, List<Map> entries, List<String> required) {
+            this.size = size
+            this.displacements = displacements
+            this.entries = entries
+            this.required = required
+        }
+
+        Map find(EipId eipId) {
+            if (size == 0) {
+                return null
+            }
+            int hash = ComponentIndexWriter.hash(eipId.namespace(), eipId.name())
+            int displacement = displacements[ComponentIndexWriter.slot(hash, 0, size)]
+            if (displacement == 0) {
+                return null
+            }
+            int slot = displacement < 0 ? -displacement - 1 : ComponentIndexWriter.slot(hash, displacement, size)
+            def entry = entries[slot]
+            if (entry.namespace != eipId.namespace() || entry.name != eipId.name()) {
+                return null
+            }
+            return [role          : entry.role,
+                    connectionType: entry.connectionType,
+                    required      : required.subList(entry.requiredOffset, entry.requiredOffset + entry.requiredCount)]
+        }
+    }
+}